@@ -10,14 +10,30 @@ CREATE TABLE IF NOT EXISTS accounts (
   failed_attempts INTEGER        NOT NULL DEFAULT 0,
   password       VARCHAR(255),
   terms_accepted BOOLEAN         NOT NULL DEFAULT FALSE,
+  version        BIGINT          NOT NULL DEFAULT 0,
   CONSTRAINT status_check CHECK (status IN ('Active','Locked','Archived')),
   CONSTRAINT pin_format_check CHECK (pin ~ '^[0-9]{4,5}$')
 );
 
 CREATE UNIQUE INDEX IF NOT EXISTS accounts_email_key ON accounts(email) WHERE email IS NOT NULL;
 
+-- Bump version on any update that did not set it (see migrations/013_account_version.sql)
+CREATE OR REPLACE FUNCTION accounts_bump_version() RETURNS trigger AS $$
+BEGIN
+  IF NEW.version IS NOT DISTINCT FROM OLD.version THEN
+    NEW.version := COALESCE(OLD.version, 0) + 1;
+  END IF;
+  RETURN NEW;
+END $$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS accounts_bump_version ON accounts;
+CREATE TRIGGER accounts_bump_version
+  BEFORE UPDATE ON accounts
+  FOR EACH ROW EXECUTE FUNCTION accounts_bump_version();
+
+-- Partitioned by month of created_at (see migrations/019_partition_transactions.sql)
 CREATE TABLE IF NOT EXISTS transactions (
-  id BIGSERIAL PRIMARY KEY,
+  id BIGSERIAL,
   account_number VARCHAR(10) NOT NULL REFERENCES accounts(account_number) ON DELETE CASCADE, -- source account
   target_account VARCHAR(10) REFERENCES accounts(account_number) ON DELETE RESTRICT,
   type VARCHAR(10) NOT NULL,
@@ -33,17 +49,20 @@ CREATE TABLE IF NOT EXISTS transactions (
   source_balance_after  NUMERIC(12,2),
   target_balance_before NUMERIC(12,2),
   target_balance_after  NUMERIC(12,2),
+  PRIMARY KEY (id, created_at),
   CONSTRAINT type_check CHECK (type IN ('deposit','withdraw','transfer','fee')),
   CONSTRAINT status_tx_check CHECK (status IN ('Pending','Completed','Voided'))
-);
+) PARTITION BY RANGE (created_at);
+
+CREATE TABLE IF NOT EXISTS transactions_default PARTITION OF transactions DEFAULT;
 
-CREATE INDEX IF NOT EXISTS idx_transactions_source ON transactions(account_number);
-CREATE INDEX IF NOT EXISTS idx_transactions_target ON transactions(target_account);
-CREATE INDEX IF NOT EXISTS idx_transactions_created_at ON transactions(created_at);
+CREATE INDEX IF NOT EXISTS idx_transactions_source_created ON transactions (account_number, created_at DESC);
+CREATE INDEX IF NOT EXISTS idx_transactions_target_created ON transactions (target_account, created_at DESC);
+CREATE INDEX IF NOT EXISTS idx_transactions_created_at ON transactions (created_at);
 
 CREATE TABLE IF NOT EXISTS transaction_audit (
   id BIGSERIAL PRIMARY KEY,
-  transaction_id BIGINT NOT NULL REFERENCES transactions(id) ON DELETE CASCADE,
+  transaction_id BIGINT NOT NULL, -- no FK: the partitioned transactions key is (id, created_at)
   action VARCHAR(12) NOT NULL,
   performed_by VARCHAR(10) NOT NULL,
   reason TEXT,
@@ -52,6 +71,205 @@ CREATE TABLE IF NOT EXISTS transaction_audit (
   CONSTRAINT action_check CHECK (action IN ('create','update','complete','void','rollback'))
 );
 
+-- Pooled id allocation for JDBC batching (see migrations/014_pooled_ledger_sequences.sql)
+ALTER SEQUENCE transactions_id_seq INCREMENT BY 50;
+ALTER SEQUENCE transaction_audit_id_seq INCREMENT BY 50;
+
+-- Idempotency-Key dedupe for transaction POSTs (see migrations/015_idempotency_keys.sql)
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+  idem_key TEXT PRIMARY KEY,
+  request_hash TEXT NOT NULL,
+  status_code INT,
+  response_body TEXT,
+  created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  expires_at TIMESTAMPTZ NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_expires ON idempotency_keys (expires_at);
+
+-- Bulk interest accrual checkpoints (see migrations/016_interest_accrual_runs.sql)
+CREATE TABLE IF NOT EXISTS interest_accrual_runs (
+  run_id VARCHAR(40) PRIMARY KEY,
+  rate NUMERIC(12,8) NOT NULL CHECK (rate > 0 AND rate < 1),
+  status VARCHAR(10) NOT NULL DEFAULT 'Running',
+  last_account VARCHAR(10) NOT NULL DEFAULT '',
+  accounts_credited BIGINT NOT NULL DEFAULT 0,
+  interest_total NUMERIC(18,2) NOT NULL DEFAULT 0,
+  started_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  updated_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  completed_at TIMESTAMPTZ,
+  CONSTRAINT accrual_status_check CHECK (status IN ('Running','Completed'))
+);
+
+-- Daily account rollups (see migrations/017_account_daily_rollups.sql)
+CREATE TABLE IF NOT EXISTS account_daily_rollups (
+  account_number VARCHAR(10) NOT NULL REFERENCES accounts(account_number) ON DELETE CASCADE,
+  day DATE NOT NULL,
+  credits NUMERIC(14,2) NOT NULL DEFAULT 0,
+  debits NUMERIC(14,2) NOT NULL DEFAULT 0,
+  fees NUMERIC(14,2) NOT NULL DEFAULT 0,
+  tx_count INT NOT NULL DEFAULT 0,
+  closing_balance NUMERIC(12,2),
+  closing_at TIMESTAMPTZ,
+  closing_id BIGINT,
+  PRIMARY KEY (account_number, day)
+);
+
+CREATE TABLE IF NOT EXISTS rollup_state (
+  name VARCHAR(40) PRIMARY KEY,
+  cutoff TIMESTAMPTZ NOT NULL DEFAULT '-infinity',
+  updated_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+-- Transactions waiting for the rollup job (see migrations/022_rollup_pending.sql)
+CREATE TABLE IF NOT EXISTS rollup_pending (
+  id BIGINT PRIMARY KEY
+);
+
+CREATE OR REPLACE FUNCTION queue_rollup_transactions() RETURNS trigger AS $$
+BEGIN
+  INSERT INTO rollup_pending (id) SELECT id FROM inserted ON CONFLICT DO NOTHING;
+  RETURN NULL;
+END $$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS transactions_queue_rollup ON transactions;
+CREATE TRIGGER transactions_queue_rollup
+  AFTER INSERT ON transactions
+  REFERENCING NEW TABLE AS inserted
+  FOR EACH STATEMENT EXECUTE FUNCTION queue_rollup_transactions();
+
+-- Ledger reconciliation (see migrations/018_ledger_reconciliation.sql)
+CREATE TABLE IF NOT EXISTS reconciliation_checkpoints (
+  account_number VARCHAR(10) PRIMARY KEY REFERENCES accounts(account_number) ON DELETE CASCADE,
+  last_id BIGINT NOT NULL,
+  last_balance NUMERIC(12,2),
+  updated_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE TABLE IF NOT EXISTS reconciliation_runs (
+  run_id BIGSERIAL PRIMARY KEY,
+  status VARCHAR(10) NOT NULL DEFAULT 'Running',
+  accounts_checked INT NOT NULL DEFAULT 0,
+  rows_checked BIGINT NOT NULL DEFAULT 0,
+  discrepancies INT NOT NULL DEFAULT 0,
+  started_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  completed_at TIMESTAMPTZ,
+  CONSTRAINT reconciliation_status_check CHECK (status IN ('Running','Completed','Failed'))
+);
+
+-- chain_break: a row's before is not the previous row's after
+-- delta_mismatch: after - before does not match the row's type, amount and fee
+-- balance_mismatch: the last after differs from accounts.balance
+CREATE TABLE IF NOT EXISTS reconciliation_discrepancies (
+  id BIGSERIAL PRIMARY KEY,
+  run_id BIGINT NOT NULL REFERENCES reconciliation_runs(run_id) ON DELETE CASCADE,
+  account_number VARCHAR(10) NOT NULL,
+  transaction_id BIGINT,
+  kind VARCHAR(20) NOT NULL,
+  expected NUMERIC(12,2),
+  actual NUMERIC(12,2),
+  detected_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  CONSTRAINT discrepancy_kind_check CHECK (kind IN ('chain_break','delta_mismatch','balance_mismatch'))
+);
+CREATE INDEX IF NOT EXISTS idx_reconciliation_discrepancies_run ON reconciliation_discrepancies (run_id, id);
+
+-- Monthly transaction partitions (see migrations/019_partition_transactions.sql)
+CREATE OR REPLACE FUNCTION create_transactions_partition(month DATE) RETURNS BOOLEAN AS $$
+DECLARE
+  month_start TIMESTAMP := date_trunc('month', month::timestamp);
+  lower_bound TIMESTAMPTZ := month_start AT TIME ZONE 'UTC';
+  upper_bound TIMESTAMPTZ := (month_start + interval '1 month') AT TIME ZONE 'UTC';
+  part TEXT := 'transactions_' || to_char(month_start, 'YYYY_MM');
+BEGIN
+  IF to_regclass(part) IS NOT NULL THEN
+    RETURN FALSE;
+  END IF;
+  -- Built standalone and attached, so rows already sitting in the default partition
+  -- can be moved in first and the parent is never locked exclusively
+  EXECUTE format('CREATE TABLE %I (LIKE transactions INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', part);
+  EXECUTE format('WITH moved AS (DELETE FROM transactions_default'
+                 || ' WHERE created_at >= %L AND created_at < %L RETURNING *)'
+                 || ' INSERT INTO %I SELECT * FROM moved', lower_bound, upper_bound, part);
+  EXECUTE format('ALTER TABLE transactions ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                 part, lower_bound, upper_bound);
+  RETURN TRUE;
+END $$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION ensure_transactions_partitions(months_ahead INT) RETURNS INT AS $$
+DECLARE
+  this_month TIMESTAMP := date_trunc('month', now() AT TIME ZONE 'UTC');
+  month DATE;
+  created INT := 0;
+BEGIN
+  IF (SELECT relkind FROM pg_class WHERE oid = to_regclass('transactions')) IS DISTINCT FROM 'p' THEN
+    RETURN 0;
+  END IF;
+  PERFORM pg_advisory_xact_lock(hashtext('transactions_partitions'));
+  IF to_regclass('transactions_default') IS NULL THEN
+    CREATE TABLE transactions_default PARTITION OF transactions DEFAULT;
+  END IF;
+  FOR month IN
+    SELECT generate_series(this_month, this_month + make_interval(months => months_ahead), interval '1 month')::date
+    UNION
+    SELECT DISTINCT date_trunc('month', created_at AT TIME ZONE 'UTC')::date FROM transactions_default
+  LOOP
+    IF create_transactions_partition(month) THEN
+      created := created + 1;
+    END IF;
+  END LOOP;
+  RETURN created;
+END $$ LANGUAGE plpgsql;
+
+SELECT ensure_transactions_partitions(3);
+
+-- Ledger change events on LISTEN ledger_events (see migrations/021_ledger_events.sql)
+CREATE OR REPLACE FUNCTION notify_transaction_event() RETURNS trigger AS $$
+BEGIN
+  IF current_setting('ledger.feed', true) = 'off' THEN
+    RETURN NULL;
+  END IF;
+  PERFORM pg_notify('ledger_events', json_build_object(
+    'kind', 'transaction',
+    'op', lower(TG_OP),
+    'id', NEW.id,
+    'account_number', NEW.account_number,
+    'target_account', NEW.target_account,
+    'type', NEW.type,
+    'status', NEW.status,
+    'amount', NEW.amount,
+    'fee', NEW.fee,
+    'note', left(NEW.note, 200),
+    'created_at', NEW.created_at,
+    'completed_at', NEW.completed_at,
+    'voided_at', NEW.voided_at,
+    'source_balance_after', NEW.source_balance_after,
+    'target_balance_after', NEW.target_balance_after)::text);
+  RETURN NULL;
+END $$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS transactions_notify ON transactions;
+CREATE TRIGGER transactions_notify
+  AFTER INSERT OR UPDATE ON transactions
+  FOR EACH ROW EXECUTE FUNCTION notify_transaction_event();
+
+CREATE OR REPLACE FUNCTION notify_balance_event() RETURNS trigger AS $$
+BEGIN
+  IF current_setting('ledger.feed', true) = 'off' THEN
+    RETURN NULL;
+  END IF;
+  PERFORM pg_notify('ledger_events', json_build_object(
+    'kind', 'balance',
+    'account_number', NEW.account_number,
+    'balance', NEW.balance,
+    'version', NEW.version)::text);
+  RETURN NULL;
+END $$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS accounts_notify_balance ON accounts;
+CREATE TRIGGER accounts_notify_balance
+  AFTER UPDATE OF balance ON accounts
+  FOR EACH ROW WHEN (OLD.balance IS DISTINCT FROM NEW.balance)
+  EXECUTE FUNCTION notify_balance_event();
+
 CREATE TABLE IF NOT EXISTS pending_signups (
   email TEXT PRIMARY KEY,
   name TEXT NOT NULL,
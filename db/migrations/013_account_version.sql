@@ -0,0 +1,20 @@
+-- Migration: optimistic concurrency version on accounts
+-- Hibernate bumps version itself; the trigger covers every other writer
+-- (Next.js routes, the JDK transaction server, set-based SQL) so none of
+-- them can slip a balance change past an optimistic reader.
+
+ALTER TABLE public.accounts
+  ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+CREATE OR REPLACE FUNCTION public.accounts_bump_version() RETURNS trigger AS $$
+BEGIN
+  IF NEW.version IS NOT DISTINCT FROM OLD.version THEN
+    NEW.version := COALESCE(OLD.version, 0) + 1;
+  END IF;
+  RETURN NEW;
+END $$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS accounts_bump_version ON public.accounts;
+CREATE TRIGGER accounts_bump_version
+  BEFORE UPDATE ON public.accounts
+  FOR EACH ROW EXECUTE FUNCTION public.accounts_bump_version();
@@ -0,0 +1,18 @@
+-- Migration: pooled id allocation for the ledger tables
+-- Hibernate reserves blocks of 50 ids per nextval() so it can batch INSERTs.
+-- Other writers keep using DEFAULT nextval() and simply skip ahead by 50;
+-- the blocks never overlap.
+
+ALTER SEQUENCE IF EXISTS public.transactions_id_seq INCREMENT BY 50;
+ALTER SEQUENCE IF EXISTS public.transaction_audit_id_seq INCREMENT BY 50;
+
+-- Hibernate treats each value as the top of its block, so move existing
+-- sequences at least one block past the highest id already issued.
+SELECT setval('public.transactions_id_seq',
+              GREATEST((SELECT last_value FROM public.transactions_id_seq),
+                       (SELECT COALESCE(MAX(id), 0) + 50 FROM public.transactions)))
+WHERE to_regclass('public.transactions_id_seq') IS NOT NULL;
+SELECT setval('public.transaction_audit_id_seq',
+              GREATEST((SELECT last_value FROM public.transaction_audit_id_seq),
+                       (SELECT COALESCE(MAX(id), 0) + 50 FROM public.transaction_audit)))
+WHERE to_regclass('public.transaction_audit_id_seq') IS NOT NULL;
@@ -0,0 +1,16 @@
+-- Migration: durable Idempotency-Key store for POST /api/transactions
+-- A row is claimed (status_code NULL) before the posting runs and filled in
+-- with the response once it completes, so a retry that lands on another
+-- server instance, or after a restart, replays instead of posting twice.
+-- Expired rows are deleted by the servers' cleanup jobs.
+
+CREATE TABLE IF NOT EXISTS public.idempotency_keys (
+  idem_key TEXT PRIMARY KEY,
+  request_hash TEXT NOT NULL,
+  status_code INT,
+  response_body TEXT,
+  created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  expires_at TIMESTAMPTZ NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_expires ON public.idempotency_keys (expires_at);
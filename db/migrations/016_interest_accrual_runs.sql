@@ -0,0 +1,17 @@
+-- Migration: checkpoints for bulk interest accrual
+-- One row per run (e.g. run_id '2026-10'). Each chunk of accounts is credited
+-- and its checkpoint advanced in the same statement, so a run that dies part
+-- way resumes after last_account without crediting anyone twice.
+
+CREATE TABLE IF NOT EXISTS public.interest_accrual_runs (
+  run_id VARCHAR(40) PRIMARY KEY,
+  rate NUMERIC(12,8) NOT NULL CHECK (rate > 0 AND rate < 1),
+  status VARCHAR(10) NOT NULL DEFAULT 'Running',
+  last_account VARCHAR(10) NOT NULL DEFAULT '',
+  accounts_credited BIGINT NOT NULL DEFAULT 0,
+  interest_total NUMERIC(18,2) NOT NULL DEFAULT 0,
+  started_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  updated_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  completed_at TIMESTAMPTZ,
+  CONSTRAINT accrual_status_check CHECK (status IN ('Running','Completed'))
+);
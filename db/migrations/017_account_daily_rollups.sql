@@ -0,0 +1,28 @@
+-- Migration: per-account daily rollups for account summaries
+-- One row per account and day (in the rollup job's time zone). The JDK server's
+-- rollup job adds new transactions to these rows and advances rollup_state in the
+-- same transaction, so a crashed or repeated run never counts a row twice.
+-- closing_at/closing_id identify the transaction whose balance snapshot gave
+-- closing_balance, so batches that arrive out of order keep the latest one.
+
+CREATE TABLE IF NOT EXISTS public.account_daily_rollups (
+  account_number VARCHAR(10) NOT NULL REFERENCES public.accounts(account_number) ON DELETE CASCADE,
+  day DATE NOT NULL,
+  credits NUMERIC(14,2) NOT NULL DEFAULT 0,
+  debits NUMERIC(14,2) NOT NULL DEFAULT 0,
+  fees NUMERIC(14,2) NOT NULL DEFAULT 0,
+  tx_count INT NOT NULL DEFAULT 0,
+  closing_balance NUMERIC(12,2),
+  closing_at TIMESTAMPTZ,
+  closing_id BIGINT,
+  PRIMARY KEY (account_number, day)
+);
+
+-- High-water mark per job: everything with id <= last_id and created_at < cutoff
+-- has been rolled up.
+CREATE TABLE IF NOT EXISTS public.rollup_state (
+  name VARCHAR(40) PRIMARY KEY,
+  last_id BIGINT NOT NULL DEFAULT 0,
+  cutoff TIMESTAMPTZ NOT NULL DEFAULT '-infinity',
+  updated_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
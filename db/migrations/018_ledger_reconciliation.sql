@@ -0,0 +1,39 @@
+-- Migration: ledger reconciliation checkpoints and discrepancy report
+-- The JDK server's reconciler walks each account's balance snapshots in id order.
+-- Its checkpoint (last row scanned, and the balance reached once a snapshot has been
+-- seen) is committed with the discrepancies found for that account, so the next run
+-- starts where this one stopped.
+
+CREATE TABLE IF NOT EXISTS public.reconciliation_checkpoints (
+  account_number VARCHAR(10) PRIMARY KEY REFERENCES public.accounts(account_number) ON DELETE CASCADE,
+  last_id BIGINT NOT NULL,
+  last_balance NUMERIC(12,2),
+  updated_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE TABLE IF NOT EXISTS public.reconciliation_runs (
+  run_id BIGSERIAL PRIMARY KEY,
+  status VARCHAR(10) NOT NULL DEFAULT 'Running',
+  accounts_checked INT NOT NULL DEFAULT 0,
+  rows_checked BIGINT NOT NULL DEFAULT 0,
+  discrepancies INT NOT NULL DEFAULT 0,
+  started_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  completed_at TIMESTAMPTZ,
+  CONSTRAINT reconciliation_status_check CHECK (status IN ('Running','Completed','Failed'))
+);
+
+-- chain_break: a row's before is not the previous row's after
+-- delta_mismatch: after - before does not match the row's type, amount and fee
+-- balance_mismatch: the last after differs from accounts.balance
+CREATE TABLE IF NOT EXISTS public.reconciliation_discrepancies (
+  id BIGSERIAL PRIMARY KEY,
+  run_id BIGINT NOT NULL REFERENCES public.reconciliation_runs(run_id) ON DELETE CASCADE,
+  account_number VARCHAR(10) NOT NULL,
+  transaction_id BIGINT,
+  kind VARCHAR(20) NOT NULL,
+  expected NUMERIC(12,2),
+  actual NUMERIC(12,2),
+  detected_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  CONSTRAINT discrepancy_kind_check CHECK (kind IN ('chain_break','delta_mismatch','balance_mismatch'))
+);
+CREATE INDEX IF NOT EXISTS idx_reconciliation_discrepancies_run ON public.reconciliation_discrepancies (run_id, id);
@@ -0,0 +1,126 @@
+-- Migration: monthly range partitions for transactions
+-- transactions becomes a table partitioned by created_at, one partition per UTC
+-- month (transactions_YYYY_MM) plus transactions_default for rows outside every
+-- partition. Queries with a created_at bound only touch the months they cover.
+--
+-- The primary key has to include the partition key, so it is now (id, created_at).
+-- ids still come from transactions_id_seq and stay unique in practice, but
+-- transaction_audit can no longer reference transactions(id): that foreign key is
+-- dropped, and audit rows are no longer deleted with their transaction.
+--
+-- ensure_transactions_partitions(months_ahead) creates the partitions for the
+-- current month and the next months_ahead months, and for any month that has rows
+-- in transactions_default (imports with old dates, or a month nobody created in
+-- time). Those rows are moved into the new partition. The JDK server's
+-- PartitionManager and the Spring server both call it on a schedule.
+
+CREATE OR REPLACE FUNCTION public.create_transactions_partition(month DATE) RETURNS BOOLEAN AS $$
+DECLARE
+  month_start TIMESTAMP := date_trunc('month', month::timestamp);
+  lower_bound TIMESTAMPTZ := month_start AT TIME ZONE 'UTC';
+  upper_bound TIMESTAMPTZ := (month_start + interval '1 month') AT TIME ZONE 'UTC';
+  part TEXT := 'transactions_' || to_char(month_start, 'YYYY_MM');
+BEGIN
+  IF to_regclass('public.' || part) IS NOT NULL THEN
+    RETURN FALSE;
+  END IF;
+  -- Built standalone and attached, so rows already sitting in the default partition
+  -- can be moved in first and the parent is never locked exclusively
+  EXECUTE format('CREATE TABLE public.%I (LIKE public.transactions INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', part);
+  EXECUTE format('WITH moved AS (DELETE FROM public.transactions_default'
+                 || ' WHERE created_at >= %L AND created_at < %L RETURNING *)'
+                 || ' INSERT INTO public.%I SELECT * FROM moved', lower_bound, upper_bound, part);
+  EXECUTE format('ALTER TABLE public.transactions ATTACH PARTITION public.%I FOR VALUES FROM (%L) TO (%L)',
+                 part, lower_bound, upper_bound);
+  RETURN TRUE;
+END $$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION public.ensure_transactions_partitions(months_ahead INT) RETURNS INT AS $$
+DECLARE
+  this_month TIMESTAMP := date_trunc('month', now() AT TIME ZONE 'UTC');
+  month DATE;
+  created INT := 0;
+BEGIN
+  IF (SELECT relkind FROM pg_class WHERE oid = to_regclass('public.transactions')) IS DISTINCT FROM 'p' THEN
+    RETURN 0;
+  END IF;
+  PERFORM pg_advisory_xact_lock(hashtext('transactions_partitions'));
+  IF to_regclass('public.transactions_default') IS NULL THEN
+    CREATE TABLE public.transactions_default PARTITION OF public.transactions DEFAULT;
+  END IF;
+  FOR month IN
+    SELECT generate_series(this_month, this_month + make_interval(months => months_ahead), interval '1 month')::date
+    UNION
+    SELECT DISTINCT date_trunc('month', created_at AT TIME ZONE 'UTC')::date FROM public.transactions_default
+  LOOP
+    IF public.create_transactions_partition(month) THEN
+      created := created + 1;
+    END IF;
+  END LOOP;
+  RETURN created;
+END $$ LANGUAGE plpgsql;
+
+-- Convert an existing unpartitioned table; does nothing once transactions is partitioned
+DO $$
+DECLARE
+  month DATE;
+BEGIN
+  IF (SELECT relkind FROM pg_class WHERE oid = to_regclass('public.transactions')) IS DISTINCT FROM 'r' THEN
+    RETURN;
+  END IF;
+
+  ALTER TABLE public.transaction_audit DROP CONSTRAINT IF EXISTS transaction_audit_transaction_id_fkey;
+  ALTER TABLE public.transactions RENAME TO transactions_unpartitioned;
+  ALTER TABLE public.transactions_unpartitioned DROP CONSTRAINT IF EXISTS transactions_pkey;
+  DROP INDEX IF EXISTS public.idx_transactions_source, public.idx_transactions_target, public.idx_transactions_created_at;
+
+  CREATE TABLE public.transactions (
+    id BIGINT NOT NULL DEFAULT nextval('public.transactions_id_seq'),
+    account_number VARCHAR(10) NOT NULL REFERENCES public.accounts(account_number) ON DELETE CASCADE,
+    target_account VARCHAR(10) REFERENCES public.accounts(account_number) ON DELETE RESTRICT,
+    type VARCHAR(10) NOT NULL,
+    status VARCHAR(10) NOT NULL DEFAULT 'Completed',
+    amount NUMERIC(12,2) NOT NULL CHECK (amount > 0),
+    fee NUMERIC(12,2) NOT NULL DEFAULT 0,
+    note TEXT,
+    created_by VARCHAR(10) NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+    completed_at TIMESTAMPTZ,
+    voided_at TIMESTAMPTZ,
+    source_balance_before NUMERIC(12,2),
+    source_balance_after  NUMERIC(12,2),
+    target_balance_before NUMERIC(12,2),
+    target_balance_after  NUMERIC(12,2),
+    PRIMARY KEY (id, created_at),
+    CONSTRAINT type_check CHECK (type IN ('deposit','withdraw','transfer','fee')),
+    CONSTRAINT status_tx_check CHECK (status IN ('Pending','Completed','Voided'))
+  ) PARTITION BY RANGE (created_at);
+  CREATE TABLE public.transactions_default PARTITION OF public.transactions DEFAULT;
+
+  -- Partitions first, so the copy lands in its month instead of going through the default
+  FOR month IN
+    SELECT DISTINCT date_trunc('month', created_at AT TIME ZONE 'UTC')::date FROM public.transactions_unpartitioned
+  LOOP
+    PERFORM public.create_transactions_partition(month);
+  END LOOP;
+
+  INSERT INTO public.transactions (id, account_number, target_account, type, status, amount, fee, note,
+                                   created_by, created_at, completed_at, voided_at,
+                                   source_balance_before, source_balance_after,
+                                   target_balance_before, target_balance_after)
+  SELECT id, account_number, target_account, type, status, amount, fee, note,
+         created_by, created_at, completed_at, voided_at,
+         source_balance_before, source_balance_after,
+         target_balance_before, target_balance_after
+  FROM public.transactions_unpartitioned;
+
+  ALTER SEQUENCE public.transactions_id_seq OWNED BY public.transactions.id;
+  DROP TABLE public.transactions_unpartitioned;
+END $$;
+
+-- Per-account history is read newest first within a date range
+CREATE INDEX IF NOT EXISTS idx_transactions_source_created ON public.transactions (account_number, created_at DESC);
+CREATE INDEX IF NOT EXISTS idx_transactions_target_created ON public.transactions (target_account, created_at DESC);
+CREATE INDEX IF NOT EXISTS idx_transactions_created_at ON public.transactions (created_at);
+
+SELECT public.ensure_transactions_partitions(3);
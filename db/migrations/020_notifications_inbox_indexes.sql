@@ -0,0 +1,17 @@
+-- Migration: indexes for the notifications inbox
+-- Inbox pages are read newest first with a (created_at, id) keyset cursor, so one
+-- index on (recipient_account_number, created_at DESC, id DESC) serves every page
+-- without sorting or OFFSET. It also covers lookups by recipient alone, which makes
+-- idx_notifications_recipient_account redundant.
+--
+-- Unread counts and mark-all-read only touch a recipient's UNREAD rows. The partial
+-- index stays small as notifications are read.
+
+CREATE INDEX IF NOT EXISTS idx_notifications_recipient_page
+  ON public.notifications (recipient_account_number, created_at DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_notifications_unread
+  ON public.notifications (recipient_account_number)
+  WHERE status = 'UNREAD';
+
+DROP INDEX IF EXISTS public.idx_notifications_recipient_account;
@@ -0,0 +1,62 @@
+-- Migration: ledger change events over LISTEN/NOTIFY
+-- Every committed insert or update of a transaction, and every change to an
+-- account balance, is announced on the ledger_events channel. PostgreSQL delivers
+-- notifications at commit, in commit order, and drops them on rollback. Because
+-- they come from triggers, they cover every writer: Next.js routes, the JDK server,
+-- the Spring server and plain SQL.
+--
+-- The JDK server keeps one LISTEN connection and pushes the events to the clients of
+-- /api/transactions/stream. The payload is JSON with "kind" set to "transaction" or
+-- "balance". The note is cut to 200 characters to stay well under the 8000-byte
+-- payload limit.
+--
+-- Bulk loads of historical rows should not flood the channel. A session can turn
+-- the events off with SET ledger.feed = 'off', as the JDK ledger importer does.
+
+CREATE OR REPLACE FUNCTION public.notify_transaction_event() RETURNS trigger AS $$
+BEGIN
+  IF current_setting('ledger.feed', true) = 'off' THEN
+    RETURN NULL;
+  END IF;
+  PERFORM pg_notify('ledger_events', json_build_object(
+    'kind', 'transaction',
+    'op', lower(TG_OP),
+    'id', NEW.id,
+    'account_number', NEW.account_number,
+    'target_account', NEW.target_account,
+    'type', NEW.type,
+    'status', NEW.status,
+    'amount', NEW.amount,
+    'fee', NEW.fee,
+    'note', left(NEW.note, 200),
+    'created_at', NEW.created_at,
+    'completed_at', NEW.completed_at,
+    'voided_at', NEW.voided_at,
+    'source_balance_after', NEW.source_balance_after,
+    'target_balance_after', NEW.target_balance_after)::text);
+  RETURN NULL;
+END $$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS transactions_notify ON public.transactions;
+CREATE TRIGGER transactions_notify
+  AFTER INSERT OR UPDATE ON public.transactions
+  FOR EACH ROW EXECUTE FUNCTION public.notify_transaction_event();
+
+CREATE OR REPLACE FUNCTION public.notify_balance_event() RETURNS trigger AS $$
+BEGIN
+  IF current_setting('ledger.feed', true) = 'off' THEN
+    RETURN NULL;
+  END IF;
+  PERFORM pg_notify('ledger_events', json_build_object(
+    'kind', 'balance',
+    'account_number', NEW.account_number,
+    'balance', NEW.balance,
+    'version', NEW.version)::text);
+  RETURN NULL;
+END $$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS accounts_notify_balance ON public.accounts;
+CREATE TRIGGER accounts_notify_balance
+  AFTER UPDATE OF balance ON public.accounts
+  FOR EACH ROW WHEN (OLD.balance IS DISTINCT FROM NEW.balance)
+  EXECUTE FUNCTION public.notify_balance_event();
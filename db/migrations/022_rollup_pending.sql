@@ -0,0 +1,47 @@
+-- Migration: queue new transactions for the daily rollup job
+-- 017 tracked progress with a (last_id, cutoff) mark. A row inserted with an id at or
+-- below last_id and a created_at before the cutoff was never counted, and the Spring
+-- batch import writes exactly such rows: pooled ids handed out before the mark moved,
+-- and the settlement file's created_at.
+--
+-- A statement-level trigger now queues every inserted transaction in rollup_pending.
+-- The rollup job deletes the rows it counts from the queue in the same transaction as
+-- the rollup update. Queued rows become visible when the insert commits, whatever their
+-- id or created_at, and the trigger covers every writer. Unlike the ledger_events feed,
+-- it ignores SET ledger.feed = 'off': imported history must be rolled up too.
+--
+-- Run with the rollup job stopped. Rows the old mark already skipped cannot be told
+-- apart from counted ones; to rebuild the rollups from scratch:
+--   TRUNCATE public.account_daily_rollups;
+--   INSERT INTO public.rollup_pending SELECT id FROM public.transactions ON CONFLICT DO NOTHING;
+
+CREATE TABLE IF NOT EXISTS public.rollup_pending (
+  id BIGINT PRIMARY KEY
+);
+
+CREATE OR REPLACE FUNCTION public.queue_rollup_transactions() RETURNS trigger AS $$
+BEGIN
+  INSERT INTO public.rollup_pending (id) SELECT id FROM inserted ON CONFLICT DO NOTHING;
+  RETURN NULL;
+END $$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS transactions_queue_rollup ON public.transactions;
+CREATE TRIGGER transactions_queue_rollup
+  AFTER INSERT ON public.transactions
+  REFERENCING NEW TABLE AS inserted
+  FOR EACH STATEMENT EXECUTE FUNCTION public.queue_rollup_transactions();
+
+-- Queue what the old mark had not reached yet, then retire it. cutoff stays: the job
+-- sets it when it empties the queue, and summaries report it as as_of.
+DO $$
+BEGIN
+  IF EXISTS (SELECT 1 FROM information_schema.columns
+             WHERE table_schema = 'public' AND table_name = 'rollup_state' AND column_name = 'last_id') THEN
+    INSERT INTO public.rollup_pending (id)
+    SELECT t.id FROM public.transactions t
+    WHERE NOT EXISTS (SELECT 1 FROM public.rollup_state s
+                      WHERE s.name = 'daily_account' AND t.id <= s.last_id AND t.created_at < s.cutoff)
+    ON CONFLICT DO NOTHING;
+    ALTER TABLE public.rollup_state DROP COLUMN last_id;
+  END IF;
+END $$;
@@ -0,0 +1,309 @@
+package com.bank.audit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes {@code transaction_audit} rows off the request path.
+ *
+ * <p>{@link #record} offers the event to a bounded queue ({@code bank.audit.queue-capacity})
+ * and returns. One writer thread drains the queue and inserts up to {@value #BATCH_SIZE}
+ * rows per multi-row INSERT, so a busy server pays one round-trip per batch.
+ * {@code created_at} is the event time, not the insert time.
+ *
+ * <p>When the database cannot be reached, the writer appends the batch to
+ * {@code bank.audit.spill-file} as JSON lines, fsyncs it and backs off (1s doubling to
+ * 30s). While it waits, it keeps draining the queue into the file. Once inserts work
+ * again, the file is replayed and deleted; a file left by an earlier process is replayed
+ * at startup. If the queue is full, the caller appends its event to the file unsynced, so
+ * events are never dropped and requests never wait on the database.
+ *
+ * <p>Rows the database refuses for their content are retried one by one, and the rows
+ * that still fail go to {@code <spill-file>.rejected}.
+ */
+@Component
+public class AuditTrail {
+
+    public static final Set<String> ACTIONS = Set.of("create", "update", "complete", "void", "rollback");
+
+    private static final Logger log = LoggerFactory.getLogger(AuditTrail.class);
+
+    private static final int BATCH_SIZE = 500;
+    private static final long FLUSH_MILLIS = 200;
+    private static final long MIN_BACKOFF_MILLIS = 1_000;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+    private static final int PERFORMED_BY_LENGTH = 10;
+    private static final String INSERT_PREFIX =
+            "INSERT INTO transaction_audit (transaction_id, action, performed_by, reason, details, created_at) VALUES ";
+    private static final String ROW_PLACEHOLDERS = "(?, ?, ?, ?, ?::jsonb, ?)";
+
+    private record Event(long transactionId, String action, String performedBy, String reason,
+                         String details, OffsetDateTime createdAt) {
+    }
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${bank.audit.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${bank.audit.spill-file:audit-spill.jsonl}")
+    private String spillPath;
+
+    private final Object spillLock = new Object();
+    private BlockingQueue<Event> queue;
+    private Path spillFile;
+    private Thread writer;
+    private volatile boolean running;
+
+    @PostConstruct
+    void start() {
+        queue = new ArrayBlockingQueue<>(Math.max(BATCH_SIZE, queueCapacity));
+        spillFile = Path.of(spillPath).toAbsolutePath();
+        running = true;
+        writer = new Thread(this::writeLoop, "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** Writes or spills everything already recorded before the context closes. */
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        writer.interrupt();
+        writer.join(10_000);
+    }
+
+    /**
+     * Queues an audit event without touching the database.
+     *
+     * @param action  one of {@link #ACTIONS}
+     * @param details serialized as the JSONB details column; may be null
+     */
+    public void record(long transactionId, String action, String performedBy, String reason, Map<?, ?> details) {
+        if (!ACTIONS.contains(action)) throw new IllegalArgumentException("Unknown audit action: " + action);
+        String by = performedBy == null || performedBy.isEmpty() ? "system" : performedBy;
+        if (by.length() > PERFORMED_BY_LENGTH) by = by.substring(0, PERFORMED_BY_LENGTH);
+        String json;
+        try {
+            json = details == null ? null : objectMapper.writeValueAsString(details);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Audit details are not serializable", e);
+        }
+        Event event = new Event(transactionId, action, by, reason, json, OffsetDateTime.now());
+        if (running && queue.offer(event)) return;
+        try {
+            spill(List.of(event), false);
+        } catch (IOException e) {
+            log.error("Lost audit event for transaction {}: {}", transactionId, e.getMessage());
+        }
+    }
+
+    private void writeLoop() {
+        long backoff = MIN_BACKOFF_MILLIS;
+        long retryAt = 0;
+        boolean replayPending = Files.exists(spillFile) || Files.exists(replayFile());
+        List<Event> batch = new ArrayList<>(BATCH_SIZE);
+
+        while (running || !queue.isEmpty()) {
+            batch.clear();
+            try {
+                Event first = running ? queue.poll(FLUSH_MILLIS, TimeUnit.MILLISECONDS) : queue.poll();
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, BATCH_SIZE - 1);
+                }
+            } catch (InterruptedException e) {
+                // stop() wakes the writer; the loop condition decides whether to finish
+                continue;
+            }
+
+            boolean dbAvailable = System.currentTimeMillis() >= retryAt;
+            try {
+                if (!batch.isEmpty()) {
+                    if (dbAvailable) {
+                        insert(batch);
+                        batch.clear();
+                    } else {
+                        spill(batch, true);
+                    }
+                }
+                if (running && dbAvailable && (replayPending || Files.exists(spillFile)) && queue.size() < BATCH_SIZE) {
+                    replay();
+                    replayPending = false;
+                }
+                if (dbAvailable) backoff = MIN_BACKOFF_MILLIS;
+            } catch (DataAccessException e) {
+                log.warn("Audit database unavailable, spilling to {}: {}", spillFile, e.getMessage());
+                retryAt = System.currentTimeMillis() + backoff;
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+                try {
+                    if (!batch.isEmpty()) spill(batch, true);
+                } catch (IOException io) {
+                    log.error("Lost {} audit events: {}", batch.size(), io.getMessage());
+                }
+            } catch (IOException e) {
+                log.error("Audit spill file error: {}", e.getMessage());
+            }
+        }
+    }
+
+    /** One INSERT for the batch; content errors fall back to row by row and set bad rows aside. */
+    private void insert(List<Event> batch) throws IOException {
+        try {
+            insertRows(batch);
+        } catch (DataIntegrityViolationException e) {
+            List<Event> rejected = new ArrayList<>();
+            for (Event event : batch) {
+                try {
+                    insertRows(List.of(event));
+                } catch (DataIntegrityViolationException rowError) {
+                    rejected.add(event);
+                }
+            }
+            if (!rejected.isEmpty()) {
+                log.error("{} audit events rejected by the database: {}", rejected.size(), e.getMessage());
+                appendLines(Path.of(spillFile + ".rejected"), rejected, true);
+            }
+        }
+    }
+
+    private void insertRows(List<Event> events) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX);
+        Object[] args = new Object[events.size() * 6];
+        int p = 0;
+        for (Event event : events) {
+            if (p > 0) sql.append(',');
+            sql.append(ROW_PLACEHOLDERS);
+            args[p++] = event.transactionId();
+            args[p++] = event.action();
+            args[p++] = event.performedBy();
+            args[p++] = event.reason();
+            args[p++] = event.details();
+            args[p++] = event.createdAt();
+        }
+        jdbc.update(sql.toString(), args);
+    }
+
+    /**
+     * Inserts the spill file batch by batch and deletes it. Lines done are recorded next to
+     * it after each batch, so an interrupted replay resumes; a crash between a batch and its
+     * mark repeats that batch.
+     */
+    private void replay() throws IOException {
+        Path replaying = replayFile();
+        Path progress = Path.of(replaying + ".done");
+        synchronized (spillLock) {
+            if (!Files.exists(replaying)) {
+                if (!Files.exists(spillFile)) return;
+                Files.move(spillFile, replaying, StandardCopyOption.ATOMIC_MOVE);
+                Files.deleteIfExists(progress);
+            }
+        }
+
+        long done = Files.exists(progress) ? Long.parseLong(Files.readString(progress).trim()) : 0;
+        long lineNo = 0;
+        long replayed = 0;
+        long skipped = 0;
+        try (BufferedReader in = Files.newBufferedReader(replaying, StandardCharsets.UTF_8)) {
+            List<Event> batch = new ArrayList<>(BATCH_SIZE);
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (++lineNo <= done || line.isBlank()) continue;
+                try {
+                    batch.add(fromJson(line));
+                } catch (IOException | RuntimeException e) {
+                    // A torn last line from a crash mid-append
+                    skipped++;
+                    continue;
+                }
+                if (batch.size() == BATCH_SIZE) {
+                    insert(batch);
+                    replayed += batch.size();
+                    batch.clear();
+                    Files.writeString(progress, Long.toString(lineNo));
+                }
+            }
+            if (!batch.isEmpty()) {
+                insert(batch);
+                replayed += batch.size();
+            }
+        }
+        Files.delete(replaying);
+        Files.deleteIfExists(progress);
+        log.info("Replayed {} spilled audit events{}", replayed, skipped > 0 ? ", skipped " + skipped + " unreadable lines" : "");
+    }
+
+    private void spill(List<Event> events, boolean sync) throws IOException {
+        synchronized (spillLock) {
+            appendLines(spillFile, events, sync);
+        }
+    }
+
+    private void appendLines(Path file, List<Event> events, boolean sync) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file.toFile(), true)) {
+            Writer w = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            for (Event event : events) {
+                w.write(toJson(event));
+                w.write('\n');
+            }
+            w.flush();
+            if (sync) out.getFD().sync();
+        }
+    }
+
+    private String toJson(Event event) throws JsonProcessingException {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("transaction_id", event.transactionId());
+        line.put("action", event.action());
+        line.put("performed_by", event.performedBy());
+        line.put("reason", event.reason());
+        line.put("details", event.details());
+        line.put("created_at", event.createdAt().toString());
+        return objectMapper.writeValueAsString(line);
+    }
+
+    private Event fromJson(String text) throws IOException {
+        Map<String, Object> line = objectMapper.readValue(text, new TypeReference<Map<String, Object>>() { });
+        return new Event(((Number) line.get("transaction_id")).longValue(), (String) line.get("action"),
+                (String) line.get("performed_by"), (String) line.get("reason"), (String) line.get("details"),
+                OffsetDateTime.parse((String) line.get("created_at")));
+    }
+
+    private Path replayFile() {
+        return Path.of(spillFile + ".replay");
+    }
+}
@@ -0,0 +1,24 @@
+package com.bank.config;
+
+import com.bank.money.MoneyJsonSerializer;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.math.BigDecimal;
+
+/**
+ * JSON handling of money. Request floats are read as BigDecimal
+ * ({@code spring.jackson.deserialization.use-big-decimal-for-floats}) and responses
+ * write BigDecimal through {@link MoneyJsonSerializer}.
+ */
+@Configuration
+public class JacksonConfig {
+    @Bean
+    public Module moneyModule() {
+        SimpleModule module = new SimpleModule("money");
+        module.addSerializer(BigDecimal.class, new MoneyJsonSerializer());
+        return module;
+    }
+}
@@ -1,18 +1,27 @@
 package com.bank.controller;
 
+import com.bank.ledger.AccountLoader;
+import com.bank.ledger.AtomicLedgerService;
+import com.bank.ledger.LedgerConflictException;
+import com.bank.ledger.LedgerExecutor;
+import com.bank.ledger.LedgerMode;
 import com.bank.model.Account;
+import com.bank.money.MoneyCodec;
 import com.bank.repository.AccountRepository;
 import com.bank.repository.TransactionRepository;
 import com.bank.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.math.BigDecimal;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -29,6 +38,15 @@ public class AccountController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private AtomicLedgerService atomicLedgerService;
+
+    @Autowired
+    private LedgerExecutor ledgerExecutor;
+
+    @Value("${bank.ledger.mode:LOCKING}")
+    private LedgerMode ledgerMode;
+
     private static String maskAccountName(String raw) {
         String cleaned = String.valueOf(raw == null ? "" : raw).trim().replaceAll("\\s+", " ");
         if (cleaned.isBlank()) return "";
@@ -46,12 +64,25 @@ public class AccountController {
         return maskedFirst + " " + lastInitial + ".";
     }
 
+    private static Map<String, Object> accountBody(Account a) {
+        Map<String, Object> out = new HashMap<>();
+        out.put("account_number", a.getAccountNumber());
+        out.put("name", a.getName());
+        out.put("balance", a.getBalance());
+        out.put("status", a.getStatus());
+        return out;
+    }
+
     @GetMapping("/{accountNumber}")
-    public ResponseEntity<?> getAccount(@PathVariable String accountNumber) {
+    public ResponseEntity<?> getAccount(@PathVariable String accountNumber, WebRequest request) {
         try {
             Optional<Account> account = accountRepository.findById(accountNumber);
             if (account.isEmpty()) return ResponseEntity.notFound().build();
             Account a = account.get();
+            // The version moves on every update of the row (migration 013), so a poll
+            // with the same tag gets 304 and no body
+            String etag = "W/\"" + a.getVersion() + "-" + String.valueOf(a.getBalance()) + "\"";
+            if (request.checkNotModified(etag)) return null;
             Map<String, Object> out = new HashMap<>();
             out.put("account_number", a.getAccountNumber());
             out.put("name", a.getName());
@@ -92,7 +123,6 @@ public class AccountController {
     }
 
     @PatchMapping("/{accountNumber}")
-    @Transactional
     public ResponseEntity<?> depositWithdraw(@PathVariable String accountNumber, @RequestBody Map<String, Object> body) {
         try {
             String op = body.get("op") == null ? null : String.valueOf(body.get("op"));
@@ -100,52 +130,37 @@ public class AccountController {
             if (!"deposit".equals(op) && !"withdraw".equals(op)) {
                 return ResponseEntity.badRequest().body(Map.of("error", "Invalid op. Use deposit or withdraw."));
             }
-            if (!(amountRaw instanceof Number)) {
+            BigDecimal amount;
+            try {
+                amount = MoneyCodec.toBigDecimal(MoneyCodec.toMinor(amountRaw));
+            } catch (NumberFormatException e) {
                 return ResponseEntity.badRequest().body(Map.of("error", "Amount must be a positive number."));
             }
-            BigDecimal amount = BigDecimal.valueOf(((Number) amountRaw).doubleValue());
-            if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+            if (amount.signum() <= 0) {
                 return ResponseEntity.badRequest().body(Map.of("error", "Amount must be a positive number."));
             }
 
-            Optional<Account> opt = accountRepository.findForUpdate(accountNumber);
-            if (opt.isEmpty()) return ResponseEntity.status(404).body(Map.of("error", "Account not found"));
-            Account account = opt.get();
-
-            String status = account.getStatus();
-            if ("Locked".equalsIgnoreCase(status) || "Archived".equalsIgnoreCase(status)) {
-                return ResponseEntity.status(403).body(Map.of("error", "Account unavailable"));
+            if (amount.compareTo(new BigDecimal("100")) < 0) {
+                String msg = "deposit".equals(op) ? "Deposit minimum is 100." : "Withdrawal minimum is 100.";
+                return ResponseEntity.badRequest().body(Map.of("error", msg));
             }
 
-            BigDecimal balance = account.getBalance() == null ? BigDecimal.ZERO : account.getBalance();
-            if ("deposit".equals(op)) {
-                if (amount.compareTo(new BigDecimal("100")) < 0) {
-                    return ResponseEntity.badRequest().body(Map.of("error", "Deposit minimum is 100."));
-                }
-                account.setBalance(balance.add(amount));
-                Account saved = accountRepository.save(account);
-                Map<String, Object> out = new HashMap<>();
-                out.put("account_number", saved.getAccountNumber());
-                out.put("name", saved.getName());
-                out.put("balance", saved.getBalance());
-                out.put("status", saved.getStatus());
-                return ResponseEntity.ok(out);
-            } else {
-                if (amount.compareTo(new BigDecimal("100")) < 0) {
-                    return ResponseEntity.badRequest().body(Map.of("error", "Withdrawal minimum is 100."));
-                }
-                if (amount.compareTo(balance) > 0) {
-                    return ResponseEntity.badRequest().body(Map.of("error", "Insufficient funds."));
-                }
-                account.setBalance(balance.subtract(amount));
-                Account saved = accountRepository.save(account);
-                Map<String, Object> out = new HashMap<>();
-                out.put("account_number", saved.getAccountNumber());
-                out.put("name", saved.getName());
-                out.put("balance", saved.getBalance());
-                out.put("status", saved.getStatus());
-                return ResponseEntity.ok(out);
+            if (ledgerMode == LedgerMode.ATOMIC) {
+                AtomicLedgerService.BalanceAdjustment result = atomicLedgerService.adjustBalance(
+                        accountNumber, "deposit".equals(op) ? amount : amount.negate());
+                return switch (result.outcome()) {
+                    case POSTED -> ResponseEntity.ok(accountBody(result.account()));
+                    case SOURCE_NOT_FOUND -> ResponseEntity.status(404).body(Map.of("error", "Account not found"));
+                    case SOURCE_UNAVAILABLE -> ResponseEntity.status(403).body(Map.of("error", "Account unavailable"));
+                    case INSUFFICIENT_FUNDS -> ResponseEntity.badRequest().body(Map.of("error", "Insufficient funds."));
+                    default -> ResponseEntity.status(409).body(Map.of("error", "Concurrent update, please retry"));
+                };
             }
+
+            return ledgerExecutor.execute(List.of(accountNumber),
+                    accounts -> adjust(accounts, accountNumber, op, amount));
+        } catch (LedgerConflictException e) {
+            return ResponseEntity.status(409).body(Map.of("error", "Concurrent update, please retry"));
         } catch (DataAccessException e) {
             Map<String, Object> out = new HashMap<>();
             out.put("error", "Database unavailable");
@@ -157,6 +172,27 @@ public class AccountController {
         }
     }
 
+    private ResponseEntity<?> adjust(AccountLoader accounts, String accountNumber, String op, BigDecimal amount) {
+        Optional<Account> opt = accounts.load(accountNumber);
+        if (opt.isEmpty()) return ResponseEntity.status(404).body(Map.of("error", "Account not found"));
+        Account account = opt.get();
+
+        String status = account.getStatus();
+        if ("Locked".equalsIgnoreCase(status) || "Archived".equalsIgnoreCase(status)) {
+            return ResponseEntity.status(403).body(Map.of("error", "Account unavailable"));
+        }
+
+        BigDecimal balance = account.getBalance() == null ? BigDecimal.ZERO : account.getBalance();
+        if ("deposit".equals(op)) {
+            account.setBalance(balance.add(amount));
+        } else {
+            if (amount.compareTo(balance) > 0) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Insufficient funds."));
+            }
+            account.setBalance(balance.subtract(amount));
+        }
+        return ResponseEntity.ok(accountBody(accountRepository.save(account)));
+    }
 
     @DeleteMapping("/{accountNumber}")
     @Transactional
@@ -165,11 +201,13 @@ public class AccountController {
             return ResponseEntity.notFound().build();
         }
 
-        long txDeps = transactionRepository.countByAccountNumber(accountNumber) +
-                transactionRepository.countByTargetAccount(accountNumber);
+        boolean txDeps = transactionRepository.existsByAccountNumber(accountNumber) ||
+                transactionRepository.existsByTargetAccount(accountNumber);
         long userDeps = userRepository.countByAccountNumber(accountNumber);
-        if (txDeps > 0 || userDeps > 0) {
-            String msg = String.format("Cannot delete account; dependencies exist (transactions=%d, users=%d). Consider archiving.", txDeps, userDeps);
+        if (txDeps || userDeps > 0) {
+            // Existence checks stop at the first row instead of counting every partition,
+            // so a non-zero transaction count is reported as 1+
+            String msg = String.format("Cannot delete account; dependencies exist (transactions=%s, users=%d). Consider archiving.", txDeps ? "1+" : "0", userDeps);
             return ResponseEntity.status(409).body(msg);
         }
 
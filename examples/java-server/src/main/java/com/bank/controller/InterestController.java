@@ -0,0 +1,75 @@
+package com.bank.controller;
+
+import com.bank.ledger.InterestAccrualService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/interest")
+public class InterestController {
+
+    @Autowired
+    private InterestAccrualService interestAccrualService;
+
+    /**
+     * Runs or resumes a bulk accrual, e.g. {"run_id": "2026-10", "rate": 0.004167}.
+     * Repeating a finished run returns its summary without crediting anything again.
+     */
+    @PostMapping("/accruals")
+    public ResponseEntity<?> accrue(@RequestBody Map<String, Object> body) {
+        try {
+            String runId = body.get("run_id") == null ? null : String.valueOf(body.get("run_id")).trim();
+            if (runId == null || runId.isEmpty() || runId.length() > 40) {
+                return ResponseEntity.badRequest().body(Map.of("error", "run_id is required (max 40 characters)"));
+            }
+            if (body.get("rate") == null) return ResponseEntity.badRequest().body(Map.of("error", "rate is required"));
+            BigDecimal rate = new BigDecimal(String.valueOf(body.get("rate")));
+            if (rate.signum() <= 0 || rate.compareTo(BigDecimal.ONE) >= 0 || rate.stripTrailingZeros().scale() > 8) {
+                return ResponseEntity.badRequest().body(Map.of("error", "rate must be between 0 and 1 with at most 8 decimals"));
+            }
+            Integer chunkSize = null;
+            if (body.get("chunk_size") != null) {
+                chunkSize = Integer.valueOf(String.valueOf(body.get("chunk_size")));
+                if (chunkSize < 1 || chunkSize > 100_000) {
+                    return ResponseEntity.badRequest().body(Map.of("error", "chunk_size must be between 1 and 100000"));
+                }
+            }
+            return ResponseEntity.ok(interestAccrualService.accrue(runId, rate, chunkSize));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Malformed number: " + e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+        } catch (DataAccessException e) {
+            Map<String, Object> out = new HashMap<>();
+            out.put("error", "Database unavailable");
+            return ResponseEntity.status(503).body(out);
+        } catch (Exception e) {
+            Map<String, Object> out = new HashMap<>();
+            out.put("error", "Server error");
+            return ResponseEntity.status(500).body(out);
+        }
+    }
+
+    @GetMapping("/accruals/{runId}")
+    public ResponseEntity<?> getAccrual(@PathVariable String runId) {
+        try {
+            Map<String, Object> summary = interestAccrualService.summary(runId);
+            if (summary == null) return ResponseEntity.notFound().build();
+            return ResponseEntity.ok(summary);
+        } catch (DataAccessException e) {
+            Map<String, Object> out = new HashMap<>();
+            out.put("error", "Database unavailable");
+            return ResponseEntity.status(503).body(out);
+        } catch (Exception e) {
+            Map<String, Object> out = new HashMap<>();
+            out.put("error", "Server error");
+            return ResponseEntity.status(500).body(out);
+        }
+    }
+}
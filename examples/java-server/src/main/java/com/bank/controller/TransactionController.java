@@ -1,20 +1,42 @@
 package com.bank.controller;
 
+import com.bank.audit.AuditTrail;
+import com.bank.fees.AccountClass;
+import com.bank.fees.FeeEngine;
+import com.bank.idempotency.IdempotencyService;
+import com.bank.index.AccountNumberCodec;
+import com.bank.ledger.AccountLoader;
+import com.bank.ledger.AtomicLedgerService;
+import com.bank.ledger.LedgerConflictException;
+import com.bank.ledger.LedgerExecutor;
+import com.bank.ledger.LedgerMode;
+import com.bank.ledger.LedgerPosting;
+import com.bank.ledger.SettlementImportService;
 import com.bank.model.Account;
+import com.bank.money.MoneyCodec;
 import com.bank.model.Transaction;
 import com.bank.repository.AccountRepository;
 import com.bank.repository.TransactionRepository;
+import com.bank.velocity.VelocityLimiter;
+import com.bank.velocity.VelocityLimits;
+import com.bank.velocity.VelocityPolicy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
 import org.springframework.http.ResponseEntity;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/transactions")
@@ -26,9 +48,50 @@ public class TransactionController {
     @Autowired
     private TransactionRepository transactionRepository;
 
+    @Autowired
+    private AtomicLedgerService atomicLedgerService;
+
+    @Autowired
+    private LedgerExecutor ledgerExecutor;
+
+    @Autowired
+    private SettlementImportService settlementImportService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private FeeEngine feeEngine;
+
+    @Autowired
+    private VelocityLimits velocityLimits;
+
+    @Autowired
+    private AuditTrail auditTrail;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private static final Set<String> LEDGER_TYPES = Set.of("deposit", "withdraw", "transfer", "fee");
+    private static final Set<String> LEDGER_STATUSES = Set.of("Pending", "Completed", "Voided");
+
+    @Value("${bank.ledger.mode:LOCKING}")
+    private LedgerMode ledgerMode;
+
     @PostMapping
-    @Transactional
-    public ResponseEntity<?> create(@RequestBody Map<String, Object> body) {
+    public ResponseEntity<?> create(@RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                    @RequestBody Map<String, Object> body) {
+        if (idempotencyKey == null) return createOnce(body);
+        try {
+            return idempotencyService.execute(idempotencyKey, body, () -> createOnce(body));
+        } catch (DataAccessException e) {
+            Map<String, Object> out = new HashMap<>();
+            out.put("error", "Database unavailable");
+            return ResponseEntity.status(503).body(out);
+        }
+    }
+
+    private ResponseEntity<?> createOnce(Map<String, Object> body) {
         try {
             String type = body.get("type") == null ? null : String.valueOf(body.get("type"));
             String sourceAccount = body.get("source_account") == null ? null : String.valueOf(body.get("source_account"));
@@ -46,105 +109,160 @@ public class TransactionController {
             if ("transfer".equals(type) && (targetAccount == null || targetAccount.isBlank())) {
                 return ResponseEntity.badRequest().body(Map.of("error", "Missing account(s)"));
             }
-            if (!(amountRaw instanceof Number)) {
+            BigDecimal amount;
+            try {
+                amount = MoneyCodec.toBigDecimal(MoneyCodec.toMinor(amountRaw));
+            } catch (NumberFormatException e) {
                 return ResponseEntity.badRequest().body(Map.of("error", "Amount must be positive"));
             }
-            BigDecimal amount = BigDecimal.valueOf(((Number) amountRaw).doubleValue());
-            if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+            if (amount.signum() <= 0) {
                 return ResponseEntity.badRequest().body(Map.of("error", "Amount must be positive"));
             }
             if (("withdraw".equals(type) || "transfer".equals(type)) && (pin == null || pin.isBlank())) {
                 return ResponseEntity.badRequest().body(Map.of("error", "PIN is required for this transaction."));
             }
 
-            Account source;
-            Account target = null;
-
-            if ("transfer".equals(type)) {
-                if (sourceAccount.equals(targetAccount)) {
-                    return ResponseEntity.badRequest().body(Map.of("error", "Target account must be different"));
-                }
-                String first = sourceAccount.compareTo(targetAccount) <= 0 ? sourceAccount : targetAccount;
-                String second = first.equals(sourceAccount) ? targetAccount : sourceAccount;
-
-                Optional<Account> firstLocked = accountRepository.findForUpdate(first);
-                if (firstLocked.isEmpty()) return ResponseEntity.status(404).body(Map.of("error", "Source account not found"));
-                Optional<Account> secondLocked = accountRepository.findForUpdate(second);
-                if (secondLocked.isEmpty()) return ResponseEntity.status(404).body(Map.of("error", "Target account not found"));
-
-                source = sourceAccount.equals(first) ? firstLocked.get() : secondLocked.get();
-                target = sourceAccount.equals(first) ? secondLocked.get() : firstLocked.get();
-            } else {
-                Optional<Account> srcOpt = accountRepository.findForUpdate(sourceAccount);
-                if (srcOpt.isEmpty()) return ResponseEntity.status(404).body(Map.of("error", "Source account not found"));
-                source = srcOpt.get();
+            if ("transfer".equals(type) && sourceAccount.equals(targetAccount)) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Target account must be different"));
             }
 
-            if ("Locked".equalsIgnoreCase(source.getStatus()) || "Archived".equalsIgnoreCase(source.getStatus())) {
-                return ResponseEntity.status(403).body(Map.of("error", "Source account unavailable"));
+            // Accounts carry no pricing class yet, so everything is priced as STANDARD.
+            BigDecimal fee = feeEngine.fee(AccountClass.STANDARD, type, amount);
+            if ("deposit".equals(type) && fee.compareTo(amount) > 0) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Amount does not cover fee"));
             }
-            if ("transfer".equals(type) && (target == null || "Locked".equalsIgnoreCase(target.getStatus()) || "Archived".equalsIgnoreCase(target.getStatus()))) {
-                return ResponseEntity.status(403).body(Map.of("error", "Target account unavailable"));
+
+            if ("deposit".equals(type)) return postLedger(type, sourceAccount, targetAccount, amount, fee, pin, note);
+
+            // Debits are reserved against the rolling velocity windows first and given back
+            // if the posting does not go through.
+            VelocityLimiter limiter = velocityLimits.limiter();
+            VelocityPolicy policy = velocityLimits.policy(AccountClass.STANDARD);
+            long velocityKey = AccountNumberCodec.key(sourceAccount);
+            long amountMinor = VelocityLimits.minor(amount);
+            long acquiredAt = limiter.now();
+            byte verdict = limiter.tryAcquire(velocityKey, policy, amountMinor, acquiredAt);
+            if (verdict != VelocityLimiter.OK) {
+                return ResponseEntity.status(429).body(Map.of(
+                        "error", "Velocity limit exceeded",
+                        "limit", VelocityLimiter.name(verdict)));
             }
-            if (("withdraw".equals(type) || "transfer".equals(type)) && (source.getPin() == null || !source.getPin().equals(pin))) {
-                return ResponseEntity.status(400).body(Map.of("error", "Invalid PIN."));
+            boolean posted = false;
+            try {
+                ResponseEntity<?> response = postLedger(type, sourceAccount, targetAccount, amount, fee, pin, note);
+                posted = response.getStatusCode().is2xxSuccessful();
+                return response;
+            } finally {
+                if (!posted) limiter.release(velocityKey, policy, amountMinor, acquiredAt);
             }
+        } catch (LedgerConflictException e) {
+            return ResponseEntity.status(409).body(Map.of("error", "Concurrent update, please retry"));
+        } catch (DataAccessException e) {
+            Map<String, Object> out = new HashMap<>();
+            out.put("error", "Database unavailable");
+            return ResponseEntity.status(503).body(out);
+        } catch (Exception e) {
+            Map<String, Object> out = new HashMap<>();
+            out.put("error", "Server error");
+            return ResponseEntity.status(500).body(out);
+        }
+    }
 
-            BigDecimal sourceBefore = source.getBalance() == null ? BigDecimal.ZERO : source.getBalance();
-            BigDecimal targetBefore = target == null ? null : (target.getBalance() == null ? BigDecimal.ZERO : target.getBalance());
+    private ResponseEntity<?> postLedger(String type, String sourceAccount, String targetAccount,
+                                         BigDecimal amount, BigDecimal fee, String pin, String note) {
+        // With an Idempotency-Key, the key's response commits in the posting's transaction
+        ResponseEntity<?> response;
+        if (ledgerMode == LedgerMode.ATOMIC) {
+            response = idempotencyService.hasClaim()
+                    ? new TransactionTemplate(transactionManager).execute(status ->
+                            postAtomic(type, sourceAccount, targetAccount, amount, fee, pin, note))
+                    : postAtomic(type, sourceAccount, targetAccount, amount, fee, pin, note);
+        } else {
+            List<String> involved = "transfer".equals(type) ? List.of(sourceAccount, targetAccount) : List.of(sourceAccount);
+            response = ledgerExecutor.execute(involved, accounts -> idempotencyService.recordInTransaction(
+                    post(accounts, type, sourceAccount, targetAccount, amount, fee, pin, note)));
+        }
+        // Both paths have committed by now; the audit row is written in the background
+        if (response.getStatusCode().is2xxSuccessful() && response.getBody() instanceof Map<?, ?> out) {
+            auditTrail.record(((Number) out.get("transaction_id")).longValue(), "create", sourceAccount, null, out);
+        }
+        return response;
+    }
 
-            BigDecimal sourceAfter = sourceBefore;
-            BigDecimal targetAfter = targetBefore;
+    private ResponseEntity<?> postAtomic(String type, String sourceAccount, String targetAccount,
+                                         BigDecimal amount, BigDecimal fee, String pin, String note) {
+        LedgerPosting posting = atomicLedgerService.post(type, sourceAccount, targetAccount, amount, fee, pin, note);
+        return idempotencyService.recordInTransaction(posting.isPosted()
+                ? created(posting.transactionId(), type, "Completed", sourceAccount, targetAccount, amount, fee)
+                : rejected(posting));
+    }
 
-            if ("deposit".equals(type)) {
-                sourceAfter = sourceBefore.add(amount);
-                source.setBalance(sourceAfter);
-            } else if ("withdraw".equals(type)) {
-                if (amount.compareTo(sourceBefore) > 0) {
-                    return ResponseEntity.badRequest().body(Map.of("error", "Insufficient funds"));
-                }
-                sourceAfter = sourceBefore.subtract(amount);
-                source.setBalance(sourceAfter);
-            } else {
-                if (amount.compareTo(sourceBefore) > 0) {
-                    return ResponseEntity.badRequest().body(Map.of("error", "Insufficient funds"));
-                }
-                sourceAfter = sourceBefore.subtract(amount);
-                targetAfter = targetBefore.add(amount);
-                source.setBalance(sourceAfter);
-                target.setBalance(targetAfter);
-            }
+    /**
+     * Records pre-settled ledger rows in JDBC batches. The whole request is rejected
+     * if any row fails validation; balances are not touched.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<?> importBatch(@RequestBody List<Map<String, Object>> body) {
+        try {
+            OffsetDateTime now = OffsetDateTime.now();
+            List<Transaction> rows = new ArrayList<>(body.size());
+            for (int i = 0; i < body.size(); i++) {
+                Map<String, Object> row = body.get(i);
+                String accountNumber = text(row, "account_number");
+                String type = text(row, "type");
+                String status = row.get("status") == null ? "Completed" : text(row, "status");
+                BigDecimal amount = decimal(row, "amount");
+                if (accountNumber == null || accountNumber.isBlank()) return invalidRow(i, "Missing account_number");
+                if (!LEDGER_TYPES.contains(type)) return invalidRow(i, "Invalid type");
+                if (!LEDGER_STATUSES.contains(status)) return invalidRow(i, "Invalid status");
+                if (amount == null || amount.signum() <= 0) return invalidRow(i, "Amount must be positive");
 
-            accountRepository.save(source);
-            if (target != null) accountRepository.save(target);
+                Transaction tx = new Transaction();
+                tx.setAccountNumber(accountNumber);
+                tx.setTargetAccount(text(row, "target_account"));
+                tx.setType(type);
+                tx.setStatus(status);
+                tx.setAmount(amount);
+                tx.setFee(row.get("fee") == null ? BigDecimal.ZERO : decimal(row, "fee"));
+                tx.setNote(text(row, "note"));
+                tx.setCreatedBy(row.get("created_by") == null ? accountNumber : text(row, "created_by"));
+                tx.setCreatedAt(row.get("created_at") == null ? now : OffsetDateTime.parse(text(row, "created_at")));
+                tx.setCompletedAt("Completed".equals(status) ? tx.getCreatedAt() : null);
+                tx.setSourceBalanceBefore(decimal(row, "source_balance_before"));
+                tx.setSourceBalanceAfter(decimal(row, "source_balance_after"));
+                tx.setTargetBalanceBefore(decimal(row, "target_balance_before"));
+                tx.setTargetBalanceAfter(decimal(row, "target_balance_after"));
+                rows.add(tx);
+            }
 
-            OffsetDateTime now = OffsetDateTime.now();
-            Transaction tx = new Transaction();
-            tx.setAccountNumber(sourceAccount);
-            tx.setTargetAccount("transfer".equals(type) ? targetAccount : null);
-            tx.setType(type);
-            tx.setStatus("Completed");
-            tx.setAmount(amount);
-            tx.setFee(BigDecimal.ZERO);
-            tx.setNote(note);
-            tx.setCreatedBy(sourceAccount);
-            tx.setCreatedAt(now);
-            tx.setCompletedAt(now);
-            tx.setVoidedAt(null);
-            tx.setSourceBalanceBefore(sourceBefore);
-            tx.setSourceBalanceAfter(sourceAfter);
-            tx.setTargetBalanceBefore(targetBefore);
-            tx.setTargetBalanceAfter(targetAfter);
-
-            Transaction savedTx = transactionRepository.save(tx);
-            Map<String, Object> out = new HashMap<>();
-            out.put("transaction_id", savedTx.getId());
-            out.put("type", type);
-            out.put("status", tx.getStatus());
-            out.put("source_account", sourceAccount);
-            out.put("target_account", "transfer".equals(type) ? targetAccount : null);
-            out.put("amount", amount);
-            return ResponseEntity.ok(out);
+            Set<String> referenced = new HashSet<>();
+            for (Transaction tx : rows) {
+                referenced.add(tx.getAccountNumber());
+                if (tx.getTargetAccount() != null) referenced.add(tx.getTargetAccount());
+            }
+            Set<String> known = new HashSet<>();
+            accountRepository.findAllById(referenced).forEach(a -> known.add(a.getAccountNumber()));
+            for (int i = 0; i < rows.size(); i++) {
+                Transaction tx = rows.get(i);
+                if (!known.contains(tx.getAccountNumber())) return invalidRow(i, "Source account not found");
+                if (tx.getTargetAccount() != null && !known.contains(tx.getTargetAccount())) {
+                    return invalidRow(i, "Target account not found");
+                }
+            }
+            int written = settlementImportService.importTransactions(rows);
+            for (Transaction tx : rows) {
+                Map<String, Object> details = new HashMap<>();
+                details.put("type", tx.getType());
+                details.put("status", tx.getStatus());
+                details.put("amount", tx.getAmount());
+                details.put("fee", tx.getFee());
+                details.put("source_account", tx.getAccountNumber());
+                details.put("target_account", tx.getTargetAccount());
+                auditTrail.record(tx.getId(), "create", tx.getCreatedBy(), "batch import", details);
+            }
+            return ResponseEntity.ok(Map.of("imported", written));
+        } catch (NumberFormatException | java.time.format.DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Malformed row: " + e.getMessage()));
         } catch (DataAccessException e) {
             Map<String, Object> out = new HashMap<>();
             out.put("error", "Database unavailable");
@@ -155,4 +273,124 @@ public class TransactionController {
             return ResponseEntity.status(500).body(out);
         }
     }
+
+    private static String text(Map<String, Object> row, String key) {
+        return row.get(key) == null ? null : String.valueOf(row.get(key));
+    }
+
+    private static BigDecimal decimal(Map<String, Object> row, String key) {
+        return row.get(key) == null ? null : MoneyCodec.toBigDecimal(MoneyCodec.toMinor(row.get(key)));
+    }
+
+    private static ResponseEntity<?> invalidRow(int index, String error) {
+        return ResponseEntity.badRequest().body(Map.of("error", error, "row", index));
+    }
+
+    private ResponseEntity<?> post(AccountLoader accounts, String type, String sourceAccount, String targetAccount,
+                                   BigDecimal amount, BigDecimal fee, String pin, String note) {
+        Account source;
+        Account target = null;
+
+        if ("transfer".equals(type)) {
+            String first = sourceAccount.compareTo(targetAccount) <= 0 ? sourceAccount : targetAccount;
+            String second = first.equals(sourceAccount) ? targetAccount : sourceAccount;
+
+            Optional<Account> firstLocked = accounts.load(first);
+            if (firstLocked.isEmpty()) return ResponseEntity.status(404).body(Map.of("error", "Source account not found"));
+            Optional<Account> secondLocked = accounts.load(second);
+            if (secondLocked.isEmpty()) return ResponseEntity.status(404).body(Map.of("error", "Target account not found"));
+
+            source = sourceAccount.equals(first) ? firstLocked.get() : secondLocked.get();
+            target = sourceAccount.equals(first) ? secondLocked.get() : firstLocked.get();
+        } else {
+            Optional<Account> srcOpt = accounts.load(sourceAccount);
+            if (srcOpt.isEmpty()) return ResponseEntity.status(404).body(Map.of("error", "Source account not found"));
+            source = srcOpt.get();
+        }
+
+        if ("Locked".equalsIgnoreCase(source.getStatus()) || "Archived".equalsIgnoreCase(source.getStatus())) {
+            return ResponseEntity.status(403).body(Map.of("error", "Source account unavailable"));
+        }
+        if ("transfer".equals(type) && (target == null || "Locked".equalsIgnoreCase(target.getStatus()) || "Archived".equalsIgnoreCase(target.getStatus()))) {
+            return ResponseEntity.status(403).body(Map.of("error", "Target account unavailable"));
+        }
+        if (("withdraw".equals(type) || "transfer".equals(type)) && (source.getPin() == null || !source.getPin().equals(pin))) {
+            return ResponseEntity.status(400).body(Map.of("error", "Invalid PIN."));
+        }
+
+        BigDecimal sourceBefore = source.getBalance() == null ? BigDecimal.ZERO : source.getBalance();
+        BigDecimal targetBefore = target == null ? null : (target.getBalance() == null ? BigDecimal.ZERO : target.getBalance());
+
+        BigDecimal sourceAfter = sourceBefore;
+        BigDecimal targetAfter = targetBefore;
+
+        BigDecimal debit = amount.add(fee);
+        if ("deposit".equals(type)) {
+            sourceAfter = sourceBefore.add(amount).subtract(fee);
+            source.setBalance(sourceAfter);
+        } else if ("withdraw".equals(type)) {
+            if (debit.compareTo(sourceBefore) > 0) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Insufficient funds"));
+            }
+            sourceAfter = sourceBefore.subtract(debit);
+            source.setBalance(sourceAfter);
+        } else {
+            if (debit.compareTo(sourceBefore) > 0) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Insufficient funds"));
+            }
+            sourceAfter = sourceBefore.subtract(debit);
+            targetAfter = targetBefore.add(amount);
+            source.setBalance(sourceAfter);
+            target.setBalance(targetAfter);
+        }
+
+        accountRepository.save(source);
+        if (target != null) accountRepository.save(target);
+
+        OffsetDateTime now = OffsetDateTime.now();
+        Transaction tx = new Transaction();
+        tx.setAccountNumber(sourceAccount);
+        tx.setTargetAccount("transfer".equals(type) ? targetAccount : null);
+        tx.setType(type);
+        tx.setStatus("Completed");
+        tx.setAmount(amount);
+        tx.setFee(fee);
+        tx.setNote(note);
+        tx.setCreatedBy(sourceAccount);
+        tx.setCreatedAt(now);
+        tx.setCompletedAt(now);
+        tx.setVoidedAt(null);
+        tx.setSourceBalanceBefore(sourceBefore);
+        tx.setSourceBalanceAfter(sourceAfter);
+        tx.setTargetBalanceBefore(targetBefore);
+        tx.setTargetBalanceAfter(targetAfter);
+
+        Transaction savedTx = transactionRepository.save(tx);
+        return created(savedTx.getId(), type, tx.getStatus(), sourceAccount, targetAccount, amount, fee);
+    }
+
+    private static ResponseEntity<?> created(Long id, String type, String status, String sourceAccount,
+                                             String targetAccount, BigDecimal amount, BigDecimal fee) {
+        Map<String, Object> out = new HashMap<>();
+        out.put("transaction_id", id);
+        out.put("type", type);
+        out.put("status", status);
+        out.put("source_account", sourceAccount);
+        out.put("target_account", "transfer".equals(type) ? targetAccount : null);
+        out.put("amount", amount);
+        out.put("fee", fee);
+        return ResponseEntity.ok(out);
+    }
+
+    private static ResponseEntity<?> rejected(LedgerPosting posting) {
+        return switch (posting.outcome()) {
+            case SOURCE_NOT_FOUND -> ResponseEntity.status(404).body(Map.of("error", "Source account not found"));
+            case TARGET_NOT_FOUND -> ResponseEntity.status(404).body(Map.of("error", "Target account not found"));
+            case SOURCE_UNAVAILABLE -> ResponseEntity.status(403).body(Map.of("error", "Source account unavailable"));
+            case TARGET_UNAVAILABLE -> ResponseEntity.status(403).body(Map.of("error", "Target account unavailable"));
+            case INVALID_PIN -> ResponseEntity.status(400).body(Map.of("error", "Invalid PIN."));
+            case INSUFFICIENT_FUNDS -> ResponseEntity.badRequest().body(Map.of("error", "Insufficient funds"));
+            default -> ResponseEntity.status(409).body(Map.of("error", "Concurrent update, please retry"));
+        };
+    }
 }
@@ -0,0 +1,12 @@
+package com.bank.fees;
+
+/**
+ * Pricing class of an account. The accounts table has no class column yet, so
+ * every account is priced as {@link #STANDARD}; schedules may still define rules
+ * for the other classes, and classes without their own rule fall back to STANDARD.
+ */
+public enum AccountClass {
+    STANDARD,
+    STUDENT,
+    PREMIUM;
+}
@@ -0,0 +1,88 @@
+package com.bank.fees;
+
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+import java.util.SplittableRandom;
+
+/**
+ * Measures bytes allocated by {@link FeeSchedule#feeMinor} and {@link FeeEngine#feeMinor}
+ * using the HotSpot per-thread allocation counter. A tiered schedule with a min and a cap is
+ * priced for every account class and fee type over pre-generated amounts, after a warm-up so
+ * the JIT has compiled the lookups; expect 0 bytes per call.
+ * <pre>
+ * java -cp target/bank-server-0.1.0.jar -Dloader.main=com.bank.fees.FeeAllocationMain \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher [calls]
+ * </pre>
+ * Default: 10000000 measured calls per path.
+ */
+public final class FeeAllocationMain {
+
+    private static final int AMOUNTS = 4096;
+
+    public static void main(String[] args) {
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+
+        Properties rules = new Properties();
+        rules.setProperty("standard.withdraw", "0:2.00");
+        rules.setProperty("standard.transfer", "0:0+0.5%, 10000.00:0+0.25%, 100000.00:5.00+0.1%");
+        rules.setProperty("standard.transfer.min", "0.10");
+        rules.setProperty("standard.transfer.cap", "250.00");
+        rules.setProperty("premium.transfer", "0:0");
+        rules.setProperty("student.withdraw", "0:0, 500.00:1.00");
+        FeeSchedule schedule = FeeSchedule.compile(rules, "FeeAllocationMain");
+        FeeEngine engine = new FeeEngine();
+        engine.install(schedule);
+
+        SplittableRandom rnd = new SplittableRandom(42);
+        long[] amounts = new long[AMOUNTS];
+        for (int i = 0; i < AMOUNTS; i++) amounts[i] = rnd.nextLong(1, 50_000_000L);
+        AccountClass[] classes = AccountClass.values();
+        FeeType[] types = FeeType.values();
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        long sink = 0;
+        for (int round = 0; round < 3; round++) {
+            sink += schedule(schedule, classes, types, amounts, calls / 10);
+            sink += engine(engine, classes, types, amounts, calls / 10);
+        }
+
+        long before = threads.getThreadAllocatedBytes(thread);
+        long began = System.nanoTime();
+        sink += schedule(schedule, classes, types, amounts, calls);
+        long scheduleNanos = System.nanoTime() - began;
+        long scheduleBytes = threads.getThreadAllocatedBytes(thread) - before;
+
+        before = threads.getThreadAllocatedBytes(thread);
+        began = System.nanoTime();
+        sink += engine(engine, classes, types, amounts, calls);
+        long engineNanos = System.nanoTime() - began;
+        long engineBytes = threads.getThreadAllocatedBytes(thread) - before;
+
+        report("FeeSchedule.feeMinor", calls, scheduleBytes, scheduleNanos);
+        report("FeeEngine.feeMinor", calls, engineBytes, engineNanos);
+        System.out.println("checksum " + sink);
+    }
+
+    private static long schedule(FeeSchedule schedule, AccountClass[] classes, FeeType[] types, long[] amounts, int calls) {
+        long sum = 0;
+        for (int i = 0; i < calls; i++) {
+            sum += schedule.feeMinor(classes[i % classes.length], types[(i >>> 2) % types.length], amounts[i & (AMOUNTS - 1)]);
+        }
+        return sum;
+    }
+
+    private static long engine(FeeEngine engine, AccountClass[] classes, FeeType[] types, long[] amounts, int calls) {
+        long sum = 0;
+        for (int i = 0; i < calls; i++) {
+            sum += engine.feeMinor(classes[i % classes.length], types[(i >>> 2) % types.length], amounts[i & (AMOUNTS - 1)]);
+        }
+        return sum;
+    }
+
+    private static void report(String path, int calls, long bytes, long nanos) {
+        System.out.printf("%-22s calls=%d allocated=%dB perCall=%.4fB %.1fns/call%n",
+                path, calls, bytes, bytes / (double) calls, nanos / (double) calls);
+    }
+}
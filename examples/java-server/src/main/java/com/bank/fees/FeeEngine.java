@@ -0,0 +1,99 @@
+package com.bank.fees;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the active {@link FeeSchedule} and swaps it atomically when the rule file changes.
+ *
+ * <p>With {@code bank.fees.schedule-file} unset the built-in defaults apply. Otherwise the
+ * file is polled every {@code bank.fees.reload-interval-ms}; a file that fails to compile
+ * is logged and the previous schedule stays in force, so a bad edit never prices a posting.
+ * Callers reading {@link #current()} see either the old or the new table, never a mix.
+ */
+@Component
+public class FeeEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(FeeEngine.class);
+
+    private final AtomicReference<FeeSchedule> schedule = new AtomicReference<>(FeeSchedule.defaults());
+
+    @Value("${bank.fees.schedule-file:}")
+    private String scheduleFile;
+
+    private volatile long loadedModified = Long.MIN_VALUE;
+
+    @PostConstruct
+    void init() {
+        if (!scheduleFile.isBlank() && !reload()) {
+            throw new IllegalStateException("Fee schedule " + scheduleFile + " could not be loaded");
+        }
+    }
+
+    public FeeSchedule current() {
+        return schedule.get();
+    }
+
+    /** Fee in minor units; allocation-free. */
+    public long feeMinor(AccountClass accountClass, FeeType type, long amountMinor) {
+        return schedule.get().feeMinor(accountClass, type, amountMinor);
+    }
+
+    /** Fee for a ledger type code and decimal amount, as stored in {@code transactions.fee}. */
+    public BigDecimal fee(AccountClass accountClass, String type, BigDecimal amount) {
+        FeeType feeType = FeeType.fromCode(type);
+        if (feeType == null || amount == null || amount.signum() <= 0) return BigDecimal.ZERO.setScale(2);
+        long amountMinor = amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        return BigDecimal.valueOf(feeMinor(accountClass, feeType, amountMinor), 2);
+    }
+
+    /** Replaces the active schedule; used by reloads and by callers holding a compiled table. */
+    public void install(FeeSchedule next) {
+        schedule.set(next);
+    }
+
+    @Scheduled(fixedDelayString = "${bank.fees.reload-interval-ms:30000}")
+    public void reloadIfChanged() {
+        if (scheduleFile.isBlank()) return;
+        try {
+            long modified = Files.getLastModifiedTime(Path.of(scheduleFile)).toMillis();
+            if (modified != loadedModified) reload();
+        } catch (IOException e) {
+            log.warn("Fee schedule {} unreadable, keeping {}: {}", scheduleFile, schedule.get().source(), e.getMessage());
+        }
+    }
+
+    /** Compiles the rule file and installs it; returns false and keeps the current table on error. */
+    public synchronized boolean reload() {
+        Path path = Path.of(scheduleFile);
+        try {
+            long modified = Files.getLastModifiedTime(path).toMillis();
+            // Remember the attempt even if it fails, so a bad file is reported once per edit.
+            loadedModified = modified;
+            Properties rules = new Properties();
+            try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                rules.load(reader);
+            }
+            install(FeeSchedule.compile(rules, path + "@" + modified));
+            log.info("Fee schedule loaded from {}", path);
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("Fee schedule {} rejected, keeping {}: {}", path, schedule.get().source(), e.getMessage());
+            return false;
+        }
+    }
+}
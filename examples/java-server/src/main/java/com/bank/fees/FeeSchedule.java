@@ -0,0 +1,200 @@
+package com.bank.fees;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Immutable fee table compiled from a rule set. All amounts are minor units (cents).
+ *
+ * <p>Each (account class, fee type) cell owns a run of tiers sorted by floor. The tier
+ * with the highest floor at or below the amount applies: {@code fixed + amount * rate},
+ * rate in parts per million rounded half-up, then clamped to the cell's min and cap.
+ * Lookups read flat primitive arrays only, so {@link #feeMinor} never allocates. Ledger
+ * amounts are NUMERIC(12,2), so {@code amount * rate} stays far below {@code Long.MAX_VALUE}.
+ *
+ * <p>Rule syntax, one property per cell, tiers separated by commas:
+ * <pre>
+ * standard.withdraw      = 0:2.00
+ * standard.transfer      = 0:0+0.5%, 10000.00:0+0.25%
+ * standard.transfer.min  = 0.10
+ * standard.transfer.cap  = 25.00
+ * </pre>
+ * A tier is {@code floor:fixed[+rate%]}. Classes without a rule for a type use the
+ * STANDARD rule; types without any rule are free.
+ *
+ * <p>The JDK server carries the same class as {@code modules.fees.FeeSchedule}, with
+ * {@link FeeType} and {@link AccountClass}, so both servers price a rule file the same way.
+ * Each build unit keeps its own copy; keep them in step.
+ */
+public final class FeeSchedule {
+
+    private static final long PPM = 1_000_000L;
+    private static final int TYPES = FeeType.values().length;
+
+    private final int[] cellStart;
+    private final long[] tierFloor;
+    private final long[] tierFixed;
+    private final long[] tierPpm;
+    private final long[] cellMin;
+    private final long[] cellCap;
+    private final String source;
+
+    private FeeSchedule(int[] cellStart, long[] tierFloor, long[] tierFixed, long[] tierPpm,
+                        long[] cellMin, long[] cellCap, String source) {
+        this.cellStart = cellStart;
+        this.tierFloor = tierFloor;
+        this.tierFixed = tierFixed;
+        this.tierPpm = tierPpm;
+        this.cellMin = cellMin;
+        this.cellCap = cellCap;
+        this.source = source;
+    }
+
+    /** Fee in minor units for a non-negative amount in minor units. */
+    public long feeMinor(AccountClass accountClass, FeeType type, long amountMinor) {
+        int cell = accountClass.ordinal() * TYPES + type.ordinal();
+        int from = cellStart[cell];
+        int tier = cellStart[cell + 1] - 1;
+        if (tier < from) return 0L;
+        while (tier > from && tierFloor[tier] > amountMinor) tier--;
+        if (tierFloor[tier] > amountMinor) return 0L;
+
+        long fee = tierFixed[tier] + (amountMinor * tierPpm[tier] + PPM / 2) / PPM;
+        if (fee < cellMin[cell]) fee = cellMin[cell];
+        if (fee > cellCap[cell]) fee = cellCap[cell];
+        return fee;
+    }
+
+    /** Where this schedule was compiled from, for diagnostics. */
+    public String source() {
+        return source;
+    }
+
+    /** The historical TransactionFeePolicy rates: withdraw 2.00 flat, transfer 0.5%, everything else free. */
+    public static FeeSchedule defaults() {
+        Properties rules = new Properties();
+        rules.setProperty("standard.withdraw", "0:2.00");
+        rules.setProperty("standard.transfer", "0:0+0.5%");
+        return compile(rules, "built-in defaults");
+    }
+
+    /**
+     * Compiles a rule set. Throws {@link IllegalArgumentException} on unknown classes or
+     * types, malformed tiers, duplicate floors, or amounts finer than a cent.
+     */
+    public static FeeSchedule compile(Properties rules, String source) {
+        int classes = AccountClass.values().length;
+        List<List<long[]>> cells = new ArrayList<>(classes * TYPES);
+        long[] min = new long[classes * TYPES];
+        long[] cap = new long[classes * TYPES];
+        for (int i = 0; i < classes * TYPES; i++) {
+            cells.add(null);
+            cap[i] = Long.MAX_VALUE;
+        }
+
+        for (Map.Entry<Object, Object> e : rules.entrySet()) {
+            String key = e.getKey().toString().trim().toLowerCase(Locale.ROOT);
+            String value = e.getValue().toString().trim();
+            String[] parts = key.split("\\.");
+            if (parts.length < 2 || parts.length > 3) throw new IllegalArgumentException("Bad fee rule key: " + key);
+            int cell = cellIndex(parts[0], parts[1]);
+            if (parts.length == 2) {
+                cells.set(cell, parseTiers(key, value));
+            } else if ("min".equals(parts[2])) {
+                min[cell] = minor(value, key);
+            } else if ("cap".equals(parts[2])) {
+                cap[cell] = minor(value, key);
+            } else {
+                throw new IllegalArgumentException("Bad fee rule key: " + key);
+            }
+        }
+
+        // Unset cells inherit the STANDARD rule of the same type, limits included.
+        for (int c = 1; c < classes; c++) {
+            for (int t = 0; t < TYPES; t++) {
+                int cell = c * TYPES + t;
+                if (cells.get(cell) == null) {
+                    cells.set(cell, cells.get(t));
+                    if (min[cell] == 0) min[cell] = min[t];
+                    if (cap[cell] == Long.MAX_VALUE) cap[cell] = cap[t];
+                }
+            }
+        }
+
+        int total = 0;
+        for (List<long[]> tiers : cells) total += tiers == null ? 0 : tiers.size();
+        int[] start = new int[cells.size() + 1];
+        long[] floor = new long[total];
+        long[] fixed = new long[total];
+        long[] ppm = new long[total];
+        int at = 0;
+        for (int cell = 0; cell < cells.size(); cell++) {
+            start[cell] = at;
+            List<long[]> tiers = cells.get(cell);
+            if (tiers == null) continue;
+            if (min[cell] > cap[cell]) throw new IllegalArgumentException("Fee min above cap for cell " + cell);
+            for (long[] tier : tiers) {
+                floor[at] = tier[0];
+                fixed[at] = tier[1];
+                ppm[at] = tier[2];
+                at++;
+            }
+        }
+        start[cells.size()] = at;
+        return new FeeSchedule(start, floor, fixed, ppm, min, cap, source);
+    }
+
+    private static int cellIndex(String accountClass, String type) {
+        try {
+            AccountClass c = AccountClass.valueOf(accountClass.toUpperCase(Locale.ROOT));
+            FeeType t = FeeType.valueOf(type.toUpperCase(Locale.ROOT));
+            return c.ordinal() * TYPES + t.ordinal();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown account class or fee type: " + accountClass + "." + type);
+        }
+    }
+
+    private static List<long[]> parseTiers(String key, String value) {
+        List<long[]> tiers = new ArrayList<>();
+        for (String raw : value.split(",")) {
+            String tier = raw.trim();
+            int colon = tier.indexOf(':');
+            if (colon < 0) throw new IllegalArgumentException("Tier needs floor:fee in " + key + ": " + tier);
+            long floor = minor(tier.substring(0, colon), key);
+            String fee = tier.substring(colon + 1).trim();
+            long fixed = 0;
+            long ppm = 0;
+            int plus = fee.indexOf('+');
+            String fixedPart = plus < 0 ? fee : fee.substring(0, plus);
+            String ratePart = plus < 0 ? null : fee.substring(plus + 1).trim();
+            if (fixedPart.endsWith("%")) {
+                ratePart = fixedPart;
+            } else {
+                fixed = minor(fixedPart, key);
+            }
+            if (ratePart != null) {
+                if (!ratePart.endsWith("%")) throw new IllegalArgumentException("Rate must end with % in " + key);
+                ppm = new BigDecimal(ratePart.substring(0, ratePart.length() - 1).trim())
+                        .movePointRight(4).longValueExact();
+            }
+            if (floor < 0 || fixed < 0 || ppm < 0) throw new IllegalArgumentException("Negative fee tier in " + key);
+            if (!tiers.isEmpty() && tiers.get(tiers.size() - 1)[0] >= floor) {
+                throw new IllegalArgumentException("Tier floors must increase in " + key);
+            }
+            tiers.add(new long[] {floor, fixed, ppm});
+        }
+        return tiers;
+    }
+
+    private static long minor(String amount, String key) {
+        try {
+            return new BigDecimal(amount.trim()).movePointRight(2).longValueExact();
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw new IllegalArgumentException("Bad amount in " + key + ": " + amount);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.bank.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.OffsetDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates POSTs carrying an {@code Idempotency-Key} header.
+ *
+ * <p>Recent keys live in a bounded in-memory map whose entries hold the first request's
+ * pending result, so concurrent duplicates wait on it instead of re-executing. Keys are
+ * also claimed in {@code idempotency_keys} before the work runs and filled in with the
+ * response afterwards, which covers retries that reach another instance or arrive after a
+ * restart. 5xx and 409 results release the key so the client can retry for real; anything
+ * else is replayed until the key expires. Reusing a key with a different body is rejected with 422.
+ *
+ * <p>A posting stores the key's response in its own transaction through
+ * {@link #recordInTransaction}, so a key is only ever done together with the posting it
+ * answers. A claim that is never completed, because the instance died mid-request or the
+ * posting rolled back, is a lease: after {@code bank.idempotency.lease-seconds} the next
+ * request with the key takes it over and runs. Every write to the key row is guarded by the
+ * claim's {@code created_at}, so a request that lost its claim that way rolls its posting back
+ * and answers 409, and a completed key is never taken over or released.
+ */
+@Service
+public class IdempotencyService {
+
+    // Inserts the claim, or takes over a row that has expired or whose claim outlived the
+    // lease; the conflicting row is locked, so only one request can take it over.
+    private static final String CLAIM_SQL =
+            "INSERT INTO idempotency_keys (idem_key, request_hash, expires_at)" +
+            " VALUES (?, ?, now() + make_interval(secs => ?))" +
+            " ON CONFLICT (idem_key) DO UPDATE SET request_hash = EXCLUDED.request_hash, status_code = NULL," +
+            " response_body = NULL, created_at = now(), expires_at = EXCLUDED.expires_at" +
+            " WHERE idempotency_keys.expires_at <= now()" +
+            " OR (idempotency_keys.status_code IS NULL" +
+            " AND idempotency_keys.created_at <= now() - make_interval(secs => ?))" +
+            " RETURNING created_at";
+
+    private static final String LOOKUP_SQL =
+            "SELECT request_hash, status_code, response_body FROM idempotency_keys" +
+            " WHERE idem_key = ? AND expires_at > now()";
+
+    // Both only touch this request's claim, and only while it is still open.
+    private static final String COMPLETE_SQL =
+            "UPDATE idempotency_keys SET status_code = ?, response_body = ?" +
+            " WHERE idem_key = ? AND created_at = ? AND status_code IS NULL";
+
+    private static final String RELEASE_SQL =
+            "DELETE FROM idempotency_keys WHERE idem_key = ? AND created_at = ? AND status_code IS NULL";
+
+    private static final String PURGE_SQL = "DELETE FROM idempotency_keys WHERE expires_at <= now()";
+
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private final Map<String, Entry> recent = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Claim> current = new ThreadLocal<>();
+    private final ObjectMapper hashMapper = new ObjectMapper().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${bank.idempotency.ttl-seconds:86400}")
+    private long ttlSeconds;
+
+    @Value("${bank.idempotency.lease-seconds:60}")
+    private long leaseSeconds;
+
+    @Value("${bank.idempotency.max-cached:10000}")
+    private int maxCached;
+
+    @Value("${bank.idempotency.wait-ms:10000}")
+    private long waitMs;
+
+    /**
+     * Runs {@code work} once per key and replays its response for duplicates.
+     * {@code request} is hashed to detect a key reused for a different request.
+     */
+    public ResponseEntity<?> execute(String key, Object request, Supplier<ResponseEntity<?>> work) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid Idempotency-Key"));
+        }
+        String requestHash = hash(request);
+
+        Entry mine = new Entry(requestHash, System.currentTimeMillis() + ttlSeconds * 1000);
+        Entry existing = recent.putIfAbsent(key, mine);
+        if (existing != null && existing.isExpired()) {
+            recent.remove(key, existing);
+            existing = recent.putIfAbsent(key, mine);
+        }
+        if (existing != null) {
+            if (!existing.requestHash.equals(requestHash)) return StoredResponse.MISMATCH.toResponse(false);
+            return await(existing);
+        }
+        insertionOrder.add(key);
+        evictOverflow();
+
+        StoredResponse result;
+        try {
+            result = claimAndRun(key, requestHash, work);
+        } catch (RuntimeException e) {
+            recent.remove(key, mine);
+            mine.response.completeExceptionally(e);
+            throw e;
+        }
+        mine.response.complete(result);
+        // A mismatch means the key belongs to another request; caching it under this
+        // request's hash would answer the original request's retries with 422.
+        if (isRetryable(result.status) || result == StoredResponse.MISMATCH) recent.remove(key, mine);
+        return result.toResponse(false);
+    }
+
+    /**
+     * Whether this thread is running the work of a claimed key; postings that are not
+     * already transactional open a transaction for {@link #recordInTransaction} then.
+     */
+    public boolean hasClaim() {
+        return current.get() != null;
+    }
+
+    /**
+     * Stores {@code response} for the key this thread is running, in the caller's transaction,
+     * and returns it. Without a claimed key, or for a retryable status, it does nothing. Throws
+     * if the claim was taken over, so the caller's transaction rolls back.
+     */
+    public <R extends ResponseEntity<?>> R recordInTransaction(R response) {
+        Claim claim = current.get();
+        int status = response.getStatusCode().value();
+        if (claim == null || isRetryable(status)) return response;
+        if (jdbc.update(COMPLETE_SQL, status, json(response.getBody()), claim.key, claim.claimedAt) == 0) {
+            claim.lost = true;
+            throw new IllegalStateException("Idempotency-Key claim was taken over: " + claim.key);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    claim.completed = true;
+                }
+            });
+        } else {
+            claim.completed = true;
+        }
+        return response;
+    }
+
+    private StoredResponse claimAndRun(String key, String requestHash, Supplier<ResponseEntity<?>> work) {
+        List<OffsetDateTime> claimed = jdbc.query(CLAIM_SQL, (rs, i) -> rs.getObject(1, OffsetDateTime.class),
+                key, requestHash, ttlSeconds, leaseSeconds);
+        if (claimed.isEmpty()) {
+            List<StoredResponse> rows = jdbc.query(LOOKUP_SQL, (rs, i) -> {
+                if (!rs.getString("request_hash").equals(requestHash)) return StoredResponse.MISMATCH;
+                int status = rs.getInt("status_code");
+                return rs.wasNull() ? StoredResponse.IN_PROGRESS : new StoredResponse(status, rs.getString("response_body"), true);
+            }, key);
+            // Gone between the claim and the lookup (released or purged); the client may retry.
+            return rows.isEmpty() ? StoredResponse.IN_PROGRESS : rows.get(0);
+        }
+
+        Claim claim = new Claim(key, claimed.get(0));
+        StoredResponse result;
+        current.set(claim);
+        try {
+            ResponseEntity<?> response = work.get();
+            result = new StoredResponse(response.getStatusCode().value(), json(response.getBody()), false);
+        } catch (RuntimeException e) {
+            if (claim.lost) return StoredResponse.IN_PROGRESS;
+            jdbc.update(RELEASE_SQL, key, claim.claimedAt);
+            throw e;
+        } finally {
+            current.remove();
+        }
+        if (claim.lost) return StoredResponse.IN_PROGRESS;
+        if (isRetryable(result.status)) {
+            jdbc.update(RELEASE_SQL, key, claim.claimedAt);
+        } else if (!claim.completed) {
+            // Answers that posted nothing (validation, velocity limits) are stored afterwards.
+            jdbc.update(COMPLETE_SQL, result.status, result.body, key, claim.claimedAt);
+        }
+        return result;
+    }
+
+    private String json(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize response", e);
+        }
+    }
+
+    private ResponseEntity<?> await(Entry entry) {
+        try {
+            return entry.response.get(waitMs, TimeUnit.MILLISECONDS).toResponse(true);
+        } catch (TimeoutException e) {
+            return StoredResponse.IN_PROGRESS.toResponse(false);
+        } catch (ExecutionException e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Server error"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return StoredResponse.IN_PROGRESS.toResponse(false);
+        }
+    }
+
+    private void evictOverflow() {
+        while (recent.size() > maxCached) {
+            String oldest = insertionOrder.poll();
+            if (oldest == null) return;
+            Entry entry = recent.get(oldest);
+            // In-flight entries stay; waiters depend on them.
+            if (entry != null && entry.response.isDone()) recent.remove(oldest, entry);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${bank.idempotency.cleanup-interval-ms:600000}")
+    public void purgeExpired() {
+        jdbc.update(PURGE_SQL);
+        recent.values().removeIf(e -> e.isExpired() && e.response.isDone());
+        insertionOrder.removeIf(k -> !recent.containsKey(k));
+    }
+
+    private String hash(Object request) {
+        try {
+            byte[] canonical = hashMapper.writeValueAsBytes(request);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(canonical));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Cannot hash request", e);
+        }
+    }
+
+    /** Server errors and concurrency conflicts are worth retrying, so they are not pinned to the key. */
+    private static boolean isRetryable(int status) {
+        return status >= 500 || status == 409;
+    }
+
+    /** The open claim of the key this thread is running; created_at identifies it. */
+    private static final class Claim {
+        final String key;
+        final OffsetDateTime claimedAt;
+        volatile boolean completed;
+        volatile boolean lost;
+
+        Claim(String key, OffsetDateTime claimedAt) {
+            this.key = key;
+            this.claimedAt = claimedAt;
+        }
+    }
+
+    private static final class Entry {
+        final String requestHash;
+        final long expiresAtMillis;
+        final CompletableFuture<StoredResponse> response = new CompletableFuture<>();
+
+        Entry(String requestHash, long expiresAtMillis) {
+            this.requestHash = requestHash;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        boolean isExpired() {
+            return expiresAtMillis <= System.currentTimeMillis();
+        }
+    }
+
+    private record StoredResponse(int status, String body, boolean replayed) {
+        static final StoredResponse MISMATCH = new StoredResponse(422,
+                "{\"error\":\"Idempotency-Key was already used with a different request\"}", false);
+        static final StoredResponse IN_PROGRESS = new StoredResponse(409,
+                "{\"error\":\"A request with this Idempotency-Key is still in progress\"}", false);
+
+        ResponseEntity<String> toResponse(boolean fromCache) {
+            ResponseEntity.BodyBuilder builder = ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON);
+            if (replayed || fromCache) builder.header("Idempotent-Replayed", "true");
+            return builder.body(body);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.bank.ledger;
+
+import com.bank.model.Account;
+
+import java.util.Optional;
+
+/**
+ * Loads an account for mutation inside a {@link LedgerExecutor} attempt, either
+ * with a row lock or as a plain versioned read.
+ */
+@FunctionalInterface
+public interface AccountLoader {
+    Optional<Account> load(String accountNumber);
+}
@@ -0,0 +1,186 @@
+package com.bank.ledger;
+
+import com.bank.model.Account;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single-statement ledger writes. Each posting is one conditional UPDATE whose
+ * RETURNING row feeds the transactions INSERT in the same CTE, so the row lock is
+ * held for one round-trip instead of SELECT FOR UPDATE + save + insert.
+ *
+ * When the statement matches nothing, the accounts are re-read (cold path only)
+ * to report the same errors as the locking path.
+ */
+@Service
+public class AtomicLedgerService {
+
+    private static final String DEPOSIT_SQL =
+            "WITH src AS (" +
+            "  UPDATE accounts SET balance = balance + :amount - :fee" +
+            "  WHERE account_number = :source AND status = 'Active'" +
+            "  RETURNING account_number, balance - :amount + :fee AS balance_before, balance AS balance_after" +
+            "), tx AS (" +
+            "  INSERT INTO transactions (account_number, type, status, amount, fee, note, created_by, created_at, completed_at," +
+            "                            source_balance_before, source_balance_after)" +
+            "  SELECT account_number, 'deposit', 'Completed', :amount, :fee, :note, account_number, now(), now()," +
+            "         balance_before, balance_after FROM src" +
+            "  RETURNING id" +
+            ") SELECT tx.id, src.balance_before, src.balance_after FROM src, tx";
+
+    private static final String WITHDRAW_SQL =
+            "WITH src AS (" +
+            "  UPDATE accounts SET balance = balance - (:amount + :fee)" +
+            "  WHERE account_number = :source AND status = 'Active' AND pin = :pin AND balance >= :amount + :fee" +
+            "  RETURNING account_number, balance + :amount + :fee AS balance_before, balance AS balance_after" +
+            "), tx AS (" +
+            "  INSERT INTO transactions (account_number, type, status, amount, fee, note, created_by, created_at, completed_at," +
+            "                            source_balance_before, source_balance_after)" +
+            "  SELECT account_number, 'withdraw', 'Completed', :amount, :fee, :note, account_number, now(), now()," +
+            "         balance_before, balance_after FROM src" +
+            "  RETURNING id" +
+            ") SELECT tx.id, src.balance_before, src.balance_after FROM src, tx";
+
+    // Both rows are locked in account_number order before either is written, so
+    // opposing transfers cannot deadlock; the guards read the locked (latest) versions.
+    private static final String TRANSFER_SQL =
+            "WITH locked AS (" +
+            "  SELECT account_number, balance, status, pin FROM accounts" +
+            "  WHERE account_number IN (:source, :target)" +
+            "  ORDER BY account_number" +
+            "  FOR UPDATE" +
+            "), src AS (" +
+            "  SELECT balance FROM locked" +
+            "  WHERE account_number = :source AND status = 'Active' AND pin = :pin AND balance >= :amount + :fee" +
+            "), dst AS (" +
+            "  SELECT balance FROM locked WHERE account_number = :target AND status = 'Active'" +
+            "), moved AS (" +
+            "  UPDATE accounts a" +
+            "  SET balance = a.balance + CASE WHEN a.account_number = :source THEN -(:amount + :fee) ELSE :amount END" +
+            "  FROM src, dst" +
+            "  WHERE a.account_number IN (:source, :target)" +
+            "  RETURNING a.account_number" +
+            "), tx AS (" +
+            "  INSERT INTO transactions (account_number, target_account, type, status, amount, fee, note, created_by," +
+            "                            created_at, completed_at, source_balance_before, source_balance_after," +
+            "                            target_balance_before, target_balance_after)" +
+            "  SELECT :source, :target, 'transfer', 'Completed', :amount, :fee, :note, :source, now(), now()," +
+            "         src.balance, src.balance - :amount - :fee, dst.balance, dst.balance + :amount" +
+            "  FROM src, dst" +
+            "  RETURNING id, source_balance_before, source_balance_after, target_balance_before, target_balance_after" +
+            ") SELECT * FROM tx";
+
+    private static final String ADJUST_SQL =
+            "UPDATE accounts SET balance = balance + :delta" +
+            " WHERE account_number = :account AND status = 'Active' AND balance + :delta >= 0" +
+            " RETURNING account_number, name, balance, status";
+
+    private static final String DIAGNOSE_SQL =
+            "SELECT account_number, balance, status, pin FROM accounts WHERE account_number IN (:source, :target)";
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbc;
+
+    /**
+     * Posts a deposit, withdraw or transfer and its ledger row in one statement. The fee is
+     * taken from the source on top of the amount (out of it, for deposits).
+     * The CTE statement is atomic by itself, so no surrounding transaction is needed;
+     * when it posts nothing, the {@code diagnose()} re-read runs as its own statement and
+     * may see a later state. Keyed posts run it inside a transaction anyway, so the
+     * Idempotency-Key's response commits with the posting.
+     */
+    public LedgerPosting post(String type, String sourceAccount, String targetAccount,
+                              BigDecimal amount, BigDecimal fee, String pin, String note) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("source", sourceAccount)
+                .addValue("target", targetAccount)
+                .addValue("amount", amount)
+                .addValue("fee", fee)
+                .addValue("pin", pin)
+                .addValue("note", note);
+
+        String sql = switch (type) {
+            case "deposit" -> DEPOSIT_SQL;
+            case "withdraw" -> WITHDRAW_SQL;
+            case "transfer" -> TRANSFER_SQL;
+            default -> throw new IllegalArgumentException("Unsupported type: " + type);
+        };
+
+        List<LedgerPosting> rows = jdbc.query(sql, params, (rs, i) -> "transfer".equals(type)
+                ? new LedgerPosting(LedgerOutcome.POSTED, rs.getLong("id"),
+                        rs.getBigDecimal("source_balance_before"), rs.getBigDecimal("source_balance_after"),
+                        rs.getBigDecimal("target_balance_before"), rs.getBigDecimal("target_balance_after"))
+                : new LedgerPosting(LedgerOutcome.POSTED, rs.getLong("id"),
+                        rs.getBigDecimal("balance_before"), rs.getBigDecimal("balance_after"), null, null));
+        if (!rows.isEmpty()) return rows.get(0);
+        boolean debit = !"deposit".equals(type);
+        return LedgerPosting.rejected(diagnose(sourceAccount, "transfer".equals(type) ? targetAccount : null,
+                amount.add(fee), debit, debit ? pin : null));
+    }
+
+    /**
+     * Applies a signed balance change to an active account without a ledger row,
+     * mirroring {@code PATCH /api/accounts/{accountNumber}}.
+     */
+    public BalanceAdjustment adjustBalance(String accountNumber, BigDecimal delta) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("account", accountNumber)
+                .addValue("delta", delta);
+        List<Account> rows = jdbc.query(ADJUST_SQL, params, (rs, i) -> {
+            Account a = new Account();
+            a.setAccountNumber(rs.getString("account_number"));
+            a.setName(rs.getString("name"));
+            a.setBalance(rs.getBigDecimal("balance"));
+            a.setStatus(rs.getString("status"));
+            return a;
+        });
+        if (!rows.isEmpty()) return new BalanceAdjustment(LedgerOutcome.POSTED, rows.get(0));
+
+        LedgerOutcome outcome = diagnose(accountNumber, null, delta.abs(), delta.signum() < 0, null);
+        return new BalanceAdjustment(outcome, null);
+    }
+
+    /**
+     * Re-reads the accounts a rejected statement touched and reports why it matched nothing,
+     * checking in the same order as the locking path. A null target skips target checks and a
+     * null pin skips the PIN check.
+     */
+    private LedgerOutcome diagnose(String sourceAccount, String targetAccount, BigDecimal amount, boolean debit, String pin) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("source", sourceAccount)
+                .addValue("target", targetAccount == null ? sourceAccount : targetAccount);
+        Map<String, Map<String, Object>> byNumber = new HashMap<>();
+        jdbc.query(DIAGNOSE_SQL, params, rs -> {
+            Map<String, Object> row = new HashMap<>();
+            row.put("balance", rs.getBigDecimal("balance"));
+            row.put("status", rs.getString("status"));
+            row.put("pin", rs.getString("pin"));
+            byNumber.put(rs.getString("account_number"), row);
+        });
+
+        Map<String, Object> source = byNumber.get(sourceAccount);
+        if (source == null) return LedgerOutcome.SOURCE_NOT_FOUND;
+        boolean transfer = targetAccount != null;
+        Map<String, Object> target = transfer ? byNumber.get(targetAccount) : null;
+        if (transfer && target == null) return LedgerOutcome.TARGET_NOT_FOUND;
+
+        if (!"Active".equals(source.get("status"))) return LedgerOutcome.SOURCE_UNAVAILABLE;
+        if (transfer && !"Active".equals(target.get("status"))) return LedgerOutcome.TARGET_UNAVAILABLE;
+
+        if (pin != null && !pin.equals(source.get("pin"))) {
+            return LedgerOutcome.INVALID_PIN;
+        }
+        BigDecimal balance = source.get("balance") == null ? BigDecimal.ZERO : (BigDecimal) source.get("balance");
+        if (debit && amount.compareTo(balance) > 0) return LedgerOutcome.INSUFFICIENT_FUNDS;
+        return LedgerOutcome.CONFLICT;
+    }
+
+    public record BalanceAdjustment(LedgerOutcome outcome, Account account) {}
+}
@@ -0,0 +1,74 @@
+package com.bank.ledger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-account optimistic conflict rate, kept as an exponentially weighted moving
+ * average. Once an account's rate crosses the threshold it is pinned to pessimistic
+ * locking for a cool-down period, after which it is probed optimistically again.
+ */
+@Component
+public class ContentionTracker {
+
+    private static final double ALPHA = 0.2;
+
+    private final Map<String, State> states = new ConcurrentHashMap<>();
+
+    @Value("${bank.ledger.adaptive.conflict-threshold:0.3}")
+    private double conflictThreshold;
+
+    @Value("${bank.ledger.adaptive.cooldown-ms:30000}")
+    private long cooldownMs;
+
+    @Value("${bank.ledger.adaptive.max-tracked:100000}")
+    private int maxTracked;
+
+    public boolean isHot(String accountNumber) {
+        State state = states.get(accountNumber);
+        return state != null && state.pessimisticUntil > System.currentTimeMillis();
+    }
+
+    /** Accounts currently pinned to pessimistic locking. */
+    public int hotCount() {
+        long now = System.currentTimeMillis();
+        int hot = 0;
+        for (State state : states.values()) {
+            if (state.pessimisticUntil > now) hot++;
+        }
+        return hot;
+    }
+
+    public void recordSuccess(String accountNumber) {
+        State state = states.get(accountNumber);
+        if (state != null) state.observe(0.0);
+    }
+
+    public void recordConflict(String accountNumber) {
+        if (states.size() >= maxTracked && !states.containsKey(accountNumber)) evictCold();
+        states.computeIfAbsent(accountNumber, k -> new State()).observe(1.0);
+    }
+
+    private void evictCold() {
+        long now = System.currentTimeMillis();
+        states.entrySet().removeIf(e -> e.getValue().pessimisticUntil <= now && e.getValue().rate < conflictThreshold / 4);
+    }
+
+    private final class State {
+        private double rate;
+        private long pessimisticUntil;
+
+        synchronized void observe(double sample) {
+            rate = rate * (1 - ALPHA) + sample * ALPHA;
+            if (rate >= conflictThreshold) {
+                pessimisticUntil = System.currentTimeMillis() + cooldownMs;
+                // Start the next optimistic probe from below the threshold so a single
+                // conflict after cool-down does not immediately re-pin the account.
+                rate = conflictThreshold / 2;
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.bank.ledger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Month-end interest accrual over every active account with a positive balance.
+ *
+ * <p>Accounts are walked in account_number order, {@code bank.interest.chunk-size} at a
+ * time. Each chunk is one transaction: the run's checkpoint row is locked, then a single
+ * statement credits {@code ROUND(balance * rate, 2)} (half-up for positive balances) to the
+ * chunk, writes a deposit row per credited account with its before/after balances, and
+ * advances the checkpoint. If the process dies, the next call with the same run id resumes
+ * after the last committed chunk; a second runner on the same run waits on the checkpoint
+ * lock and then continues where the first left off.
+ *
+ * <p>When the walk finishes, the run is reconciled against its ledger rows: every row must
+ * equal {@code ROUND(before * rate, 2)} recomputed one account at a time, and the row count
+ * and sum must match the checkpoint totals exactly.
+ */
+@Service
+public class InterestAccrualService {
+
+    private static final String START_SQL =
+            "INSERT INTO interest_accrual_runs (run_id, rate) VALUES (:run, :rate) ON CONFLICT (run_id) DO NOTHING";
+
+    private static final String RUN_SQL =
+            "SELECT run_id, rate, status, last_account, accounts_credited, interest_total, started_at, completed_at" +
+            " FROM interest_accrual_runs WHERE run_id = :run";
+
+    private static final String LOCK_SQL =
+            "SELECT status, last_account FROM interest_accrual_runs WHERE run_id = :run FOR UPDATE";
+
+    private static final String CHUNK_SQL =
+            "WITH chunk AS (" +
+            "  SELECT account_number, balance FROM accounts" +
+            "  WHERE account_number > :after AND status = 'Active' AND balance > 0" +
+            "  ORDER BY account_number LIMIT :limit" +
+            "  FOR UPDATE" +
+            "), credited AS (" +
+            "  UPDATE accounts a SET balance = a.balance + ROUND(c.balance * :rate, 2), version = a.version + 1" +
+            "  FROM chunk c" +
+            "  WHERE a.account_number = c.account_number AND ROUND(c.balance * :rate, 2) > 0" +
+            "  RETURNING a.account_number, c.balance AS balance_before, a.balance AS balance_after" +
+            "), tx AS (" +
+            "  INSERT INTO transactions (account_number, type, status, amount, fee, note, created_by, created_at, completed_at," +
+            "                            source_balance_before, source_balance_after)" +
+            "  SELECT account_number, 'deposit', 'Completed', balance_after - balance_before, 0, :note, account_number," +
+            "         now(), now(), balance_before, balance_after FROM credited" +
+            "  RETURNING amount" +
+            "), run AS (" +
+            "  UPDATE interest_accrual_runs SET" +
+            "    last_account = COALESCE((SELECT max(account_number) FROM chunk), last_account)," +
+            "    accounts_credited = accounts_credited + (SELECT count(*) FROM tx)," +
+            "    interest_total = interest_total + (SELECT COALESCE(sum(amount), 0) FROM tx)," +
+            "    updated_at = now()" +
+            "  WHERE run_id = :run" +
+            "  RETURNING run_id" +
+            ") SELECT (SELECT count(*) FROM chunk) AS scanned, (SELECT count(*) FROM tx) AS credited FROM run";
+
+    private static final String COMPLETE_SQL =
+            "UPDATE interest_accrual_runs SET status = 'Completed', completed_at = now(), updated_at = now()" +
+            " WHERE run_id = :run";
+
+    private static final String RECONCILE_SQL =
+            "SELECT count(*) AS row_count, COALESCE(sum(t.amount), 0) AS row_total," +
+            "       count(*) FILTER (WHERE t.amount <> ROUND(t.source_balance_before * r.rate, 2)" +
+            "                           OR t.source_balance_after <> t.source_balance_before + t.amount) AS mismatched" +
+            " FROM interest_accrual_runs r JOIN transactions t" +
+            "   ON t.note = :note AND t.type = 'deposit'" +
+            // A scalar bound rather than a join column, so partitions older than the run are pruned
+            "  AND t.created_at >= (SELECT started_at FROM interest_accrual_runs WHERE run_id = :run)" +
+            " WHERE r.run_id = :run";
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbc;
+
+    @Value("${bank.interest.chunk-size:5000}")
+    private int defaultChunkSize;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public InterestAccrualService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Runs (or resumes) accrual {@code runId} at {@code rate} and returns the run summary
+     * with this call's throughput and the reconciliation result. Throws
+     * {@link IllegalStateException} if the run id already exists with a different rate.
+     */
+    public Map<String, Object> accrue(String runId, BigDecimal rate, Integer chunkSize) {
+        int limit = chunkSize == null ? defaultChunkSize : chunkSize;
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("run", runId)
+                .addValue("rate", rate)
+                .addValue("note", note(runId))
+                .addValue("limit", limit);
+        jdbc.update(START_SQL, params);
+        Map<String, Object> existing = jdbc.queryForMap(RUN_SQL, params);
+        if (((BigDecimal) existing.get("rate")).compareTo(rate) != 0) {
+            throw new IllegalStateException("Run " + runId + " was started with rate " + existing.get("rate"));
+        }
+
+        long started = System.nanoTime();
+        long scanned = 0;
+        long credited = 0;
+        int chunks = 0;
+        while (true) {
+            long[] chunk = transactionTemplate.execute(status -> {
+                Map<String, Object> run = jdbc.queryForMap(LOCK_SQL, params);
+                if ("Completed".equals(run.get("status"))) return null;
+                params.addValue("after", run.get("last_account"));
+                List<long[]> rows = jdbc.query(CHUNK_SQL, params,
+                        (rs, i) -> new long[] {rs.getLong("scanned"), rs.getLong("credited")});
+                long[] counts = rows.get(0);
+                if (counts[0] == 0) jdbc.update(COMPLETE_SQL, params);
+                return counts;
+            });
+            if (chunk == null || chunk[0] == 0) break;
+            scanned += chunk[0];
+            credited += chunk[1];
+            chunks++;
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        Map<String, Object> out = summary(runId);
+        out.put("chunks", chunks);
+        out.put("accounts_scanned", scanned);
+        out.put("accounts_credited_this_call", credited);
+        out.put("elapsed_ms", Math.round(seconds * 1000));
+        out.put("accounts_per_second", seconds > 0 ? Math.round(scanned / seconds) : scanned);
+        return out;
+    }
+
+    /** The run's checkpoint row plus its reconciliation, or null if there is no such run. */
+    public Map<String, Object> summary(String runId) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("run", runId)
+                .addValue("note", note(runId));
+        List<Map<String, Object>> runs = jdbc.queryForList(RUN_SQL, params);
+        if (runs.isEmpty()) return null;
+        Map<String, Object> out = new HashMap<>(runs.get(0));
+
+        Map<String, Object> check = jdbc.queryForMap(RECONCILE_SQL, params);
+        long rowCount = ((Number) check.get("row_count")).longValue();
+        BigDecimal rowTotal = (BigDecimal) check.get("row_total");
+        long mismatched = ((Number) check.get("mismatched")).longValue();
+        boolean reconciled = mismatched == 0
+                && rowCount == ((Number) out.get("accounts_credited")).longValue()
+                && rowTotal.compareTo((BigDecimal) out.get("interest_total")) == 0;
+        out.put("ledger_rows", rowCount);
+        out.put("ledger_total", rowTotal);
+        out.put("mismatched_rows", mismatched);
+        out.put("reconciled", reconciled);
+        return out;
+    }
+
+    private static String note(String runId) {
+        return "Interest accrual " + runId;
+    }
+}
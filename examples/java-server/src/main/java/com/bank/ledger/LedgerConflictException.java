@@ -0,0 +1,10 @@
+package com.bank.ledger;
+
+/**
+ * Thrown when an optimistic mutation still conflicts after the configured number of attempts.
+ */
+public class LedgerConflictException extends RuntimeException {
+    public LedgerConflictException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,251 @@
+package com.bank.ledger;
+
+import com.bank.BankServerApplication;
+import com.bank.controller.TransactionController;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Posts concurrent transfers through {@code TransactionController}, once per
+ * {@link LedgerMode} and workload, and prints throughput, latency and, for OPTIMISTIC,
+ * how often attempts conflicted, gave up or fell back to locking. Every run starts from
+ * the same balances; afterwards the balances plus the fees taken must add up to the
+ * opening total, and every posted transfer must have its ledger row.
+ *
+ * <p>Workloads: {@code uniform} picks both accounts at random from all bench accounts;
+ * {@code skewed} keeps 90% of transfers between the first {@code hotAccounts} of them.
+ *
+ * <p>Bench accounts 9900000001.. are created with a large balance and deleted with their
+ * transactions and audit rows at the end. Velocity limits are switched off. The database comes from
+ * DATABASE_URL / DATABASE_USER / DATABASE_PASSWORD as for the server. Run from the packaged jar:
+ * <pre>
+ * java -cp target/bank-server-0.1.0.jar -Dloader.main=com.bank.ledger.LedgerContentionMain \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher \
+ *     [threads] [seconds] [accounts] [hotAccounts] [modes] [workloads] [--spring.property=value ...]
+ * </pre>
+ * Defaults: 16 threads, 20 seconds (after a 3 second warm-up), 256 accounts, 4 hot,
+ * LOCKING,OPTIMISTIC,ATOMIC and uniform,skewed. Trailing {@code --} arguments go to Spring,
+ * e.g. {@code --bank.ledger.adaptive.conflict-threshold=1.1} turns the adaptive fallback off.
+ */
+public final class LedgerContentionMain {
+
+    private static final String PREFIX = "99";
+    private static final String PIN = "1111";
+    private static final BigDecimal OPENING = new BigDecimal("1000000.00");
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+    private static final int WARMUP_SECONDS = 3;
+    private static final double HOT_SHARE = 0.9;
+
+    public static void main(String[] args) throws Exception {
+        List<String> positional = new ArrayList<>();
+        List<String> overrides = new ArrayList<>();
+        for (String arg : args) (arg.startsWith("--") ? overrides : positional).add(arg);
+        int threads = positional.size() > 0 ? Integer.parseInt(positional.get(0)) : 16;
+        int seconds = positional.size() > 1 ? Integer.parseInt(positional.get(1)) : 20;
+        int total = positional.size() > 2 ? Integer.parseInt(positional.get(2)) : 256;
+        int hot = positional.size() > 3 ? Integer.parseInt(positional.get(3)) : 4;
+        String[] modes = (positional.size() > 4 ? positional.get(4) : "LOCKING,OPTIMISTIC,ATOMIC").split(",");
+        String[] workloads = (positional.size() > 5 ? positional.get(5) : "uniform,skewed").split(",");
+        if (hot < 2 || total < hot) throw new IllegalArgumentException("need 2 <= hotAccounts <= accounts");
+
+        List<String> accounts = new ArrayList<>();
+        for (int i = 1; i <= total; i++) accounts.add(PREFIX + String.format("%08d", i));
+
+        System.out.printf("threads=%d seconds=%d accounts=%d hot=%d %s%n", threads, seconds, total, hot, overrides);
+        for (String mode : modes) {
+            for (String workload : workloads) {
+                boolean skewed = switch (workload.trim()) {
+                    case "uniform" -> false;
+                    case "skewed" -> true;
+                    default -> throw new IllegalArgumentException("Unknown workload: " + workload);
+                };
+                // A fresh context per run, so accounts pinned by one workload do not carry over
+                try (ConfigurableApplicationContext context = start(LedgerMode.valueOf(mode.trim()), overrides)) {
+                    JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+                    TransactionController controller = context.getBean(TransactionController.class);
+                    LedgerExecutor executor = context.getBean(LedgerExecutor.class);
+                    try {
+                        reset(jdbc, accounts);
+                        run(controller, accounts, hot, skewed, threads, WARMUP_SECONDS, null);
+                        reset(jdbc, accounts);
+                        Map<String, Long> before = executor.stats();
+                        Result result = new Result();
+                        run(controller, accounts, hot, skewed, threads, seconds, result);
+                        Map<String, Long> after = executor.stats();
+                        System.out.println(mode.trim() + " " + workload.trim() + " " + result.summary(seconds)
+                                + optimistic(before, after, result) + " " + check(jdbc, accounts, result));
+                    } finally {
+                        // Let the background audit writer flush before its rows are removed
+                        Thread.sleep(1_000);
+                        drop(jdbc, accounts);
+                    }
+                }
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext start(LedgerMode mode, List<String> overrides) {
+        List<String> args = new ArrayList<>(List.of(
+                "--bank.ledger.mode=" + mode,
+                "--spring.sql.init.mode=never",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN",
+                // Version conflicts are expected here and counted; Hibernate logs each as an error
+                "--logging.level.org.hibernate.orm.jdbc.batch=OFF",
+                "--bank.velocity.standard.hourly-amount=0",
+                "--bank.velocity.standard.hourly-count=0",
+                "--bank.velocity.standard.daily-amount=0",
+                "--bank.velocity.standard.daily-count=0"));
+        args.addAll(overrides);
+        // Passed as arguments so they override application.properties
+        return new SpringApplicationBuilder(BankServerApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(new String[0]));
+    }
+
+    /** Conflict and fallback counts for the measured run; empty outside OPTIMISTIC. */
+    private static String optimistic(Map<String, Long> before, Map<String, Long> after, Result result) {
+        long attempts = after.get("optimistic_attempts") - before.get("optimistic_attempts");
+        long fallbacks = after.get("hot_fallbacks") - before.get("hot_fallbacks");
+        if (attempts == 0 && fallbacks == 0) return "";
+        long conflicts = after.get("conflicts") - before.get("conflicts");
+        long exhausted = after.get("exhausted") - before.get("exhausted");
+        long mutations = result.posted.sum() + result.rejected.sum() + result.failed.sum();
+        long retries = attempts - (mutations - fallbacks);
+        return String.format(" attempts=%d conflicts=%d conflict-rate=%.3f retries/tx=%.3f gave-up=%d"
+                        + " locked-fallbacks=%d (%.1f%%) pinned=%d",
+                attempts, conflicts, attempts == 0 ? 0.0 : conflicts / (double) attempts,
+                mutations == 0 ? 0.0 : retries / (double) mutations, exhausted,
+                fallbacks, mutations == 0 ? 0.0 : 100.0 * fallbacks / mutations, after.get("hot_accounts"));
+    }
+
+    private static void run(TransactionController controller, List<String> accounts, int hot, boolean skewed,
+                            int threads, int seconds, Result result) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        long[] deadline = new long[1];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                long[] latencies = new long[1 << 16];
+                int n = 0;
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (System.nanoTime() < deadline[0]) {
+                    int range = skewed && rnd.nextDouble() < HOT_SHARE ? hot : accounts.size();
+                    int s = rnd.nextInt(range);
+                    int d = rnd.nextInt(range - 1);
+                    if (d >= s) d++;
+                    Map<String, Object> body = new HashMap<>();
+                    body.put("type", "transfer");
+                    body.put("source_account", accounts.get(s));
+                    body.put("target_account", accounts.get(d));
+                    body.put("amount", AMOUNT);
+                    body.put("pin", PIN);
+                    body.put("note", "contention bench");
+                    long began = System.nanoTime();
+                    ResponseEntity<?> response = controller.create(null, body);
+                    long took = System.nanoTime() - began;
+                    if (result == null) continue;
+                    if (n == latencies.length) latencies = Arrays.copyOf(latencies, n * 2);
+                    latencies[n++] = took;
+                    result.record(response);
+                }
+                if (result != null) result.addLatencies(latencies, n);
+            });
+            workers[t].start();
+        }
+        deadline[0] = System.nanoTime() + seconds * 1_000_000_000L;
+        start.countDown();
+        for (Thread worker : workers) worker.join();
+    }
+
+    private static void reset(JdbcTemplate jdbc, List<String> accounts) {
+        drop(jdbc, accounts);
+        for (String number : accounts) {
+            jdbc.update("INSERT INTO accounts (account_number, name, balance, pin, status) VALUES (?, ?, ?, ?, 'Active')",
+                    number, "Contention " + number, OPENING, PIN);
+        }
+    }
+
+    private static void drop(JdbcTemplate jdbc, List<String> accounts) {
+        String in = "('" + String.join("','", accounts) + "')";
+        jdbc.update("DELETE FROM transaction_audit WHERE performed_by IN " + in);
+        jdbc.update("DELETE FROM transactions WHERE account_number IN " + in + " OR target_account IN " + in);
+        jdbc.update("DELETE FROM accounts WHERE account_number IN " + in);
+    }
+
+    private static String check(JdbcTemplate jdbc, List<String> accounts, Result result) {
+        String in = "('" + String.join("','", accounts) + "')";
+        BigDecimal balances = jdbc.queryForObject("SELECT COALESCE(SUM(balance), 0) FROM accounts WHERE account_number IN " + in, BigDecimal.class);
+        Map<String, Object> ledger = jdbc.queryForMap(
+                "SELECT COUNT(*) AS n, COALESCE(SUM(fee), 0) AS fees FROM transactions WHERE account_number IN " + in);
+        BigDecimal opening = OPENING.multiply(BigDecimal.valueOf(accounts.size()));
+        BigDecimal fees = (BigDecimal) ledger.get("fees");
+        long rows = ((Number) ledger.get("n")).longValue();
+        boolean ok = balances.add(fees).compareTo(opening) == 0 && rows == result.posted.sum();
+        return (ok ? "conserved" : "MISMATCH") + " (rows=" + rows + " balances+fees=" + balances.add(fees) + ")";
+    }
+
+    private static final class Result {
+        final LongAdder posted = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        private final List<long[]> latencies = new ArrayList<>();
+        private int count;
+
+        private volatile String firstRejection;
+
+        void record(ResponseEntity<?> response) {
+            int status = response.getStatusCode().value();
+            if (status >= 200 && status < 300) {
+                posted.increment();
+                return;
+            }
+            if (status < 500) rejected.increment();
+            else failed.increment();
+            if (firstRejection == null) firstRejection = status + " " + response.getBody();
+        }
+
+        synchronized void addLatencies(long[] values, int n) {
+            latencies.add(Arrays.copyOf(values, n));
+            count += n;
+        }
+
+        String summary(int seconds) {
+            long[] all = new long[count];
+            int at = 0;
+            for (long[] values : latencies) {
+                System.arraycopy(values, 0, all, at, values.length);
+                at += values.length;
+            }
+            Arrays.sort(all);
+            return String.format("posted=%d rejected=%d failed=%d tx/s=%.0f p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms",
+                    posted.sum(), rejected.sum(), failed.sum(), posted.sum() / (double) seconds,
+                    percentile(all, 0.50), percentile(all, 0.95), percentile(all, 0.99), percentile(all, 1.0))
+                    + (firstRejection == null ? "" : " first-rejection=" + firstRejection);
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            if (sorted.length == 0) return 0;
+            int i = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+            return sorted[Math.max(0, i)] / 1e6;
+        }
+    }
+}
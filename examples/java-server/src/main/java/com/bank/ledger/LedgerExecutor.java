@@ -0,0 +1,106 @@
+package com.bank.ledger;
+
+import com.bank.repository.AccountRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Runs an account mutation in its own transaction using the configured {@link LedgerMode}.
+ *
+ * <p>LOCKING loads accounts with {@code findForUpdate}. OPTIMISTIC loads them with a plain
+ * read and relies on the {@code @Version} check at commit; a conflict rolls the attempt back
+ * and retries after a jittered exponential backoff, up to {@code max-attempts}. Accounts the
+ * {@link ContentionTracker} reports as hot are locked pessimistically instead.
+ *
+ * <p>{@link #stats()} counts optimistic attempts, version conflicts, mutations that gave up
+ * and mutations sent to the locking path because an account was hot.
+ */
+@Component
+public class LedgerExecutor {
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private ContentionTracker contentionTracker;
+
+    @Value("${bank.ledger.mode:LOCKING}")
+    private LedgerMode ledgerMode;
+
+    @Value("${bank.ledger.optimistic.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${bank.ledger.optimistic.base-backoff-ms:5}")
+    private long baseBackoffMs;
+
+    @Value("${bank.ledger.optimistic.max-backoff-ms:200}")
+    private long maxBackoffMs;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final LongAdder optimisticAttempts = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+    private final LongAdder hotFallbacks = new LongAdder();
+
+    public LedgerExecutor(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public <T> T execute(Collection<String> accountNumbers, Function<AccountLoader, T> work) {
+        if (ledgerMode != LedgerMode.OPTIMISTIC || accountNumbers.stream().anyMatch(contentionTracker::isHot)) {
+            if (ledgerMode == LedgerMode.OPTIMISTIC) hotFallbacks.increment();
+            return transactionTemplate.execute(status -> work.apply(accountRepository::findForUpdate));
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            optimisticAttempts.increment();
+            try {
+                T result = transactionTemplate.execute(status -> work.apply(accountRepository::findById));
+                accountNumbers.forEach(contentionTracker::recordSuccess);
+                return result;
+            } catch (OptimisticLockingFailureException e) {
+                conflicts.increment();
+                accountNumbers.forEach(contentionTracker::recordConflict);
+                if (attempt >= maxAttempts) {
+                    exhausted.increment();
+                    throw new LedgerConflictException("Gave up after " + attempt + " optimistic attempts", e);
+                }
+                backoff(attempt);
+            }
+        }
+    }
+
+    /** Counters since startup, plus the number of accounts currently pinned to locking. */
+    public Map<String, Long> stats() {
+        Map<String, Long> out = new LinkedHashMap<>();
+        out.put("optimistic_attempts", optimisticAttempts.sum());
+        out.put("conflicts", conflicts.sum());
+        out.put("exhausted", exhausted.sum());
+        out.put("hot_fallbacks", hotFallbacks.sum());
+        out.put("hot_accounts", (long) contentionTracker.hotCount());
+        return out;
+    }
+
+    private void backoff(int attempt) {
+        // Full jitter: uniform in [0, min(max, base * 2^attempt)).
+        long ceiling = Math.min(maxBackoffMs, baseBackoffMs << Math.min(attempt, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(Math.max(1, ceiling)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LedgerConflictException("Interrupted while backing off", null);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.bank.ledger;
+
+/**
+ * How balance mutations are written to the database.
+ * Selected per deployment via {@code bank.ledger.mode}.
+ */
+public enum LedgerMode {
+    /** SELECT ... FOR UPDATE, Java-side arithmetic, then save (one round-trip per step). */
+    LOCKING,
+    /**
+     * Plain reads with a {@code @Version} check on commit, retried with jittered backoff.
+     * Accounts whose conflict rate climbs fall back to LOCKING for a cool-down period.
+     */
+    OPTIMISTIC,
+    /** Single conditional UPDATE ... RETURNING statement, with the ledger insert in the same CTE. */
+    ATOMIC
+}
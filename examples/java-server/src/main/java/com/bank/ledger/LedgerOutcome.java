@@ -0,0 +1,13 @@
+package com.bank.ledger;
+
+public enum LedgerOutcome {
+    POSTED,
+    SOURCE_NOT_FOUND,
+    TARGET_NOT_FOUND,
+    SOURCE_UNAVAILABLE,
+    TARGET_UNAVAILABLE,
+    INVALID_PIN,
+    INSUFFICIENT_FUNDS,
+    /** The conditional statement matched nothing but the re-read found no reason; the caller may retry. */
+    CONFLICT
+}
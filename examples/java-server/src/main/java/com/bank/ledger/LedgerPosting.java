@@ -0,0 +1,20 @@
+package com.bank.ledger;
+
+import java.math.BigDecimal;
+
+public record LedgerPosting(
+        LedgerOutcome outcome,
+        Long transactionId,
+        BigDecimal sourceBalanceBefore,
+        BigDecimal sourceBalanceAfter,
+        BigDecimal targetBalanceBefore,
+        BigDecimal targetBalanceAfter
+) {
+    public static LedgerPosting rejected(LedgerOutcome outcome) {
+        return new LedgerPosting(outcome, null, null, null, null, null);
+    }
+
+    public boolean isPosted() {
+        return outcome == LedgerOutcome.POSTED;
+    }
+}
@@ -0,0 +1,186 @@
+package com.bank.ledger;
+
+import com.bank.BankServerApplication;
+import com.bank.controller.TransactionController;
+import com.bank.model.Transaction;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Imports a generated settlement file of pre-settled transfers and prints rows/s for each
+ * write path:
+ * <ul>
+ *   <li>{@code identity} - one {@code INSERT ... RETURNING id} per row on the column default,
+ *       the statements Hibernate issued while the id was an IDENTITY column</li>
+ *   <li>{@code batched} - {@link SettlementImportService}: pooled ids, JDBC batches of
+ *       {@code hibernate.jdbc.batch_size}, rewritten into multi-row INSERTs</li>
+ *   <li>{@code endpoint} - {@code POST /api/transactions/batch} called in-process:
+ *       validation, the batched write and the audit events</li>
+ * </ul>
+ * Every path starts from an empty ledger for the two bench accounts and must leave exactly
+ * {@code rows} rows behind. Parsing the file is not timed.
+ *
+ * <p>Bench accounts 9900000001 and 9900000002 are created and deleted with their
+ * transactions and audit rows at the end. The database comes from DATABASE_URL /
+ * DATABASE_USER / DATABASE_PASSWORD as for the server. Run from the packaged jar:
+ * <pre>
+ * java -cp target/bank-server-0.1.0.jar -Dloader.main=com.bank.ledger.SettlementImportMain \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher [rows] [paths]
+ * </pre>
+ * Defaults: 100000 rows, identity,batched,endpoint.
+ */
+public final class SettlementImportMain {
+
+    private static final String SOURCE = "9900000001";
+    private static final String TARGET = "9900000002";
+    private static final String IN = "('" + SOURCE + "','" + TARGET + "')";
+
+    private static final String IDENTITY_SQL =
+            "INSERT INTO transactions (account_number, target_account, type, status, amount, fee, note, created_by," +
+            " created_at, completed_at, source_balance_before, source_balance_after, target_balance_before," +
+            " target_balance_after) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) RETURNING id";
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        String[] paths = (args.length > 1 ? args[1] : "identity,batched,endpoint").split(",");
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(BankServerApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.sql.init.mode=never", "--spring.main.banner-mode=off", "--logging.level.root=WARN")) {
+            JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+            ObjectMapper mapper = context.getBean(ObjectMapper.class);
+            TransactionTemplate tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+            File file = File.createTempFile("settlement-", ".json");
+            file.deleteOnExit();
+            mapper.writeValue(file, generate(rows));
+            System.out.printf("rows=%d file=%s (%d KB) batch_size=%s%n", rows, file, file.length() / 1024,
+                    context.getEnvironment().getProperty("spring.jpa.properties.hibernate.jdbc.batch_size"));
+
+            try {
+                for (String path : paths) {
+                    reset(jdbc);
+                    List<Map<String, Object>> body = mapper.readValue(file, new TypeReference<>() {});
+                    long began = System.nanoTime();
+                    switch (path.trim()) {
+                        case "identity" -> tx.executeWithoutResult(status -> {
+                            for (Map<String, Object> row : body) insertIdentity(jdbc, toTransaction(row));
+                        });
+                        case "batched" -> {
+                            List<Transaction> parsed = new ArrayList<>(body.size());
+                            for (Map<String, Object> row : body) parsed.add(toTransaction(row));
+                            context.getBean(SettlementImportService.class).importTransactions(parsed);
+                        }
+                        case "endpoint" -> {
+                            ResponseEntity<?> response = context.getBean(TransactionController.class).importBatch(body);
+                            if (!response.getStatusCode().is2xxSuccessful()) {
+                                throw new IllegalStateException("import failed: " + response.getBody());
+                            }
+                        }
+                        default -> throw new IllegalArgumentException("Unknown path: " + path);
+                    }
+                    double seconds = (System.nanoTime() - began) / 1e9;
+                    Long written = jdbc.queryForObject("SELECT COUNT(*) FROM transactions WHERE account_number = ?",
+                            Long.class, SOURCE);
+                    System.out.printf("%-8s %.2fs rows/s=%.0f %s%n", path.trim(), seconds, rows / seconds,
+                            written != null && written == rows ? "ok" : "MISMATCH (" + written + " rows)");
+                }
+            } finally {
+                // Let the background audit writer flush before its rows are removed
+                Thread.sleep(2_000);
+                drop(jdbc);
+            }
+        }
+    }
+
+    /** Transfers from SOURCE to TARGET over the last 30 days, with running balances. */
+    private static List<Map<String, Object>> generate(int rows) {
+        Random rnd = new Random(42);
+        OffsetDateTime start = OffsetDateTime.now().minusDays(30);
+        BigDecimal source = new BigDecimal("100000000.00");
+        BigDecimal target = BigDecimal.ZERO;
+        List<Map<String, Object>> out = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            BigDecimal amount = BigDecimal.valueOf(100 + rnd.nextInt(100_000), 2);
+            Map<String, Object> row = new HashMap<>();
+            row.put("account_number", SOURCE);
+            row.put("target_account", TARGET);
+            row.put("type", "transfer");
+            row.put("status", "Completed");
+            row.put("amount", amount);
+            row.put("fee", BigDecimal.ZERO);
+            row.put("note", "settlement " + i);
+            row.put("created_at", start.plusSeconds(i * 25L).toString());
+            row.put("source_balance_before", source);
+            row.put("source_balance_after", source = source.subtract(amount));
+            row.put("target_balance_before", target);
+            row.put("target_balance_after", target = target.add(amount));
+            out.add(row);
+        }
+        return out;
+    }
+
+    /** The fields {@code importBatch} reads; the file is trusted here. */
+    private static Transaction toTransaction(Map<String, Object> row) {
+        Transaction t = new Transaction();
+        t.setAccountNumber((String) row.get("account_number"));
+        t.setTargetAccount((String) row.get("target_account"));
+        t.setType((String) row.get("type"));
+        t.setStatus((String) row.get("status"));
+        t.setAmount(decimal(row.get("amount")));
+        t.setFee(decimal(row.get("fee")));
+        t.setNote((String) row.get("note"));
+        t.setCreatedBy(t.getAccountNumber());
+        t.setCreatedAt(OffsetDateTime.parse((String) row.get("created_at")));
+        t.setCompletedAt(t.getCreatedAt());
+        t.setSourceBalanceBefore(decimal(row.get("source_balance_before")));
+        t.setSourceBalanceAfter(decimal(row.get("source_balance_after")));
+        t.setTargetBalanceBefore(decimal(row.get("target_balance_before")));
+        t.setTargetBalanceAfter(decimal(row.get("target_balance_after")));
+        return t;
+    }
+
+    private static BigDecimal decimal(Object value) {
+        return value instanceof BigDecimal d ? d : new BigDecimal(String.valueOf(value));
+    }
+
+    private static void insertIdentity(JdbcTemplate jdbc, Transaction t) {
+        Long id = jdbc.queryForObject(IDENTITY_SQL, Long.class,
+                t.getAccountNumber(), t.getTargetAccount(), t.getType(), t.getStatus(), t.getAmount(), t.getFee(),
+                t.getNote(), t.getCreatedBy(), Timestamp.from(t.getCreatedAt().toInstant()),
+                Timestamp.from(t.getCompletedAt().toInstant()), t.getSourceBalanceBefore(), t.getSourceBalanceAfter(),
+                t.getTargetBalanceBefore(), t.getTargetBalanceAfter());
+        t.setId(id);
+    }
+
+    private static void reset(JdbcTemplate jdbc) {
+        drop(jdbc);
+        for (String number : List.of(SOURCE, TARGET)) {
+            jdbc.update("INSERT INTO accounts (account_number, name, balance, pin, status) VALUES (?, ?, 0, '1111', 'Active')",
+                    number, "Settlement " + number);
+        }
+    }
+
+    private static void drop(JdbcTemplate jdbc) {
+        jdbc.update("DELETE FROM transaction_audit WHERE performed_by IN " + IN);
+        jdbc.update("DELETE FROM transactions WHERE account_number IN " + IN + " OR target_account IN " + IN);
+        jdbc.update("DELETE FROM accounts WHERE account_number IN " + IN);
+    }
+}
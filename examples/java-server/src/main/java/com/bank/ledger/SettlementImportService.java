@@ -0,0 +1,43 @@
+package com.bank.ledger;
+
+import com.bank.model.Transaction;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Bulk writer for pre-settled ledger rows (settlement runs, backfills).
+ *
+ * <p>Rows are persisted in JDBC batches: ids come from the pooled
+ * {@code transactions_id_seq} so Hibernate never needs a per-row round-trip, and the
+ * persistence context is flushed and cleared every batch to keep memory flat.
+ * Balances are not touched; rows are recorded as given.
+ */
+@Service
+public class SettlementImportService {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize;
+
+    @Transactional
+    public int importTransactions(List<Transaction> rows) {
+        int written = 0;
+        for (Transaction row : rows) {
+            entityManager.persist(row);
+            if (++written % batchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return written;
+    }
+}
@@ -0,0 +1,43 @@
+package com.bank.ledger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps monthly transactions partitions created ahead of the postings that need them.
+ *
+ * <p>Calls {@code ensure_transactions_partitions} (migrations/019_partition_transactions.sql)
+ * at startup and every {@code bank.partitions.check-interval-ms}. The function creates the
+ * current month and the next {@code bank.partitions.months-ahead} months, and moves any rows
+ * that landed in transactions_default into partitions of their own. It serializes on an
+ * advisory lock, so this can run next to the JDK server's PartitionManager. Archiving old
+ * months is left to that server.
+ */
+@Component
+public class TransactionPartitions {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionPartitions.class);
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Value("${bank.partitions.months-ahead:3}")
+    private int monthsAhead;
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${bank.partitions.check-interval-ms:21600000}")
+    public void ensurePartitions() {
+        try {
+            Integer created = jdbc.queryForObject("SELECT ensure_transactions_partitions(?)", Integer.class,
+                    Math.max(1, monthsAhead));
+            if (created != null && created > 0) log.info("Created {} transactions partitions", created);
+        } catch (DataAccessException e) {
+            log.warn("Partition maintenance failed, will retry: {}", e.getMessage());
+        }
+    }
+}
@@ -4,6 +4,7 @@ import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 
 import java.math.BigDecimal;
 
@@ -32,6 +33,10 @@ public class Account {
     @Column(name = "email")
     private String email;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     public String getAccountNumber() { return accountNumber; }
     public void setAccountNumber(String accountNumber) { this.accountNumber = accountNumber; }
     public String getName() { return name; }
@@ -46,4 +51,6 @@ public class Account {
     public void setFailedAttempts(Integer failedAttempts) { this.failedAttempts = failedAttempts; }
     public String getEmail() { return email; }
     public void setEmail(String email) { this.email = email; }
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
 }
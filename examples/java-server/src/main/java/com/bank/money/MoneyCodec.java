@@ -0,0 +1,183 @@
+package com.bank.money;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * Converts between decimal text and minor units (cents) without BigDecimal or double.
+ *
+ * <p>Accepted text is an optional '-', one or more digits and an optional '.' followed by one
+ * or more digits. Fraction digits past the second must be zeros, so "1.50" and "1.500" parse
+ * but "1.505" is rejected rather than rounded. Signs other than a leading '-', exponents,
+ * blanks and values beyond a long of cents throw {@link NumberFormatException}, the same
+ * exception {@code new BigDecimal(String)} throws, so existing handlers keep working.
+ *
+ * <p>The JDK server carries the same class as {@code modules.utils.MoneyCodec}, and
+ * {@code com.veemahpay.domain.MoneyCodec} in examples/java has the same parsing and
+ * formatting without the JSON helpers. Each build unit keeps its own copy; keep them in step.
+ */
+public final class MoneyCodec {
+    /** Longest formatted value: "-92233720368547758.08". */
+    public static final int MAX_LENGTH = 21;
+
+    /** Tens and ones digit of 0..99, for writing two digits per division. */
+    private static final char[] TENS = new char[100];
+    private static final char[] ONES = new char[100];
+    /** NEGATIVE_POWERS[i] is -10^i, for 0 <= i <= 18. */
+    private static final long[] NEGATIVE_POWERS = new long[19];
+
+    static {
+        for (int i = 0; i < 100; i++) {
+            TENS[i] = (char) ('0' + i / 10);
+            ONES[i] = (char) ('0' + i % 10);
+        }
+        long p = -1;
+        for (int i = 0; i < NEGATIVE_POWERS.length; i++, p *= 10) NEGATIVE_POWERS[i] = p;
+    }
+
+    private MoneyCodec() {}
+
+    public static long parseMinor(CharSequence text) {
+        return parseMinor(text, 0, text.length());
+    }
+
+    /** Minor units for {@code text[start, end)}. */
+    public static long parseMinor(CharSequence text, int start, int end) {
+        int i = start;
+        boolean negative = i < end && text.charAt(i) == '-';
+        if (negative) i++;
+        int integerStart = i;
+        long minor = 0;
+        for (; i < end; i++) {
+            int d = text.charAt(i) - '0';
+            if (d < 0 || d > 9) break;
+            if (minor > (Long.MAX_VALUE - d) / 10) throw invalid(text, start, end, "too large");
+            minor = minor * 10 + d;
+        }
+        if (i == integerStart) throw invalid(text, start, end, "no digits");
+        int fractionDigits = 0;
+        if (i < end && text.charAt(i) == '.') {
+            int fractionStart = ++i;
+            for (; i < end; i++) {
+                int d = text.charAt(i) - '0';
+                if (d < 0 || d > 9) break;
+                if (fractionDigits < 2) {
+                    if (minor > (Long.MAX_VALUE - d) / 10) throw invalid(text, start, end, "too large");
+                    minor = minor * 10 + d;
+                    fractionDigits++;
+                } else if (d != 0) {
+                    throw invalid(text, start, end, "more than 2 decimal places");
+                }
+            }
+            if (i == fractionStart) throw invalid(text, start, end, "no digits after '.'");
+        }
+        if (i != end) throw invalid(text, start, end, "unexpected character");
+        for (; fractionDigits < 2; fractionDigits++) {
+            if (minor > Long.MAX_VALUE / 10) throw invalid(text, start, end, "too large");
+            minor *= 10;
+        }
+        return negative ? -minor : minor;
+    }
+
+    /** Exact minor units of {@code amount}; rejects values with a nonzero third decimal. */
+    public static long toMinor(BigDecimal amount) {
+        try {
+            return amount.setScale(2, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("not a two-decimal amount: " + amount.toPlainString());
+        }
+    }
+
+    /**
+     * Minor units of a parsed JSON value: a decimal string, a BigDecimal or an integer.
+     * Doubles are refused, since by then the exact decimal is already lost.
+     */
+    public static long toMinor(Object value) {
+        if (value instanceof CharSequence) return parseMinor((CharSequence) value);
+        if (value instanceof BigDecimal) return toMinor((BigDecimal) value);
+        if (value instanceof BigInteger) return toMinor(new BigDecimal((BigInteger) value));
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            long units = ((Number) value).longValue();
+            if (units > Long.MAX_VALUE / 100 || units < -(Long.MAX_VALUE / 100)) {
+                throw new NumberFormatException("invalid amount " + units + ": too large");
+            }
+            return units * 100;
+        }
+        throw new NumberFormatException("amount must be a decimal string or number");
+    }
+
+    /**
+     * Writes {@code amount} as JSON number text: amounts with at most two decimals are
+     * printed with exactly two, anything else (rates, huge values) as
+     * {@link BigDecimal#toPlainString()}.
+     */
+    public static StringBuilder appendTo(StringBuilder out, BigDecimal amount) {
+        char[] buf = new char[MAX_LENGTH];
+        int end = format(amount, buf, 0);
+        return end < 0 ? out.append(amount.toPlainString()) : out.append(buf, 0, end);
+    }
+
+    /**
+     * Like {@link #format(long, char[], int)} for an amount with at most two decimals whose
+     * cents fit a long; returns -1 and writes nothing for any other amount.
+     */
+    public static int format(BigDecimal amount, char[] buf, int offset) {
+        int scale = amount.scale();
+        if (scale < 0 || scale > 2 || amount.precision() + 2 - scale > 18) return -1;
+        long minor = amount.unscaledValue().longValue();
+        return format(scale == 2 ? minor : scale == 1 ? minor * 10 : minor * 100, buf, offset);
+    }
+
+    public static BigDecimal toBigDecimal(long minor) {
+        return BigDecimal.valueOf(minor, 2);
+    }
+
+    public static String format(long minor) {
+        char[] buf = new char[MAX_LENGTH];
+        return new String(buf, 0, format(minor, buf, 0));
+    }
+
+    public static StringBuilder appendTo(StringBuilder out, long minor) {
+        char[] buf = new char[MAX_LENGTH];
+        return out.append(buf, 0, format(minor, buf, 0));
+    }
+
+    /**
+     * Writes {@code minor} as "[-]units.cc" at {@code buf[offset]}, which needs up to
+     * {@link #MAX_LENGTH} chars; returns the index after the last char written.
+     */
+    public static int format(long minor, char[] buf, int offset) {
+        // Work on the non-positive value so Long.MIN_VALUE needs no special case.
+        long v = minor < 0 ? minor : -minor;
+        int digits = Math.max(3, digitCount(v));
+        int end = offset + (minor < 0 ? 1 : 0) + digits + 1;
+        int pos = end;
+        int r = (int) -(v % 100);
+        v /= 100;
+        buf[--pos] = ONES[r];
+        buf[--pos] = TENS[r];
+        buf[--pos] = '.';
+        while (v <= -100) {
+            r = (int) -(v % 100);
+            v /= 100;
+            buf[--pos] = ONES[r];
+            buf[--pos] = TENS[r];
+        }
+        r = (int) -v;
+        buf[--pos] = ONES[r];
+        if (r >= 10) buf[--pos] = TENS[r];
+        if (minor < 0) buf[--pos] = '-';
+        return end;
+    }
+
+    private static int digitCount(long nonPositive) {
+        int count = 1;
+        while (count < NEGATIVE_POWERS.length && nonPositive <= NEGATIVE_POWERS[count]) count++;
+        return count;
+    }
+
+    private static NumberFormatException invalid(CharSequence text, int start, int end, String reason) {
+        return new NumberFormatException("invalid amount \"" + text.subSequence(start, end) + "\": " + reason);
+    }
+}
@@ -0,0 +1,31 @@
+package com.bank.money;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Writes BigDecimal amounts through {@link MoneyCodec}, so balances and amounts always carry
+ * two decimals ("12.50", never "12.5" or "1E+1"). Values with more decimals, such as
+ * interest rates, are written as plain decimals.
+ */
+public class MoneyJsonSerializer extends StdSerializer<BigDecimal> {
+
+    public MoneyJsonSerializer() {
+        super(BigDecimal.class);
+    }
+
+    @Override
+    public void serialize(BigDecimal value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        char[] buf = new char[MoneyCodec.MAX_LENGTH];
+        int end = MoneyCodec.format(value, buf, 0);
+        if (end < 0) {
+            gen.writeNumber(value.toPlainString());
+        } else {
+            gen.writeNumber(buf, 0, end);
+        }
+    }
+}
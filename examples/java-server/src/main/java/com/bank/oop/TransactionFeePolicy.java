@@ -1,23 +1,34 @@
 package com.bank.oop;
 
+import com.bank.fees.AccountClass;
+import com.bank.fees.FeeSchedule;
+import com.bank.fees.FeeType;
+
 import java.math.BigDecimal;
-import java.util.HashMap;
-import java.util.Map;
+import java.math.RoundingMode;
+import java.util.Locale;
 
+/**
+ * Standalone fee lookup over a compiled {@link FeeSchedule}; the running server
+ * prices postings through {@link com.bank.fees.FeeEngine} instead.
+ */
 public class TransactionFeePolicy {
-    private final Map<String, TransactionFeeStrategy> strategies = new HashMap<>();
+    private final FeeSchedule schedule;
 
     public TransactionFeePolicy() {
-        strategies.put("deposit", new ZeroFeeStrategy());
-        strategies.put("withdraw", new FixedFeeStrategy(new BigDecimal("2.00")));
-        strategies.put("transfer", new PercentageFeeStrategy(new BigDecimal("0.005")));
-        strategies.put("fee", new ZeroFeeStrategy());
+        this(FeeSchedule.defaults());
+    }
+
+    public TransactionFeePolicy(FeeSchedule schedule) {
+        this.schedule = schedule;
     }
 
     public BigDecimal computeFee(String type, BigDecimal amount) {
-        if (type == null) return BigDecimal.ZERO;
-        TransactionFeeStrategy strategy = strategies.get(type.toLowerCase());
-        if (strategy == null) strategy = new ZeroFeeStrategy();
-        return strategy.calculateFee(amount);
+        if (type == null || amount == null) return BigDecimal.ZERO;
+        // Callers may pass "Withdraw" or "TRANSFER"; the ledger codes are lower case
+        FeeType feeType = FeeType.fromCode(type.toLowerCase(Locale.ROOT));
+        if (feeType == null) return BigDecimal.ZERO;
+        long amountMinor = amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        return BigDecimal.valueOf(schedule.feeMinor(AccountClass.STANDARD, feeType, amountMinor), 2);
     }
-}
\ No newline at end of file
+}
@@ -1,7 +0,0 @@
-package com.bank.oop;
-
-import java.math.BigDecimal;
-
-public interface TransactionFeeStrategy {
-    BigDecimal calculateFee(BigDecimal amount);
-}
\ No newline at end of file
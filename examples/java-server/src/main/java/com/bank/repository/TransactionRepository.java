@@ -4,6 +4,7 @@ import com.bank.model.Transaction;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
-    long countByAccountNumber(String accountNumber);
-    long countByTargetAccount(String accountNumber);
+    // Existence checks stop at the first row instead of counting every partition
+    boolean existsByAccountNumber(String accountNumber);
+    boolean existsByTargetAccount(String accountNumber);
 }
\ No newline at end of file
@@ -0,0 +1,220 @@
+package com.bank.velocity;
+
+import com.bank.index.LongIndexMap;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free rolling-window velocity limits keyed by account.
+ *
+ * <p>Each account owns a ring of {@value #HOUR_BUCKETS} five-minute buckets (the hourly
+ * window) and {@value #DAY_BUCKETS} one-hour buckets (the daily window), 288 bytes in all.
+ * A bucket is one long, {@code epoch:20 | count:14 | amount:30}, updated by CAS: a writer
+ * that finds an older epoch starts the bucket over, and a reader skips buckets whose epoch
+ * has left the window, so nothing ever sweeps expired data. Rings live in fixed pages of a
+ * flat {@link AtomicLongArray}, located through a primitive {@link LongIndexMap}.
+ *
+ * <p>{@link #tryAcquire} reserves first (CAS-adds the debit into the current buckets),
+ * then sums the windows; if a limit is broken it takes the reservation back. Concurrent
+ * debits can therefore never jointly exceed a limit; under contention near a limit one may
+ * be refused that a serial order would have allowed. A debit that fails after acquiring
+ * (insufficient funds, a database error) gives its reservation back with {@link #release}.
+ * Windows slide in bucket steps: the hourly window covers the current five-minute bucket
+ * and the eleven before it.
+ *
+ * <p>A copy of {@code com.veemahpay.domain.velocity.VelocityLimiter} in examples/java, which
+ * this build does not depend on; keep the two in step.
+ */
+public final class VelocityLimiter {
+    public static final byte OK = 0;
+    public static final byte HOURLY_AMOUNT = 1;
+    public static final byte HOURLY_COUNT = 2;
+    public static final byte DAILY_AMOUNT = 3;
+    public static final byte DAILY_COUNT = 4;
+
+    private static final String[] NAMES = {"ok", "hourly_amount", "hourly_count", "daily_amount", "daily_count"};
+
+    static final int HOUR_BUCKETS = 12;
+    static final long HOUR_BUCKET_MILLIS = 5 * 60_000L;
+    static final int DAY_BUCKETS = 24;
+    static final long DAY_BUCKET_MILLIS = 60 * 60_000L;
+
+    static final int AMOUNT_BITS = 30;
+    static final int COUNT_BITS = 14;
+    private static final int EPOCH_SHIFT = AMOUNT_BITS + COUNT_BITS;
+    private static final long AMOUNT_MASK = (1L << AMOUNT_BITS) - 1;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final long EPOCH_MASK = (1L << (64 - EPOCH_SHIFT)) - 1;
+    /** Longs per account: one word per bucket of both rings. */
+    private static final int SLOT_LONGS = HOUR_BUCKETS + DAY_BUCKETS;
+    private static final int DAY_BASE = HOUR_BUCKETS;
+    private static final int PAGE_SHIFT = 10;
+    private static final int PAGE_SLOTS = 1 << PAGE_SHIFT;
+
+    private final LongSupplier clockMillis;
+    private final LongIndexMap index = new LongIndexMap(1024);
+    private volatile AtomicLongArray[] pages = new AtomicLongArray[0];
+
+    public VelocityLimiter() {
+        this(System::currentTimeMillis);
+    }
+
+    public VelocityLimiter(LongSupplier clockMillis) {
+        this.clockMillis = clockMillis;
+    }
+
+    public long now() { return clockMillis.getAsLong(); }
+
+    public static String name(byte code) {
+        return code >= 0 && code < NAMES.length ? NAMES[code] : "code_" + code;
+    }
+
+    /** {@link #tryAcquire(long, VelocityPolicy, long, long)} at the current time. */
+    public byte tryAcquire(long key, VelocityPolicy policy, long amountMinor) {
+        return tryAcquire(key, policy, amountMinor, now());
+    }
+
+    /**
+     * Records a debit of {@code amountMinor} at {@code nowMillis} if it keeps the account
+     * within {@code policy}; returns {@link #OK} or the code of the first limit it breaks.
+     */
+    public byte tryAcquire(long key, VelocityPolicy policy, long amountMinor, long nowMillis) {
+        if (policy.isUnlimited()) return OK;
+        if (amountMinor <= 0) throw new IllegalArgumentException("amount must be positive");
+        if (policy.hourlyAmountMinor > 0 && amountMinor > policy.hourlyAmountMinor) return HOURLY_AMOUNT;
+        if (policy.dailyAmountMinor > 0 && amountMinor > policy.dailyAmountMinor) return DAILY_AMOUNT;
+
+        int slot = slotFor(key);
+        AtomicLongArray page = pages[slot >>> PAGE_SHIFT];
+        int base = (slot & (PAGE_SLOTS - 1)) * SLOT_LONGS;
+        long hourEpoch = nowMillis / HOUR_BUCKET_MILLIS;
+        long dayEpoch = nowMillis / DAY_BUCKET_MILLIS;
+        int hourWord = base + (int) (hourEpoch % HOUR_BUCKETS);
+        int dayWord = base + DAY_BASE + (int) (dayEpoch % DAY_BUCKETS);
+
+        byte verdict = add(page, hourWord, hourEpoch, amountMinor, policy.hourlyAmountMinor, policy.hourlyCount,
+                HOURLY_AMOUNT, HOURLY_COUNT);
+        if (verdict != OK) return verdict;
+        verdict = add(page, dayWord, dayEpoch, amountMinor, policy.dailyAmountMinor, policy.dailyCount,
+                DAILY_AMOUNT, DAILY_COUNT);
+        if (verdict != OK) {
+            subtract(page, hourWord, hourEpoch, amountMinor);
+            return verdict;
+        }
+
+        verdict = evaluate(page, base, hourEpoch, dayEpoch, policy);
+        if (verdict != OK) {
+            subtract(page, hourWord, hourEpoch, amountMinor);
+            subtract(page, dayWord, dayEpoch, amountMinor);
+        }
+        return verdict;
+    }
+
+    /**
+     * Gives back a debit acquired at {@code acquiredAtMillis} that did not go through. Buckets
+     * that have since been reused for a later period are left alone.
+     */
+    public void release(long key, VelocityPolicy policy, long amountMinor, long acquiredAtMillis) {
+        if (policy.isUnlimited()) return;
+        int slot = index.get(key);
+        if (slot < 0) return;
+        AtomicLongArray page = pages[slot >>> PAGE_SHIFT];
+        int base = (slot & (PAGE_SLOTS - 1)) * SLOT_LONGS;
+        long hourEpoch = acquiredAtMillis / HOUR_BUCKET_MILLIS;
+        long dayEpoch = acquiredAtMillis / DAY_BUCKET_MILLIS;
+        subtract(page, base + (int) (hourEpoch % HOUR_BUCKETS), hourEpoch, amountMinor);
+        subtract(page, base + DAY_BASE + (int) (dayEpoch % DAY_BUCKETS), dayEpoch, amountMinor);
+    }
+
+    /** Accounts that have been tracked so far. */
+    public int trackedAccounts() { return index.size(); }
+
+    private static byte evaluate(AtomicLongArray page, int base, long hourEpoch, long dayEpoch, VelocityPolicy policy) {
+        byte verdict = OK;
+        if (policy.hourlyAmountMinor > 0 || policy.hourlyCount > 0) {
+            verdict = check(page, base, HOUR_BUCKETS, hourEpoch, policy.hourlyAmountMinor, policy.hourlyCount,
+                HOURLY_AMOUNT, HOURLY_COUNT);
+        }
+        if (verdict == OK && (policy.dailyAmountMinor > 0 || policy.dailyCount > 0)) {
+            verdict = check(page, base + DAY_BASE, DAY_BUCKETS, dayEpoch, policy.dailyAmountMinor, policy.dailyCount,
+                DAILY_AMOUNT, DAILY_COUNT);
+        }
+        return verdict;
+    }
+
+    private static byte check(AtomicLongArray page, int first, int buckets, long epoch, long amountLimit,
+                              long countLimit, byte amountCode, byte countCode) {
+        long current = epoch & EPOCH_MASK;
+        long amount = 0;
+        long count = 0;
+        for (int word = first, end = first + buckets; word < end; word++) {
+            long w = page.get(word);
+            if (((current - (w >>> EPOCH_SHIFT)) & EPOCH_MASK) < buckets) {
+                amount += w & AMOUNT_MASK;
+                count += (w >>> AMOUNT_BITS) & COUNT_MASK;
+            }
+        }
+        if (amountLimit > 0 && amount > amountLimit) return amountCode;
+        if (countLimit > 0 && count > countLimit) return countCode;
+        return OK;
+    }
+
+    /**
+     * Adds one debit to a bucket; returns {@link #OK}, or the code of a field that would
+     * overflow while its window has a limit on it, which only a burst of thousands of
+     * simultaneous reservations on one account can cause, since limits leave headroom and a
+     * debit larger than its limit is refused before reserving. A field whose limit is 0 is
+     * never compared, so it saturates at its maximum instead of refusing the debit.
+     */
+    private static byte add(AtomicLongArray page, int word, long epoch, long amountMinor, long amountLimit,
+                            long countLimit, byte amountCode, byte countCode) {
+        long tag = (epoch & EPOCH_MASK) << EPOCH_SHIFT;
+        while (true) {
+            long w = page.get(word);
+            long fields = (w >>> EPOCH_SHIFT) == (epoch & EPOCH_MASK) ? w & ~(EPOCH_MASK << EPOCH_SHIFT) : 0L;
+            long amount = (fields & AMOUNT_MASK) + amountMinor;
+            long count = (fields >>> AMOUNT_BITS) + 1;
+            if (amount > AMOUNT_MASK) {
+                if (amountLimit > 0) return amountCode;
+                amount = AMOUNT_MASK;
+            }
+            if (count > COUNT_MASK) {
+                if (countLimit > 0) return countCode;
+                count = COUNT_MASK;
+            }
+            if (page.compareAndSet(word, w, tag | count << AMOUNT_BITS | amount)) return OK;
+        }
+    }
+
+    private static void subtract(AtomicLongArray page, int word, long epoch, long amountMinor) {
+        long tag = (epoch & EPOCH_MASK) << EPOCH_SHIFT;
+        while (true) {
+            long w = page.get(word);
+            if ((w >>> EPOCH_SHIFT) != (epoch & EPOCH_MASK)) return;
+            long amount = Math.max((w & AMOUNT_MASK) - amountMinor, 0L);
+            long count = Math.max(((w >>> AMOUNT_BITS) & COUNT_MASK) - 1, 0L);
+            if (page.compareAndSet(word, w, tag | count << AMOUNT_BITS | amount)) return;
+        }
+    }
+
+    private int slotFor(long key) {
+        int slot = index.get(key);
+        if (slot >= 0) return slot;
+        synchronized (this) {
+            slot = index.get(key);
+            if (slot >= 0) return slot;
+            int next = index.size();
+            AtomicLongArray[] current = pages;
+            if ((next >>> PAGE_SHIFT) >= current.length) {
+                AtomicLongArray[] grown = Arrays.copyOf(current, current.length + 1);
+                grown[current.length] = new AtomicLongArray(PAGE_SLOTS * SLOT_LONGS);
+                pages = grown;
+            }
+            // The page is published before the key, so any reader that finds the slot finds its page.
+            index.put(key, next);
+            return next;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.bank.velocity;
+
+import com.bank.fees.AccountClass;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Velocity policies per {@link AccountClass} and the limiter that enforces them.
+ *
+ * <p>Limits come from {@code bank.velocity.<class>.hourly-amount}, {@code hourly-count},
+ * {@code daily-amount} and {@code daily-count}; amounts are decimal, 0 disables a check,
+ * and a class without its own setting uses the STANDARD one. Counters are kept in memory,
+ * so each server instance enforces the limits on the debits it handles.
+ */
+@Component
+public class VelocityLimits {
+
+    private static final String[] KEYS = {"hourly-amount", "hourly-count", "daily-amount", "daily-count"};
+
+    private final VelocityLimiter limiter = new VelocityLimiter();
+    private final Map<AccountClass, VelocityPolicy> policies = new EnumMap<>(AccountClass.class);
+
+    @Autowired
+    private Environment environment;
+
+    @PostConstruct
+    void init() {
+        for (AccountClass accountClass : AccountClass.values()) {
+            long[] limits = new long[KEYS.length];
+            for (int i = 0; i < KEYS.length; i++) {
+                String value = setting(accountClass, KEYS[i]);
+                if (value == null && accountClass != AccountClass.STANDARD) value = setting(AccountClass.STANDARD, KEYS[i]);
+                if (value == null || value.isBlank()) continue;
+                limits[i] = KEYS[i].endsWith("amount")
+                        ? new BigDecimal(value.trim()).movePointRight(2).longValueExact()
+                        : Long.parseLong(value.trim());
+            }
+            policies.put(accountClass, VelocityPolicy.of(limits[0], limits[1], limits[2], limits[3]));
+        }
+    }
+
+    public VelocityLimiter limiter() {
+        return limiter;
+    }
+
+    public VelocityPolicy policy(AccountClass accountClass) {
+        return policies.get(accountClass);
+    }
+
+    /** Minor units of a ledger amount; amounts beyond any limit saturate. */
+    public static long minor(BigDecimal amount) {
+        BigDecimal cents = amount.movePointRight(2);
+        if (cents.compareTo(BigDecimal.valueOf(Long.MAX_VALUE)) > 0) return Long.MAX_VALUE;
+        return cents.setScale(0, RoundingMode.HALF_UP).longValue();
+    }
+
+    private String setting(AccountClass accountClass, String key) {
+        return environment.getProperty("bank.velocity." + accountClass.name().toLowerCase(Locale.ROOT) + "." + key);
+    }
+}
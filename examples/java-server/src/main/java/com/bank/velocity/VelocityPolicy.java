@@ -0,0 +1,51 @@
+package com.bank.velocity;
+
+/**
+ * Rolling-window spend and count limits for one class of account. A limit of zero
+ * disables that check. Amounts are minor units.
+ *
+ * <p>Copied from {@code com.veemahpay.domain.velocity.VelocityPolicy}; keep the two in step.
+ */
+public final class VelocityPolicy {
+    /** Largest amount limit (minor units) a bucket can carry with headroom for in-flight reservations. */
+    public static final long MAX_AMOUNT_LIMIT = 1L << (VelocityLimiter.AMOUNT_BITS - 2);
+    /** Largest count limit, with the same headroom. */
+    public static final long MAX_COUNT_LIMIT = 1L << (VelocityLimiter.COUNT_BITS - 2);
+
+    private static final VelocityPolicy UNLIMITED = new VelocityPolicy(0, 0, 0, 0);
+
+    final long hourlyAmountMinor;
+    final long hourlyCount;
+    final long dailyAmountMinor;
+    final long dailyCount;
+
+    private VelocityPolicy(long hourlyAmountMinor, long hourlyCount, long dailyAmountMinor, long dailyCount) {
+        this.hourlyAmountMinor = hourlyAmountMinor;
+        this.hourlyCount = hourlyCount;
+        this.dailyAmountMinor = dailyAmountMinor;
+        this.dailyCount = dailyCount;
+    }
+
+    public static VelocityPolicy of(long hourlyAmountMinor, long hourlyCount, long dailyAmountMinor, long dailyCount) {
+        requireLimit(hourlyAmountMinor, MAX_AMOUNT_LIMIT);
+        requireLimit(dailyAmountMinor, MAX_AMOUNT_LIMIT);
+        requireLimit(hourlyCount, MAX_COUNT_LIMIT);
+        requireLimit(dailyCount, MAX_COUNT_LIMIT);
+        return new VelocityPolicy(hourlyAmountMinor, hourlyCount, dailyAmountMinor, dailyCount);
+    }
+
+    public static VelocityPolicy unlimited() { return UNLIMITED; }
+
+    public boolean isUnlimited() {
+        return hourlyAmountMinor == 0 && hourlyCount == 0 && dailyAmountMinor == 0 && dailyCount == 0;
+    }
+
+    public long hourlyAmountMinor() { return hourlyAmountMinor; }
+    public long hourlyCount() { return hourlyCount; }
+    public long dailyAmountMinor() { return dailyAmountMinor; }
+    public long dailyCount() { return dailyCount; }
+
+    private static void requireLimit(long limit, long max) {
+        if (limit < 0 || limit > max) throw new IllegalArgumentException("limit must be between 0 and " + max);
+    }
+}
@@ -1,5 +1,9 @@
 package com.veemahpay.domain;
 
+import com.veemahpay.domain.index.AccountNumberCodec;
+import com.veemahpay.domain.velocity.VelocityLimiter;
+import com.veemahpay.domain.velocity.VelocityPolicy;
+
 import java.util.Objects;
 
 public abstract class Account {
@@ -7,36 +11,47 @@ public abstract class Account {
 
   private final String number;
   private String name;
-  private Money balance;
+  private long balanceMinor;
   private Status status;
+  private VelocityLimiter velocityLimiter;
+  private VelocityPolicy velocityPolicy = VelocityPolicy.unlimited();
+  private long velocityKey;
 
   public Account(String number, String name, Money balance, Status status) {
     this.number = Objects.requireNonNull(number);
     this.name = Objects.requireNonNull(name);
-    this.balance = Objects.requireNonNull(balance);
+    this.balanceMinor = Objects.requireNonNull(balance).minorUnits();
     this.status = Objects.requireNonNull(status);
-    if (this.balance.isNegative()) throw new IllegalArgumentException("negative balance");
+    if (balance.isNegative()) throw new IllegalArgumentException("negative balance");
   }
 
   public String getNumber() { return number; }
   public String getName() { return name; }
-  public Money getBalance() { return balance; }
+  public Money getBalance() { return Money.ofMinor(balanceMinor); }
   public Status getStatus() { return status; }
 
   public void setName(String name) { this.name = Objects.requireNonNull(name); }
   public void setStatus(Status status) { this.status = Objects.requireNonNull(status); }
 
+  /** Subjects withdrawals and outgoing transfers to rolling-window limits. */
+  public void setVelocityLimits(VelocityLimiter limiter, VelocityPolicy policy) {
+    this.velocityLimiter = Objects.requireNonNull(limiter);
+    this.velocityPolicy = Objects.requireNonNull(policy);
+    this.velocityKey = AccountNumberCodec.key(number);
+  }
+
   public void deposit(Money amount) {
     requireActive();
     requirePositive(amount);
-    balance = balance.add(amount);
+    balanceMinor = Math.addExact(balanceMinor, amount.minorUnits());
   }
 
   public void withdraw(Money amount) {
     requireActive();
     requirePositive(amount);
-    if (balance.compareTo(amount) < 0) throw new IllegalStateException("insufficient funds");
-    balance = balance.subtract(amount);
+    if (balanceMinor < amount.minorUnits()) throw new IllegalStateException("insufficient funds");
+    acquireVelocity(amount.minorUnits());
+    balanceMinor -= amount.minorUnits();
   }
 
   public void transfer(Account target, Money amount) {
@@ -44,18 +59,39 @@ public abstract class Account {
     Objects.requireNonNull(target);
     if (target.status != Status.Active) throw new IllegalStateException("target unavailable");
     requirePositive(amount);
-    if (balance.compareTo(amount) < 0) throw new IllegalStateException("insufficient funds");
-    balance = balance.subtract(amount);
-    target.balance = target.balance.add(amount);
+    long amountMinor = amount.minorUnits();
+    if (balanceMinor < amountMinor) throw new IllegalStateException("insufficient funds");
+    // Check overflow before touching either side; target may be this account.
+    if (target != this && target.balanceMinor > Long.MAX_VALUE - amountMinor) throw new ArithmeticException("long overflow");
+    acquireVelocity(amountMinor);
+    balanceMinor -= amountMinor;
+    target.balanceMinor += amountMinor;
   }
 
   protected void requireActive() {
     if (status != Status.Active) throw new IllegalStateException("account unavailable");
   }
 
+  /**
+   * Records a debit against the velocity limits, if any; call once every other check has
+   * passed, right before the balance changes.
+   */
+  protected void acquireVelocity(long amountMinor) {
+    if (velocityLimiter == null) return;
+    byte verdict = velocityLimiter.tryAcquire(velocityKey, velocityPolicy, amountMinor);
+    if (verdict != VelocityLimiter.OK) {
+      throw new IllegalStateException("velocity limit exceeded: " + VelocityLimiter.name(verdict));
+    }
+  }
+
   protected void requirePositive(Money amount) {
-    if (amount == null || amount.isNegative() || amount.compareTo(Money.zero()) == 0) throw new IllegalArgumentException("amount must be positive");
+    if (amount == null || amount.minorUnits() <= 0L) throw new IllegalArgumentException("amount must be positive");
   }
 
-  protected void setBalance(Money newBalance) { this.balance = Objects.requireNonNull(newBalance); }
+  protected void setBalance(Money newBalance) { this.balanceMinor = Objects.requireNonNull(newBalance).minorUnits(); }
+
+  /** Balance in minor units, for subclasses that check limits without allocating. */
+  protected long balanceMinor() { return balanceMinor; }
+
+  protected void setBalanceMinor(long newBalanceMinor) { this.balanceMinor = newBalanceMinor; }
 }
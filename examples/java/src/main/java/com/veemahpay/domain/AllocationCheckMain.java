@@ -0,0 +1,42 @@
+package com.veemahpay.domain;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+
+/**
+ * Measures bytes allocated by the deposit/withdraw/transfer hot paths using the
+ * HotSpot per-thread allocation counter. Run after warm-up so the JIT has inlined
+ * the paths; expect 0 bytes per operation.
+ */
+public final class AllocationCheckMain {
+  private static final int WARMUP = 200_000;
+  private static final int MEASURED = 1_000_000;
+
+  public static void main(String[] args) {
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+
+    Account a = new SavingsAccount("1001", "Alice", Money.of(new BigDecimal("1000000.00")), Account.Status.Active);
+    Account b = new CheckingAccount("2002", "Bob", Money.of(new BigDecimal("1000000.00")), Account.Status.Active,
+      Money.of(new BigDecimal("500.00")));
+    Money amount = Money.of(new BigDecimal("1.25"));
+
+    run(a, b, amount, WARMUP);
+    long before = threads.getThreadAllocatedBytes(thread);
+    run(a, b, amount, MEASURED);
+    long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+    System.out.println("operations=" + (MEASURED * 4L) + " allocated=" + allocated + "B"
+      + " perOp=" + (allocated / (MEASURED * 4.0)) + "B");
+    System.out.println("balances " + a.getBalance() + " / " + b.getBalance());
+  }
+
+  private static void run(Account a, Account b, Money amount, int iterations) {
+    for (int i = 0; i < iterations; i++) {
+      a.deposit(amount);
+      a.withdraw(amount);
+      a.transfer(b, amount);
+      b.transfer(a, amount);
+    }
+  }
+}
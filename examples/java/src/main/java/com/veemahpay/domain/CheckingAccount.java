@@ -14,10 +14,10 @@ public final class CheckingAccount extends Account {
   public void withdraw(Money amount) {
     requireActive();
     requirePositive(amount);
-    Money newBalance = getBalance().subtract(amount);
-    Money lowerBound = overdraftLimit.negate();
-    if (newBalance.compareTo(lowerBound) < 0) throw new IllegalStateException("insufficient funds");
-    setBalance(newBalance);
+    long newBalance = Math.subtractExact(balanceMinor(), amount.minorUnits());
+    if (newBalance < -overdraftLimit.minorUnits()) throw new IllegalStateException("insufficient funds");
+    acquireVelocity(amount.minorUnits());
+    setBalanceMinor(newBalance);
   }
 
   @Override
@@ -26,10 +26,10 @@ public final class CheckingAccount extends Account {
     Objects.requireNonNull(target);
     if (target.getStatus() != Status.Active) throw new IllegalStateException("target unavailable");
     requirePositive(amount);
-    Money newBalance = getBalance().subtract(amount);
-    Money lowerBound = overdraftLimit.negate();
-    if (newBalance.compareTo(lowerBound) < 0) throw new IllegalStateException("insufficient funds");
-    setBalance(newBalance);
+    long newBalance = Math.subtractExact(balanceMinor(), amount.minorUnits());
+    if (newBalance < -overdraftLimit.minorUnits()) throw new IllegalStateException("insufficient funds");
+    acquireVelocity(amount.minorUnits());
+    setBalanceMinor(newBalance);
     target.deposit(amount);
   }
 }
@@ -1,9 +1,242 @@
 package com.veemahpay.domain;
 
+import com.veemahpay.domain.concurrent.ConcurrentAccount;
+import com.veemahpay.domain.concurrent.ConcurrentCheckingAccount;
+import com.veemahpay.domain.concurrent.ConcurrentSavingsAccount;
+import com.veemahpay.domain.concurrent.ConcurrentStudentAccount;
+
+import java.lang.management.ManagementFactory;
 import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
 
+/**
+ * Domain simulation and regression gate.
+ *
+ * <p>Opens N accounts split evenly across savings, checking and student, then runs a seeded
+ * random stream of deposits, withdrawals, transfers, interest accruals and lock/unlock
+ * events from several threads against the thread-safe account classes. Afterwards it
+ * checks that money is conserved (final total == opening total + deposits - withdrawals
+ * + interest), that no savings or student balance is negative and that no checking account
+ * is past its overdraft limit. It reports operations per second and bytes allocated per
+ * operation, and exits with status 1 on any violation.
+ *
+ * <p>Each thread draws from its own generator split off the seed, so the operation stream
+ * is reproducible; the interleaving between threads is not.
+ *
+ * <p>Usage: DemoMain [accounts] [threads] [opsPerThread] [seed], or DemoMain --scenario
+ * for the original two-account walkthrough.
+ */
 public final class DemoMain {
-  public static void main(String[] args) {
+  private static final long OVERDRAFT_MINOR = 500_00;
+  private static final long STUDENT_LIMIT_MINOR = 200_00;
+  private static final long MAX_OPENING_MINOR = 10_000_00;
+  private static final BigDecimal INTEREST_RATE = new BigDecimal("0.0001");
+
+  /**
+   * Cumulative weights out of 1000: deposit, withdraw, transfer, interest, then lock/unlock.
+   * One status change in ten locks and the rest unlock, so about a tenth of accounts are
+   * locked at any time.
+   */
+  private static final int DEPOSIT = 300;
+  private static final int WITHDRAW = 600;
+  private static final int TRANSFER = 960;
+  private static final int INTEREST = 990;
+
+  private static final String[] OPS = {"deposit", "withdraw", "transfer", "interest", "status"};
+
+  public static void main(String[] args) throws InterruptedException {
+    if (args.length > 0 && args[0].equals("--scenario")) {
+      scenario();
+      return;
+    }
+    int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+    int threads = args.length > 1 ? Integer.parseInt(args[1]) : Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    int opsPerThread = args.length > 2 ? Integer.parseInt(args[2]) : 500_000;
+    long seed = args.length > 3 ? Long.parseLong(args[3]) : 42L;
+    if (!simulate(accounts, threads, opsPerThread, seed)) System.exit(1);
+  }
+
+  private static boolean simulate(int accountCount, int threads, int opsPerThread, long seed) throws InterruptedException {
+    SplittableRandom master = new SplittableRandom(seed);
+    ConcurrentAccount[] accounts = new ConcurrentAccount[accountCount];
+    int[] savings = new int[(accountCount + 2) / 3];
+    Money overdraft = Money.ofMinor(OVERDRAFT_MINOR);
+    Money studentLimit = Money.ofMinor(STUDENT_LIMIT_MINOR);
+    for (int i = 0; i < accountCount; i++) {
+      String number = String.format("%08d", i);
+      Money opening = Money.ofMinor(master.nextLong(MAX_OPENING_MINOR));
+      switch (i % 3) {
+        case 0:
+          accounts[i] = new ConcurrentSavingsAccount(number, "Savings " + i, opening, Account.Status.Active);
+          savings[i / 3] = i;
+          break;
+        case 1:
+          accounts[i] = new ConcurrentCheckingAccount(number, "Checking " + i, opening, Account.Status.Active, overdraft);
+          break;
+        default:
+          accounts[i] = new ConcurrentStudentAccount(number, "Student " + i, opening, Account.Status.Active, studentLimit);
+      }
+    }
+    long openingTotal = total(accounts);
+    // Amounts up to 500.00, allocated once so the workers only allocate inside the domain.
+    Money[] amounts = new Money[50_000];
+    for (int i = 0; i < amounts.length; i++) amounts[i] = Money.ofMinor(i + 1);
+
+    Worker[] workers = new Worker[threads];
+    for (int t = 0; t < threads; t++) workers[t] = new Worker(master.split(), accounts, savings, amounts);
+    // A short unmeasured pass lets the JIT compile the paths before the timed run.
+    run(workers, Math.max(1, opsPerThread / 10));
+    Stats warmup = Stats.sum(workers);
+    long began = System.nanoTime();
+    run(workers, opsPerThread);
+    double seconds = (System.nanoTime() - began) / 1e9;
+    Stats all = Stats.sum(workers);
+    Stats measured = all.minus(warmup);
+
+    long expected = openingTotal + all.deposited - all.withdrawn + all.interest;
+    long actual = total(accounts);
+    int floorViolations = 0;
+    for (ConcurrentAccount a : accounts) {
+      long floor = a instanceof ConcurrentCheckingAccount ? -OVERDRAFT_MINOR : 0L;
+      if (a.getBalanceMinor() < floor) floorViolations++;
+    }
+
+    long ops = (long) threads * opsPerThread;
+    System.out.printf("accounts=%d threads=%d ops=%d seed=%d%n", accountCount, threads, ops, seed);
+    for (int op = 0; op < OPS.length; op++) {
+      System.out.printf("  %-8s completed=%d rejected=%d%n", OPS[op], measured.completed[op], measured.rejected[op]);
+    }
+    System.out.printf("throughput=%.0f ops/s%n", ops / seconds);
+    System.out.printf("allocation=%.1f B/op (%.0f MB/s)%n",
+      measured.allocatedBytes / (double) ops, measured.allocatedBytes / seconds / (1 << 20));
+    System.out.println("expected total=" + Money.ofMinor(expected) + " actual total=" + Money.ofMinor(actual)
+      + " floor violations=" + floorViolations);
+    boolean ok = expected == actual && floorViolations == 0;
+    System.out.println(ok ? "CONSERVED" : "VIOLATION");
+    return ok;
+  }
+
+  private static void run(Worker[] workers, int opsPerThread) throws InterruptedException {
+    CountDownLatch start = new CountDownLatch(1);
+    Thread[] threads = new Thread[workers.length];
+    for (int t = 0; t < workers.length; t++) {
+      Worker w = workers[t];
+      threads[t] = new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        w.run(opsPerThread);
+      }, "sim-" + t);
+      threads[t].start();
+    }
+    start.countDown();
+    for (Thread t : threads) t.join();
+  }
+
+  private static long total(ConcurrentAccount[] accounts) {
+    long sum = 0;
+    for (ConcurrentAccount a : accounts) sum += a.getBalanceMinor();
+    return sum;
+  }
+
+  /** Per-thread operation stream and counters; counters are only read after the thread joins. */
+  private static final class Worker {
+    private final SplittableRandom rnd;
+    private final ConcurrentAccount[] accounts;
+    private final int[] savings;
+    private final Money[] amounts;
+    private final Stats stats = new Stats();
+
+    Worker(SplittableRandom rnd, ConcurrentAccount[] accounts, int[] savings, Money[] amounts) {
+      this.rnd = rnd;
+      this.accounts = accounts;
+      this.savings = savings;
+      this.amounts = amounts;
+    }
+
+    void run(int ops) {
+      com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+      long thread = Thread.currentThread().getId();
+      long allocatedBefore = mx.getThreadAllocatedBytes(thread);
+      for (int i = 0; i < ops; i++) step();
+      stats.allocatedBytes += mx.getThreadAllocatedBytes(thread) - allocatedBefore;
+    }
+
+    private void step() {
+      int roll = rnd.nextInt(1000);
+      int op = roll < DEPOSIT ? 0 : roll < WITHDRAW ? 1 : roll < TRANSFER ? 2 : roll < INTEREST ? 3 : 4;
+      ConcurrentAccount a = accounts[rnd.nextInt(accounts.length)];
+      Money amount = amounts[rnd.nextInt(amounts.length)];
+      try {
+        switch (op) {
+          case 0:
+            a.deposit(amount);
+            stats.deposited += amount.minorUnits();
+            break;
+          case 1:
+            a.withdraw(amount);
+            stats.withdrawn += amount.minorUnits();
+            break;
+          case 2:
+            ConcurrentAccount b = accounts[rnd.nextInt(accounts.length)];
+            if (b == a) {
+              stats.rejected[op]++;
+              return;
+            }
+            a.transfer(b, amount);
+            break;
+          case 3:
+            ConcurrentSavingsAccount s = (ConcurrentSavingsAccount) accounts[savings[rnd.nextInt(savings.length)]];
+            stats.interest += s.accrueInterest(INTEREST_RATE);
+            break;
+          default:
+            a.setStatus(rnd.nextInt(10) == 0 ? Account.Status.Locked : Account.Status.Active);
+        }
+        stats.completed[op]++;
+      } catch (IllegalStateException | IllegalArgumentException e) {
+        stats.rejected[op]++;
+      }
+    }
+  }
+
+  private static final class Stats {
+    final long[] completed = new long[OPS.length];
+    final long[] rejected = new long[OPS.length];
+    long deposited;
+    long withdrawn;
+    long interest;
+    long allocatedBytes;
+
+    static Stats sum(Worker[] workers) {
+      Stats total = new Stats();
+      for (Worker w : workers) total.add(w.stats, 1);
+      return total;
+    }
+
+    Stats minus(Stats other) {
+      Stats diff = new Stats();
+      diff.add(this, 1);
+      diff.add(other, -1);
+      return diff;
+    }
+
+    private void add(Stats s, int sign) {
+      for (int i = 0; i < OPS.length; i++) {
+        completed[i] += sign * s.completed[i];
+        rejected[i] += sign * s.rejected[i];
+      }
+      deposited += sign * s.deposited;
+      withdrawn += sign * s.withdrawn;
+      interest += sign * s.interest;
+      allocatedBytes += sign * s.allocatedBytes;
+    }
+  }
+
+  /** The original walkthrough: two accounts, one step at a time. */
+  private static void scenario() {
     Account alice = new SavingsAccount(
       "1001",
       "Alice Dela Cruz",
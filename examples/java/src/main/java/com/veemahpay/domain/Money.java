@@ -4,43 +4,63 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.Objects;
 
+/**
+ * Two-decimal money held as a long count of minor units (cents).
+ * BigDecimal is only touched at the edges ({@link #of}, {@link #asBigDecimal},
+ * {@link #multiply(BigDecimal)}); text goes through {@link MoneyCodec}. Arithmetic on
+ * minor units throws ArithmeticException on overflow instead of wrapping.
+ */
 public final class Money implements Comparable<Money> {
-  private final BigDecimal amount;
+  private static final Money ZERO = new Money(0L);
 
-  private Money(BigDecimal amount) {
-    this.amount = amount.setScale(2, RoundingMode.HALF_UP);
+  private final long minor;
+
+  private Money(long minor) {
+    this.minor = minor;
   }
 
   public static Money of(BigDecimal amount) {
-    return new Money(Objects.requireNonNull(amount));
+    BigDecimal scaled = Objects.requireNonNull(amount).setScale(2, RoundingMode.HALF_UP);
+    return ofMinor(scaled.unscaledValue().longValueExact());
+  }
+
+  /** Parses decimal text such as "12.50" exactly; see {@link MoneyCodec} for the accepted forms. */
+  public static Money parse(CharSequence text) {
+    return ofMinor(MoneyCodec.parseMinor(text));
   }
 
-  public static Money zero() { return new Money(BigDecimal.ZERO); }
+  public static Money ofMinor(long minorUnits) {
+    return minorUnits == 0L ? ZERO : new Money(minorUnits);
+  }
+
+  public static Money zero() { return ZERO; }
+
+  public long minorUnits() { return minor; }
 
-  public BigDecimal asBigDecimal() { return amount; }
+  public BigDecimal asBigDecimal() { return BigDecimal.valueOf(minor, 2); }
 
-  public Money add(Money other) { return new Money(this.amount.add(other.amount)); }
-  public Money subtract(Money other) { return new Money(this.amount.subtract(other.amount)); }
-  public Money multiply(int factor) { return new Money(this.amount.multiply(BigDecimal.valueOf(factor))); }
-  public Money multiply(BigDecimal factor) { return new Money(this.amount.multiply(factor)); }
-  public Money negate() { return new Money(this.amount.negate()); }
+  public Money add(Money other) { return ofMinor(Math.addExact(minor, other.minor)); }
+  public Money subtract(Money other) { return ofMinor(Math.subtractExact(minor, other.minor)); }
+  public Money multiply(int factor) { return ofMinor(Math.multiplyExact(minor, (long) factor)); }
+  public Money multiply(BigDecimal factor) { return of(asBigDecimal().multiply(factor)); }
+  public Money negate() { return ofMinor(Math.negateExact(minor)); }
 
-  public boolean isNegative() { return amount.signum() < 0; }
+  public boolean isNegative() { return minor < 0L; }
+  public boolean isZero() { return minor == 0L; }
 
   @Override
-  public int compareTo(Money other) { return this.amount.compareTo(other.amount); }
+  public int compareTo(Money other) { return Long.compare(minor, other.minor); }
 
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
     if (!(o instanceof Money)) return false;
-    Money money = (Money) o;
-    return amount.compareTo(money.amount) == 0;
+    return minor == ((Money) o).minor;
   }
 
   @Override
-  public int hashCode() { return amount.stripTrailingZeros().hashCode(); }
+  public int hashCode() { return Long.hashCode(minor); }
 
   @Override
-  public String toString() { return amount.toPlainString(); }
+  public String toString() { return MoneyCodec.format(minor); }
 }
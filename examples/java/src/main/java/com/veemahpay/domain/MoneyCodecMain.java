@@ -0,0 +1,178 @@
+package com.veemahpay.domain;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.SplittableRandom;
+import java.util.regex.Pattern;
+
+/**
+ * Fuzzes {@link MoneyCodec} against BigDecimal, then times it against the parse and
+ * format paths the servers used before:
+ * <ul>
+ *   <li>parse: random text, valid and not, must give the same cents as BigDecimal
+ *       or be rejected by both;</li>
+ *   <li>format: random longs must print like {@code BigDecimal.valueOf(m, 2).toPlainString()}
+ *       and parse back to the same value;</li>
+ *   <li>timing: codec against {@code Double.parseDouble} + {@code new BigDecimal(toString())},
+ *       {@code BigDecimal.valueOf(double)} and {@code new BigDecimal(String)}.</li>
+ * </ul>
+ * Usage: MoneyCodecMain [fuzzCases]
+ */
+public final class MoneyCodecMain {
+  private static final Pattern DECIMAL = Pattern.compile("-?[0-9]+(\\.[0-9]+)?");
+  private static final String ALPHABET = "0123456789000.-+eE ,";
+  private static final int SAMPLES = 1 << 18;
+  private static final int ROUNDS = 10;
+
+  private static volatile long sink;
+
+  public static void main(String[] args) {
+    int cases = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+    SplittableRandom rnd = new SplittableRandom(11);
+    fuzzParse(rnd, cases);
+    fuzzFormat(rnd, cases);
+    bench(rnd);
+  }
+
+  private static void fuzzParse(SplittableRandom rnd, int cases) {
+    int accepted = 0;
+    for (int n = 0; n < cases; n++) {
+      String text = n % 2 == 0 ? randomText(rnd) : randomAmount(rnd);
+      Long expected = reference(text);
+      Long actual;
+      try {
+        actual = MoneyCodec.parseMinor(text);
+      } catch (NumberFormatException e) {
+        actual = null;
+      }
+      if (expected == null ? actual != null : !expected.equals(actual)) {
+        throw new AssertionError("parse \"" + text + "\": expected " + expected + " got " + actual);
+      }
+      if (actual != null) accepted++;
+    }
+    System.out.println("parse fuzz OK: " + cases + " cases, " + accepted + " accepted");
+  }
+
+  private static void fuzzFormat(SplittableRandom rnd, int cases) {
+    long[] edges = {0, 1, -1, 9, -9, 10, 99, 100, -100, 101, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE + 1};
+    for (long m : edges) checkFormat(m);
+    for (int n = 0; n < cases; n++) {
+      long m = rnd.nextLong() >> rnd.nextInt(64);
+      checkFormat(m);
+    }
+    System.out.println("format fuzz OK: " + (cases + edges.length) + " values");
+  }
+
+  private static void checkFormat(long m) {
+    String expected = BigDecimal.valueOf(m, 2).toPlainString();
+    String actual = MoneyCodec.format(m);
+    if (!expected.equals(actual)) throw new AssertionError("format " + m + ": expected " + expected + " got " + actual);
+    if (m != Long.MIN_VALUE && MoneyCodec.parseMinor(actual) != m) throw new AssertionError("round trip " + m);
+  }
+
+  /** Cents by BigDecimal, or null where the codec must reject. */
+  private static Long reference(String text) {
+    if (!DECIMAL.matcher(text).matches()) return null;
+    try {
+      return new BigDecimal(text).setScale(2, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    } catch (ArithmeticException e) {
+      return null;
+    }
+  }
+
+  private static String randomText(SplittableRandom rnd) {
+    char[] c = new char[rnd.nextInt(1, 24)];
+    for (int i = 0; i < c.length; i++) c[i] = ALPHABET.charAt(rnd.nextInt(ALPHABET.length()));
+    return new String(c);
+  }
+
+  private static String randomAmount(SplittableRandom rnd) {
+    StringBuilder s = new StringBuilder();
+    if (rnd.nextInt(4) == 0) s.append('-');
+    int units = rnd.nextInt(1, 19);
+    for (int i = 0; i < units; i++) s.append((char) ('0' + rnd.nextInt(10)));
+    int fraction = rnd.nextInt(5);
+    if (fraction > 0) {
+      s.append('.');
+      for (int i = 0; i < fraction; i++) s.append(i >= 2 && rnd.nextBoolean() ? '0' : (char) ('0' + rnd.nextInt(10)));
+    }
+    return s.toString();
+  }
+
+  private static void bench(SplittableRandom rnd) {
+    String[] texts = new String[SAMPLES];
+    long[] values = new long[SAMPLES];
+    for (int i = 0; i < SAMPLES; i++) {
+      values[i] = rnd.nextLong(1, 100_000_000_00L);
+      texts[i] = BigDecimal.valueOf(values[i], 2).toPlainString();
+    }
+    int drift = 0;
+    for (int i = 0; i < SAMPLES; i++) {
+      String t = BigDecimal.valueOf(rnd.nextLong(1_000_000_000_000_000L, 1_000_000_000_000_000_000L), 2).toPlainString();
+      if (BigDecimal.valueOf(Double.parseDouble(t)).compareTo(new BigDecimal(t)) != 0) drift++;
+    }
+
+    for (int warm = 0; warm < 3; warm++) {
+      parseCodec(texts);
+      parseDoubleToString(texts);
+      parseValueOfDouble(texts);
+      parseBigDecimal(texts);
+      formatCodec(values);
+      formatBigDecimal(values);
+    }
+    report("parse  MoneyCodec.parseMinor", time(() -> parseCodec(texts)));
+    report("parse  new BigDecimal(Double.parseDouble(s).toString())", time(() -> parseDoubleToString(texts)));
+    report("parse  BigDecimal.valueOf(Double.parseDouble(s))", time(() -> parseValueOfDouble(texts)));
+    report("parse  new BigDecimal(s)", time(() -> parseBigDecimal(texts)));
+    report("format MoneyCodec.format", time(() -> formatCodec(values)));
+    report("format BigDecimal.valueOf(m, 2).toPlainString()", time(() -> formatBigDecimal(values)));
+    System.out.println("17-18 digit amounts the double path changes: " + drift + " of " + SAMPLES);
+  }
+
+  private static void parseCodec(String[] texts) {
+    long sum = 0;
+    for (String t : texts) sum += MoneyCodec.parseMinor(t);
+    sink = sum;
+  }
+
+  private static void parseDoubleToString(String[] texts) {
+    long sum = 0;
+    for (String t : texts) sum += new BigDecimal(Double.valueOf(Double.parseDouble(t)).toString()).unscaledValue().longValue();
+    sink = sum;
+  }
+
+  private static void parseValueOfDouble(String[] texts) {
+    long sum = 0;
+    for (String t : texts) sum += BigDecimal.valueOf(Double.parseDouble(t)).unscaledValue().longValue();
+    sink = sum;
+  }
+
+  private static void parseBigDecimal(String[] texts) {
+    long sum = 0;
+    for (String t : texts) sum += new BigDecimal(t).unscaledValue().longValue();
+    sink = sum;
+  }
+
+  private static void formatCodec(long[] values) {
+    long sum = 0;
+    char[] buf = new char[MoneyCodec.MAX_LENGTH];
+    for (long v : values) sum += MoneyCodec.format(v, buf, 0);
+    sink = sum;
+  }
+
+  private static void formatBigDecimal(long[] values) {
+    long sum = 0;
+    for (long v : values) sum += BigDecimal.valueOf(v, 2).toPlainString().length();
+    sink = sum;
+  }
+
+  private static long time(Runnable round) {
+    long start = System.nanoTime();
+    for (int r = 0; r < ROUNDS; r++) round.run();
+    return System.nanoTime() - start;
+  }
+
+  private static void report(String name, long nanos) {
+    System.out.printf("%-58s %6.1f ns/op%n", name, nanos / ((double) SAMPLES * ROUNDS));
+  }
+}
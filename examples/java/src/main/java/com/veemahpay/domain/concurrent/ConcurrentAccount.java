@@ -0,0 +1,181 @@
+package com.veemahpay.domain.concurrent;
+
+import com.veemahpay.domain.Account.Status;
+import com.veemahpay.domain.Money;
+import com.veemahpay.domain.index.AccountNumberCodec;
+import com.veemahpay.domain.velocity.VelocityLimiter;
+import com.veemahpay.domain.velocity.VelocityPolicy;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Thread-safe counterpart of {@link com.veemahpay.domain.Account}.
+ *
+ * <p>The balance is a long of minor units updated by compare-and-set, so deposits and
+ * withdrawals never block. Each withdrawal re-checks the floor ({@link #floorMinor()})
+ * and the per-transaction limit against the value it is about to replace, so subclass
+ * rules hold atomically. Transfers also lock both accounts in account-number order;
+ * that serializes transfers touching the same account without risking deadlock, and
+ * the debit and credit are still CAS updates so concurrent deposits are never lost.
+ *
+ * <p>With velocity limits set, a debit is reserved in the {@link VelocityLimiter} before
+ * the balance CAS and released again if the debit then fails.
+ */
+public abstract class ConcurrentAccount {
+  private static final VarHandle BALANCE;
+
+  static {
+    try {
+      BALANCE = MethodHandles.lookup().findVarHandle(ConcurrentAccount.class, "balanceMinor", long.class);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private final String number;
+  private final String name;
+  private final ReentrantLock transferLock = new ReentrantLock();
+  private volatile long balanceMinor;
+  private volatile Status status;
+  private volatile VelocityLimiter velocityLimiter;
+  private volatile VelocityPolicy velocityPolicy = VelocityPolicy.unlimited();
+  private final long velocityKey;
+
+  protected ConcurrentAccount(String number, String name, Money balance, Status status) {
+    this.number = Objects.requireNonNull(number);
+    this.name = Objects.requireNonNull(name);
+    this.balanceMinor = Objects.requireNonNull(balance).minorUnits();
+    this.status = Objects.requireNonNull(status);
+    this.velocityKey = AccountNumberCodec.key(number);
+    if (balance.isNegative()) throw new IllegalArgumentException("negative balance");
+  }
+
+  public String getNumber() { return number; }
+  public String getName() { return name; }
+  public Money getBalance() { return Money.ofMinor(balanceMinor); }
+  public long getBalanceMinor() { return balanceMinor; }
+  public Status getStatus() { return status; }
+
+  public void setStatus(Status status) { this.status = Objects.requireNonNull(status); }
+
+  /** Subjects withdrawals and outgoing transfers to rolling-window limits. */
+  public void setVelocityLimits(VelocityLimiter limiter, VelocityPolicy policy) {
+    this.velocityPolicy = Objects.requireNonNull(policy);
+    this.velocityLimiter = Objects.requireNonNull(limiter);
+  }
+
+  public void deposit(Money amount) {
+    requireActive();
+    credit(requirePositive(amount));
+  }
+
+  public void withdraw(Money amount) {
+    requireActive();
+    long minor = requirePositive(amount);
+    checkLimit(minor);
+    VelocityLimiter limiter = velocityLimiter;
+    long acquiredAt = acquireVelocity(limiter, minor);
+    try {
+      debit(minor);
+    } catch (RuntimeException e) {
+      if (limiter != null) limiter.release(velocityKey, velocityPolicy, minor, acquiredAt);
+      throw e;
+    }
+  }
+
+  public void transfer(ConcurrentAccount target, Money amount) {
+    requireActive();
+    Objects.requireNonNull(target);
+    if (target == this) throw new IllegalArgumentException("target must be different");
+    long minor = requirePositive(amount);
+    checkLimit(minor);
+    VelocityLimiter limiter = velocityLimiter;
+    long acquiredAt = acquireVelocity(limiter, minor);
+    try {
+      lockedTransfer(target, minor);
+    } catch (RuntimeException e) {
+      if (limiter != null) limiter.release(velocityKey, velocityPolicy, minor, acquiredAt);
+      throw e;
+    }
+  }
+
+  private void lockedTransfer(ConcurrentAccount target, long minor) {
+    ConcurrentAccount first = number.compareTo(target.number) <= 0 ? this : target;
+    ConcurrentAccount second = first == this ? target : this;
+    first.transferLock.lock();
+    try {
+      second.transferLock.lock();
+      try {
+        // Status is re-read under both locks so a transfer cannot land on an account
+        // that was locked while this thread waited.
+        requireActive();
+        if (target.status != Status.Active) throw new IllegalStateException("target unavailable");
+        debit(minor);
+        target.credit(minor);
+      } finally {
+        second.transferLock.unlock();
+      }
+    } finally {
+      first.transferLock.unlock();
+    }
+  }
+
+  /** Reserves a debit against the velocity limits; returns the time to release it at. */
+  private long acquireVelocity(VelocityLimiter limiter, long amountMinor) {
+    if (limiter == null) return 0L;
+    long now = limiter.now();
+    byte verdict = limiter.tryAcquire(velocityKey, velocityPolicy, amountMinor, now);
+    if (verdict != VelocityLimiter.OK) {
+      throw new IllegalStateException("velocity limit exceeded: " + VelocityLimiter.name(verdict));
+    }
+    return now;
+  }
+
+  /** Lowest balance a withdrawal may leave, in minor units. */
+  protected long floorMinor() { return 0L; }
+
+  /** Rejects a single debit that breaks a per-transaction rule. */
+  protected void checkLimit(long amountMinor) {}
+
+  protected void requireActive() {
+    if (status != Status.Active) throw new IllegalStateException("account unavailable");
+  }
+
+  protected void credit(long amountMinor) {
+    long current;
+    do {
+      current = (long) BALANCE.getVolatile(this);
+    } while (!BALANCE.compareAndSet(this, current, Math.addExact(current, amountMinor)));
+  }
+
+  protected void debit(long amountMinor) {
+    long floor = floorMinor();
+    long current;
+    long next;
+    do {
+      current = (long) BALANCE.getVolatile(this);
+      next = Math.subtractExact(current, amountMinor);
+      if (next < floor) throw new IllegalStateException("insufficient funds");
+    } while (!BALANCE.compareAndSet(this, current, next));
+  }
+
+  /** Atomically replaces the balance with {@code f(balance)}; returns the balance it replaced. */
+  protected long updateBalance(LongUnaryOperator f) {
+    long current;
+    long next;
+    do {
+      current = (long) BALANCE.getVolatile(this);
+      next = f.applyAsLong(current);
+    } while (!BALANCE.compareAndSet(this, current, next));
+    return current;
+  }
+
+  private static long requirePositive(Money amount) {
+    if (amount == null || amount.minorUnits() <= 0L) throw new IllegalArgumentException("amount must be positive");
+    return amount.minorUnits();
+  }
+}
@@ -0,0 +1,18 @@
+package com.veemahpay.domain.concurrent;
+
+import com.veemahpay.domain.Account.Status;
+import com.veemahpay.domain.Money;
+
+import java.util.Objects;
+
+public final class ConcurrentCheckingAccount extends ConcurrentAccount {
+  private final long overdraftLimitMinor;
+
+  public ConcurrentCheckingAccount(String number, String name, Money balance, Status status, Money overdraftLimit) {
+    super(number, name, balance, status);
+    this.overdraftLimitMinor = Objects.requireNonNull(overdraftLimit).minorUnits();
+  }
+
+  @Override
+  protected long floorMinor() { return -overdraftLimitMinor; }
+}
@@ -0,0 +1,29 @@
+package com.veemahpay.domain.concurrent;
+
+import com.veemahpay.domain.Account.Status;
+import com.veemahpay.domain.Money;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+public final class ConcurrentSavingsAccount extends ConcurrentAccount {
+  public ConcurrentSavingsAccount(String number, String name, Money balance, Status status) {
+    super(number, name, balance, status);
+  }
+
+  /**
+   * Credits balance * rate (HALF_UP to the cent) against the balance it was computed from;
+   * returns the interest credited, in minor units.
+   */
+  public long accrueInterest(BigDecimal rate) {
+    requireActive();
+    Objects.requireNonNull(rate);
+    if (rate.compareTo(BigDecimal.ZERO) <= 0) throw new IllegalArgumentException("rate must be positive");
+    long before = updateBalance(b -> Math.addExact(b, interestMinor(b, rate)));
+    return interestMinor(before, rate);
+  }
+
+  private static long interestMinor(long balanceMinor, BigDecimal rate) {
+    return Money.ofMinor(balanceMinor).multiply(rate).minorUnits();
+  }
+}
@@ -0,0 +1,107 @@
+package com.veemahpay.domain.concurrent;
+
+import com.veemahpay.domain.Account.Status;
+import com.veemahpay.domain.Money;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hammers a small set of accounts from many threads and checks that money is conserved:
+ * final total == initial total + successful deposits - successful withdrawals, and no
+ * account ends below its floor. Usage: ConcurrentStressMain [threads] [opsPerThread] [accounts]
+ */
+public final class ConcurrentStressMain {
+  public static void main(String[] args) throws InterruptedException {
+    int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors() * 2;
+    int opsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 500_000;
+    int accountCount = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+
+    ConcurrentAccount[] accounts = new ConcurrentAccount[accountCount];
+    Money opening = Money.of(new BigDecimal("1000.00"));
+    Money overdraft = Money.of(new BigDecimal("250.00"));
+    Money studentLimit = Money.of(new BigDecimal("5.00"));
+    for (int i = 0; i < accountCount; i++) {
+      String number = String.format("%05d", i);
+      accounts[i] = switch (i % 3) {
+        case 0 -> new ConcurrentSavingsAccount(number, "Savings " + i, opening, Status.Active);
+        case 1 -> new ConcurrentCheckingAccount(number, "Checking " + i, opening, Status.Active, overdraft);
+        default -> new ConcurrentStudentAccount(number, "Student " + i, opening, Status.Active, studentLimit);
+      };
+    }
+    long initialTotal = total(accounts);
+
+    LongAdder deposited = new LongAdder();
+    LongAdder withdrawn = new LongAdder();
+    LongAdder completed = new LongAdder();
+    LongAdder rejected = new LongAdder();
+    Money[] amounts = new Money[1000];
+    for (int i = 0; i < amounts.length; i++) amounts[i] = Money.ofMinor(i + 1);
+
+    CountDownLatch start = new CountDownLatch(1);
+    Thread[] workers = new Thread[threads];
+    for (int t = 0; t < threads; t++) {
+      workers[t] = new Thread(() -> {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        for (int i = 0; i < opsPerThread; i++) {
+          ConcurrentAccount a = accounts[rnd.nextInt(accountCount)];
+          Money amount = amounts[rnd.nextInt(amounts.length)];
+          try {
+            switch (rnd.nextInt(3)) {
+              case 0 -> {
+                a.deposit(amount);
+                deposited.add(amount.minorUnits());
+              }
+              case 1 -> {
+                a.withdraw(amount);
+                withdrawn.add(amount.minorUnits());
+              }
+              default -> {
+                ConcurrentAccount b = accounts[rnd.nextInt(accountCount)];
+                if (b == a) continue;
+                a.transfer(b, amount);
+              }
+            }
+            completed.increment();
+          } catch (IllegalStateException | IllegalArgumentException e) {
+            rejected.increment();
+          }
+        }
+      });
+      workers[t].start();
+    }
+
+    long began = System.nanoTime();
+    start.countDown();
+    for (Thread w : workers) w.join();
+    double seconds = (System.nanoTime() - began) / 1e9;
+
+    long expected = initialTotal + deposited.sum() - withdrawn.sum();
+    long actual = total(accounts);
+    boolean floorsHeld = true;
+    for (ConcurrentAccount a : accounts) {
+      long floor = a instanceof ConcurrentCheckingAccount ? -overdraft.minorUnits() : 0L;
+      if (a.getBalanceMinor() < floor) floorsHeld = false;
+    }
+
+    System.out.printf("threads=%d accounts=%d ops=%d completed=%d rejected=%d%n",
+      threads, accountCount, (long) threads * opsPerThread, completed.sum(), rejected.sum());
+    System.out.printf("throughput=%.0f ops/s%n", threads * (double) opsPerThread / seconds);
+    System.out.println("expected total=" + Money.ofMinor(expected) + " actual total=" + Money.ofMinor(actual));
+    System.out.println(expected == actual && floorsHeld ? "CONSERVED" : "VIOLATION");
+    if (expected != actual || !floorsHeld) System.exit(1);
+  }
+
+  private static long total(ConcurrentAccount[] accounts) {
+    long sum = 0;
+    for (ConcurrentAccount a : accounts) sum += a.getBalanceMinor();
+    return sum;
+  }
+}
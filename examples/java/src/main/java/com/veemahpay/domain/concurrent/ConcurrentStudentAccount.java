@@ -0,0 +1,20 @@
+package com.veemahpay.domain.concurrent;
+
+import com.veemahpay.domain.Account.Status;
+import com.veemahpay.domain.Money;
+
+import java.util.Objects;
+
+public final class ConcurrentStudentAccount extends ConcurrentAccount {
+  private final long perTransactionLimitMinor;
+
+  public ConcurrentStudentAccount(String number, String name, Money balance, Status status, Money perTransactionLimit) {
+    super(number, name, balance, status);
+    this.perTransactionLimitMinor = Objects.requireNonNull(perTransactionLimit).minorUnits();
+  }
+
+  @Override
+  protected void checkLimit(long amountMinor) {
+    if (amountMinor > perTransactionLimitMinor) throw new IllegalArgumentException("limit exceeded");
+  }
+}
@@ -0,0 +1,122 @@
+package com.veemahpay.domain.index;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Checks {@link AccountNumberCodec} round trips, then compares a {@link LongIndexMap} of
+ * packed account numbers with a {@code HashMap<String, Integer>} holding the same
+ * number-to-index entries: retained heap, lookup time and bytes allocated per lookup.
+ * The account objects themselves are left out since both indexes would point at the same ones.
+ * Usage: AccountIndexMain [accounts]; ten million needs about -Xmx3g for the HashMap side.
+ */
+public final class AccountIndexMain {
+  private static final int FIRST_NUMBER = 10_000_000;
+  private static final int PROBES = 1 << 20;
+  private static final int ROUNDS = 8;
+
+  public static void main(String[] args) {
+    int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+    checkCodec();
+
+    String[] probes = probes(accounts);
+    long base = usedHeap();
+    LongIndexMap index = new LongIndexMap();
+    for (int i = 0; i < accounts; i++) index.put(AccountNumberCodec.require(Integer.toString(FIRST_NUMBER + i)), i);
+    long indexBytes = usedHeap() - base;
+    report("LongIndexMap", accounts, indexBytes, lookups(index, probes, accounts));
+    index = null;
+
+    base = usedHeap();
+    Map<String, Integer> boxed = new HashMap<>();
+    for (int i = 0; i < accounts; i++) boxed.put(Integer.toString(FIRST_NUMBER + i), i);
+    long boxedBytes = usedHeap() - base;
+    report("HashMap<String,Integer>", accounts, boxedBytes, lookups(boxed, probes, accounts));
+    System.out.printf("footprint ratio %.1fx%n", boxedBytes / (double) indexBytes);
+  }
+
+  private static void checkCodec() {
+    String[] samples = {"0", "7", "0123", "123", "45678", "0000000000", "99999999999999999"};
+    for (String s : samples) {
+      long code = AccountNumberCodec.require(s);
+      if (!AccountNumberCodec.decode(code).equals(s)) throw new AssertionError("round trip failed for " + s);
+    }
+    if (AccountNumberCodec.encode("0123") == AccountNumberCodec.encode("123")) throw new AssertionError("leading zeros lost");
+    String[] rejected = {"", "12a4", "-123", "123456789012345678", "\uff11\uff12\uff13"};
+    for (String s : rejected) {
+      if (AccountNumberCodec.encode(s) != AccountNumberCodec.NONE) throw new AssertionError("accepted " + s);
+      if (AccountNumberCodec.key(s) >= 0) throw new AssertionError("hashed key must be negative for " + s);
+    }
+    if (AccountNumberCodec.isEncoded(AccountNumberCodec.NONE)) throw new AssertionError("NONE must not decode");
+    System.out.println("codec OK");
+  }
+
+  /** Random account numbers as fresh strings, half of them unknown. */
+  private static String[] probes(int accounts) {
+    SplittableRandom rnd = new SplittableRandom(7);
+    String[] probes = new String[PROBES];
+    for (int i = 0; i < PROBES; i++) probes[i] = Integer.toString(FIRST_NUMBER + rnd.nextInt(accounts * 2));
+    return probes;
+  }
+
+  private static long[] lookups(LongIndexMap index, String[] probes, int accounts) {
+    long hits = 0;
+    for (int r = 0; r < 2; r++) hits += lookupRound(index, probes);
+    long allocatedBefore = allocated();
+    long start = System.nanoTime();
+    for (int r = 0; r < ROUNDS; r++) hits += lookupRound(index, probes);
+    long elapsed = System.nanoTime() - start;
+    long bytes = allocated() - allocatedBefore;
+    requireHits(hits, probes, accounts);
+    return new long[] {elapsed, bytes};
+  }
+
+  private static int lookupRound(LongIndexMap index, String[] probes) {
+    int hits = 0;
+    for (String p : probes) if (index.get(AccountNumberCodec.encode(p)) != LongIndexMap.MISSING) hits++;
+    return hits;
+  }
+
+  private static long[] lookups(Map<String, Integer> boxed, String[] probes, int accounts) {
+    long hits = 0;
+    for (int r = 0; r < 2; r++) hits += lookupRound(boxed, probes);
+    long allocatedBefore = allocated();
+    long start = System.nanoTime();
+    for (int r = 0; r < ROUNDS; r++) hits += lookupRound(boxed, probes);
+    long elapsed = System.nanoTime() - start;
+    long bytes = allocated() - allocatedBefore;
+    requireHits(hits, probes, accounts);
+    return new long[] {elapsed, bytes};
+  }
+
+  private static int lookupRound(Map<String, Integer> boxed, String[] probes) {
+    int hits = 0;
+    for (String p : probes) if (boxed.get(p) != null) hits++;
+    return hits;
+  }
+
+  private static void requireHits(long hits, String[] probes, int accounts) {
+    long expected = 0;
+    for (String p : probes) if (Integer.parseInt(p) - FIRST_NUMBER < accounts) expected++;
+    if (hits != expected * (ROUNDS + 2)) throw new AssertionError("lookup hits " + hits + " != " + expected * (ROUNDS + 2));
+  }
+
+  private static void report(String name, int accounts, long bytes, long[] lookup) {
+    double lookups = (double) PROBES * ROUNDS;
+    System.out.printf("%-24s accounts=%d heap=%dMB bytes/account=%.1f lookup=%.1fns allocated/lookup=%.2fB%n",
+      name, accounts, bytes >> 20, bytes / (double) accounts, lookup[0] / lookups, lookup[1] / lookups);
+  }
+
+  private static long usedHeap() {
+    Runtime rt = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) System.gc();
+    return rt.totalMemory() - rt.freeMemory();
+  }
+
+  private static long allocated() {
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+}
@@ -0,0 +1,84 @@
+package com.veemahpay.domain.index;
+
+/**
+ * Packs numeric account numbers into a long and back.
+ *
+ * <p>A digit string of 1 to {@link #MAX_DIGITS} characters is stored as
+ * {@code length << 57 | value}. Keeping the length means "0123" and "123" get
+ * different codes. Every code is positive and non-zero, so {@link #NONE} (0) can
+ * mean "not encodable" and can mark empty slots in {@link LongIndexMap}.
+ * Encoding does not allocate.
+ *
+ * <p>examples/java-server carries a copy as {@code com.bank.index.AccountNumberCodec}; keep
+ * the two in step.
+ */
+public final class AccountNumberCodec {
+  public static final int MAX_DIGITS = 17;
+  /** Returned by {@link #encode} for strings that are not 1 to 17 ASCII digits. */
+  public static final long NONE = 0L;
+
+  private static final int LENGTH_SHIFT = 57;
+  private static final long VALUE_MASK = (1L << LENGTH_SHIFT) - 1;
+
+  private AccountNumberCodec() {}
+
+  /** Packed code for {@code number}, or {@link #NONE} if it is not a short digit string. */
+  public static long encode(CharSequence number) {
+    int n = number.length();
+    if (n == 0 || n > MAX_DIGITS) return NONE;
+    long value = 0;
+    for (int i = 0; i < n; i++) {
+      char c = number.charAt(i);
+      if (c < '0' || c > '9') return NONE;
+      value = value * 10 + (c - '0');
+    }
+    return (long) n << LENGTH_SHIFT | value;
+  }
+
+  /** Like {@link #encode} but rejects numbers that cannot be packed. */
+  public static long require(CharSequence number) {
+    long code = encode(number);
+    if (code == NONE) throw new IllegalArgumentException("account number is not 1-" + MAX_DIGITS + " digits: " + number);
+    return code;
+  }
+
+  /**
+   * Key for any account number: the packed code for digit strings, otherwise a 64-bit
+   * FNV-1a hash with the top bit set. Hashed keys are negative, so they never collide
+   * with a packed code; two different non-numeric strings may share a key.
+   */
+  public static long key(CharSequence number) {
+    long code = encode(number);
+    if (code != NONE) return code;
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0, n = number.length(); i < n; i++) {
+      h ^= number.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    return h | Long.MIN_VALUE;
+  }
+
+  public static boolean isEncoded(long code) {
+    int length = (int) (code >>> LENGTH_SHIFT);
+    return length >= 1 && length <= MAX_DIGITS && (code & VALUE_MASK) < pow10(length);
+  }
+
+  /** Account number for a packed code, with its leading zeros. */
+  public static String decode(long code) {
+    if (!isEncoded(code)) throw new IllegalArgumentException("not an account number code: " + code);
+    int length = (int) (code >>> LENGTH_SHIFT);
+    char[] digits = new char[length];
+    long value = code & VALUE_MASK;
+    for (int i = length - 1; i >= 0; i--) {
+      digits[i] = (char) ('0' + value % 10);
+      value /= 10;
+    }
+    return new String(digits);
+  }
+
+  private static long pow10(int exponent) {
+    long p = 1;
+    for (int i = 0; i < exponent; i++) p *= 10;
+    return p;
+  }
+}
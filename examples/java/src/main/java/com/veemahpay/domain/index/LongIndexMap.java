@@ -0,0 +1,126 @@
+package com.veemahpay.domain.index;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Open-addressing map from a non-zero long key to a non-negative int, meant for
+ * {@link AccountNumberCodec} codes.
+ *
+ * <p>Keys and values sit side by side in one array, so a lookup usually touches one
+ * cache line and never allocates. A slot is 16 bytes and the table is kept at most 3/4
+ * full, which comes to 20-40 bytes per entry against roughly 100 for a
+ * {@code HashMap<String, Integer>} entry with its key string and boxed value.
+ *
+ * <p>Lookups take no lock. A value is written before its key is published with a
+ * volatile store, so a reader that sees the key sees the value. Writers must be
+ * serialized by the caller. A resize builds a new table and publishes it whole, so
+ * readers still probing the old one see a complete, unchanging table. There is no
+ * removal: entries live until the map is dropped.
+ *
+ * <p>examples/java-server carries a copy as {@code com.bank.index.LongIndexMap}; keep the two
+ * in step.
+ */
+public final class LongIndexMap {
+  /** Returned by {@link #get} for an absent key. */
+  public static final int MISSING = -1;
+
+  private static final long EMPTY = 0L;
+
+  /** {@code entries[2i]} is a key, {@code entries[2i + 1]} its value. */
+  private static final class Table {
+    final AtomicLongArray entries;
+    final int capacity;
+    final int mask;
+
+    Table(int capacity) {
+      entries = new AtomicLongArray(capacity * 2);
+      this.capacity = capacity;
+      mask = capacity - 1;
+    }
+  }
+
+  private volatile Table table;
+  private int size;
+
+  public LongIndexMap() {
+    this(16);
+  }
+
+  /** Sized so {@code expectedSize} entries fit without a resize. */
+  public LongIndexMap(int expectedSize) {
+    if (expectedSize < 0) throw new IllegalArgumentException("negative size");
+    long needed = Math.max(16L, expectedSize * 4L / 3 + 1);
+    if (needed > 1 << 29) throw new IllegalArgumentException("too many entries: " + expectedSize);
+    table = new Table(Integer.highestOneBit((int) needed - 1) << 1);
+  }
+
+  /** Value for {@code key}, or {@link #MISSING}. */
+  public int get(long key) {
+    Table t = table;
+    int i = mix(key) & t.mask;
+    while (true) {
+      long k = t.entries.get(2 * i);
+      if (k == key) return (int) t.entries.get(2 * i + 1);
+      if (k == EMPTY) return MISSING;
+      i = (i + 1) & t.mask;
+    }
+  }
+
+  public boolean containsKey(long key) {
+    return get(key) != MISSING;
+  }
+
+  public int size() { return size; }
+
+  /** Bytes held by the table, for footprint comparisons. */
+  public long tableBytes() {
+    return table.capacity * 16L;
+  }
+
+  /** Maps {@code key} to {@code value}; returns the previous value or {@link #MISSING}. */
+  public int put(long key, int value) {
+    if (key == EMPTY) throw new IllegalArgumentException("key 0 is reserved");
+    if (value < 0) throw new IllegalArgumentException("negative value");
+    Table t = table;
+    int i = mix(key) & t.mask;
+    while (true) {
+      long k = t.entries.get(2 * i);
+      if (k == key) {
+        int previous = (int) t.entries.get(2 * i + 1);
+        t.entries.set(2 * i + 1, value);
+        return previous;
+      }
+      if (k == EMPTY) break;
+      i = (i + 1) & t.mask;
+    }
+    if ((size + 1) * 4L > t.capacity * 3L) {
+      t = resize(t);
+      table = t;
+    }
+    insert(t, key, value);
+    size++;
+    return MISSING;
+  }
+
+  private static void insert(Table t, long key, int value) {
+    int i = mix(key) & t.mask;
+    while (t.entries.get(2 * i) != EMPTY) i = (i + 1) & t.mask;
+    t.entries.setPlain(2 * i + 1, value);
+    t.entries.set(2 * i, key);
+  }
+
+  private static Table resize(Table old) {
+    if (old.capacity >= 1 << 29) throw new IllegalStateException("index full");
+    Table next = new Table(old.capacity * 2);
+    for (int i = 0; i < old.capacity; i++) {
+      long k = old.entries.get(2 * i);
+      if (k != EMPTY) insert(next, k, (int) old.entries.get(2 * i + 1));
+    }
+    return next;
+  }
+
+  private static int mix(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+}
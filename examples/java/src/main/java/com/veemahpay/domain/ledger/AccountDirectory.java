@@ -0,0 +1,61 @@
+package com.veemahpay.domain.ledger;
+
+import com.veemahpay.domain.index.AccountNumberCodec;
+import com.veemahpay.domain.index.LongIndexMap;
+
+import java.util.Arrays;
+
+/**
+ * Maps account numbers to {@link LedgerEngine} ids and back. Numbers are packed with
+ * {@link AccountNumberCodec}, so resolving one allocates nothing, and each account costs
+ * under 50 bytes against about 100 for a {@code HashMap} entry, key string and boxed id.
+ *
+ * <p>Like the engine, the directory is single-writer: bind accounts on the thread that
+ * opens them. Lookups may run on any thread.
+ */
+public final class AccountDirectory {
+  private final LongIndexMap ids;
+  private long[] numbers;
+
+  public AccountDirectory(int expectedAccounts) {
+    ids = new LongIndexMap(expectedAccounts);
+    numbers = new long[Math.max(16, expectedAccounts)];
+  }
+
+  /** Records that {@code number} is engine account {@code id}. */
+  public void bind(CharSequence number, int id) {
+    long code = AccountNumberCodec.require(number);
+    if (id < 0) throw new IllegalArgumentException("negative account id");
+    int bound = ids.get(code);
+    if (bound != LongIndexMap.MISSING) {
+      if (bound == id) return;
+      throw new IllegalStateException("account " + number + " is already id " + bound);
+    }
+    if (id >= numbers.length) numbers = Arrays.copyOf(numbers, Math.max(id + 1, numbers.length + (numbers.length >> 1)));
+    if (numbers[id] != AccountNumberCodec.NONE) {
+      throw new IllegalStateException("id " + id + " is already account " + AccountNumberCodec.decode(numbers[id]));
+    }
+    numbers[id] = code;
+    ids.put(code, id);
+  }
+
+  /** Engine id for {@code number}, or {@link LongIndexMap#MISSING}. */
+  public int idOf(CharSequence number) {
+    long code = AccountNumberCodec.encode(number);
+    return code == AccountNumberCodec.NONE ? LongIndexMap.MISSING : ids.get(code);
+  }
+
+  /** Engine id for a packed account number, or {@link LongIndexMap#MISSING}. */
+  public int idOf(long code) {
+    return ids.get(code);
+  }
+
+  /** Account number bound to {@code id}, or null. */
+  public String numberOf(int id) {
+    long[] current = numbers;
+    if (id < 0 || id >= current.length || current[id] == AccountNumberCodec.NONE) return null;
+    return AccountNumberCodec.decode(current[id]);
+  }
+
+  public int size() { return ids.size(); }
+}
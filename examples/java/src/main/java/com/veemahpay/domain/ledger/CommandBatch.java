@@ -0,0 +1,63 @@
+package com.veemahpay.domain.ledger;
+
+import java.util.Arrays;
+
+/**
+ * A reusable, columnar batch of ledger commands and their results. Commands are
+ * appended with {@link #deposit}, {@link #withdraw} and {@link #transfer}, applied by
+ * {@link LedgerEngine#apply}, then read back through {@link #result}. {@link #clear}
+ * keeps the arrays, so a steady stream of batches allocates nothing.
+ */
+public final class CommandBatch {
+  public static final byte DEPOSIT = 1;
+  public static final byte WITHDRAW = 2;
+  public static final byte TRANSFER = 3;
+
+  byte[] op;
+  int[] source;
+  int[] target;
+  long[] amount;
+  byte[] result;
+  int size;
+
+  public CommandBatch(int initialCapacity) {
+    int capacity = Math.max(1, initialCapacity);
+    op = new byte[capacity];
+    source = new int[capacity];
+    target = new int[capacity];
+    amount = new long[capacity];
+    result = new byte[capacity];
+  }
+
+  public void deposit(int account, long amountMinor) { add(DEPOSIT, account, -1, amountMinor); }
+  public void withdraw(int account, long amountMinor) { add(WITHDRAW, account, -1, amountMinor); }
+  public void transfer(int from, int to, long amountMinor) { add(TRANSFER, from, to, amountMinor); }
+
+  public void add(byte command, int sourceId, int targetId, long amountMinor) {
+    if (size == op.length) grow();
+    op[size] = command;
+    source[size] = sourceId;
+    target[size] = targetId;
+    amount[size] = amountMinor;
+    result[size] = LedgerResult.OK;
+    size++;
+  }
+
+  public int size() { return size; }
+  public byte op(int i) { return op[i]; }
+  public int source(int i) { return source[i]; }
+  public int target(int i) { return target[i]; }
+  public long amount(int i) { return amount[i]; }
+  public byte result(int i) { return result[i]; }
+
+  public void clear() { size = 0; }
+
+  private void grow() {
+    int capacity = op.length * 2;
+    op = Arrays.copyOf(op, capacity);
+    source = Arrays.copyOf(source, capacity);
+    target = Arrays.copyOf(target, capacity);
+    amount = Arrays.copyOf(amount, capacity);
+    result = Arrays.copyOf(result, capacity);
+  }
+}
@@ -0,0 +1,90 @@
+package com.veemahpay.domain.ledger;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Month-end interest accrual over every active savings account of a {@link LedgerEngine}.
+ *
+ * <p>The id range is split into fork-join chunks of {@value #CHUNK} accounts. Each account's
+ * interest is {@code balance * rate} rounded half-up to the cent on its own, as
+ * {@code SavingsAccount.accrueInterest} does, and totals are exact long sums. So the result
+ * does not depend on how the range was split or on thread scheduling: a parallel run and a
+ * sequential run leave identical balances and totals. The caller must hold the engine's
+ * single-writer role for the duration.
+ */
+public final class InterestAccrual {
+  static final int CHUNK = 16_384;
+
+  private InterestAccrual() {}
+
+  /** What a run credited. */
+  public static final class Totals {
+    public final long accounts;
+    public final long interestMinor;
+    public final long overflowed;
+
+    Totals(long[] totals) {
+      this.accounts = totals[0];
+      this.interestMinor = totals[1];
+      this.overflowed = totals[2];
+    }
+
+    @Override
+    public String toString() {
+      return "accounts=" + accounts + " interestMinor=" + interestMinor + " overflowed=" + overflowed;
+    }
+  }
+
+  /** Accrues {@code ratePpm} (parts per million) on all savings accounts using {@code pool}. */
+  public static Totals accrue(LedgerEngine engine, long ratePpm, ForkJoinPool pool) {
+    requirePositive(ratePpm);
+    return new Totals(pool.invoke(new Chunk(engine, 0, engine.size(), ratePpm)));
+  }
+
+  /** Single-threaded reference run over the same accounts. */
+  public static Totals accrueSequential(LedgerEngine engine, long ratePpm) {
+    requirePositive(ratePpm);
+    long[] totals = new long[3];
+    engine.accrueRange(0, engine.size(), ratePpm, totals);
+    return new Totals(totals);
+  }
+
+  private static void requirePositive(long ratePpm) {
+    if (ratePpm <= 0) throw new IllegalArgumentException("rate must be positive");
+  }
+
+  private static final class Chunk extends RecursiveTask<long[]> {
+    private static final long serialVersionUID = 1L;
+
+    private final transient LedgerEngine engine;
+    private final int from;
+    private final int to;
+    private final long ratePpm;
+
+    Chunk(LedgerEngine engine, int from, int to, long ratePpm) {
+      this.engine = engine;
+      this.from = from;
+      this.to = to;
+      this.ratePpm = ratePpm;
+    }
+
+    @Override
+    protected long[] compute() {
+      if (to - from <= CHUNK) {
+        long[] totals = new long[3];
+        engine.accrueRange(from, to, ratePpm, totals);
+        return totals;
+      }
+      int mid = (from + to) >>> 1;
+      Chunk left = new Chunk(engine, from, mid, ratePpm);
+      left.fork();
+      long[] right = new Chunk(engine, mid, to, ratePpm).compute();
+      long[] totals = left.join();
+      totals[0] += right[0];
+      totals[1] = Math.addExact(totals[1], right[1]);
+      totals[2] += right[2];
+      return totals;
+    }
+  }
+}
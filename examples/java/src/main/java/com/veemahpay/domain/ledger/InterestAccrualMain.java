@@ -0,0 +1,107 @@
+package com.veemahpay.domain.ledger;
+
+import com.veemahpay.domain.Account;
+import com.veemahpay.domain.Money;
+import com.veemahpay.domain.SavingsAccount;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Bulk accrual check and throughput run. The same book of accounts is loaded three times:
+ * a parallel engine run, a sequential engine run, and {@code SavingsAccount.accrueInterest}
+ * one object at a time as the reference. Every savings balance and the total interest must
+ * match exactly. Finally a journaled accrual is replayed to check it reproduces.
+ * Usage: InterestAccrualMain [accounts] [ratePpm] [parallelism]
+ */
+public final class InterestAccrualMain {
+  public static void main(String[] args) throws Exception {
+    int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 4_000_000;
+    long ratePpm = args.length > 1 ? Long.parseLong(args[1]) : 4_167L;
+    int parallelism = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+    LedgerEngine parallel = book(accounts);
+    LedgerEngine sequential = book(accounts);
+    SavingsAccount[] reference = new SavingsAccount[accounts];
+    for (int id = 0; id < accounts; id++) {
+      if (parallel.kind(id) == LedgerEngine.SAVINGS) {
+        reference[id] = new SavingsAccount(Integer.toString(id), "Saver", Money.ofMinor(parallel.balanceMinor(id)),
+          parallel.status(id));
+      }
+    }
+
+    // Warm up the accrual path on a scratch copy so the timings below are steady-state.
+    for (int i = 0; i < 3; i++) InterestAccrual.accrue(book(100_000), ratePpm, pool);
+
+    long start = System.nanoTime();
+    InterestAccrual.Totals par = InterestAccrual.accrue(parallel, ratePpm, pool);
+    double parSeconds = (System.nanoTime() - start) / 1e9;
+
+    start = System.nanoTime();
+    InterestAccrual.Totals seq = InterestAccrual.accrueSequential(sequential, ratePpm);
+    double seqSeconds = (System.nanoTime() - start) / 1e9;
+
+    BigDecimal rate = BigDecimal.valueOf(ratePpm, 6);
+    long referenceInterest = 0;
+    long referenceAccounts = 0;
+    start = System.nanoTime();
+    for (SavingsAccount account : reference) {
+      if (account == null || account.getStatus() != Account.Status.Active) continue;
+      long before = account.getBalance().minorUnits();
+      account.accrueInterest(rate);
+      referenceInterest += account.getBalance().minorUnits() - before;
+      referenceAccounts++;
+    }
+    double refSeconds = (System.nanoTime() - start) / 1e9;
+
+    System.out.printf("parallel (%d threads): %s in %.3fs, %.1fM accounts/s%n",
+      parallelism, par, parSeconds, accounts / parSeconds / 1e6);
+    System.out.printf("sequential engine:     %s in %.3fs%n", seq, seqSeconds);
+    System.out.printf("SavingsAccount ref:    accounts=%d interestMinor=%d in %.3fs%n",
+      referenceAccounts, referenceInterest, refSeconds);
+
+    if (par.interestMinor != seq.interestMinor || par.interestMinor != referenceInterest
+        || par.accounts != seq.accounts || par.accounts != referenceAccounts) {
+      throw new AssertionError("totals differ");
+    }
+    JournalMain.requireSame(parallel, sequential);
+    for (int id = 0; id < accounts; id++) {
+      if (reference[id] != null && reference[id].getBalance().minorUnits() != parallel.balanceMinor(id)) {
+        throw new AssertionError("account " + id + " differs from SavingsAccount.accrueInterest");
+      }
+    }
+
+    Path dir = Path.of("accrual-journal");
+    JournalMain.deleteRecursively(dir);
+    LedgerEngine expected;
+    try (JournaledLedger ledger = JournaledLedger.open(dir, LedgerJournal.Options.defaults(), 1_000)) {
+      for (int i = 0; i < 1_000; i++) ledger.openSavings(1_000 + 997L * i);
+      ledger.accrueInterestAll(ratePpm, pool);
+      ledger.accrueInterestAll(ratePpm, pool);
+      expected = ledger.engine();
+    }
+    try (JournaledLedger replayed = JournaledLedger.open(dir, LedgerJournal.Options.defaults(), 1_000)) {
+      JournalMain.requireSame(expected, replayed.engine());
+    }
+    JournalMain.deleteRecursively(dir);
+    pool.shutdown();
+    System.out.println("RECONCILED");
+  }
+
+  private static LedgerEngine book(int accounts) {
+    LedgerEngine engine = new LedgerEngine(accounts);
+    SplittableRandom rnd = new SplittableRandom(2024);
+    for (int i = 0; i < accounts; i++) {
+      long balance = rnd.nextLong(0, 500_000_000L);
+      int kind = rnd.nextInt(10);
+      if (kind < 6) engine.openSavings(balance);
+      else if (kind < 9) engine.openChecking(balance, 50_000);
+      else engine.openStudent(balance, 20_000);
+      if (rnd.nextInt(50) == 0) engine.setStatus(i, Account.Status.Locked);
+    }
+    return engine;
+  }
+}
@@ -0,0 +1,245 @@
+package com.veemahpay.domain.ledger;
+
+import com.veemahpay.domain.Account;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A {@link LedgerEngine} whose accepted commands are recorded in a {@link LedgerJournal}.
+ *
+ * <p>Commands are validated and applied in memory first; only accepted ones are journaled,
+ * so replay re-applies them and must accept every one. A command is durable once the
+ * journal syncs (see {@link LedgerJournal.Options}); callers that acknowledge to clients
+ * should do so after {@link #sync}. Single-writer, like the engine.
+ *
+ * <p>With snapshots enabled, every {@code everyRecords} journaled commands the writer
+ * syncs the journal and copies the engine columns (a consistent cut), then hands the copy
+ * to an executor that writes it with {@link LedgerSnapshot} and deletes journal segments
+ * older than the oldest snapshot kept. The writer only pays for the copy. Restart loads
+ * the newest intact snapshot and replays the journal tail after it.
+ */
+public final class JournaledLedger implements AutoCloseable {
+  private static final Account.Status[] STATUSES = Account.Status.values();
+
+  /** Snapshots kept on disk; the older one is a fallback if the newest is damaged. */
+  private static final int SNAPSHOTS_KEPT = 2;
+
+  private final LedgerEngine engine;
+  private final LedgerJournal journal;
+
+  private Path snapshotDirectory;
+  private Executor snapshotExecutor;
+  private long snapshotEveryRecords;
+  private long nextSnapshotAt = Long.MAX_VALUE;
+  private CompletableFuture<Long> snapshotInFlight = CompletableFuture.completedFuture(0L);
+
+  private JournaledLedger(LedgerEngine engine, LedgerJournal journal) {
+    this.engine = engine;
+    this.journal = journal;
+  }
+
+  /** Opens the journal in {@code directory} and rebuilds the engine from it. */
+  public static JournaledLedger open(Path directory, LedgerJournal.Options options, int initialCapacity)
+      throws IOException {
+    return recover(new LedgerEngine(initialCapacity), 0L, directory, options);
+  }
+
+  /**
+   * Restores the newest intact snapshot in {@code snapshotDirectory}, if any, then replays
+   * the journal records after it.
+   */
+  public static JournaledLedger open(Path journalDirectory, Path snapshotDirectory, LedgerJournal.Options options,
+                                     int initialCapacity) throws IOException {
+    LedgerSnapshot snapshot = LedgerSnapshot.loadLatest(snapshotDirectory);
+    if (snapshot == null) return open(journalDirectory, options, initialCapacity);
+    return recover(snapshot.engine(), snapshot.sequence(), journalDirectory, options);
+  }
+
+  /**
+   * Replays journal records after {@code appliedSequence} into {@code engine}, which must
+   * already reflect every record up to and including it (for example, from a snapshot).
+   */
+  public static JournaledLedger recover(LedgerEngine engine, long appliedSequence, Path directory,
+                                        LedgerJournal.Options options) throws IOException {
+    LedgerJournal journal = LedgerJournal.open(directory, options, appliedSequence,
+      (sequence, type, aux, source, target, amount, parameter) -> replay(engine, sequence, type, aux, source, target, amount, parameter));
+    return new JournaledLedger(engine, journal);
+  }
+
+  public LedgerEngine engine() { return engine; }
+  public LedgerJournal journal() { return journal; }
+
+  /** Sequence of the last journaled command, or 0 if none. */
+  public long lastSequence() { return journal.nextSequence() - 1; }
+
+  /**
+   * Takes a snapshot into {@code directory} every {@code everyRecords} journaled commands,
+   * writing it on {@code executor}.
+   */
+  public void enableSnapshots(Path directory, long everyRecords, Executor executor) {
+    if (everyRecords <= 0) throw new IllegalArgumentException("snapshot interval must be positive");
+    snapshotDirectory = directory;
+    snapshotExecutor = executor;
+    snapshotEveryRecords = everyRecords;
+    nextSnapshotAt = nextSnapshotAfter(lastSequence());
+  }
+
+  /**
+   * Starts a snapshot of the current state unless one is still being written, in which case
+   * that one is returned. The future yields the journal sequence the snapshot covers.
+   */
+  public CompletableFuture<Long> snapshot() {
+    if (snapshotDirectory == null) throw new IllegalStateException("snapshots are not enabled");
+    nextSnapshotAt = nextSnapshotAfter(lastSequence());
+    if (!snapshotInFlight.isDone()) return snapshotInFlight;
+    // The journal must be durable up to the cut, or a crash could leave a snapshot ahead of it.
+    journal.sync();
+    long sequence = lastSequence();
+    LedgerEngine.Image image = engine.image();
+    Path directory = snapshotDirectory;
+    snapshotInFlight = CompletableFuture.supplyAsync(() -> {
+      try {
+        LedgerSnapshot.write(directory, sequence, image);
+        LedgerSnapshot.prune(directory, SNAPSHOTS_KEPT);
+        journal.deleteSegmentsCoveredBy(LedgerSnapshot.oldestSequence(directory));
+        return sequence;
+      } catch (IOException e) {
+        throw new UncheckedIOException("snapshot at sequence " + sequence + " failed", e);
+      }
+    }, snapshotExecutor);
+    return snapshotInFlight;
+  }
+
+  private long nextSnapshotAfter(long sequence) {
+    return sequence > Long.MAX_VALUE - snapshotEveryRecords ? Long.MAX_VALUE : sequence + snapshotEveryRecords;
+  }
+
+  private void maybeSnapshot() {
+    if (lastSequence() >= nextSnapshotAt) snapshot();
+  }
+
+  public int openSavings(long balanceMinor) { return open(LedgerEngine.SAVINGS, balanceMinor, 0L); }
+  public int openChecking(long balanceMinor, long overdraftLimitMinor) { return open(LedgerEngine.CHECKING, balanceMinor, overdraftLimitMinor); }
+  public int openStudent(long balanceMinor, long perTransactionLimitMinor) { return open(LedgerEngine.STUDENT, balanceMinor, perTransactionLimitMinor); }
+
+  private int open(byte kind, long balanceMinor, long parameterMinor) {
+    int id = engine.open(kind, balanceMinor, parameterMinor);
+    journal.appendOpen(id, kind, balanceMinor, parameterMinor);
+    maybeSnapshot();
+    return id;
+  }
+
+  public byte deposit(int id, long amountMinor) {
+    byte r = engine.deposit(id, amountMinor);
+    if (r == LedgerResult.OK) {
+      journal.appendDeposit(id, amountMinor);
+      maybeSnapshot();
+    }
+    return r;
+  }
+
+  public byte withdraw(int id, long amountMinor) {
+    byte r = engine.withdraw(id, amountMinor);
+    if (r == LedgerResult.OK) {
+      journal.appendWithdraw(id, amountMinor);
+      maybeSnapshot();
+    }
+    return r;
+  }
+
+  public byte transfer(int from, int to, long amountMinor) {
+    byte r = engine.transfer(from, to, amountMinor);
+    if (r == LedgerResult.OK) {
+      journal.appendTransfer(from, to, amountMinor);
+      maybeSnapshot();
+    }
+    return r;
+  }
+
+  public byte accrueInterest(int id, long ratePpm) {
+    byte r = engine.accrueInterest(id, ratePpm);
+    if (r == LedgerResult.OK) {
+      journal.appendAccrue(id, ratePpm);
+      maybeSnapshot();
+    }
+    return r;
+  }
+
+  /**
+   * Accrues interest on every savings account in parallel and journals it as one record;
+   * replay repeats the accrual, which is deterministic.
+   */
+  public InterestAccrual.Totals accrueInterestAll(long ratePpm, ForkJoinPool pool) {
+    InterestAccrual.Totals totals = InterestAccrual.accrue(engine, ratePpm, pool);
+    journal.appendAccrueAll(ratePpm);
+    maybeSnapshot();
+    return totals;
+  }
+
+  public void setStatus(int id, Account.Status status) {
+    engine.setStatus(id, status);
+    journal.appendStatus(id, (byte) status.ordinal());
+    maybeSnapshot();
+  }
+
+  /** Applies a batch and journals each accepted command; returns how many posted. */
+  public int apply(CommandBatch batch) {
+    int posted = engine.apply(batch);
+    for (int i = 0, n = batch.size(); i < n; i++) {
+      if (batch.result(i) != LedgerResult.OK) continue;
+      switch (batch.op(i)) {
+        case CommandBatch.DEPOSIT: journal.appendDeposit(batch.source(i), batch.amount(i)); break;
+        case CommandBatch.WITHDRAW: journal.appendWithdraw(batch.source(i), batch.amount(i)); break;
+        case CommandBatch.TRANSFER: journal.appendTransfer(batch.source(i), batch.target(i), batch.amount(i)); break;
+        default: throw new IllegalStateException("accepted unknown command " + batch.op(i));
+      }
+    }
+    maybeSnapshot();
+    return posted;
+  }
+
+  public void sync() { journal.sync(); }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      snapshotInFlight.join();
+    } catch (CompletionException e) {
+      // The journal still holds everything the failed snapshot would have covered.
+    }
+    journal.close();
+  }
+
+  private static void replay(LedgerEngine engine, long sequence, byte type, byte aux, int source, int target,
+                             long amount, long parameter) {
+    byte r;
+    switch (type) {
+      case LedgerJournal.OPEN:
+        int id = engine.open(aux, amount, parameter);
+        r = id == source ? LedgerResult.OK : LedgerResult.UNKNOWN_ACCOUNT;
+        break;
+      case LedgerJournal.DEPOSIT: r = engine.deposit(source, amount); break;
+      case LedgerJournal.WITHDRAW: r = engine.withdraw(source, amount); break;
+      case LedgerJournal.TRANSFER: r = engine.transfer(source, target, amount); break;
+      case LedgerJournal.ACCRUE: r = engine.accrueInterest(source, amount); break;
+      case LedgerJournal.ACCRUE_ALL:
+        InterestAccrual.accrue(engine, amount, ForkJoinPool.commonPool());
+        r = LedgerResult.OK;
+        break;
+      case LedgerJournal.STATUS:
+        engine.setStatus(source, STATUSES[aux]);
+        r = LedgerResult.OK;
+        break;
+      default: r = LedgerResult.UNKNOWN_COMMAND;
+    }
+    if (r != LedgerResult.OK) {
+      throw new IllegalStateException("journal replay diverged at sequence " + sequence + ": " + LedgerResult.name(r));
+    }
+  }
+}
@@ -0,0 +1,272 @@
+package com.veemahpay.domain.ledger;
+
+import com.veemahpay.domain.Account;
+
+import java.util.Arrays;
+
+/**
+ * In-process ledger applying the {@code com.veemahpay.domain} account rules to accounts
+ * stored column-wise: balance, status, kind, balance floor and per-transaction limit
+ * each live in a primitive array indexed by a dense account id. There is no object per
+ * account, and applying commands allocates nothing.
+ *
+ * <p>Validation follows the domain classes, in the same order:
+ * <ul>
+ *   <li>savings: balance may not go below zero;</li>
+ *   <li>checking: balance may go down to minus the overdraft limit;</li>
+ *   <li>student: like savings, and each withdrawal or outgoing transfer is capped.</li>
+ * </ul>
+ * A rejected command changes nothing. The engine is single-writer: callers serialize
+ * access, for example by funnelling batches through one thread.
+ */
+public final class LedgerEngine {
+  public static final byte SAVINGS = 0;
+  public static final byte CHECKING = 1;
+  public static final byte STUDENT = 2;
+
+  private static final byte ACTIVE = (byte) Account.Status.Active.ordinal();
+  private static final Account.Status[] STATUSES = Account.Status.values();
+
+  private long[] balance;
+  private long[] floor;
+  private long[] txLimit;
+  private byte[] status;
+  private byte[] kind;
+  private int size;
+
+  public LedgerEngine(int initialCapacity) {
+    int capacity = Math.max(16, initialCapacity);
+    balance = new long[capacity];
+    floor = new long[capacity];
+    txLimit = new long[capacity];
+    status = new byte[capacity];
+    kind = new byte[capacity];
+  }
+
+  public int openSavings(long balanceMinor) {
+    return open(SAVINGS, balanceMinor, 0L, Long.MAX_VALUE);
+  }
+
+  public int openChecking(long balanceMinor, long overdraftLimitMinor) {
+    if (overdraftLimitMinor < 0) throw new IllegalArgumentException("negative overdraft limit");
+    return open(CHECKING, balanceMinor, -overdraftLimitMinor, Long.MAX_VALUE);
+  }
+
+  public int openStudent(long balanceMinor, long perTransactionLimitMinor) {
+    if (perTransactionLimitMinor < 0) throw new IllegalArgumentException("negative transaction limit");
+    return open(STUDENT, balanceMinor, 0L, perTransactionLimitMinor);
+  }
+
+  /**
+   * Opens an account of the given kind; {@code parameterMinor} is the overdraft limit for
+   * CHECKING, the per-transaction limit for STUDENT and ignored for SAVINGS.
+   */
+  public int open(byte accountKind, long balanceMinor, long parameterMinor) {
+    switch (accountKind) {
+      case SAVINGS: return openSavings(balanceMinor);
+      case CHECKING: return openChecking(balanceMinor, parameterMinor);
+      case STUDENT: return openStudent(balanceMinor, parameterMinor);
+      default: throw new IllegalArgumentException("unknown account kind " + accountKind);
+    }
+  }
+
+  /** The value passed to {@link #open} as {@code parameterMinor} for this account. */
+  public long parameterMinor(int id) {
+    checkId(id);
+    return kind[id] == CHECKING ? -floor[id] : kind[id] == STUDENT ? txLimit[id] : 0L;
+  }
+
+  private int open(byte accountKind, long balanceMinor, long floorMinor, long limitMinor) {
+    if (balanceMinor < 0) throw new IllegalArgumentException("negative balance");
+    if (size == balance.length) grow();
+    int id = size++;
+    balance[id] = balanceMinor;
+    floor[id] = floorMinor;
+    txLimit[id] = limitMinor;
+    status[id] = ACTIVE;
+    kind[id] = accountKind;
+    return id;
+  }
+
+  public int size() { return size; }
+  public long balanceMinor(int id) { return balance[checkId(id)]; }
+  public byte kind(int id) { return kind[checkId(id)]; }
+  public Account.Status status(int id) { return STATUSES[status[checkId(id)]]; }
+
+  public void setStatus(int id, Account.Status newStatus) {
+    status[checkId(id)] = (byte) newStatus.ordinal();
+  }
+
+  /** Sum of all balances, for conservation checks. */
+  public long totalMinor() {
+    long total = 0;
+    for (int i = 0; i < size; i++) total = Math.addExact(total, balance[i]);
+    return total;
+  }
+
+  public byte deposit(int id, long amountMinor) {
+    if (id < 0 || id >= size) return LedgerResult.UNKNOWN_ACCOUNT;
+    if (status[id] != ACTIVE) return LedgerResult.ACCOUNT_UNAVAILABLE;
+    if (amountMinor <= 0) return LedgerResult.NON_POSITIVE_AMOUNT;
+    long next = balance[id] + amountMinor;
+    if (next < balance[id]) return LedgerResult.OVERFLOW;
+    balance[id] = next;
+    return LedgerResult.OK;
+  }
+
+  public byte withdraw(int id, long amountMinor) {
+    if (id < 0 || id >= size) return LedgerResult.UNKNOWN_ACCOUNT;
+    if (status[id] != ACTIVE) return LedgerResult.ACCOUNT_UNAVAILABLE;
+    if (amountMinor <= 0) return LedgerResult.NON_POSITIVE_AMOUNT;
+    if (amountMinor > txLimit[id]) return LedgerResult.LIMIT_EXCEEDED;
+    // balance >= floor >= -Long.MAX_VALUE, so this subtraction cannot wrap.
+    if (balance[id] - floor[id] < amountMinor) return LedgerResult.INSUFFICIENT_FUNDS;
+    balance[id] -= amountMinor;
+    return LedgerResult.OK;
+  }
+
+  public byte transfer(int from, int to, long amountMinor) {
+    if (from < 0 || from >= size) return LedgerResult.UNKNOWN_ACCOUNT;
+    if (status[from] != ACTIVE) return LedgerResult.ACCOUNT_UNAVAILABLE;
+    if (to < 0 || to >= size) return LedgerResult.UNKNOWN_ACCOUNT;
+    if (status[to] != ACTIVE) return LedgerResult.TARGET_UNAVAILABLE;
+    if (amountMinor <= 0) return LedgerResult.NON_POSITIVE_AMOUNT;
+    if (amountMinor > txLimit[from]) return LedgerResult.LIMIT_EXCEEDED;
+    if (balance[from] - floor[from] < amountMinor) return LedgerResult.INSUFFICIENT_FUNDS;
+    if (from == to) return LedgerResult.OK;
+    long credited = balance[to] + amountMinor;
+    if (credited < balance[to]) return LedgerResult.OVERFLOW;
+    balance[from] -= amountMinor;
+    balance[to] = credited;
+    return LedgerResult.OK;
+  }
+
+  /**
+   * Credits interest to a savings account like {@code SavingsAccount.accrueInterest}.
+   * The rate is in parts per million (0.05 = 50_000); interest is rounded half-up to the cent.
+   */
+  public byte accrueInterest(int id, long ratePpm) {
+    if (id < 0 || id >= size) return LedgerResult.UNKNOWN_ACCOUNT;
+    if (kind[id] != SAVINGS) return LedgerResult.NOT_SAVINGS;
+    if (status[id] != ACTIVE) return LedgerResult.ACCOUNT_UNAVAILABLE;
+    if (ratePpm <= 0) return LedgerResult.NON_POSITIVE_AMOUNT;
+    long interest = interestMinor(balance[id], ratePpm);
+    long next = balance[id] + interest;
+    if (interest < 0 || next < balance[id]) return LedgerResult.OVERFLOW;
+    balance[id] = next;
+    return LedgerResult.OK;
+  }
+
+  /**
+   * Accrues interest on every active savings account with id in [from, to), adding
+   * accounts credited, interest posted and accounts skipped for overflow into
+   * {@code totals}. Disjoint ranges touch disjoint array slots, so they may run in parallel
+   * while nothing else writes to the engine.
+   */
+  void accrueRange(int from, int to, long ratePpm, long[] totals) {
+    long accounts = 0;
+    long interestTotal = 0;
+    long overflowed = 0;
+    for (int id = from; id < to; id++) {
+      if (kind[id] != SAVINGS || status[id] != ACTIVE) continue;
+      long interest = interestMinor(balance[id], ratePpm);
+      long next = balance[id] + interest;
+      if (interest < 0 || next < balance[id]) {
+        overflowed++;
+        continue;
+      }
+      balance[id] = next;
+      accounts++;
+      interestTotal = Math.addExact(interestTotal, interest);
+    }
+    totals[0] += accounts;
+    totals[1] = Math.addExact(totals[1], interestTotal);
+    totals[2] += overflowed;
+  }
+
+  /** balance * ratePpm / 1e6, rounded half-up; -1 on overflow. Balances here are never negative. */
+  static long interestMinor(long balanceMinor, long ratePpm) {
+    long high = Math.multiplyHigh(balanceMinor, ratePpm);
+    long low = balanceMinor * ratePpm;
+    if (high != 0 || low < 0 || low > Long.MAX_VALUE - 500_000L) return -1L;
+    return (low + 500_000L) / 1_000_000L;
+  }
+
+  /**
+   * Copies the account columns. Called on the writer thread between commands, the copy is
+   * a consistent cut; it costs one array copy per column and nothing afterwards.
+   */
+  public Image image() {
+    return new Image(size, Arrays.copyOf(balance, size), Arrays.copyOf(floor, size),
+      Arrays.copyOf(txLimit, size), Arrays.copyOf(status, size), Arrays.copyOf(kind, size));
+  }
+
+  /** Rebuilds an engine from an image; account ids are preserved. */
+  public static LedgerEngine fromImage(Image image) {
+    LedgerEngine engine = new LedgerEngine(image.size + (image.size >> 2));
+    System.arraycopy(image.balance, 0, engine.balance, 0, image.size);
+    System.arraycopy(image.floor, 0, engine.floor, 0, image.size);
+    System.arraycopy(image.txLimit, 0, engine.txLimit, 0, image.size);
+    System.arraycopy(image.status, 0, engine.status, 0, image.size);
+    System.arraycopy(image.kind, 0, engine.kind, 0, image.size);
+    engine.size = image.size;
+    return engine;
+  }
+
+  /** Point-in-time copy of every account column, indexed by account id. */
+  public static final class Image {
+    final int size;
+    final long[] balance;
+    final long[] floor;
+    final long[] txLimit;
+    final byte[] status;
+    final byte[] kind;
+
+    Image(int size, long[] balance, long[] floor, long[] txLimit, byte[] status, byte[] kind) {
+      this.size = size;
+      this.balance = balance;
+      this.floor = floor;
+      this.txLimit = txLimit;
+      this.status = status;
+      this.kind = kind;
+    }
+
+    public int size() { return size; }
+  }
+
+  /** Applies every command in order, recording each result in the batch; returns how many posted. */
+  public int apply(CommandBatch batch) {
+    int posted = 0;
+    byte[] op = batch.op;
+    int[] source = batch.source;
+    int[] target = batch.target;
+    long[] amount = batch.amount;
+    byte[] result = batch.result;
+    for (int i = 0, n = batch.size; i < n; i++) {
+      byte r;
+      switch (op[i]) {
+        case CommandBatch.DEPOSIT: r = deposit(source[i], amount[i]); break;
+        case CommandBatch.WITHDRAW: r = withdraw(source[i], amount[i]); break;
+        case CommandBatch.TRANSFER: r = transfer(source[i], target[i], amount[i]); break;
+        default: r = LedgerResult.UNKNOWN_COMMAND;
+      }
+      result[i] = r;
+      if (r == LedgerResult.OK) posted++;
+    }
+    return posted;
+  }
+
+  private int checkId(int id) {
+    if (id < 0 || id >= size) throw new IndexOutOfBoundsException("unknown account id " + id);
+    return id;
+  }
+
+  private void grow() {
+    int capacity = balance.length + (balance.length >> 1);
+    balance = Arrays.copyOf(balance, capacity);
+    floor = Arrays.copyOf(floor, capacity);
+    txLimit = Arrays.copyOf(txLimit, capacity);
+    status = Arrays.copyOf(status, capacity);
+    kind = Arrays.copyOf(kind, capacity);
+  }
+}
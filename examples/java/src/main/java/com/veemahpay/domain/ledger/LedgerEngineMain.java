@@ -0,0 +1,129 @@
+package com.veemahpay.domain.ledger;
+
+import com.veemahpay.domain.Account;
+import com.veemahpay.domain.CheckingAccount;
+import com.veemahpay.domain.Money;
+import com.veemahpay.domain.SavingsAccount;
+import com.veemahpay.domain.StudentAccount;
+
+import java.util.SplittableRandom;
+
+/**
+ * Two checks for {@link LedgerEngine}:
+ * <ol>
+ *   <li>replays random commands against both the engine and the domain classes and
+ *       requires identical accept/reject decisions and balances;</li>
+ *   <li>measures batch throughput over many accounts and checks conservation.</li>
+ * </ol>
+ * Usage: LedgerEngineMain [accounts] [batches] [batchSize]
+ */
+public final class LedgerEngineMain {
+  public static void main(String[] args) {
+    int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    int batches = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+    int batchSize = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+
+    crossCheck(200_000);
+    throughput(accounts, batches, batchSize);
+  }
+
+  private static void crossCheck(int commands) {
+    SplittableRandom rnd = new SplittableRandom(42);
+    LedgerEngine engine = new LedgerEngine(16);
+    Account[] domain = new Account[12];
+    for (int i = 0; i < domain.length; i++) {
+      long opening = 50_000;
+      String number = String.valueOf(1000 + i);
+      switch (i % 3) {
+        case 0:
+          engine.openSavings(opening);
+          domain[i] = new SavingsAccount(number, "S" + i, Money.ofMinor(opening), Account.Status.Active);
+          break;
+        case 1:
+          engine.openChecking(opening, 20_000);
+          domain[i] = new CheckingAccount(number, "C" + i, Money.ofMinor(opening), Account.Status.Active, Money.ofMinor(20_000));
+          break;
+        default:
+          engine.openStudent(opening, 5_000);
+          domain[i] = new StudentAccount(number, "T" + i, Money.ofMinor(opening), Account.Status.Active, Money.ofMinor(5_000));
+      }
+    }
+
+    for (int c = 0; c < commands; c++) {
+      int a = rnd.nextInt(domain.length);
+      int b = rnd.nextInt(domain.length);
+      long amount = rnd.nextInt(12) == 0 ? -rnd.nextInt(100) : rnd.nextInt(1, 15_000);
+      if (rnd.nextInt(50) == 0) {
+        Account.Status s = rnd.nextBoolean() ? Account.Status.Active : Account.Status.Locked;
+        engine.setStatus(a, s);
+        domain[a].setStatus(s);
+        continue;
+      }
+      int op = rnd.nextInt(3);
+      byte r = op == 0 ? engine.deposit(a, amount) : op == 1 ? engine.withdraw(a, amount) : engine.transfer(a, b, amount);
+      boolean domainOk = true;
+      try {
+        Money m = Money.ofMinor(amount);
+        if (op == 0) domain[a].deposit(m);
+        else if (op == 1) domain[a].withdraw(m);
+        else domain[a].transfer(domain[b], m);
+      } catch (RuntimeException e) {
+        domainOk = false;
+      }
+      if (domainOk != (r == LedgerResult.OK)) {
+        throw new AssertionError("command " + c + " op=" + op + " engine=" + LedgerResult.name(r) + " domain=" + domainOk);
+      }
+    }
+    for (int i = 0; i < domain.length; i++) {
+      if (engine.balanceMinor(i) != domain[i].getBalance().minorUnits()) {
+        throw new AssertionError("balance mismatch on account " + i);
+      }
+    }
+    System.out.println("cross-check: " + commands + " commands agree with the domain classes");
+  }
+
+  private static void throughput(int accounts, int batches, int batchSize) {
+    LedgerEngine engine = new LedgerEngine(accounts);
+    for (int i = 0; i < accounts; i++) {
+      switch (i % 3) {
+        case 0: engine.openSavings(100_000); break;
+        case 1: engine.openChecking(100_000, 50_000); break;
+        default: engine.openStudent(100_000, 20_000);
+      }
+    }
+    long initial = engine.totalMinor();
+
+    SplittableRandom rnd = new SplittableRandom(7);
+    CommandBatch batch = new CommandBatch(batchSize);
+    long deposited = 0;
+    long withdrawn = 0;
+    long posted = 0;
+    long applyNanos = 0;
+    for (int b = 0; b < batches; b++) {
+      batch.clear();
+      for (int i = 0; i < batchSize; i++) {
+        int op = rnd.nextInt(3);
+        int src = rnd.nextInt(accounts);
+        long amount = rnd.nextInt(1, 30_000);
+        if (op == 0) batch.deposit(src, amount);
+        else if (op == 1) batch.withdraw(src, amount);
+        else batch.transfer(src, rnd.nextInt(accounts), amount);
+      }
+      long start = System.nanoTime();
+      posted += engine.apply(batch);
+      applyNanos += System.nanoTime() - start;
+      for (int i = 0; i < batch.size(); i++) {
+        if (batch.result(i) != LedgerResult.OK) continue;
+        if (batch.op(i) == CommandBatch.DEPOSIT) deposited += batch.amount(i);
+        else if (batch.op(i) == CommandBatch.WITHDRAW) withdrawn += batch.amount(i);
+      }
+    }
+
+    long commands = (long) batches * batchSize;
+    System.out.printf("accounts=%d commands=%d posted=%d%n", accounts, commands, posted);
+    System.out.printf("apply throughput=%.0f commands/s%n", commands / (applyNanos / 1e9));
+    boolean conserved = engine.totalMinor() == initial + deposited - withdrawn;
+    System.out.println(conserved ? "CONSERVED" : "VIOLATION");
+    if (!conserved) System.exit(1);
+  }
+}
@@ -0,0 +1,298 @@
+package com.veemahpay.domain.ledger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only, memory-mapped journal of applied ledger commands.
+ *
+ * <p>Every record is {@value #RECORD_SIZE} bytes, little-endian:
+ * <pre>
+ *  0  int   CRC32C of bytes 4..39
+ *  4  byte  type (OPEN, DEPOSIT, WITHDRAW, TRANSFER, ACCRUE, STATUS, ACCRUE_ALL)
+ *  5  byte  aux: account kind for OPEN, status ordinal for STATUS
+ *  6  short reserved, zero
+ *  8  long  sequence, starting at 1 and gapless
+ * 16  int   source account id
+ * 20  int   target account id, or -1
+ * 24  long  amount in minor units; opening balance for OPEN; rate in ppm for ACCRUE and ACCRUE_ALL
+ * 32  long  OPEN parameter (overdraft or per-transaction limit), else zero
+ * </pre>
+ * Segments are pre-sized files named after their first sequence and filled front to back.
+ * A full segment is forced to disk and the next one is mapped. Appends accumulate until
+ * {@code syncEveryRecords} records or {@code syncIntervalNanos} have passed, then the dirty
+ * range is forced in one call (group commit); {@link #sync} forces on demand.
+ *
+ * <p>Recovery reads segments in order and stops at the first record that is zeroed, fails
+ * its CRC or breaks the sequence, which is where a crash tore the tail. Appending resumes
+ * there. Only the last segment may end early; a bad record in an earlier one is corruption
+ * and fails the open. A torn tail can only sit in the last segment, so the extra work a
+ * crash costs at recovery is bounded by the segment size.
+ */
+public final class LedgerJournal implements AutoCloseable {
+  public static final int RECORD_SIZE = 40;
+
+  public static final byte OPEN = 1;
+  public static final byte DEPOSIT = 2;
+  public static final byte WITHDRAW = 3;
+  public static final byte TRANSFER = 4;
+  public static final byte ACCRUE = 5;
+  public static final byte STATUS = 6;
+  public static final byte ACCRUE_ALL = 7;
+
+  private static final String SUFFIX = ".seg";
+
+  /** Tuning knobs; {@code syncEveryRecords <= 0} and {@code syncIntervalNanos <= 0} disable each trigger. */
+  public static final class Options {
+    final long segmentBytes;
+    final int syncEveryRecords;
+    final long syncIntervalNanos;
+
+    public Options(long segmentBytes, int syncEveryRecords, long syncIntervalNanos) {
+      if (segmentBytes < RECORD_SIZE || segmentBytes > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("segment size must be between one record and 2 GiB");
+      }
+      this.segmentBytes = segmentBytes - segmentBytes % RECORD_SIZE;
+      this.syncEveryRecords = syncEveryRecords;
+      this.syncIntervalNanos = syncIntervalNanos;
+    }
+
+    public static Options defaults() {
+      return new Options(64L << 20, 4096, 2_000_000L);
+    }
+  }
+
+  /** Receives replayed records in sequence order. */
+  public interface RecordHandler {
+    void record(long sequence, byte type, byte aux, int source, int target, long amount, long parameter);
+  }
+
+  private final Path directory;
+  private final Options options;
+  private final CRC32C crc = new CRC32C();
+  private final byte[] scratch = new byte[RECORD_SIZE];
+  private final ByteBuffer scratchView = ByteBuffer.wrap(scratch).order(ByteOrder.LITTLE_ENDIAN);
+
+  private FileChannel channel;
+  private MappedByteBuffer segment;
+  private volatile long segmentFirstSequence;
+  private long nextSequence;
+  private int syncedUpTo;
+  private int pending;
+  private long lastSyncNanos;
+
+  private LedgerJournal(Path directory, Options options) {
+    this.directory = directory;
+    this.options = options;
+  }
+
+  /**
+   * Opens the journal in {@code directory}, replaying every intact record with a sequence
+   * above {@code afterSequence} into {@code handler} first. Appends continue after the last
+   * intact record.
+   */
+  public static LedgerJournal open(Path directory, Options options, long afterSequence, RecordHandler handler)
+      throws IOException {
+    Files.createDirectories(directory);
+    LedgerJournal journal = new LedgerJournal(directory, options);
+    journal.recover(afterSequence, handler);
+    return journal;
+  }
+
+  /** Sequence the next append will receive. */
+  public long nextSequence() { return nextSequence; }
+
+  public Path directory() { return directory; }
+
+  public long appendOpen(int id, byte kind, long balanceMinor, long parameterMinor) {
+    return append(OPEN, kind, id, -1, balanceMinor, parameterMinor);
+  }
+
+  public long appendDeposit(int id, long amountMinor) { return append(DEPOSIT, (byte) 0, id, -1, amountMinor, 0L); }
+  public long appendWithdraw(int id, long amountMinor) { return append(WITHDRAW, (byte) 0, id, -1, amountMinor, 0L); }
+  public long appendTransfer(int from, int to, long amountMinor) { return append(TRANSFER, (byte) 0, from, to, amountMinor, 0L); }
+  public long appendAccrue(int id, long ratePpm) { return append(ACCRUE, (byte) 0, id, -1, ratePpm, 0L); }
+  public long appendStatus(int id, byte statusOrdinal) { return append(STATUS, statusOrdinal, id, -1, 0L, 0L); }
+  public long appendAccrueAll(long ratePpm) { return append(ACCRUE_ALL, (byte) 0, -1, -1, ratePpm, 0L); }
+
+  /** Appends one record and returns its sequence. Does not allocate unless a segment rolls. */
+  public long append(byte type, byte aux, int source, int target, long amount, long parameter) {
+    if (segment.remaining() < RECORD_SIZE) roll();
+    long sequence = nextSequence++;
+    scratchView.putInt(0, 0);
+    scratchView.put(4, type);
+    scratchView.put(5, aux);
+    scratchView.putShort(6, (short) 0);
+    scratchView.putLong(8, sequence);
+    scratchView.putInt(16, source);
+    scratchView.putInt(20, target);
+    scratchView.putLong(24, amount);
+    scratchView.putLong(32, parameter);
+    crc.reset();
+    crc.update(scratch, 4, RECORD_SIZE - 4);
+    scratchView.putInt(0, (int) crc.getValue());
+    segment.put(scratch, 0, RECORD_SIZE);
+
+    pending++;
+    if (options.syncEveryRecords > 0 && pending >= options.syncEveryRecords) {
+      sync();
+    } else if (options.syncIntervalNanos > 0 && System.nanoTime() - lastSyncNanos >= options.syncIntervalNanos) {
+      sync();
+    }
+    return sequence;
+  }
+
+  /** Forces every appended record to storage. */
+  public void sync() {
+    int end = segment.position();
+    if (end > syncedUpTo) segment.force(syncedUpTo, end - syncedUpTo);
+    syncedUpTo = end;
+    pending = 0;
+    lastSyncNanos = System.nanoTime();
+  }
+
+  /**
+   * Deletes whole segments whose records all have sequences at or below {@code sequence},
+   * for example once a snapshot covers them. The active segment is never deleted, so this
+   * may run on another thread while the writer appends.
+   */
+  public int deleteSegmentsCoveredBy(long sequence) throws IOException {
+    int deleted = 0;
+    List<Long> firsts = segmentFirstSequences();
+    for (int i = 0; i + 1 < firsts.size(); i++) {
+      long lastInSegment = firsts.get(i + 1) - 1;
+      if (lastInSegment <= sequence && firsts.get(i) != segmentFirstSequence) {
+        Files.deleteIfExists(segmentPath(firsts.get(i)));
+        deleted++;
+      }
+    }
+    return deleted;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (channel == null) return;
+    sync();
+    channel.close();
+    channel = null;
+    segment = null;
+  }
+
+  private void recover(long afterSequence, RecordHandler handler) throws IOException {
+    List<Long> firsts = segmentFirstSequences();
+    long expected = firsts.isEmpty() ? 1L : firsts.get(0);
+    if (afterSequence + 1 < expected) {
+      throw new IOException("journal starts at " + expected + " but replay needs records after " + afterSequence);
+    }
+    for (int i = 0; i < firsts.size(); i++) {
+      long first = firsts.get(i);
+      if (first != expected) throw new IOException("journal gap: expected segment " + expected + " found " + first);
+      boolean last = i == firsts.size() - 1;
+      try (FileChannel ch = FileChannel.open(segmentPath(first), StandardOpenOption.READ)) {
+        MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        int validBytes = scan(buf, expected, afterSequence, handler);
+        expected += validBytes / RECORD_SIZE;
+        if (!last && validBytes != buf.capacity()) {
+          throw new IOException("corrupt record in sealed segment " + segmentPath(first) + " at byte " + validBytes);
+        }
+        if (last) {
+          if (expected <= afterSequence) {
+            throw new IOException("journal ends at " + (expected - 1) + " but state already covers " + afterSequence);
+          }
+          mapForAppend(first, validBytes);
+          nextSequence = expected;
+          return;
+        }
+      }
+    }
+    nextSequence = Math.max(expected, afterSequence + 1);
+    mapForAppend(nextSequence, 0);
+  }
+
+  /** Returns the number of leading bytes holding intact, in-sequence records. */
+  private int scan(MappedByteBuffer buf, long firstSequence, long afterSequence, RecordHandler handler) {
+    long expected = firstSequence;
+    int limit = buf.capacity() - buf.capacity() % RECORD_SIZE;
+    int offset = 0;
+    while (offset < limit) {
+      byte type = buf.get(offset + 4);
+      if (type < OPEN || type > ACCRUE_ALL) break;
+      buf.get(offset, scratch, 0, RECORD_SIZE);
+      crc.reset();
+      crc.update(scratch, 4, RECORD_SIZE - 4);
+      if ((int) crc.getValue() != buf.getInt(offset)) break;
+      long sequence = buf.getLong(offset + 8);
+      if (sequence != expected) break;
+      if (sequence > afterSequence) {
+        handler.record(sequence, type, buf.get(offset + 5), buf.getInt(offset + 16), buf.getInt(offset + 20),
+          buf.getLong(offset + 24), buf.getLong(offset + 32));
+      }
+      expected++;
+      offset += RECORD_SIZE;
+    }
+    return offset;
+  }
+
+  private void mapForAppend(long firstSequence, int position) throws IOException {
+    if (channel != null) channel.close();
+    Path path = segmentPath(firstSequence);
+    channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    boolean fresh = channel.size() == 0;
+    long size = Math.max(channel.size(), options.segmentBytes);
+    segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size - size % RECORD_SIZE);
+    segment.order(ByteOrder.LITTLE_ENDIAN);
+    // A crash can leave intact records past a torn one (pages flush in any order). Slot n
+    // always holds sequence first + n, so once appends resume they would read back as a
+    // valid continuation; clear them now. This walk is what bounds recovery by segment size.
+    boolean cleared = false;
+    for (int slot = position; !fresh && slot + RECORD_SIZE <= segment.capacity(); slot += RECORD_SIZE) {
+      if (segment.get(slot + 4) != 0) {
+        segment.put(slot + 4, (byte) 0);
+        cleared = true;
+      }
+    }
+    if (cleared) segment.force();
+    segment.position(position);
+    segmentFirstSequence = firstSequence;
+    syncedUpTo = position;
+    pending = 0;
+    lastSyncNanos = System.nanoTime();
+  }
+
+  private void roll() {
+    try {
+      sync();
+      mapForAppend(nextSequence, 0);
+    } catch (IOException e) {
+      throw new UncheckedIOException("cannot roll journal segment", e);
+    }
+  }
+
+  private List<Long> segmentFirstSequences() throws IOException {
+    List<Long> firsts = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        firsts.add(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())));
+      }
+    }
+    firsts.sort(null);
+    return firsts;
+  }
+
+  private Path segmentPath(long firstSequence) {
+    return directory.resolve(String.format("%020d%s", firstSequence, SUFFIX));
+  }
+}
@@ -0,0 +1,29 @@
+package com.veemahpay.domain.ledger;
+
+/**
+ * Per-command result codes written by {@link LedgerEngine#apply}. Codes are bytes so a
+ * batch reports into a reusable array instead of one object per command.
+ */
+public final class LedgerResult {
+  public static final byte OK = 0;
+  public static final byte UNKNOWN_ACCOUNT = 1;
+  public static final byte ACCOUNT_UNAVAILABLE = 2;
+  public static final byte TARGET_UNAVAILABLE = 3;
+  public static final byte NON_POSITIVE_AMOUNT = 4;
+  public static final byte LIMIT_EXCEEDED = 5;
+  public static final byte INSUFFICIENT_FUNDS = 6;
+  public static final byte OVERFLOW = 7;
+  public static final byte UNKNOWN_COMMAND = 8;
+  public static final byte NOT_SAVINGS = 9;
+
+  private static final String[] NAMES = {
+    "OK", "UNKNOWN_ACCOUNT", "ACCOUNT_UNAVAILABLE", "TARGET_UNAVAILABLE", "NON_POSITIVE_AMOUNT",
+    "LIMIT_EXCEEDED", "INSUFFICIENT_FUNDS", "OVERFLOW", "UNKNOWN_COMMAND", "NOT_SAVINGS"
+  };
+
+  private LedgerResult() {}
+
+  public static String name(byte code) {
+    return code >= 0 && code < NAMES.length ? NAMES[code] : "CODE_" + code;
+  }
+}
@@ -0,0 +1,164 @@
+package com.veemahpay.domain.ledger;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary snapshot files of a {@link LedgerEngine}, named after the journal sequence they cover.
+ *
+ * <p>Layout, little-endian:
+ * <pre>
+ *  0  int    magic "VPLS"
+ *  4  int    format version
+ *  8  long   last journal sequence applied to this state
+ * 16  int    account count n
+ * 20  int    reserved, zero
+ * 24  long[n] balance, long[n] floor, long[n] transaction limit, byte[n] status, byte[n] kind
+ * ..  int    CRC32C of everything before it
+ * </pre>
+ * Files are written under a temporary name, forced, then renamed into place, so a crash
+ * leaves either the old set of snapshots or the new one. Loading falls back to the next
+ * older snapshot if the newest fails its checksum.
+ */
+public final class LedgerSnapshot {
+  private static final int MAGIC = 0x534C5056;
+  private static final int VERSION = 1;
+  private static final int HEADER = 24;
+  private static final String SUFFIX = ".snap";
+  private static final String TEMP_SUFFIX = ".snap.tmp";
+
+  private final long sequence;
+  private final LedgerEngine engine;
+
+  private LedgerSnapshot(long sequence, LedgerEngine engine) {
+    this.sequence = sequence;
+    this.engine = engine;
+  }
+
+  /** Journal sequence the state reflects; replay continues after it. */
+  public long sequence() { return sequence; }
+  public LedgerEngine engine() { return engine; }
+
+  /** Writes {@code image} as the snapshot for {@code sequence} and returns its path. */
+  public static Path write(Path directory, long sequence, LedgerEngine.Image image) throws IOException {
+    Files.createDirectories(directory);
+    int n = image.size;
+    long bytes = HEADER + 26L * n + 4;
+    if (bytes > Integer.MAX_VALUE) throw new IOException("snapshot of " + n + " accounts exceeds 2 GiB");
+    Path target = path(directory, sequence);
+    Path temp = directory.resolve(target.getFileName() + ".tmp");
+    try (FileChannel ch = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+      buf.order(ByteOrder.LITTLE_ENDIAN);
+      buf.putInt(MAGIC).putInt(VERSION).putLong(sequence).putInt(n).putInt(0);
+      buf.asLongBuffer().put(image.balance, 0, n);
+      buf.position(buf.position() + 8 * n);
+      buf.asLongBuffer().put(image.floor, 0, n);
+      buf.position(buf.position() + 8 * n);
+      buf.asLongBuffer().put(image.txLimit, 0, n);
+      buf.position(buf.position() + 8 * n);
+      buf.put(image.status, 0, n);
+      buf.put(image.kind, 0, n);
+      buf.putInt(checksum(buf, (int) bytes - 4));
+      buf.force();
+    }
+    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    return target;
+  }
+
+  /** Loads the newest intact snapshot in {@code directory}, or returns null if there is none. */
+  public static LedgerSnapshot loadLatest(Path directory) throws IOException {
+    List<Long> sequences = sequences(directory);
+    for (int i = sequences.size() - 1; i >= 0; i--) {
+      LedgerSnapshot snapshot = read(path(directory, sequences.get(i)));
+      if (snapshot != null) return snapshot;
+    }
+    return null;
+  }
+
+  /** Deletes all but the newest {@code keep} snapshots and any leftover temporary files. */
+  public static int prune(Path directory, int keep) throws IOException {
+    if (!Files.isDirectory(directory)) return 0;
+    int deleted = 0;
+    try (DirectoryStream<Path> temps = Files.newDirectoryStream(directory, "*" + TEMP_SUFFIX)) {
+      for (Path temp : temps) if (Files.deleteIfExists(temp)) deleted++;
+    }
+    List<Long> sequences = sequences(directory);
+    for (int i = 0; i < sequences.size() - keep; i++) {
+      if (Files.deleteIfExists(path(directory, sequences.get(i)))) deleted++;
+    }
+    return deleted;
+  }
+
+  /** Sequence of the oldest snapshot on disk, or -1 if there is none. */
+  public static long oldestSequence(Path directory) throws IOException {
+    List<Long> sequences = sequences(directory);
+    return sequences.isEmpty() ? -1L : sequences.get(0);
+  }
+
+  /** Returns null when the file is truncated or fails its checksum. */
+  private static LedgerSnapshot read(Path file) throws IOException {
+    try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+      long bytes = ch.size();
+      if (bytes < HEADER + 4 || bytes > Integer.MAX_VALUE) return null;
+      MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, bytes);
+      buf.order(ByteOrder.LITTLE_ENDIAN);
+      if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) return null;
+      long sequence = buf.getLong(8);
+      int n = buf.getInt(16);
+      if (n < 0 || HEADER + 26L * n + 4 != bytes) return null;
+      if (checksum(buf, (int) bytes - 4) != buf.getInt((int) bytes - 4)) return null;
+
+      long[] balance = new long[n];
+      long[] floor = new long[n];
+      long[] txLimit = new long[n];
+      byte[] status = new byte[n];
+      byte[] kind = new byte[n];
+      buf.position(HEADER);
+      buf.asLongBuffer().get(balance);
+      buf.position(buf.position() + 8 * n);
+      buf.asLongBuffer().get(floor);
+      buf.position(buf.position() + 8 * n);
+      buf.asLongBuffer().get(txLimit);
+      buf.position(buf.position() + 8 * n);
+      buf.get(status);
+      buf.get(kind);
+      LedgerEngine.Image image = new LedgerEngine.Image(n, balance, floor, txLimit, status, kind);
+      return new LedgerSnapshot(sequence, LedgerEngine.fromImage(image));
+    }
+  }
+
+  private static int checksum(MappedByteBuffer buf, int length) {
+    CRC32C crc = new CRC32C();
+    crc.update(buf.slice(0, length));
+    return (int) crc.getValue();
+  }
+
+  private static List<Long> sequences(Path directory) throws IOException {
+    List<Long> sequences = new ArrayList<>();
+    if (!Files.isDirectory(directory)) return sequences;
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        sequences.add(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())));
+      }
+    }
+    sequences.sort(null);
+    return sequences;
+  }
+
+  private static Path path(Path directory, long sequence) {
+    return directory.resolve(String.format("%020d%s", sequence, SUFFIX));
+  }
+}
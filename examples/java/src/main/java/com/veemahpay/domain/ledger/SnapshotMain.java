@@ -0,0 +1,110 @@
+package com.veemahpay.domain.ledger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Restart-time benchmark. For each account count and journal tail length it journals a
+ * history, times a full replay of it, snapshots, journals the tail, then times a restart
+ * from snapshot plus tail and checks the recovered state matches. A last run leaves
+ * periodic snapshots on and checks compaction keeps the journal short.
+ * Usage: SnapshotMain [dir] [historyCommands]
+ */
+public final class SnapshotMain {
+  private static final int[] ACCOUNTS = {10_000, 100_000, 1_000_000};
+  private static final int[] TAILS = {0, 100_000, 1_000_000};
+
+  public static void main(String[] args) throws Exception {
+    Path root = Path.of(args.length > 0 ? args[0] : "ledger-restart");
+    int history = args.length > 1 ? Integer.parseInt(args[1]) : 4_000_000;
+    LedgerJournal.Options options = new LedgerJournal.Options(16L << 20, 4096, 2_000_000L);
+    Path journalDir = root.resolve("journal");
+    Path snapshotDir = root.resolve("snapshots");
+    ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+      Thread t = new Thread(r, "ledger-snapshot");
+      t.setDaemon(true);
+      return t;
+    });
+
+    System.out.printf("%10s %10s %14s %8s %12s %10s%n",
+      "accounts", "tail", "full replay ms", "cut ms", "restart ms", "segments");
+    for (int accounts : ACCOUNTS) {
+      for (int tail : TAILS) {
+        JournalMain.deleteRecursively(root);
+        SplittableRandom rnd = new SplittableRandom(accounts + tail);
+        try (JournaledLedger ledger = JournaledLedger.open(journalDir, options, accounts)) {
+          openAccounts(ledger, accounts);
+          run(ledger, rnd, accounts, history);
+        }
+
+        long start = System.nanoTime();
+        LedgerEngine expected;
+        double cutMs;
+        long fullMs;
+        try (JournaledLedger ledger = JournaledLedger.open(journalDir, options, accounts)) {
+          fullMs = (System.nanoTime() - start) / 1_000_000;
+          ledger.enableSnapshots(snapshotDir, Long.MAX_VALUE, writer);
+          long cutStart = System.nanoTime();
+          ledger.engine().image();
+          cutMs = (System.nanoTime() - cutStart) / 1e6;
+          ledger.snapshot().join();
+          run(ledger, rnd, accounts, tail);
+          expected = ledger.engine();
+        }
+
+        start = System.nanoTime();
+        try (JournaledLedger restarted = JournaledLedger.open(journalDir, snapshotDir, options, accounts)) {
+          long restartMs = (System.nanoTime() - start) / 1_000_000;
+          JournalMain.requireSame(expected, restarted.engine());
+          System.out.printf("%10d %10d %14d %8.2f %12d %10d%n",
+            accounts, tail, fullMs, cutMs, restartMs, segments(journalDir));
+        }
+      }
+    }
+
+    JournalMain.deleteRecursively(root);
+    LedgerEngine expected;
+    try (JournaledLedger ledger = JournaledLedger.open(journalDir, snapshotDir, options, 100_000)) {
+      ledger.enableSnapshots(snapshotDir, 500_000, writer);
+      openAccounts(ledger, 100_000);
+      run(ledger, new SplittableRandom(7), 100_000, history);
+      expected = ledger.engine();
+    }
+    try (JournaledLedger restarted = JournaledLedger.open(journalDir, snapshotDir, options, 100_000)) {
+      JournalMain.requireSame(expected, restarted.engine());
+      System.out.printf("periodic snapshots every 500000 records: %d journal segments left of %d written; RESTART OK%n",
+        segments(journalDir), restarted.lastSequence() * LedgerJournal.RECORD_SIZE / options.segmentBytes + 1);
+    }
+    JournalMain.deleteRecursively(root);
+    writer.shutdown();
+  }
+
+  private static void openAccounts(JournaledLedger ledger, int accounts) {
+    for (int i = 0; i < accounts; i++) {
+      if (i % 2 == 0) ledger.openSavings(100_000);
+      else ledger.openChecking(100_000, 50_000);
+    }
+  }
+
+  private static void run(JournaledLedger ledger, SplittableRandom rnd, int accounts, int commands) {
+    for (int c = 0; c < commands; c++) {
+      int a = rnd.nextInt(accounts);
+      long amount = rnd.nextInt(1, 30_000);
+      int op = rnd.nextInt(10);
+      if (op < 3) ledger.deposit(a, amount);
+      else if (op < 6) ledger.withdraw(a, amount);
+      else ledger.transfer(a, rnd.nextInt(accounts), amount);
+    }
+  }
+
+  private static long segments(Path journalDir) throws IOException {
+    try (Stream<Path> files = Files.list(journalDir)) {
+      return files.count();
+    }
+  }
+}
@@ -0,0 +1,125 @@
+package com.veemahpay.domain.velocity;
+
+import com.veemahpay.domain.Account.Status;
+import com.veemahpay.domain.Money;
+import com.veemahpay.domain.StudentAccount;
+import com.veemahpay.domain.concurrent.ConcurrentStudentAccount;
+import com.veemahpay.domain.index.AccountNumberCodec;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Velocity limiter checks and timing: window rules on a fake clock, a contended account
+ * that must never overshoot its limit, the domain account wiring, and the cost of one
+ * {@code tryAcquire} across many accounts.
+ * Usage: VelocityLimiterMain [accounts] [operations]
+ */
+public final class VelocityLimiterMain {
+  public static void main(String[] args) throws Exception {
+    int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+    int operations = args.length > 1 ? Integer.parseInt(args[1]) : 20_000_000;
+
+    AtomicLong clock = new AtomicLong(1_700_000_000_000L);
+    VelocityLimiter limiter = new VelocityLimiter(clock::get);
+    long key = AccountNumberCodec.key("45678");
+    if (key == AccountNumberCodec.key("045678")) throw new AssertionError("leading zeros must give a different key");
+
+    VelocityPolicy fivePerHour = VelocityPolicy.of(0, 5, 0, 8);
+    for (int i = 0; i < 5; i++) require(limiter.tryAcquire(key, fivePerHour, 100), VelocityLimiter.OK);
+    require(limiter.tryAcquire(key, fivePerHour, 100), VelocityLimiter.HOURLY_COUNT);
+    clock.addAndGet(61 * 60_000L);
+    for (int i = 0; i < 3; i++) require(limiter.tryAcquire(key, fivePerHour, 100), VelocityLimiter.OK);
+    require(limiter.tryAcquire(key, fivePerHour, 100), VelocityLimiter.DAILY_COUNT);
+    clock.addAndGet(24 * 60 * 60_000L);
+    require(limiter.tryAcquire(key, fivePerHour, 100), VelocityLimiter.OK);
+
+    long released = clock.get();
+    VelocityPolicy spend = VelocityPolicy.of(10_000, 0, 0, 0);
+    long other = AccountNumberCodec.key("23456");
+    require(limiter.tryAcquire(other, spend, 10_000, released), VelocityLimiter.OK);
+    require(limiter.tryAcquire(other, spend, 1, released), VelocityLimiter.HOURLY_AMOUNT);
+    limiter.release(other, spend, 10_000, released);
+    require(limiter.tryAcquire(other, spend, 10_000, released), VelocityLimiter.OK);
+
+    // Count limits only: amounts past the bucket's 30-bit field saturate, they are not refused.
+    long large = AccountNumberCodec.key("34567");
+    for (int i = 0; i < 5; i++) require(limiter.tryAcquire(large, fivePerHour, 900_000_000L), VelocityLimiter.OK);
+    require(limiter.tryAcquire(large, fivePerHour, 900_000_000L), VelocityLimiter.HOURLY_COUNT);
+    System.out.println("window rules OK");
+
+    // Contended account: the accepted total must stay within the limit.
+    VelocityLimiter shared = new VelocityLimiter(clock::get);
+    VelocityPolicy daily = VelocityPolicy.of(0, 0, 500_000, 0);
+    long hot = AccountNumberCodec.key("99999");
+    AtomicLong accepted = new AtomicLong();
+    Thread[] threads = new Thread[8];
+    for (int t = 0; t < threads.length; t++) {
+      int seed = t;
+      threads[t] = new Thread(() -> {
+        SplittableRandom rnd = new SplittableRandom(seed);
+        for (int i = 0; i < 50_000; i++) {
+          long amount = rnd.nextInt(1, 100);
+          if (shared.tryAcquire(hot, daily, amount) == VelocityLimiter.OK) accepted.addAndGet(amount);
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread t : threads) t.join();
+    if (accepted.get() > 500_000) throw new AssertionError("limit overshot: " + accepted.get());
+    System.out.printf("contended account accepted %d of 500000 limit, never over%n", accepted.get());
+
+    VelocityLimiter wired = new VelocityLimiter(clock::get);
+    StudentAccount student = new StudentAccount("12345", "Student", Money.of(new BigDecimal("1000.00")),
+      Status.Active, Money.of(new BigDecimal("50.00")));
+    student.setVelocityLimits(wired, VelocityPolicy.of(0, 3, 0, 0));
+    Money ten = Money.of(BigDecimal.TEN);
+    for (int i = 0; i < 3; i++) student.withdraw(ten);
+    expectRejected(() -> student.withdraw(ten), "velocity limit exceeded: hourly_count");
+
+    ConcurrentStudentAccount poor = new ConcurrentStudentAccount("12346", "Student", Money.of(BigDecimal.ONE),
+      Status.Active, Money.of(new BigDecimal("50.00")));
+    poor.setVelocityLimits(wired, VelocityPolicy.of(0, 1, 0, 0));
+    expectRejected(() -> poor.withdraw(ten), "insufficient funds");
+    poor.withdraw(Money.of(BigDecimal.ONE));
+    System.out.println("account wiring OK (failed debits give their reservation back)");
+
+    // A hot set whose rings stay in cache, then a spread where most lookups miss it. The
+    // first pass only warms up the JIT.
+    bench(1_000, operations / 20, false);
+    bench(1_000, operations / 20, true);
+    bench(accounts, operations, true);
+  }
+
+  private static void bench(int accounts, int operations, boolean report) {
+    VelocityLimiter bench = new VelocityLimiter();
+    VelocityPolicy generous = VelocityPolicy.of(VelocityPolicy.MAX_AMOUNT_LIMIT, VelocityPolicy.MAX_COUNT_LIMIT,
+      VelocityPolicy.MAX_AMOUNT_LIMIT, VelocityPolicy.MAX_COUNT_LIMIT);
+    long[] keys = new long[accounts];
+    for (int i = 0; i < accounts; i++) keys[i] = AccountNumberCodec.key(Integer.toString(10_000_000 + i));
+    SplittableRandom rnd = new SplittableRandom(3);
+    long sink = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < operations; i++) sink += bench.tryAcquire(keys[rnd.nextInt(accounts)], generous, 100);
+    long elapsed = System.nanoTime() - start;
+    if (sink != 0) throw new AssertionError("generous policy refused a debit");
+    if (report) System.out.printf("tryAcquire over %d accounts: %.0f ns/op%n", accounts, (double) elapsed / operations);
+  }
+
+  private static void require(byte actual, byte expected) {
+    if (actual != expected) {
+      throw new AssertionError("expected " + VelocityLimiter.name(expected) + " got " + VelocityLimiter.name(actual));
+    }
+  }
+
+  private static void expectRejected(Runnable debit, String message) {
+    try {
+      debit.run();
+    } catch (IllegalStateException e) {
+      if (e.getMessage().equals(message)) return;
+      throw new AssertionError("unexpected rejection: " + e.getMessage());
+    }
+    throw new AssertionError("expected rejection: " + message);
+  }
+}
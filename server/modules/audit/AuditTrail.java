@@ -0,0 +1,356 @@
+package modules.audit;
+
+import modules.database.DatabaseManager;
+import modules.gui.Logger;
+import modules.utils.C;
+import modules.utils.Json;
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.*;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AuditTrail - Writes transaction_audit rows off the request path
+ *
+ * {@link #record} only offers the event to a bounded in-memory queue
+ * (AUDIT_QUEUE_CAPACITY, default 10000) and returns. A single writer thread drains
+ * the queue and inserts up to BATCH_SIZE rows per multi-row INSERT. Under load a
+ * batch fills up and costs one round-trip; when idle it goes out within FLUSH_MILLIS.
+ * created_at is the time of the event, not of the insert.
+ *
+ * If a batch cannot be written because the database is unreachable, the writer
+ * appends it to a local spill file (AUDIT_SPILL_FILE, default audit-spill.jsonl) with
+ * one JSON event per line and fsyncs the file. It then backs off, retrying from 1s up
+ * to 30s. While backing off it keeps draining the queue into the spill file, so the
+ * queue does not fill up behind a dead database.
+ *
+ * Once writes succeed again, the spill file is replayed into the table and deleted.
+ * A file left behind by a previous process is replayed at start.
+ *
+ * If the queue is full anyway, record() appends the event to the spill file itself,
+ * so events are never dropped. That write is not fsynced, because that would slow the
+ * request.
+ *
+ * A batch the database rejects for its data, rather than for connectivity, is
+ * retried row by row. Rows that still fail go to AUDIT_SPILL_FILE.rejected.
+ */
+public final class AuditTrail {
+    public static final Set<String> ACTIONS = Set.of("create", "update", "complete", "void", "rollback");
+
+    private static final int BATCH_SIZE = 500;
+    private static final long FLUSH_MILLIS = 200;
+    private static final long MIN_BACKOFF_MILLIS = 1_000;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+    private static final int PERFORMED_BY_LENGTH = 10;
+    private static final String INSERT_PREFIX =
+        "INSERT INTO transaction_audit (transaction_id, action, performed_by, reason, details, created_at) VALUES ";
+    private static final String ROW_PLACEHOLDERS = "(?, ?, ?, ?, ?::jsonb, ?)";
+
+    /**
+     * One audit event; details is a JSON object or null
+     */
+    private static final class Event {
+        final long transactionId;
+        final String action;
+        final String performedBy;
+        final String reason;
+        final String details;
+        final OffsetDateTime createdAt;
+
+        Event(long transactionId, String action, String performedBy, String reason, String details, OffsetDateTime createdAt) {
+            this.transactionId = transactionId;
+            this.action = action;
+            this.performedBy = performedBy;
+            this.reason = reason;
+            this.details = details;
+            this.createdAt = createdAt;
+        }
+
+        String toJson() {
+            Map<String, Object> line = new LinkedHashMap<>();
+            line.put("transaction_id", transactionId);
+            line.put("action", action);
+            line.put("performed_by", performedBy);
+            line.put("reason", reason);
+            line.put("details", details);
+            line.put("created_at", createdAt.toString());
+            return Json.write(line);
+        }
+
+        static Event fromJson(String text) {
+            Map<String, Object> line = Json.parseObject(text);
+            return new Event(((Number) line.get("transaction_id")).longValue(), (String) line.get("action"),
+                (String) line.get("performed_by"), (String) line.get("reason"), (String) line.get("details"),
+                OffsetDateTime.parse((String) line.get("created_at")));
+        }
+    }
+
+    private static final Object spillLock = new Object();
+    private static BlockingQueue<Event> queue;
+    private static final Path spillFile =
+        Paths.get(System.getenv().getOrDefault("AUDIT_SPILL_FILE", "audit-spill.jsonl")).toAbsolutePath();
+    private static Thread writer;
+    private static volatile boolean running;
+
+    private AuditTrail() {
+    }
+
+    /**
+     * Start the writer thread; a spill file left from an earlier run is replayed first
+     */
+    public static synchronized void start() {
+        if (writer != null) return;
+        int capacity = 10_000;
+        String configured = System.getenv("AUDIT_QUEUE_CAPACITY");
+        if (configured != null) {
+            try {
+                capacity = Math.max(BATCH_SIZE, Integer.parseInt(configured.trim()));
+            } catch (NumberFormatException e) {
+                Logger.log("[AUDIT] Ignoring invalid AUDIT_QUEUE_CAPACITY=" + configured, C.N.RED);
+            }
+        }
+        queue = new ArrayBlockingQueue<>(capacity);
+        running = true;
+        writer = new Thread(AuditTrail::writeLoop, "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stop the writer after it has written or spilled everything already recorded
+     */
+    public static synchronized void stop() {
+        if (writer == null) return;
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+    }
+
+    /**
+     * Queue an audit event; never blocks on the database
+     *
+     * @param action one of {@link #ACTIONS}
+     * @param details JSON object text, or null
+     */
+    public static void record(long transactionId, String action, String performedBy, String reason, String details) {
+        if (!ACTIONS.contains(action)) throw new IllegalArgumentException("Unknown audit action: " + action);
+        if (performedBy == null || performedBy.isEmpty()) performedBy = "system";
+        if (performedBy.length() > PERFORMED_BY_LENGTH) performedBy = performedBy.substring(0, PERFORMED_BY_LENGTH);
+        Event event = new Event(transactionId, action, performedBy, reason, details, OffsetDateTime.now());
+
+        BlockingQueue<Event> q = queue;
+        if (q != null && running && q.offer(event)) return;
+        try {
+            spill(List.of(event), false);
+        } catch (IOException e) {
+            Logger.log("[AUDIT] Lost event for transaction " + transactionId + ": " + e.getMessage(), C.N.RED);
+        }
+    }
+
+    private static void writeLoop() {
+        Connection conn = null;
+        long backoff = MIN_BACKOFF_MILLIS;
+        long retryAt = 0;
+        boolean replayPending = Files.exists(spillFile) || Files.exists(replayFile());
+        List<Event> batch = new ArrayList<>(BATCH_SIZE);
+
+        while (running || !queue.isEmpty()) {
+            batch.clear();
+            try {
+                Event first = running ? queue.poll(FLUSH_MILLIS, TimeUnit.MILLISECONDS) : queue.poll();
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, BATCH_SIZE - 1);
+                }
+            } catch (InterruptedException e) {
+                // stop() wakes the writer; the loop condition decides whether to finish
+                continue;
+            }
+
+            boolean dbAvailable = System.currentTimeMillis() >= retryAt;
+            try {
+                if (!batch.isEmpty()) {
+                    if (dbAvailable) {
+                        if (conn == null) conn = DatabaseManager.openConnection();
+                        insert(conn, batch);
+                        batch.clear();
+                    } else {
+                        spill(batch, true);
+                    }
+                }
+                if (running && dbAvailable && (replayPending || Files.exists(spillFile)) && queue.size() < BATCH_SIZE) {
+                    if (conn == null) conn = DatabaseManager.openConnection();
+                    replay(conn);
+                    replayPending = false;
+                }
+                if (dbAvailable) backoff = MIN_BACKOFF_MILLIS;
+            } catch (SQLException e) {
+                Logger.log("[AUDIT] Database unavailable, spilling to " + spillFile + ": " + e.getMessage(), C.N.RED);
+                closeQuietly(conn);
+                conn = null;
+                retryAt = System.currentTimeMillis() + backoff;
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+                try {
+                    if (!batch.isEmpty()) spill(batch, true);
+                } catch (IOException io) {
+                    Logger.log("[AUDIT] Lost " + batch.size() + " events: " + io.getMessage(), C.N.RED);
+                }
+            } catch (IOException e) {
+                Logger.log("[AUDIT] Spill file error: " + e.getMessage(), C.N.RED);
+            }
+        }
+        closeQuietly(conn);
+    }
+
+    /**
+     * Insert a batch in one statement. Connection failures propagate; a batch refused
+     * for its contents is retried row by row and the bad rows are set aside.
+     */
+    private static void insert(Connection conn, List<Event> batch) throws SQLException, IOException {
+        try {
+            insertRows(conn, batch);
+        } catch (SQLException e) {
+            if (isTransient(e)) throw e;
+            List<Event> rejected = new ArrayList<>();
+            for (Event event : batch) {
+                try {
+                    insertRows(conn, List.of(event));
+                } catch (SQLException rowError) {
+                    if (isTransient(rowError)) throw rowError;
+                    rejected.add(event);
+                }
+            }
+            if (!rejected.isEmpty()) {
+                Logger.log("[AUDIT] " + rejected.size() + " events rejected by the database: " + e.getMessage(), C.N.RED);
+                appendLines(Paths.get(spillFile + ".rejected"), rejected, true);
+            }
+        }
+    }
+
+    private static void insertRows(Connection conn, List<Event> events) throws SQLException {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + events.size() * (ROW_PLACEHOLDERS.length() + 1));
+        sql.append(INSERT_PREFIX);
+        for (int i = 0; i < events.size(); i++) {
+            if (i > 0) sql.append(',');
+            sql.append(ROW_PLACEHOLDERS);
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            int p = 1;
+            for (Event event : events) {
+                stmt.setLong(p++, event.transactionId);
+                stmt.setString(p++, event.action);
+                stmt.setString(p++, event.performedBy);
+                stmt.setString(p++, event.reason);
+                stmt.setString(p++, event.details);
+                stmt.setObject(p++, event.createdAt);
+            }
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Insert the spill file batch by batch, then delete it. The number of lines done is
+     * kept next to it after every batch, so an interrupted replay resumes where it
+     * stopped; a crash between a batch and its progress mark repeats that one batch.
+     */
+    private static void replay(Connection conn) throws SQLException, IOException {
+        Path replaying = replayFile();
+        Path progress = Paths.get(replaying + ".done");
+        synchronized (spillLock) {
+            if (!Files.exists(replaying)) {
+                if (!Files.exists(spillFile)) return;
+                Files.move(spillFile, replaying, StandardCopyOption.ATOMIC_MOVE);
+                Files.deleteIfExists(progress);
+            }
+        }
+
+        long done = Files.exists(progress) ? Long.parseLong(Files.readString(progress).trim()) : 0;
+        long lineNo = 0;
+        long replayed = 0;
+        long skipped = 0;
+        try (BufferedReader in = Files.newBufferedReader(replaying, StandardCharsets.UTF_8)) {
+            List<Event> batch = new ArrayList<>(BATCH_SIZE);
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (++lineNo <= done || line.isBlank()) continue;
+                try {
+                    batch.add(Event.fromJson(line));
+                } catch (RuntimeException e) {
+                    // A torn last line from a crash mid-append
+                    skipped++;
+                    continue;
+                }
+                if (batch.size() == BATCH_SIZE) {
+                    insert(conn, batch);
+                    replayed += batch.size();
+                    batch.clear();
+                    Files.writeString(progress, Long.toString(lineNo));
+                }
+            }
+            if (!batch.isEmpty()) {
+                insert(conn, batch);
+                replayed += batch.size();
+            }
+        }
+        Files.delete(replaying);
+        Files.deleteIfExists(progress);
+        Logger.log("[AUDIT] Replayed " + replayed + " spilled events" + (skipped > 0 ? ", skipped " + skipped + " unreadable lines" : ""), C.N.CYAN);
+    }
+
+    private static void spill(List<Event> events, boolean sync) throws IOException {
+        synchronized (spillLock) {
+            appendLines(spillFile, events, sync);
+        }
+    }
+
+    private static void appendLines(Path file, List<Event> events, boolean sync) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file.toFile(), true)) {
+            Writer w = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            for (Event event : events) {
+                w.write(event.toJson());
+                w.write('\n');
+            }
+            w.flush();
+            if (sync) out.getFD().sync();
+        }
+    }
+
+    private static Path replayFile() {
+        return Paths.get(spillFile + ".replay");
+    }
+
+    /** Connection-level failures (class 08), shutdowns (57P) and resource exhaustion (53) */
+    private static boolean isTransient(SQLException e) {
+        String state = e.getSQLState();
+        return state == null || state.startsWith("08") || state.startsWith("57P") || state.startsWith("53");
+    }
+
+    private static void closeQuietly(Connection conn) {
+        if (conn == null) return;
+        try {
+            conn.close();
+        } catch (SQLException ignored) {
+        }
+    }
+}
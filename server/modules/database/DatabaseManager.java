@@ -11,6 +11,8 @@ import java.util.Properties;
  */
 public class DatabaseManager {
     private static Connection dbConnection;
+    private static String jdbcUrl;
+    private static Properties connectionProps;
     
     /**
      * Initialize database connection with environment variables
@@ -68,7 +70,7 @@ public class DatabaseManager {
             Logger.log("Connecting to database: " + host + ":" + port + "/" + database + " as user: " + username, C.N.YELLOW);
 
             // Construct JDBC URL
-            String jdbcUrl = String.format("jdbc:postgresql://%s:%s/%s", host, port, database);
+            jdbcUrl = String.format("jdbc:postgresql://%s:%s/%s", host, port, database);
 
             // Set connection properties
             Properties props = new Properties();
@@ -80,6 +82,7 @@ public class DatabaseManager {
             Driver driver = DriverManager.getDriver("jdbc:postgresql:");
             Logger.log("DEBUG: Loaded Driver Version: " + driver.getMajorVersion() + "." + driver.getMinorVersion(), C.N.YELLOW);
 
+            connectionProps = props;
             dbConnection = DriverManager.getConnection(jdbcUrl, props);
             
             // Test connection
@@ -111,6 +114,18 @@ public class DatabaseManager {
         return dbConnection;
     }
     
+    /**
+     * Open a dedicated connection with the same settings as the shared one.
+     * Used by long-running work such as statement exports, which must not hold the
+     * shared connection; the caller closes it.
+     */
+    public static Connection openConnection() throws SQLException {
+        if (jdbcUrl == null) {
+            throw new SQLException("Database not initialized");
+        }
+        return DriverManager.getConnection(jdbcUrl, connectionProps);
+    }
+    
     /**
      * Check if database is connected
      */
@@ -0,0 +1,143 @@
+package modules.database;
+
+import modules.gui.Logger;
+import modules.utils.C;
+import java.sql.*;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * PartitionManager - Keeps the monthly transactions partitions ahead of the clock
+ *
+ * transactions is range-partitioned by created_at, one partition per UTC month
+ * (migrations/019_partition_transactions.sql). Each run calls
+ * ensure_transactions_partitions, which creates the partitions for the current month
+ * and the next PARTITION_MONTHS_AHEAD (default 3). Any rows that ended up in
+ * transactions_default, such as imports with old dates, are moved into partitions for
+ * their months.
+ *
+ * With PARTITION_RETENTION_MONTHS set (default 0, meaning keep everything), months
+ * older than that many months are detached. They are moved to the
+ * PARTITION_ARCHIVE_SCHEMA schema (default archive), so they are no longer part of
+ * transactions but can still be queried, dumped or dropped.
+ */
+public class PartitionManager {
+    private static final Pattern PARTITION_NAME = Pattern.compile("transactions_(\\d{4})_(\\d{2})");
+    private static final Pattern SCHEMA_NAME = Pattern.compile("[a-z_][a-z0-9_]*");
+
+    private static ScheduledExecutorService scheduler;
+
+    /**
+     * Run now and then every PARTITION_CHECK_HOURS (default 6)
+     */
+    public static synchronized void start() {
+        if (scheduler != null) return;
+        long interval = Math.max(1, envInt("PARTITION_CHECK_HOURS", 6));
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "partition-manager");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                runOnce();
+            } catch (Exception e) {
+                Logger.log("[PARTITION] Maintenance failed, will retry: " + e.getMessage(), C.N.RED);
+            }
+        }, 0, interval, TimeUnit.HOURS);
+    }
+
+    /**
+     * Stop the periodic maintenance
+     */
+    public static synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Create upcoming partitions and detach expired ones; returns {created, detached}
+     */
+    public static int[] runOnce() throws SQLException {
+        int monthsAhead = Math.max(1, envInt("PARTITION_MONTHS_AHEAD", 3));
+        int retention = envInt("PARTITION_RETENTION_MONTHS", 0);
+        String archive = System.getenv().getOrDefault("PARTITION_ARCHIVE_SCHEMA", "archive");
+        if (!SCHEMA_NAME.matcher(archive).matches()) {
+            throw new SQLException("Invalid PARTITION_ARCHIVE_SCHEMA: " + archive);
+        }
+
+        int created;
+        int detached = 0;
+        try (Connection conn = DatabaseManager.openConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT ensure_transactions_partitions(?)")) {
+                stmt.setInt(1, monthsAhead);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    rs.next();
+                    created = rs.getInt(1);
+                }
+            }
+            if (retention > 0) {
+                detached = detachBefore(conn, YearMonth.now(ZoneOffset.UTC).minusMonths(retention), archive);
+            }
+        }
+        if (created > 0 || detached > 0) {
+            Logger.log("[PARTITION] Created " + created + " and archived " + detached + " transaction partitions", C.N.CYAN);
+        }
+        return new int[] {created, detached};
+    }
+
+    /**
+     * Detach every monthly partition before {@code oldestKept} and move it to the archive schema
+     */
+    private static int detachBefore(Connection conn, YearMonth oldestKept, String archive) throws SQLException {
+        List<String> expired = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                 "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid"
+                 + " WHERE i.inhparent = 'transactions'::regclass ORDER BY c.relname")) {
+            while (rs.next()) {
+                Matcher m = PARTITION_NAME.matcher(rs.getString(1));
+                if (m.matches() && YearMonth.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2))).isBefore(oldestKept)) {
+                    expired.add(m.group());
+                }
+            }
+        }
+        if (expired.isEmpty()) return 0;
+
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SELECT pg_advisory_xact_lock(hashtext('transactions_partitions'))");
+            stmt.execute("CREATE SCHEMA IF NOT EXISTS " + archive);
+            for (String partition : expired) {
+                stmt.execute("ALTER TABLE transactions DETACH PARTITION " + partition);
+                stmt.execute("ALTER TABLE " + partition + " SET SCHEMA " + archive);
+                Logger.log("[PARTITION] Archived " + partition + " to " + archive, C.N.YELLOW);
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        }
+        return expired.size();
+    }
+
+    private static int envInt(String name, int fallback) {
+        String value = System.getenv(name);
+        if (value == null) return fallback;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            Logger.log("[PARTITION] Ignoring invalid " + name + "=" + value, C.N.RED);
+            return fallback;
+        }
+    }
+}
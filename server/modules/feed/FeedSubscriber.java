@@ -0,0 +1,134 @@
+package modules.feed;
+
+import modules.http.ServerExchange;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * FeedSubscriber - One open /api/transactions/stream response
+ *
+ * Holds no thread while idle. Frames are queued in a buffer of at most
+ * {@code capacity} frames and written by a shared writer pool. A client that falls
+ * that far behind is disconnected rather than buffered for. It reconnects with its
+ * Last-Event-ID and catches up from {@link LedgerFeed}'s replay window.
+ *
+ * A write that blocks for longer than the write timeout, such as to a client that
+ * stopped reading, is cut off by interrupting its writer thread. Both HTTP engines
+ * abandon an interrupted write and close the connection, which frees the thread.
+ */
+final class FeedSubscriber {
+    final String account;
+    private final ServerExchange exchange;
+    private final OutputStream out;
+    private final int capacity;
+    private final Executor writers;
+
+    private final ArrayDeque<byte[]> pending = new ArrayDeque<>();
+    private boolean scheduled;
+    private boolean closed;
+    private Thread writingThread;
+    private long writeStartedNanos;
+
+    FeedSubscriber(String account, ServerExchange exchange, int capacity, Executor writers) {
+        this.account = account;
+        this.exchange = exchange;
+        this.out = exchange.getResponseBody();
+        this.capacity = capacity;
+        this.writers = writers;
+    }
+
+    /**
+     * Queue a frame without blocking; false once the subscriber is closed, including
+     * when this frame did not fit
+     */
+    boolean send(byte[] frame) {
+        synchronized (this) {
+            if (closed) return false;
+            if (pending.size() >= capacity) {
+                closed = true;
+                pending.clear();
+            } else {
+                pending.add(frame);
+            }
+            if (scheduled) return !closed;
+            scheduled = true;
+        }
+        // Drains the buffer, or ends the response once closed; never on the caller's thread
+        writers.execute(this::drain);
+        return true;
+    }
+
+    /**
+     * Stop sending and end the response
+     */
+    void close() {
+        synchronized (this) {
+            closed = true;
+            pending.clear();
+            if (scheduled) return;
+            scheduled = true;
+        }
+        writers.execute(this::drain);
+    }
+
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Interrupt a write that started before {@code deadlineNanos} and is still blocked
+     */
+    synchronized void interruptIfStuck(long deadlineNanos) {
+        if (writingThread != null && writeStartedNanos - deadlineNanos < 0) {
+            closed = true;
+            writingThread.interrupt();
+        }
+    }
+
+    private void drain() {
+        List<byte[]> frames = new ArrayList<>();
+        while (true) {
+            synchronized (this) {
+                if (!closed) {
+                    frames.addAll(pending);
+                    pending.clear();
+                }
+                if (frames.isEmpty() && !closed) {
+                    scheduled = false;
+                    return;
+                }
+                beginWrite();
+            }
+            try {
+                if (frames.isEmpty()) {
+                    LedgerFeed.unsubscribe(this);
+                    exchange.close();
+                    endWrite(false);
+                    return;
+                }
+                // Everything that queued up goes out in one flush
+                for (byte[] frame : frames) out.write(frame);
+                out.flush();
+                endWrite(false);
+            } catch (IOException e) {
+                endWrite(true);
+            }
+            frames.clear();
+        }
+    }
+
+    private void beginWrite() {
+        writingThread = Thread.currentThread();
+        writeStartedNanos = System.nanoTime();
+    }
+
+    private synchronized void endWrite(boolean failed) {
+        writingThread = null;
+        // An interrupt from interruptIfStuck can land just after the write returned
+        if (Thread.interrupted() || failed) closed = true;
+    }
+}
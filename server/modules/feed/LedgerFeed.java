@@ -0,0 +1,404 @@
+package modules.feed;
+
+import modules.database.DatabaseManager;
+import modules.gui.Logger;
+import modules.http.ServerExchange;
+import modules.utils.C;
+import modules.utils.Json;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LedgerFeed - Pushes committed ledger changes to open event streams
+ *
+ * One connection LISTENs on ledger_events. The triggers from
+ * migrations/021_ledger_events.sql notify it of every committed transaction insert
+ * or update and every account balance change, whichever process made them. Each
+ * event is rendered once as a Server-Sent Events frame and queued to the subscribers
+ * of the accounts it touches. Subscribers are kept in a map by account, so an event
+ * costs one lookup per account, not a scan of every connection.
+ *
+ * Event ids are "{epoch}-{sequence}", where epoch identifies this listener session.
+ * The last SSE_REPLAY_EVENTS events (default 10000) are kept, so a client that
+ * reconnects with Last-Event-ID gets what it missed. If its id is from an earlier
+ * epoch or has already left the window, it gets a single "reset" event and should
+ * reload its history through GET /api/transactions. The same happens to every stream
+ * when the LISTEN connection is lost, because notifications sent in between are gone.
+ *
+ * Idle streams cost no thread. Frames are written by a pool of up to SSE_WRITER_THREADS
+ * (default 64) threads that exist only while there is writing to do. Socket writes
+ * block, so a client that stops reading holds a writer until its write has been
+ * blocked for 10 seconds and the stream is cut; the pool size is how many such
+ * clients can stall at once before other streams fall behind. A stream with
+ * SSE_BUFFER_EVENTS (default 256) frames waiting is closed too. A ": ping" comment
+ * goes out every SSE_HEARTBEAT_SECONDS (default 15) so proxies keep the connection
+ * open, and at most SSE_MAX_STREAMS (default 50000) streams are accepted.
+ *
+ * The same events give every account a version (see {@link #accountVersion}) that
+ * changes whenever a transaction or the balance of the account changes, so history
+ * responses can carry an ETag that is checked without querying the database. While the
+ * LISTEN connection is not known to be alive there is no version, since changes could
+ * be going unseen; the connection is probed when it has been quiet for a few seconds.
+ */
+public final class LedgerFeed {
+    private static final String CHANNEL = "ledger_events";
+    private static final int BUFFER_FRAMES = envInt("SSE_BUFFER_EVENTS", 256);
+    private static final int REPLAY_EVENTS = Math.max(100, envInt("SSE_REPLAY_EVENTS", 10_000));
+    private static final int MAX_STREAMS = envInt("SSE_MAX_STREAMS", 50_000);
+    private static final long HEARTBEAT_SECONDS = Math.max(1, envInt("SSE_HEARTBEAT_SECONDS", 15));
+    private static final long WRITE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+    private static final long PROBE_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final long ALIVE_NANOS = TimeUnit.SECONDS.toNanos(15);
+    private static final byte[] PING = ": ping\n\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RETRY = "retry: 3000\n\n".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * One event in the replay window
+     */
+    private static final class Event {
+        final long seq;
+        final String account;
+        final String target;
+        final byte[] frame;
+
+        Event(long seq, String account, String target, byte[] frame) {
+            this.seq = seq;
+            this.account = account;
+            this.target = target;
+            this.frame = frame;
+        }
+
+        boolean concerns(String subscriber) {
+            return subscriber.equals(account) || subscriber.equals(target);
+        }
+    }
+
+    private static final Object lock = new Object();
+    private static final Map<String, Set<FeedSubscriber>> subscribers = new ConcurrentHashMap<>();
+    private static final AtomicInteger streams = new AtomicInteger();
+    private static final Map<String, Long> versions = new ConcurrentHashMap<>();
+    private static final AtomicLong versionCounter = new AtomicLong();
+    private static final Event[] window = new Event[REPLAY_EVENTS];
+    private static String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private static long nextSeq = 1;
+
+    private static ExecutorService writers;
+    private static ScheduledExecutorService heartbeat;
+    private static Thread listener;
+    private static volatile boolean running;
+    private static volatile boolean listening;
+    private static volatile long aliveAt;
+
+    private LedgerFeed() {
+    }
+
+    /**
+     * Start the LISTEN thread, the writer pool and the heartbeat
+     */
+    public static synchronized void start() {
+        if (listener != null) return;
+        AtomicInteger ids = new AtomicInteger();
+        // Threads are started on demand and retired when idle, so quiet streams hold none
+        int maxWriters = Math.max(1, envInt("SSE_WRITER_THREADS", 64));
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxWriters, maxWriters, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "ledger-feed-writer-" + ids.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        pool.allowCoreThreadTimeOut(true);
+        writers = pool;
+        heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ledger-feed-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        heartbeat.scheduleWithFixedDelay(LedgerFeed::beat, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+        heartbeat.scheduleWithFixedDelay(LedgerFeed::cutStuckWrites, 1, 1, TimeUnit.SECONDS);
+        running = true;
+        listener = new Thread(LedgerFeed::listenLoop, "ledger-feed-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    /**
+     * Close every stream and stop listening
+     */
+    public static synchronized void stop() {
+        if (listener == null) return;
+        running = false;
+        listening = false;
+        listener.interrupt();
+        try {
+            listener.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        listener = null;
+        heartbeat.shutdownNow();
+        for (Set<FeedSubscriber> set : subscribers.values()) {
+            for (FeedSubscriber subscriber : set) subscriber.close();
+        }
+        writers.shutdown();
+        try {
+            writers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writers.shutdownNow();
+    }
+
+    /**
+     * Open streams, for /health
+     */
+    public static int streamCount() {
+        return streams.get();
+    }
+
+    /**
+     * Current version of an account's ledger data, or null when it cannot be trusted
+     * because the feed is not listening. Two equal versions mean no transaction or
+     * balance change of the account has been seen in between. Read it before querying,
+     * so a change committed during the query moves the version past the response.
+     */
+    public static String accountVersion(String account) {
+        if (!listening || System.nanoTime() - aliveAt > ALIVE_NANOS) return null;
+        synchronized (lock) {
+            return epoch + "." + versions.getOrDefault(account, 0L);
+        }
+    }
+
+    /**
+     * Move the version of the accounts a transaction touched, as soon as this server has
+     * committed it; the notification for the same change arrives a moment later
+     */
+    public static void touch(String account, String target) {
+        if (account != null) versions.put(account, versionCounter.incrementAndGet());
+        if (target != null) versions.put(target, versionCounter.incrementAndGet());
+    }
+
+    /**
+     * Take over a GET: send the event-stream headers and keep the response open. Events
+     * the client missed since {@code lastEventId} (may be null) are queued first.
+     * Returns false, without touching the exchange, when the feed is not running or is full.
+     */
+    public static boolean subscribe(ServerExchange exchange, String account, String lastEventId) throws IOException {
+        if (!running || streams.incrementAndGet() > MAX_STREAMS) {
+            streams.decrementAndGet();
+            return false;
+        }
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.getResponseHeaders().set("X-Accel-Buffering", "no");
+            exchange.sendResponseHeaders(200, 0);
+        } catch (IOException e) {
+            streams.decrementAndGet();
+            throw e;
+        }
+        FeedSubscriber subscriber = new FeedSubscriber(account, exchange, BUFFER_FRAMES, writers);
+        subscriber.send(RETRY);
+        // Under the same lock as publish(), so no event falls between the replay and the live feed
+        synchronized (lock) {
+            if (lastEventId != null) replay(subscriber, lastEventId);
+            subscribers.computeIfAbsent(account, k -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        }
+        return true;
+    }
+
+    static void unsubscribe(FeedSubscriber subscriber) {
+        synchronized (lock) {
+            Set<FeedSubscriber> set = subscribers.get(subscriber.account);
+            if (set != null && set.remove(subscriber)) {
+                streams.decrementAndGet();
+                if (set.isEmpty()) subscribers.remove(subscriber.account);
+            }
+        }
+    }
+
+    private static void replay(FeedSubscriber subscriber, String lastEventId) {
+        int dash = lastEventId.lastIndexOf('-');
+        long lastSeq = -1;
+        if (dash > 0 && lastEventId.substring(0, dash).equals(epoch)) {
+            try {
+                lastSeq = Long.parseLong(lastEventId.substring(dash + 1));
+            } catch (NumberFormatException ignored) {
+                // treated as unknown below
+            }
+        }
+        long oldest = Math.max(1, nextSeq - REPLAY_EVENTS);
+        if (lastSeq < oldest - 1 || lastSeq >= nextSeq) {
+            subscriber.send(resetFrame("history unavailable"));
+            return;
+        }
+        List<byte[]> missed = new ArrayList<>();
+        for (long seq = lastSeq + 1; seq < nextSeq; seq++) {
+            Event event = window[(int) (seq % REPLAY_EVENTS)];
+            if (event.concerns(subscriber.account)) missed.add(event.frame);
+        }
+        if (missed.size() >= BUFFER_FRAMES) {
+            subscriber.send(resetFrame("too many missed events"));
+            return;
+        }
+        for (byte[] frame : missed) subscriber.send(frame);
+    }
+
+    private static void listenLoop() {
+        long backoff = 1_000;
+        boolean connectedBefore = false;
+        while (running) {
+            try (Connection conn = DatabaseManager.openConnection()) {
+                // A probe on a dead socket fails instead of hanging
+                conn.setNetworkTimeout(Runnable::run, 30_000);
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("LISTEN " + CHANNEL);
+                }
+                if (connectedBefore) {
+                    // Whatever was notified while we were away is lost; start a new epoch
+                    restart("feed reconnected");
+                }
+                connectedBefore = true;
+                backoff = 1_000;
+                aliveAt = System.nanoTime();
+                listening = true;
+                Logger.log("[FEED] Listening on " + CHANNEL, C.N.CYAN);
+                PGConnection pg = conn.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pg.getNotifications(1_000);
+                    if (notifications == null) {
+                        // No news is only good news if the connection still answers
+                        if (System.nanoTime() - aliveAt > PROBE_NANOS) {
+                            try (Statement stmt = conn.createStatement()) {
+                                stmt.execute("SELECT 1");
+                            }
+                            aliveAt = System.nanoTime();
+                        }
+                        continue;
+                    }
+                    aliveAt = System.nanoTime();
+                    for (PGNotification notification : notifications) {
+                        publish(notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                listening = false;
+                if (!running) break;
+                Logger.log("[FEED] LISTEN connection lost, retrying in " + backoff + "ms: " + e.getMessage(), C.N.RED);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ignored) {
+                    // stop() wakes the listener
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    private static void publish(String payload) {
+        String account;
+        String target;
+        String kind;
+        try {
+            Map<String, Object> event = Json.parseObject(payload);
+            account = (String) event.get("account_number");
+            target = (String) event.get("target_account");
+            kind = (String) event.get("kind");
+        } catch (RuntimeException e) {
+            Logger.log("[FEED] Ignoring unreadable event: " + e.getMessage(), C.N.RED);
+            return;
+        }
+        if ("bulk".equals(kind)) {
+            // Rows were loaded without per-row events (see LedgerImporter)
+            restart("bulk load");
+            return;
+        }
+        if (account == null || kind == null) return;
+
+        synchronized (lock) {
+            touch(account, target);
+            long seq = nextSeq++;
+            byte[] frame = ("id: " + epoch + "-" + seq + "\nevent: " + kind + "\ndata: " + payload + "\n\n")
+                .getBytes(StandardCharsets.UTF_8);
+            window[(int) (seq % REPLAY_EVENTS)] = new Event(seq, account, target, frame);
+            deliver(account, frame);
+            if (target != null && !target.equals(account)) deliver(target, frame);
+        }
+    }
+
+    private static void deliver(String account, byte[] frame) {
+        Set<FeedSubscriber> set = subscribers.get(account);
+        if (set == null) return;
+        for (FeedSubscriber subscriber : set) {
+            if (!subscriber.send(frame)) unsubscribe(subscriber);
+        }
+    }
+
+    private static void restart(String reason) {
+        byte[] reset = resetFrame(reason);
+        synchronized (lock) {
+            epoch = Long.toString(System.currentTimeMillis(), 36);
+            nextSeq = 1;
+            Arrays.fill(window, null);
+            versions.clear();
+            for (Set<FeedSubscriber> set : subscribers.values()) {
+                for (FeedSubscriber subscriber : set) {
+                    if (!subscriber.send(reset)) unsubscribe(subscriber);
+                }
+            }
+        }
+    }
+
+    private static byte[] resetFrame(String reason) {
+        return ("event: reset\ndata: {\"reason\":" + Json.quote(reason) + "}\n\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Ping every stream, so proxies keep it open and dead clients are found
+     */
+    private static void beat() {
+        for (Set<FeedSubscriber> set : subscribers.values()) {
+            for (FeedSubscriber subscriber : set) {
+                if (!subscriber.send(PING)) unsubscribe(subscriber);
+            }
+        }
+    }
+
+    /**
+     * Free writer threads blocked on clients that stopped reading
+     */
+    private static void cutStuckWrites() {
+        long deadline = System.nanoTime() - WRITE_TIMEOUT_NANOS;
+        for (Set<FeedSubscriber> set : subscribers.values()) {
+            for (FeedSubscriber subscriber : set) subscriber.interruptIfStuck(deadline);
+        }
+    }
+
+    private static int envInt(String name, int fallback) {
+        String value = System.getenv(name);
+        if (value == null) return fallback;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            Logger.log("[FEED] Ignoring invalid " + name + "=" + value, C.N.RED);
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package modules.fees;
+
+/**
+ * FeeType - Ledger transaction types that carry a fee rule. Ordinals index the compiled
+ * {@link FeeSchedule} table, so append new constants at the end.
+ */
+public enum FeeType {
+    DEPOSIT,
+    WITHDRAW,
+    TRANSFER,
+    FEE;
+
+    /** Maps the lower-case type codes stored in {@code transactions.type}; null if unknown. */
+    public static FeeType fromCode(String code) {
+        if (code == null) return null;
+        return switch (code) {
+            case "deposit" -> DEPOSIT;
+            case "withdraw" -> WITHDRAW;
+            case "transfer" -> TRANSFER;
+            case "fee" -> FEE;
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,103 @@
+package modules.fees;
+
+import modules.gui.Logger;
+import modules.utils.C;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fees - The fee schedule the JDK server prices postings with
+ *
+ * Without FEE_SCHEDULE_FILE the built-in defaults apply (withdraw 2.00 flat, transfer
+ * 0.5%). Otherwise the file is read at start, in the same rule syntax the Spring server's
+ * bank.fees.schedule-file uses, and checked for changes every FEE_RELOAD_SECONDS
+ * (default 30). A file that fails to compile is logged and the previous schedule stays
+ * in force, so a bad edit never prices a posting. Postings see either the old or the
+ * new table, never a mix.
+ */
+public final class Fees {
+    private static volatile FeeSchedule schedule = FeeSchedule.defaults();
+    private static volatile long loadedModified = Long.MIN_VALUE;
+    private static ScheduledExecutorService scheduler;
+
+    private Fees() {
+    }
+
+    /**
+     * Load FEE_SCHEDULE_FILE, if set, and watch it for changes
+     */
+    public static synchronized void start() {
+        if (scheduler != null) return;
+        String file = System.getenv("FEE_SCHEDULE_FILE");
+        if (file == null || file.isBlank()) {
+            Logger.log("[FEES] Using built-in fee schedule", C.N.CYAN);
+            return;
+        }
+        Path path = Path.of(file.trim());
+        if (!reload(path)) {
+            throw new IllegalStateException("Fee schedule " + path + " could not be loaded");
+        }
+        long interval = 30;
+        String configured = System.getenv("FEE_RELOAD_SECONDS");
+        if (configured != null) {
+            try {
+                interval = Math.max(1, Long.parseLong(configured.trim()));
+            } catch (NumberFormatException e) {
+                Logger.log("[FEES] Ignoring invalid FEE_RELOAD_SECONDS=" + configured, C.N.RED);
+            }
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "fee-schedule");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                if (Files.getLastModifiedTime(path).toMillis() != loadedModified) reload(path);
+            } catch (IOException e) {
+                Logger.log("[FEES] Fee schedule " + path + " unreadable, keeping " + schedule.source() + ": " + e.getMessage(), C.N.RED);
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    public static FeeSchedule current() {
+        return schedule;
+    }
+
+    /**
+     * Fee for a ledger type code and decimal amount, as stored in transactions.fee
+     */
+    public static BigDecimal fee(AccountClass accountClass, String type, BigDecimal amount) {
+        FeeType feeType = FeeType.fromCode(type);
+        if (feeType == null || amount == null || amount.signum() <= 0) return BigDecimal.ZERO.setScale(2);
+        long amountMinor = amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        return BigDecimal.valueOf(schedule.feeMinor(accountClass, feeType, amountMinor), 2);
+    }
+
+    private static synchronized boolean reload(Path path) {
+        try {
+            long modified = Files.getLastModifiedTime(path).toMillis();
+            // Remember the attempt even if it fails, so a bad file is reported once per edit
+            loadedModified = modified;
+            Properties rules = new Properties();
+            try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                rules.load(reader);
+            }
+            schedule = FeeSchedule.compile(rules, path + "@" + modified);
+            Logger.log("[FEES] Fee schedule loaded from " + path, C.N.GREEN);
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            Logger.log("[FEES] Fee schedule " + path + " rejected, keeping " + schedule.source() + ": " + e.getMessage(), C.N.RED);
+            return false;
+        }
+    }
+}
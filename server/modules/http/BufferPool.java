@@ -0,0 +1,45 @@
+package modules.http;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BufferPool - Reusable direct buffers of one size
+ *
+ * Direct buffers are read into and written from by the socket without an extra copy,
+ * but are slow to allocate, so they are recycled. At most {@code maxPooled} are kept;
+ * buffers released beyond that are left to the garbage collector.
+ */
+final class BufferPool {
+    private final int bufferSize;
+    private final int maxPooled;
+    private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    int bufferSize() {
+        return bufferSize;
+    }
+
+    ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) return ByteBuffer.allocateDirect(bufferSize);
+        pooled.decrementAndGet();
+        return buffer;
+    }
+
+    void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect() || buffer.capacity() != bufferSize) return;
+        if (pooled.incrementAndGet() > maxPooled) {
+            pooled.decrementAndGet();
+            return;
+        }
+        buffer.clear();
+        free.offer(buffer);
+    }
+}
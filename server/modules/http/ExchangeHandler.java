@@ -0,0 +1,13 @@
+package modules.http;
+
+import java.io.IOException;
+
+/**
+ * ExchangeHandler - Handles requests under one context path of an {@link HttpEngine}
+ *
+ * Called on one of the engine's worker threads. A handler may return before its
+ * response is complete and finish it from another thread, as the live feed does.
+ */
+public interface ExchangeHandler {
+    void handle(ServerExchange exchange) throws IOException;
+}
@@ -0,0 +1,64 @@
+package modules.http;
+
+import modules.gui.Logger;
+import modules.utils.C;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+/**
+ * HttpEngine - The HTTP server that ServerManager runs its handlers on
+ *
+ * HTTP_ENGINE picks it at startup:
+ *   jdk - com.sun.net.httpserver.HttpServer (default)
+ *   nio - {@link NioHttpEngine}, a non-blocking server with a selector thread per core
+ *
+ * Both take HTTP_WORKERS (default 10), the threads that run handlers, and
+ * HTTP_BACKLOG (default 1024), the accept queue length. The nio engine also takes
+ * HTTP_SELECTORS, HTTP_BUFFER_KB and HTTP_IDLE_SECONDS.
+ */
+public interface HttpEngine {
+    /**
+     * Route requests whose path starts with {@code path} to the handler; the longest
+     * matching path wins
+     */
+    void createContext(String path, ExchangeHandler handler);
+
+    void start() throws IOException;
+
+    /**
+     * Stop accepting and close every connection
+     */
+    void stop();
+
+    String name();
+
+    /**
+     * The engine named by HTTP_ENGINE, bound to {@code address} but not started
+     */
+    static HttpEngine create(InetSocketAddress address) throws IOException {
+        String engine = System.getenv("HTTP_ENGINE");
+        int workers = Math.max(1, envInt("HTTP_WORKERS", 10));
+        int backlog = Math.max(0, envInt("HTTP_BACKLOG", 1024));
+        if (engine == null || engine.isBlank() || engine.trim().equalsIgnoreCase("jdk")) {
+            return new JdkHttpEngine(address, backlog, workers);
+        }
+        if (engine.trim().equalsIgnoreCase("nio")) {
+            int selectors = Math.max(1, envInt("HTTP_SELECTORS", Runtime.getRuntime().availableProcessors()));
+            int bufferKb = Math.max(4, envInt("HTTP_BUFFER_KB", 16));
+            int idleSeconds = Math.max(1, envInt("HTTP_IDLE_SECONDS", 30));
+            return new NioHttpEngine(address, backlog, workers, selectors, bufferKb, idleSeconds);
+        }
+        throw new IllegalArgumentException("Unknown HTTP_ENGINE: " + engine + " (expected jdk or nio)");
+    }
+
+    private static int envInt(String name, int fallback) {
+        String value = System.getenv(name);
+        if (value == null) return fallback;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            Logger.log("[HTTP] Ignoring invalid " + name + "=" + value, C.N.RED);
+            return fallback;
+        }
+    }
+}
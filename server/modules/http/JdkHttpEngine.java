@@ -0,0 +1,118 @@
+package modules.http;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * JdkHttpEngine - {@link HttpEngine} on the JDK's built-in HttpServer
+ *
+ * Every open connection, idle keep-alive ones included, is served by the JDK's own
+ * dispatcher, and a blocked response write holds its worker thread. The JDK keeps at
+ * most 200 idle keep-alive connections (sun.net.httpserver.maxIdleConnections) and
+ * closes the connection after a 304.
+ */
+final class JdkHttpEngine implements HttpEngine {
+    private final HttpServer server;
+    private final ExecutorService workers;
+
+    JdkHttpEngine(InetSocketAddress address, int backlog, int workerThreads) throws IOException {
+        // With Nagle on, a response written as headers then body waits out the client's
+        // delayed ACK, about 40 ms; -Dsun.net.httpserver.nodelay=false restores that
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(address, backlog);
+        workers = Executors.newFixedThreadPool(workerThreads);
+        server.setExecutor(workers);
+    }
+
+    @Override
+    public void createContext(String path, ExchangeHandler handler) {
+        server.createContext(path, exchange -> handler.handle(new JdkExchange(exchange)));
+    }
+
+    @Override
+    public void start() {
+        server.start();
+    }
+
+    @Override
+    public void stop() {
+        server.stop(0);
+        workers.shutdownNow();
+    }
+
+    @Override
+    public String name() {
+        return "jdk";
+    }
+
+    /**
+     * ServerExchange over an HttpExchange
+     */
+    private static final class JdkExchange implements ServerExchange {
+        private final HttpExchange exchange;
+
+        JdkExchange(HttpExchange exchange) {
+            this.exchange = exchange;
+        }
+
+        @Override
+        public String getRequestMethod() {
+            return exchange.getRequestMethod();
+        }
+
+        @Override
+        public URI getRequestURI() {
+            return exchange.getRequestURI();
+        }
+
+        @Override
+        public Headers getRequestHeaders() {
+            return exchange.getRequestHeaders();
+        }
+
+        @Override
+        public InputStream getRequestBody() {
+            return exchange.getRequestBody();
+        }
+
+        @Override
+        public Headers getResponseHeaders() {
+            return exchange.getResponseHeaders();
+        }
+
+        @Override
+        public void sendResponseHeaders(int statusCode, long length) throws IOException {
+            exchange.sendResponseHeaders(statusCode, length);
+        }
+
+        @Override
+        public OutputStream getResponseBody() {
+            return exchange.getResponseBody();
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            return exchange.getAttribute(name);
+        }
+
+        @Override
+        public void setAttribute(String name, Object value) {
+            exchange.setAttribute(name, value);
+        }
+
+        @Override
+        public void close() {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,494 @@
+package modules.http;
+
+import com.sun.net.httpserver.Headers;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+
+/**
+ * NioConnection - One client connection of the {@link NioHttpEngine}
+ *
+ * Reading, request parsing and request body decoding happen on the connection's
+ * selector thread only. Responses are written by whichever thread produces them: a
+ * write goes straight to the socket when nothing is queued, and the rest is queued for
+ * the selector thread, so a writer waits only while more than HIGH_WATER_BUFFERS
+ * buffers are queued. The input buffer is returned to the pool whenever it is empty.
+ */
+final class NioConnection {
+    private static final int HIGH_WATER_BUFFERS = 4;
+    private static final int MAX_CHUNK_LINE = 4096;
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private enum Chunk { SIZE, DATA, DATA_END, TRAILER }
+
+    private final NioHttpEngine engine;
+    private final NioHttpEngine.SelectorLoop loop;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final BufferPool pool;
+
+    // Selector thread only
+    private ByteBuffer in;
+    private long lastActive = System.nanoTime();
+    private NioExchange current;
+    private boolean bodyDone;
+    private boolean responseDone;
+    private boolean chunked;
+    private Chunk chunkState;
+    private long bodyRemaining;
+    private final StringBuilder chunkLine = new StringBuilder();
+    private boolean readPaused;
+    private boolean cleanedUp;
+
+    // Output side, guarded by outLock
+    private final Object outLock = new Object();
+    private final ArrayDeque<ByteBuffer> outQueue = new ArrayDeque<>();
+    private long pendingBytes;
+    private boolean writeInterest;
+    private boolean closeWhenFlushed;
+    private volatile boolean closed;
+
+    NioConnection(NioHttpEngine engine, NioHttpEngine.SelectorLoop loop, SocketChannel channel, SelectionKey key) {
+        this.engine = engine;
+        this.loop = loop;
+        this.channel = channel;
+        this.key = key;
+        this.pool = engine.pool;
+    }
+
+    BufferPool pool() {
+        return pool;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    // ---- reading (selector thread) ----
+
+    void onReadable() {
+        if (in == null) in = pool.acquire();
+        int n;
+        try {
+            n = channel.read(in);
+        } catch (IOException e) {
+            close();
+            return;
+        }
+        if (n < 0) {
+            // The client is gone; a response still being written has nowhere to go
+            close();
+            return;
+        }
+        if (n > 0) {
+            lastActive = System.nanoTime();
+            process();
+        }
+        releaseInputIfEmpty();
+    }
+
+    void closeIfIdle(long now) {
+        if (current == null && now - lastActive > engine.idleNanos) close();
+    }
+
+    /**
+     * Parse as far as the buffered input allows: a request head, its body, and once
+     * the response is done the next pipelined request
+     */
+    private void process() {
+        while (!closed) {
+            if (current == null) {
+                if (in == null || in.position() == 0) break;
+                int end = headEnd();
+                if (end == -2) continue; // skipped blank lines between requests
+                if (end < 0) {
+                    if (!in.hasRemaining()) reject(431, "Request Header Fields Too Large");
+                    break;
+                }
+                if (!startRequest(end)) break;
+            }
+            if (!bodyDone && !readBody()) break;
+            if (!responseDone) {
+                // Pipelined requests wait in the buffer; stop reading once it is full
+                if (in != null && !in.hasRemaining()) setReadInterest(false);
+                break;
+            }
+            finishExchange();
+        }
+    }
+
+    /**
+     * Index of the blank line ending the head in the input, -1 if not there yet, or
+     * -2 after dropping empty lines that precede a request
+     */
+    private int headEnd() {
+        int limit = in.position();
+        if (in.get(0) == '\r' || in.get(0) == '\n') {
+            int skip = 0;
+            while (skip < limit && (in.get(skip) == '\r' || in.get(skip) == '\n')) skip++;
+            consume(skip);
+            return in.position() == 0 ? -1 : -2;
+        }
+        for (int i = 3; i < limit; i++) {
+            if (in.get(i) == '\n' && in.get(i - 1) == '\r' && in.get(i - 2) == '\n' && in.get(i - 3) == '\r') return i - 3;
+        }
+        return -1;
+    }
+
+    private void consume(int count) {
+        in.flip();
+        in.position(count);
+        in.compact();
+    }
+
+    private boolean startRequest(int headLength) {
+        byte[] raw = new byte[headLength];
+        for (int i = 0; i < headLength; i++) raw[i] = in.get(i);
+        consume(headLength + 4);
+        String[] lines = new String(raw, StandardCharsets.ISO_8859_1).split("\r\n");
+
+        String[] requestLine = lines[0].split(" ");
+        if (requestLine.length != 3 || !requestLine[2].startsWith("HTTP/1.")) {
+            reject(400, "Bad Request");
+            return false;
+        }
+        URI uri;
+        try {
+            uri = new URI(requestLine[1]);
+        } catch (URISyntaxException e) {
+            reject(400, "Bad Request");
+            return false;
+        }
+        Headers headers = new Headers();
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon <= 0 || Character.isWhitespace(lines[i].charAt(0))) {
+                reject(400, "Bad Request");
+                return false;
+            }
+            headers.add(lines[i].substring(0, colon).trim(), lines[i].substring(colon + 1).trim());
+        }
+
+        String protocol = requestLine[2];
+        String transferEncoding = headers.getFirst("Transfer-Encoding");
+        String contentLength = headers.getFirst("Content-Length");
+        chunked = false;
+        bodyRemaining = 0;
+        if (transferEncoding != null) {
+            // Both framings at once is how requests are smuggled past proxies
+            if (contentLength != null || !transferEncoding.trim().toLowerCase().endsWith("chunked")) {
+                reject(400, "Bad Request");
+                return false;
+            }
+            chunked = true;
+            chunkState = Chunk.SIZE;
+            chunkLine.setLength(0);
+        } else if (contentLength != null) {
+            try {
+                bodyRemaining = Long.parseLong(contentLength.trim());
+            } catch (NumberFormatException e) {
+                bodyRemaining = -1;
+            }
+            if (bodyRemaining < 0) {
+                reject(400, "Bad Request");
+                return false;
+            }
+        }
+        bodyDone = !chunked && bodyRemaining == 0;
+        responseDone = false;
+
+        String connection = headers.getFirst("Connection");
+        boolean keepAlive = protocol.equals("HTTP/1.1")
+            ? !hasToken(connection, "close")
+            : hasToken(connection, "keep-alive");
+        int bodyCapacity = HIGH_WATER_BUFFERS * pool.bufferSize();
+        current = new NioExchange(this, requestLine[0], uri, protocol, headers, keepAlive, bodyDone, bodyCapacity);
+
+        if (!bodyDone && protocol.equals("HTTP/1.1") && hasToken(headers.getFirst("Expect"), "100-continue")) {
+            try {
+                write(ByteBuffer.wrap(CONTINUE), false);
+            } catch (IOException e) {
+                return false;
+            }
+        }
+        engine.dispatch(current);
+        return true;
+    }
+
+    private static boolean hasToken(String header, String token) {
+        if (header == null) return false;
+        for (String part : header.split(",")) {
+            if (part.trim().equalsIgnoreCase(token)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Move buffered body bytes to the exchange; true once the whole body has arrived
+     */
+    private boolean readBody() {
+        NioExchange.RequestBody body = current.requestBody();
+        in.flip();
+        try {
+            while (!bodyDone && in.hasRemaining()) {
+                if (chunked && chunkState != Chunk.DATA) {
+                    readChunkLine();
+                    continue;
+                }
+                if (!body.hasRoom()) {
+                    // Resumed by the handler reading, see resumeReading()
+                    readPaused = true;
+                    setReadInterest(false);
+                    return false;
+                }
+                int n = (int) Math.min(bodyRemaining, in.remaining());
+                body.offer(in, n);
+                bodyRemaining -= n;
+                if (bodyRemaining == 0) {
+                    if (chunked) {
+                        chunkState = Chunk.DATA_END;
+                    } else {
+                        bodyDone = true;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            body.fail(e);
+            closeWhenFlushed();
+            return false;
+        } finally {
+            in.compact();
+        }
+        if (bodyDone) body.finish();
+        return bodyDone;
+    }
+
+    /**
+     * Consume one byte of a chunk-size, chunk end or trailer line
+     */
+    private void readChunkLine() throws IOException {
+        byte b = in.get();
+        if (b != '\n') {
+            if (chunkLine.length() >= MAX_CHUNK_LINE) throw new IOException("Malformed chunked body");
+            if (b != '\r') chunkLine.append((char) (b & 0xff));
+            return;
+        }
+        String line = chunkLine.toString().trim();
+        chunkLine.setLength(0);
+        switch (chunkState) {
+            case SIZE:
+                int semicolon = line.indexOf(';');
+                String size = semicolon < 0 ? line : line.substring(0, semicolon).trim();
+                try {
+                    bodyRemaining = Long.parseLong(size, 16);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Malformed chunked body");
+                }
+                if (bodyRemaining < 0) throw new IOException("Malformed chunked body");
+                chunkState = bodyRemaining == 0 ? Chunk.TRAILER : Chunk.DATA;
+                break;
+            case DATA_END:
+                if (!line.isEmpty()) throw new IOException("Malformed chunked body");
+                chunkState = Chunk.SIZE;
+                break;
+            case TRAILER:
+                if (line.isEmpty()) bodyDone = true;
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * The handler drained the request body below its limit; called from any thread
+     */
+    void resumeReading() {
+        loop.execute(() -> {
+            if (!readPaused || closed) return;
+            readPaused = false;
+            setReadInterest(true);
+            process();
+            releaseInputIfEmpty();
+        });
+    }
+
+    /**
+     * The response was fully handed to the connection; called from any thread
+     */
+    void responseComplete(NioExchange exchange) {
+        loop.execute(() -> {
+            if (exchange != current || closed) return;
+            responseDone = true;
+            if (!bodyDone) {
+                // The rest of the body was never read, so the next request cannot be found
+                exchange.requestBody().fail(new IOException("Response already sent"));
+                closeWhenFlushed();
+                return;
+            }
+            process();
+            releaseInputIfEmpty();
+        });
+    }
+
+    private void finishExchange() {
+        boolean keepAlive = current.keepAlive();
+        current = null;
+        readPaused = false;
+        lastActive = System.nanoTime();
+        if (!keepAlive) {
+            closeWhenFlushed();
+            return;
+        }
+        setReadInterest(true);
+    }
+
+    /**
+     * Answer a request that cannot be parsed, then close
+     */
+    private void reject(int status, String reason) {
+        byte[] response = ("HTTP/1.1 " + status + " " + reason + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n")
+            .getBytes(StandardCharsets.US_ASCII);
+        try {
+            write(ByteBuffer.wrap(response), false);
+        } catch (IOException e) {
+            return;
+        }
+        closeWhenFlushed();
+    }
+
+    private void setReadInterest(boolean on) {
+        if (!key.isValid()) return;
+        int ops = key.interestOps();
+        key.interestOps(on ? ops | SelectionKey.OP_READ : ops & ~SelectionKey.OP_READ);
+    }
+
+    private void releaseInputIfEmpty() {
+        if (in != null && in.position() == 0) {
+            pool.release(in);
+            in = null;
+        }
+    }
+
+    // ---- writing (any thread) ----
+
+    /**
+     * Send a buffer in read mode; the connection owns it from here on. Waits while the
+     * client is too far behind, unless {@code mayBlock} is false.
+     */
+    void write(ByteBuffer buffer, boolean mayBlock) throws IOException {
+        synchronized (outLock) {
+            if (closed) {
+                pool.release(buffer);
+                throw new IOException("Connection closed");
+            }
+            if (outQueue.isEmpty()) {
+                try {
+                    channel.write(buffer);
+                } catch (IOException e) {
+                    pool.release(buffer);
+                    close();
+                    throw e;
+                }
+                if (!buffer.hasRemaining()) {
+                    pool.release(buffer);
+                    return;
+                }
+            }
+            outQueue.add(buffer);
+            pendingBytes += buffer.remaining();
+            if (!writeInterest) {
+                writeInterest = true;
+                loop.execute(this::enableWrite);
+            }
+            long highWater = (long) HIGH_WATER_BUFFERS * pool.bufferSize();
+            while (mayBlock && pendingBytes > highWater && !closed) {
+                try {
+                    outLock.wait();
+                } catch (InterruptedException e) {
+                    // The response is cut mid-body, so the connection cannot be reused
+                    close();
+                    throw new InterruptedIOException("Write interrupted");
+                }
+            }
+            if (closed) throw new IOException("Connection closed");
+        }
+    }
+
+    private void enableWrite() {
+        synchronized (outLock) {
+            if (writeInterest && key.isValid()) key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        }
+    }
+
+    void onWritable() {
+        synchronized (outLock) {
+            try {
+                while (!outQueue.isEmpty()) {
+                    ByteBuffer buffer = outQueue.peek();
+                    pendingBytes -= channel.write(buffer);
+                    if (buffer.hasRemaining()) break;
+                    pool.release(outQueue.poll());
+                }
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            if (outQueue.isEmpty()) {
+                writeInterest = false;
+                if (key.isValid()) key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            }
+            outLock.notifyAll();
+            if (outQueue.isEmpty() && closeWhenFlushed) close();
+        }
+    }
+
+    /**
+     * Close once everything queued has been written
+     */
+    void closeWhenFlushed() {
+        synchronized (outLock) {
+            if (outQueue.isEmpty()) {
+                close();
+            } else {
+                closeWhenFlushed = true;
+            }
+        }
+    }
+
+    /**
+     * Drop the connection now; safe from any thread and more than once
+     */
+    void close() {
+        synchronized (outLock) {
+            if (closed) return;
+            closed = true;
+            for (ByteBuffer buffer : outQueue) pool.release(buffer);
+            outQueue.clear();
+            pendingBytes = 0;
+            outLock.notifyAll();
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // nothing more to do
+        }
+        loop.execute(this::cleanUp);
+    }
+
+    private void cleanUp() {
+        if (cleanedUp) return;
+        cleanedUp = true;
+        if (in != null) {
+            pool.release(in);
+            in = null;
+        }
+        if (current != null) current.requestBody().fail(new IOException("Connection closed"));
+        engine.connectionClosed();
+    }
+}
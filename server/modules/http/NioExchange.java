@@ -0,0 +1,493 @@
+package modules.http;
+
+import com.sun.net.httpserver.Headers;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * NioExchange - ServerExchange of the {@link NioHttpEngine}
+ *
+ * The request body arrives from the selector thread into a bounded queue and is read
+ * by the handler. The response is written through {@link ResponseBody}, which fills
+ * pooled buffers and hands each full one to the connection.
+ */
+final class NioExchange implements ServerExchange {
+    private static final Map<Integer, String> REASONS = Map.ofEntries(
+        Map.entry(100, "Continue"), Map.entry(200, "OK"), Map.entry(201, "Created"),
+        Map.entry(202, "Accepted"), Map.entry(204, "No Content"), Map.entry(206, "Partial Content"),
+        Map.entry(301, "Moved Permanently"), Map.entry(302, "Found"), Map.entry(304, "Not Modified"),
+        Map.entry(400, "Bad Request"), Map.entry(401, "Unauthorized"), Map.entry(403, "Forbidden"),
+        Map.entry(404, "Not Found"), Map.entry(405, "Method Not Allowed"), Map.entry(409, "Conflict"),
+        Map.entry(411, "Length Required"), Map.entry(413, "Payload Too Large"), Map.entry(415, "Unsupported Media Type"),
+        Map.entry(422, "Unprocessable Entity"), Map.entry(429, "Too Many Requests"),
+        Map.entry(500, "Internal Server Error"), Map.entry(501, "Not Implemented"), Map.entry(502, "Bad Gateway"),
+        Map.entry(503, "Service Unavailable"), Map.entry(504, "Gateway Timeout"));
+
+    private enum Framing { NONE, FIXED, CHUNKED, UNTIL_CLOSE }
+
+    private final NioConnection connection;
+    private final String method;
+    private final URI uri;
+    private final String protocol;
+    private final Headers requestHeaders;
+    private final Headers responseHeaders = new Headers();
+    private final Map<String, Object> attributes = new HashMap<>();
+    private final RequestBody requestBody;
+    private final ResponseBody responseBody;
+    private volatile boolean keepAlive;
+    private volatile boolean headersSent;
+
+    NioExchange(NioConnection connection, String method, URI uri, String protocol, Headers requestHeaders,
+                boolean keepAlive, boolean emptyBody, int bodyCapacity) {
+        this.connection = connection;
+        this.method = method;
+        this.uri = uri;
+        this.protocol = protocol;
+        this.requestHeaders = requestHeaders;
+        this.keepAlive = keepAlive;
+        this.requestBody = new RequestBody(connection, bodyCapacity);
+        if (emptyBody) requestBody.finish();
+        this.responseBody = new ResponseBody(this, connection);
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return method;
+    }
+
+    @Override
+    public URI getRequestURI() {
+        return uri;
+    }
+
+    @Override
+    public Headers getRequestHeaders() {
+        return requestHeaders;
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+        return requestBody;
+    }
+
+    @Override
+    public Headers getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+        return responseBody;
+    }
+
+    @Override
+    public synchronized Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public synchronized void setAttribute(String name, Object value) {
+        if (value == null) {
+            attributes.remove(name);
+        } else {
+            attributes.put(name, value);
+        }
+    }
+
+    RequestBody requestBody() {
+        return requestBody;
+    }
+
+    boolean keepAlive() {
+        return keepAlive;
+    }
+
+    boolean headersSent() {
+        return headersSent;
+    }
+
+    @Override
+    public void sendResponseHeaders(int statusCode, long length) throws IOException {
+        synchronized (responseBody) {
+            if (headersSent) throw new IOException("Response headers already sent");
+            headersSent = true;
+            boolean http11 = protocol.equals("HTTP/1.1");
+            if (hasToken(responseHeaders.getFirst("Connection"), "close")) keepAlive = false;
+
+            Framing framing;
+            if (length < 0 || statusCode < 200 || statusCode == 204 || statusCode == 304) {
+                framing = Framing.NONE;
+            } else if (length > 0) {
+                framing = Framing.FIXED;
+            } else if (http11) {
+                framing = Framing.CHUNKED;
+            } else {
+                framing = Framing.UNTIL_CLOSE;
+                keepAlive = false;
+            }
+
+            StringBuilder head = new StringBuilder(256);
+            head.append("HTTP/1.1 ").append(statusCode).append(' ')
+                .append(REASONS.getOrDefault(statusCode, "Status")).append("\r\n");
+            if (!responseHeaders.containsKey("Date")) head.append("Date: ").append(HttpDate.now()).append("\r\n");
+            for (Map.Entry<String, List<String>> header : responseHeaders.entrySet()) {
+                String name = header.getKey();
+                if (name.equalsIgnoreCase("Content-Length") || name.equalsIgnoreCase("Transfer-Encoding")
+                        || name.equalsIgnoreCase("Connection")) {
+                    continue;
+                }
+                for (String value : header.getValue()) head.append(name).append(": ").append(value).append("\r\n");
+            }
+            if (framing == Framing.FIXED) {
+                head.append("Content-Length: ").append(length).append("\r\n");
+            } else if (framing == Framing.CHUNKED) {
+                head.append("Transfer-Encoding: chunked\r\n");
+            } else if (framing == Framing.NONE && statusCode >= 200 && statusCode != 204 && statusCode != 304) {
+                head.append("Content-Length: 0\r\n");
+            }
+            if (!keepAlive) {
+                head.append("Connection: close\r\n");
+            } else if (!http11) {
+                head.append("Connection: keep-alive\r\n");
+            }
+            head.append("\r\n");
+
+            boolean discardBody = method.equals("HEAD") && framing != Framing.NONE;
+            responseBody.begin(head.toString().getBytes(StandardCharsets.ISO_8859_1),
+                discardBody ? Framing.NONE : framing, length, discardBody);
+            if (framing == Framing.NONE || discardBody) responseBody.close();
+        }
+    }
+
+    /**
+     * A complete plain-text response, for errors the engine answers itself
+     */
+    void sendText(int statusCode, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        responseHeaders.set("Content-Type", "text/plain; charset=utf-8");
+        sendResponseHeaders(statusCode, bytes.length);
+        try (OutputStream out = responseBody) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            requestBody.close();
+        } catch (IOException ignored) {
+            // never thrown
+        }
+        if (!headersSent) {
+            abort();
+            return;
+        }
+        try {
+            responseBody.close();
+        } catch (IOException e) {
+            abort();
+        }
+    }
+
+    /**
+     * Drop the connection, for a response that cannot be completed
+     */
+    void abort() {
+        connection.close();
+    }
+
+    void responseFinished() {
+        connection.responseComplete(this);
+    }
+
+    private static boolean hasToken(String header, String token) {
+        if (header == null) return false;
+        for (String part : header.split(",")) {
+            if (part.trim().equalsIgnoreCase(token)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Request body bytes queued by the selector thread until the handler reads them
+     */
+    static final class RequestBody extends InputStream {
+        private final NioConnection connection;
+        private final int capacity;
+        private final ArrayDeque<byte[]> chunks = new ArrayDeque<>();
+        private int offset;
+        private int buffered;
+        private boolean finished;
+        private boolean discard;
+        private IOException failure;
+
+        RequestBody(NioConnection connection, int capacity) {
+            this.connection = connection;
+            this.capacity = capacity;
+        }
+
+        synchronized boolean hasRoom() {
+            return discard || buffered < capacity;
+        }
+
+        /**
+         * Take {@code length} bytes from the selector's buffer
+         */
+        synchronized void offer(ByteBuffer source, int length) {
+            if (discard) {
+                source.position(source.position() + length);
+                return;
+            }
+            byte[] bytes = new byte[length];
+            source.get(bytes);
+            chunks.add(bytes);
+            buffered += length;
+            notifyAll();
+        }
+
+        synchronized void finish() {
+            finished = true;
+            notifyAll();
+        }
+
+        synchronized void fail(IOException e) {
+            if (!finished && failure == null) failure = e;
+            notifyAll();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            int n;
+            boolean resume;
+            synchronized (this) {
+                while (chunks.isEmpty()) {
+                    if (discard || finished) return -1;
+                    if (failure != null) throw failure;
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Request body read interrupted");
+                    }
+                }
+                byte[] head = chunks.peek();
+                n = Math.min(len, head.length - offset);
+                System.arraycopy(head, offset, b, off, n);
+                offset += n;
+                if (offset == head.length) {
+                    chunks.poll();
+                    offset = 0;
+                }
+                resume = buffered >= capacity && buffered - n < capacity;
+                buffered -= n;
+            }
+            if (resume) connection.resumeReading();
+            return n;
+        }
+
+        @Override
+        public synchronized int available() {
+            return buffered;
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (this) {
+                if (discard) return;
+                discard = true;
+                chunks.clear();
+                buffered = 0;
+                notifyAll();
+            }
+            connection.resumeReading();
+        }
+    }
+
+    /**
+     * Response body written into pooled buffers. Chunked bodies reserve room at the
+     * start of each buffer for a fixed-width chunk size, so a buffer goes out as one
+     * chunk in one write.
+     */
+    static final class ResponseBody extends OutputStream {
+        private static final int CHUNK_PREFIX = 10; // 8 hex digits and CRLF
+        private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+        private final NioExchange exchange;
+        private final NioConnection connection;
+        private Framing framing;
+        private boolean started;
+        private boolean discard;
+        private boolean closed;
+        private long remaining;
+        private ByteBuffer buffer;
+        private int chunkStart;
+
+        ResponseBody(NioExchange exchange, NioConnection connection) {
+            this.exchange = exchange;
+            this.connection = connection;
+        }
+
+        synchronized void begin(byte[] head, Framing framing, long length, boolean discard) throws IOException {
+            this.framing = framing;
+            this.discard = discard;
+            this.remaining = framing == Framing.FIXED ? length : 0;
+            this.started = true;
+            BufferPool pool = connection.pool();
+            if (head.length > pool.bufferSize() / 2) {
+                connection.write(ByteBuffer.wrap(head), true);
+                return;
+            }
+            buffer = pool.acquire();
+            buffer.put(head);
+            if (framing == Framing.CHUNKED) openChunk();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            if (!started) throw new IOException("Response headers not sent");
+            if (closed) throw new IOException("Response body closed");
+            if (discard || len == 0) return;
+            if (framing == Framing.NONE) throw new IOException("Response has no body");
+            if (framing == Framing.FIXED) {
+                if (len > remaining) throw new IOException("Too many bytes for Content-Length");
+                remaining -= len;
+            }
+            while (len > 0) {
+                ensureBuffer();
+                // A chunk keeps two bytes for its closing CRLF
+                int room = buffer.remaining() - (framing == Framing.CHUNKED ? 2 : 0);
+                if (room <= 0) {
+                    send();
+                    continue;
+                }
+                int n = Math.min(room, len);
+                buffer.put(b, off, n);
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            if (started && !closed) send();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            if (!started) return;
+            try {
+                if (framing == Framing.CHUNKED) {
+                    ensureBuffer();
+                    closeChunk();
+                    if (buffer.remaining() < LAST_CHUNK.length) {
+                        sendRaw();
+                        buffer = connection.pool().acquire();
+                    }
+                    buffer.put(LAST_CHUNK);
+                } else if (framing == Framing.FIXED && remaining > 0) {
+                    throw new IOException("Response closed " + remaining + " bytes short of Content-Length");
+                }
+                sendRaw();
+            } catch (IOException e) {
+                release();
+                exchange.abort();
+                throw e;
+            }
+            exchange.responseFinished();
+        }
+
+        private void ensureBuffer() {
+            if (buffer != null) return;
+            buffer = connection.pool().acquire();
+            if (framing == Framing.CHUNKED) openChunk();
+        }
+
+        private void openChunk() {
+            chunkStart = buffer.position();
+            buffer.position(chunkStart + CHUNK_PREFIX);
+        }
+
+        /**
+         * Fill in the size of the open chunk, or drop it if empty
+         */
+        private void closeChunk() {
+            int size = buffer.position() - chunkStart - CHUNK_PREFIX;
+            if (size == 0) {
+                buffer.position(chunkStart);
+                return;
+            }
+            for (int i = 0; i < 8; i++) buffer.put(chunkStart + i, HEX[(size >>> (28 - 4 * i)) & 0xf]);
+            buffer.put(chunkStart + 8, (byte) '\r');
+            buffer.put(chunkStart + 9, (byte) '\n');
+            buffer.put((byte) '\r').put((byte) '\n');
+        }
+
+        private void send() throws IOException {
+            if (buffer == null) return;
+            if (framing == Framing.CHUNKED) closeChunk();
+            sendRaw();
+        }
+
+        private void sendRaw() throws IOException {
+            if (buffer == null) return;
+            ByteBuffer full = buffer;
+            buffer = null;
+            if (full.position() == 0) {
+                connection.pool().release(full);
+                return;
+            }
+            full.flip();
+            connection.write(full, true);
+        }
+
+        private void release() {
+            if (buffer != null) connection.pool().release(buffer);
+            buffer = null;
+        }
+    }
+
+    /**
+     * The Date header value, formatted once a second
+     */
+    private static final class HttpDate {
+        private static volatile long second;
+        private static volatile String value;
+
+        static String now() {
+            long current = System.currentTimeMillis() / 1000;
+            String cached = value;
+            if (cached != null && current == second) return cached;
+            cached = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC));
+            value = cached;
+            second = current;
+            return cached;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package modules.http;
+
+import modules.gui.Logger;
+import modules.utils.C;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * NioHttpEngine - Non-blocking HTTP/1.1 server
+ *
+ * One acceptor thread hands new connections round-robin to HTTP_SELECTORS selector
+ * threads (default one per core). A selector thread does all socket reads, parses
+ * requests and writes what a response could not write at once; handlers run on the
+ * worker pool. A connection between requests is only a registered channel: it holds
+ * no thread and no buffer, and is closed after HTTP_IDLE_SECONDS (default 30).
+ *
+ * Socket I/O goes through pooled direct buffers of HTTP_BUFFER_KB (default 16), which
+ * is also the largest request head accepted. A response's headers and the start of its
+ * body share one buffer and usually one write. Request bodies are streamed to the
+ * handler; reading from the socket pauses while the handler is behind. A response
+ * writer blocks only while a few buffers are waiting for a slow client.
+ *
+ * Keep-alive and pipelining follow HTTP/1.1: requests on one connection are handled in
+ * order, one at a time. Bodies are read by Content-Length or chunked encoding; a
+ * response of unknown length is chunked, or ends the connection for HTTP/1.0 clients.
+ */
+final class NioHttpEngine implements HttpEngine {
+    private static final class Context {
+        final String path;
+        final ExchangeHandler handler;
+
+        Context(String path, ExchangeHandler handler) {
+            this.path = path;
+            this.handler = handler;
+        }
+    }
+
+    private final InetSocketAddress address;
+    private final int backlog;
+    private volatile List<Context> contexts = List.of();
+    private final SelectorLoop[] loops;
+    private final ExecutorService workers;
+    final BufferPool pool;
+    final long idleNanos;
+    private final AtomicInteger connections = new AtomicInteger();
+    private ServerSocketChannel acceptChannel;
+    private Thread acceptor;
+    private volatile boolean running;
+
+    NioHttpEngine(InetSocketAddress address, int backlog, int workerThreads, int selectors, int bufferKb, int idleSeconds)
+            throws IOException {
+        this.address = address;
+        this.backlog = backlog;
+        this.pool = new BufferPool(bufferKb * 1024, 1024);
+        this.idleNanos = TimeUnit.SECONDS.toNanos(idleSeconds);
+        AtomicInteger ids = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerThreads, r -> {
+            Thread t = new Thread(r, "http-worker-" + ids.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.loops = new SelectorLoop[selectors];
+        for (int i = 0; i < selectors; i++) loops[i] = new SelectorLoop(this, Selector.open(), "http-selector-" + (i + 1));
+    }
+
+    @Override
+    public synchronized void createContext(String path, ExchangeHandler handler) {
+        List<Context> sorted = new ArrayList<>(contexts);
+        sorted.add(new Context(path, handler));
+        // Longest path first, so the first prefix match is the most specific
+        sorted.sort(Comparator.comparingInt((Context c) -> c.path.length()).reversed());
+        contexts = List.copyOf(sorted);
+    }
+
+    @Override
+    public synchronized void start() throws IOException {
+        if (running) return;
+        acceptChannel = ServerSocketChannel.open();
+        acceptChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        acceptChannel.bind(address, backlog);
+        running = true;
+        for (SelectorLoop loop : loops) loop.start();
+        // Not daemons: like the JDK server, a running engine keeps the process alive
+        acceptor = new Thread(this::acceptLoop, "http-acceptor");
+        acceptor.start();
+        Logger.log("[HTTP] NIO engine: " + loops.length + " selector thread(s), "
+            + (pool.bufferSize() / 1024) + " KB buffers, backlog " + backlog, C.N.CYAN);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        try {
+            acceptChannel.close();
+        } catch (IOException ignored) {
+            // already closed
+        }
+        try {
+            acceptor.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SelectorLoop loop : loops) loop.shutdown();
+        workers.shutdownNow();
+    }
+
+    @Override
+    public String name() {
+        return "nio";
+    }
+
+    int openConnections() {
+        return connections.get();
+    }
+
+    void connectionClosed() {
+        connections.decrementAndGet();
+    }
+
+    private void acceptLoop() {
+        int next = 0;
+        while (running) {
+            try {
+                SocketChannel channel = acceptChannel.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                connections.incrementAndGet();
+                loops[next].register(channel);
+                next = (next + 1) % loops.length;
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (IOException e) {
+                // Usually out of file descriptors; the connection stays in the backlog
+                Logger.log("[HTTP] Accept failed: " + e.getMessage(), C.N.RED);
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ignored) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Run the exchange's handler on a worker thread
+     */
+    void dispatch(NioExchange exchange) {
+        try {
+            workers.execute(() -> serve(exchange));
+        } catch (RejectedExecutionException e) {
+            exchange.close();
+        }
+    }
+
+    private void serve(NioExchange exchange) {
+        String path = exchange.getRequestURI().getPath();
+        ExchangeHandler handler = null;
+        for (Context context : contexts) {
+            if (path != null && path.startsWith(context.path)) {
+                handler = context.handler;
+                break;
+            }
+        }
+        try {
+            if (handler == null) {
+                exchange.sendText(404, "No context found for request");
+                return;
+            }
+            handler.handle(exchange);
+            if (!exchange.headersSent()) {
+                Logger.log("[HTTP] Handler for " + path + " returned without a response", C.N.RED);
+                exchange.close();
+            }
+        } catch (Exception e) {
+            Logger.log("[HTTP] " + exchange.getRequestMethod() + " " + path + " failed: " + e, C.N.RED);
+            if (exchange.headersSent()) {
+                exchange.abort();
+            } else {
+                try {
+                    exchange.sendText(500, "Internal server error");
+                } catch (IOException ignored) {
+                    exchange.abort();
+                }
+            }
+        }
+    }
+
+    /**
+     * One selector thread and the connections registered with it
+     */
+    static final class SelectorLoop {
+        private final NioHttpEngine engine;
+        private final Selector selector;
+        private final Thread thread;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean wakeupPending = new AtomicBoolean();
+        private volatile boolean running;
+
+        SelectorLoop(NioHttpEngine engine, Selector selector, String name) {
+            this.engine = engine;
+            this.selector = selector;
+            this.thread = new Thread(this::run, name);
+        }
+
+        void start() {
+            running = true;
+            thread.start();
+        }
+
+        void shutdown() {
+            running = false;
+            selector.wakeup();
+            try {
+                thread.join(5_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Run a task on this selector thread
+         */
+        void execute(Runnable task) {
+            tasks.add(task);
+            if (Thread.currentThread() != thread && wakeupPending.compareAndSet(false, true)) selector.wakeup();
+        }
+
+        void register(SocketChannel channel) {
+            execute(() -> {
+                try {
+                    SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                    key.attach(new NioConnection(engine, this, channel, key));
+                } catch (IOException e) {
+                    try {
+                        channel.close();
+                    } catch (IOException ignored) {
+                        // nothing more to do
+                    }
+                    engine.connectionClosed();
+                }
+            });
+        }
+
+        private void run() {
+            long nextIdleCheck = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+            while (running) {
+                try {
+                    selector.select(1_000);
+                } catch (IOException e) {
+                    Logger.log("[HTTP] Selector failed: " + e.getMessage(), C.N.RED);
+                    break;
+                }
+                wakeupPending.set(false);
+                runTasks();
+                Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                while (selected.hasNext()) {
+                    SelectionKey key = selected.next();
+                    selected.remove();
+                    NioConnection connection = (NioConnection) key.attachment();
+                    if (connection == null) continue;
+                    try {
+                        if (key.isValid() && key.isWritable()) connection.onWritable();
+                        if (key.isValid() && key.isReadable()) connection.onReadable();
+                    } catch (RuntimeException e) {
+                        Logger.log("[HTTP] Connection error: " + e, C.N.RED);
+                        connection.close();
+                    }
+                }
+                long now = System.nanoTime();
+                if (now - nextIdleCheck >= 0) {
+                    nextIdleCheck = now + TimeUnit.SECONDS.toNanos(1);
+                    for (SelectionKey key : selector.keys()) {
+                        NioConnection connection = (NioConnection) key.attachment();
+                        if (connection != null) connection.closeIfIdle(now);
+                    }
+                }
+            }
+            for (SelectionKey key : selector.keys()) {
+                NioConnection connection = (NioConnection) key.attachment();
+                if (connection != null) connection.close();
+            }
+            runTasks();
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+                // shutting down
+            }
+        }
+
+        private void runTasks() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    Logger.log("[HTTP] Selector task failed: " + e, C.N.RED);
+                }
+            }
+        }
+    }
+}
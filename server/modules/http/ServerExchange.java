@@ -0,0 +1,45 @@
+package modules.http;
+
+import com.sun.net.httpserver.Headers;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+
+/**
+ * ServerExchange - One HTTP request and its response, whichever engine serves it
+ *
+ * The calls and their meaning are those of com.sun.net.httpserver.HttpExchange, so a
+ * handler moves between engines unchanged. Header maps are
+ * {@link com.sun.net.httpserver.Headers}, a case-insensitive multimap.
+ *
+ * {@link #sendResponseHeaders} takes the body length: a positive length is sent as
+ * Content-Length, 0 streams a body of unknown length (chunked), and -1 means no body,
+ * which also completes the response. A response with a body is complete when its
+ * body stream or the exchange is closed.
+ */
+public interface ServerExchange {
+    String getRequestMethod();
+
+    URI getRequestURI();
+
+    Headers getRequestHeaders();
+
+    InputStream getRequestBody();
+
+    Headers getResponseHeaders();
+
+    void sendResponseHeaders(int statusCode, long length) throws IOException;
+
+    OutputStream getResponseBody();
+
+    Object getAttribute(String name);
+
+    void setAttribute(String name, Object value);
+
+    /**
+     * End the exchange: closes the request body and completes the response, or drops
+     * the connection when no response headers were sent
+     */
+    void close();
+}
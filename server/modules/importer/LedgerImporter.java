@@ -0,0 +1,306 @@
+package modules.importer;
+
+import modules.database.DatabaseManager;
+import modules.gui.Logger;
+import modules.utils.C;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.OffsetDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * LedgerImporter - Bulk-loads historical transactions with COPY FROM STDIN
+ *
+ * The input is read in chunks of records. Each chunk is validated on a worker pool
+ * (see {@link RowValidator}) and turned into COPY text; chunks are then written to a single
+ * COPY in input order while later chunks are still being validated. At most a few chunks
+ * are in flight, so memory stays bounded whatever the input size.
+ *
+ * Rejected records go to a CSV report (record, line, reason, data) and do not stop the
+ * import. The COPY is one statement, so if the database refuses a row (an account deleted
+ * mid-import, say) nothing is imported. Imported rows are history only: account balances
+ * and transaction_audit are left untouched. Instead of one ledger_events notification per
+ * row, a single "bulk" event is sent once the rows are committed.
+ */
+public class LedgerImporter {
+    public enum Format { CSV, NDJSON }
+
+    private static final int CHUNK_RECORDS = 5_000;
+    /** A record that grows past this is almost certainly an unbalanced CSV quote. */
+    private static final int MAX_RECORD_CHARS = 1 << 16;
+
+    /**
+     * Outcome of one import; report is null when nothing was rejected
+     */
+    public static final class Result {
+        public final long imported;
+        public final long rejected;
+        public final Path report;
+        public final double seconds;
+
+        Result(long imported, long rejected, Path report, double seconds) {
+            this.imported = imported;
+            this.rejected = rejected;
+            this.report = report;
+            this.seconds = seconds;
+        }
+    }
+
+    /**
+     * Records read from the input, and after validation their COPY bytes and rejects
+     */
+    private static final class Chunk {
+        final long firstRecord;
+        final List<String> records = new ArrayList<>(CHUNK_RECORDS);
+        final long[] lines = new long[CHUNK_RECORDS];
+        byte[] copy;
+        final List<String[]> rejects = new ArrayList<>();
+
+        Chunk(long firstRecord) {
+            this.firstRecord = firstRecord;
+        }
+    }
+
+    private final Format format;
+    private final Path reportFile;
+    private final int threads;
+
+    public LedgerImporter(Format format, Path reportFile) {
+        this(format, reportFile, Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public LedgerImporter(Format format, Path reportFile, int threads) {
+        this.format = format;
+        this.reportFile = reportFile;
+        this.threads = threads;
+    }
+
+    /**
+     * Imports every valid record from in. Malformed input as a whole (a CSV header without
+     * the required columns, a runaway quoted field) throws IllegalArgumentException before
+     * anything is committed.
+     */
+    public Result run(InputStream in) throws IOException, SQLException {
+        long started = System.nanoTime();
+        AtomicInteger threadIds = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "ledger-import-" + threadIds.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        BufferedWriter report = null;
+        try (Connection conn = DatabaseManager.openConnection();
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16)) {
+            RowValidator validator = new RowValidator(loadAccounts(conn), OffsetDateTime.now());
+            LineCounter counter = new LineCounter(reader);
+            int[] columnMap = format == Format.CSV ? readHeader(counter) : null;
+
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("SET ledger.feed = 'off'");
+            }
+            CopyIn copy = conn.unwrap(PGConnection.class).getCopyAPI()
+                .copyIn("COPY transactions (" + RowValidator.COPY_COLUMNS + ") FROM STDIN");
+            try {
+                ArrayDeque<Future<Chunk>> inFlight = new ArrayDeque<>();
+                long rejected = 0;
+                long nextRecord = 1;
+                boolean eof = false;
+                while (!eof || !inFlight.isEmpty()) {
+                    if (!eof) {
+                        Chunk chunk = readChunk(counter, nextRecord);
+                        nextRecord += chunk.records.size();
+                        eof = chunk.records.isEmpty();
+                        if (!eof) inFlight.add(pool.submit(() -> validate(chunk, validator, columnMap)));
+                    }
+                    // Keep reading ahead until enough chunks are queued, then write the oldest
+                    if (!inFlight.isEmpty() && (eof || inFlight.size() >= threads * 2)) {
+                        Chunk done = await(inFlight.poll());
+                        copy.writeToCopy(done.copy, 0, done.copy.length);
+                        if (!done.rejects.isEmpty()) report = writeRejects(report, done);
+                        rejected += done.rejects.size();
+                    }
+                }
+                long imported = copy.endCopy();
+                if (imported > 0) {
+                    // One event for the whole load, so the live feed and history ETags start over
+                    try (Statement stmt = conn.createStatement()) {
+                        stmt.execute("SELECT pg_notify('ledger_events', '{\"kind\":\"bulk\"}')");
+                    }
+                }
+                return new Result(imported, rejected, report == null ? null : reportFile, (System.nanoTime() - started) / 1e9);
+            } finally {
+                if (copy.isActive()) {
+                    try {
+                        copy.cancelCopy();
+                    } catch (SQLException e) {
+                        Logger.log("   [IMPORT ERROR] Could not cancel COPY: " + e.getMessage(), C.N.RED);
+                    }
+                }
+            }
+        } finally {
+            if (report != null) report.close();
+            pool.shutdownNow();
+        }
+    }
+
+    private static Set<String> loadAccounts(Connection conn) throws SQLException {
+        Set<String> accounts = new HashSet<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT account_number FROM accounts")) {
+            while (rs.next()) {
+                accounts.add(rs.getString(1));
+            }
+        }
+        return accounts;
+    }
+
+    private int[] readHeader(LineCounter counter) throws IOException {
+        String header = nextRecord(counter);
+        if (header == null) throw new IllegalArgumentException("CSV input is empty; expected a header row");
+        int[] map = RowValidator.columnMap(RowValidator.splitCsv(header).stream()
+            .map(h -> h == null ? "" : h).toList());
+        for (int required : new int[] {RowValidator.ACCOUNT, RowValidator.TYPE, RowValidator.AMOUNT}) {
+            if (map[required] < 0) {
+                throw new IllegalArgumentException("CSV header must include " + RowValidator.FIELDS.get(required));
+            }
+        }
+        return map;
+    }
+
+    private Chunk readChunk(LineCounter counter, long firstRecord) throws IOException {
+        Chunk chunk = new Chunk(firstRecord);
+        while (chunk.records.size() < CHUNK_RECORDS) {
+            String record = nextRecord(counter);
+            if (record == null) break;
+            chunk.lines[chunk.records.size()] = counter.recordLine;
+            chunk.records.add(record);
+        }
+        return chunk;
+    }
+
+    /**
+     * Next non-blank record, or null at the end. A CSV record continues over line breaks
+     * while it has an odd number of quote characters, i.e. inside a quoted field.
+     */
+    private String nextRecord(LineCounter counter) throws IOException {
+        String line;
+        do {
+            line = counter.next();
+            if (line == null) return null;
+        } while (line.isBlank());
+        counter.recordLine = counter.line;
+        if (format != Format.CSV || quoteCount(line) % 2 == 0) return line;
+
+        StringBuilder record = new StringBuilder(line);
+        int quotes = quoteCount(line);
+        while (quotes % 2 != 0) {
+            String more = counter.next();
+            if (more == null) throw new IllegalArgumentException("unterminated quoted field in record at line " + counter.recordLine);
+            record.append('\n').append(more);
+            quotes += quoteCount(more);
+            if (record.length() > MAX_RECORD_CHARS) {
+                throw new IllegalArgumentException("record at line " + counter.recordLine
+                    + " exceeds " + MAX_RECORD_CHARS + " characters; check for an unbalanced quote");
+            }
+        }
+        return record.toString();
+    }
+
+    private static int quoteCount(String s) {
+        int count = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == '"') count++;
+        }
+        return count;
+    }
+
+    private Chunk validate(Chunk chunk, RowValidator validator, int[] columnMap) {
+        StringBuilder copy = new StringBuilder(chunk.records.size() * 128);
+        for (int i = 0; i < chunk.records.size(); i++) {
+            String record = chunk.records.get(i);
+            String reason = format == Format.CSV
+                ? validator.validateCsv(record, columnMap, copy)
+                : validator.validateJson(record, copy);
+            if (reason != null) {
+                chunk.rejects.add(new String[] {
+                    String.valueOf(chunk.firstRecord + i), String.valueOf(chunk.lines[i]), reason, record });
+            }
+        }
+        chunk.copy = copy.toString().getBytes(StandardCharsets.UTF_8);
+        chunk.records.clear();
+        return chunk;
+    }
+
+    private static Chunk await(Future<Chunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Validation failed: " + e.getCause(), e.getCause());
+        }
+    }
+
+    private BufferedWriter writeRejects(BufferedWriter report, Chunk chunk) throws IOException {
+        if (report == null) {
+            Path dir = reportFile.toAbsolutePath().getParent();
+            if (dir != null) Files.createDirectories(dir);
+            report = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8);
+            report.write("record,line,reason,data\n");
+        }
+        for (String[] reject : chunk.rejects) {
+            for (int i = 0; i < reject.length; i++) {
+                if (i > 0) report.write(',');
+                report.write(csvField(reject[i]));
+            }
+            report.write('\n');
+        }
+        return report;
+    }
+
+    private static String csvField(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) return s;
+        return "\"" + s.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Wraps the reader to track physical line numbers for the report
+     */
+    private static final class LineCounter {
+        final BufferedReader reader;
+        long line;
+        long recordLine;
+
+        LineCounter(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        String next() throws IOException {
+            String s = reader.readLine();
+            if (s != null) line++;
+            return s;
+        }
+    }
+}
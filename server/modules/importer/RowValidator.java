@@ -0,0 +1,242 @@
+package modules.importer;
+
+import modules.utils.Json;
+import modules.utils.MoneyCodec;
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * RowValidator - Checks one import record against the transactions constraints
+ *
+ * A valid record is appended to a buffer as one line of COPY text format; an invalid one
+ * yields the reason it was rejected. Checks mirror the table: type_check, status_tx_check,
+ * amount > 0 within NUMERIC(12,2), fee >= 0, both accounts present in the known-account set
+ * (the foreign keys), created_by within VARCHAR(10) and timestamps that carry an offset.
+ * Transfers also need a target other than the source. Instances are immutable and shared
+ * by all validation threads.
+ */
+public final class RowValidator {
+    /** Fields in COPY column order; the names are also the accepted CSV headers and JSON keys. */
+    public static final List<String> FIELDS = List.of(
+        "account_number", "target_account", "type", "status", "amount", "fee",
+        "note", "created_by", "created_at", "completed_at", "voided_at");
+    public static final String COPY_COLUMNS = String.join(", ", FIELDS);
+
+    static final int ACCOUNT = 0, TARGET = 1, TYPE = 2, STATUS = 3, AMOUNT = 4, FEE = 5,
+        NOTE = 6, CREATED_BY = 7, CREATED_AT = 8, COMPLETED_AT = 9, VOIDED_AT = 10;
+
+    private static final Set<String> TYPES = Set.of("deposit", "withdraw", "transfer", "fee");
+    private static final Set<String> STATUSES = Set.of("Pending", "Completed", "Voided");
+    /** Largest NUMERIC(12,2) value, 9999999999.99, in cents. */
+    private static final long MAX_AMOUNT_MINOR = 999_999_999_999L;
+    private static final int MAX_CREATED_BY = 10;
+
+    /** Accepts both the export's CSV form (2025-01-31 10:15:00.5+08) and ISO-8601. */
+    private static final DateTimeFormatter TIMESTAMP = new DateTimeFormatterBuilder()
+        .append(DateTimeFormatter.ISO_LOCAL_DATE)
+        .optionalStart().appendLiteral('T').optionalEnd()
+        .optionalStart().appendLiteral(' ').optionalEnd()
+        .append(DateTimeFormatter.ISO_LOCAL_TIME)
+        .parseLenient()
+        .appendOffset("+HH:MM:ss", "Z")
+        .toFormatter();
+
+    private final Set<String> knownAccounts;
+    private final String defaultCreatedAt;
+
+    /**
+     * @param knownAccounts account numbers that exist; read-only while the import runs
+     * @param defaultCreatedAt created_at for records that leave it empty
+     */
+    public RowValidator(Set<String> knownAccounts, OffsetDateTime defaultCreatedAt) {
+        this.knownAccounts = knownAccounts;
+        this.defaultCreatedAt = defaultCreatedAt.toString();
+    }
+
+    /**
+     * Maps a CSV header row to field positions: result[field] is the column holding it, or -1.
+     * Columns such as id or the balance snapshots are ignored; ids come from the sequence.
+     */
+    public static int[] columnMap(List<String> header) {
+        int[] map = new int[FIELDS.size()];
+        java.util.Arrays.fill(map, -1);
+        for (int col = 0; col < header.size(); col++) {
+            int field = FIELDS.indexOf(header.get(col).trim());
+            if (field >= 0) map[field] = col;
+        }
+        return map;
+    }
+
+    /** Validates a CSV record; columns come from {@link #splitCsv} and are mapped with columnMap. */
+    public String validateCsv(String record, int[] columnMap, StringBuilder copy) {
+        List<String> columns;
+        try {
+            columns = splitCsv(record);
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        String[] fields = new String[FIELDS.size()];
+        for (int f = 0; f < fields.length; f++) {
+            int col = columnMap[f];
+            if (col >= 0 && col < columns.size()) fields[f] = columns.get(col);
+        }
+        return validate(fields, copy);
+    }
+
+    /** Validates one NDJSON line holding a flat object keyed by {@link #FIELDS}. */
+    public String validateJson(String line, StringBuilder copy) {
+        Map<String, Object> object;
+        try {
+            object = Json.parseObject(line);
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        String[] fields = new String[FIELDS.size()];
+        for (int f = 0; f < fields.length; f++) {
+            Object value = object.get(FIELDS.get(f));
+            if (value instanceof BigDecimal) {
+                fields[f] = ((BigDecimal) value).toPlainString();
+            } else if (value instanceof Map || value instanceof List) {
+                return FIELDS.get(f) + " must be a string or number";
+            } else if (value != null) {
+                fields[f] = value.toString();
+            }
+        }
+        return validate(fields, copy);
+    }
+
+    /**
+     * Checks fields (null or empty means absent) and on success appends the COPY line.
+     * Returns null when valid, otherwise the reason.
+     */
+    String validate(String[] f, StringBuilder copy) {
+        String account = f[ACCOUNT];
+        if (isEmpty(account)) return "account_number is required";
+        if (!knownAccounts.contains(account)) return "unknown account_number " + account;
+        String target = emptyToNull(f[TARGET]);
+        if (target != null && !knownAccounts.contains(target)) return "unknown target_account " + target;
+
+        String type = f[TYPE];
+        if (type == null || !TYPES.contains(type)) return "type must be one of deposit, withdraw, transfer, fee";
+        if (type.equals("transfer")) {
+            if (target == null) return "target_account is required for transfers";
+            if (target.equals(account)) return "transfer target must differ from account_number";
+        }
+        String status = isEmpty(f[STATUS]) ? "Completed" : f[STATUS];
+        if (!STATUSES.contains(status)) return "status must be one of Pending, Completed, Voided";
+
+        if (isEmpty(f[AMOUNT])) return "amount is required";
+        long amount;
+        long fee = 0;
+        try {
+            amount = MoneyCodec.parseMinor(f[AMOUNT]);
+            if (!isEmpty(f[FEE])) fee = MoneyCodec.parseMinor(f[FEE]);
+        } catch (NumberFormatException e) {
+            return e.getMessage();
+        }
+        if (amount <= 0) return "amount must be positive";
+        if (amount > MAX_AMOUNT_MINOR) return "amount exceeds 9999999999.99";
+        if (fee < 0 || fee > MAX_AMOUNT_MINOR) return "fee must be between 0 and 9999999999.99";
+
+        String createdBy = isEmpty(f[CREATED_BY]) ? account : f[CREATED_BY];
+        if (createdBy.length() > MAX_CREATED_BY) return "created_by is longer than 10 characters";
+        String note = emptyToNull(f[NOTE]);
+        if (note != null && note.indexOf('\0') >= 0) return "note contains a NUL character";
+
+        String createdAt;
+        String completedAt;
+        String voidedAt;
+        try {
+            createdAt = isEmpty(f[CREATED_AT]) ? defaultCreatedAt : timestamp(f[CREATED_AT]);
+            completedAt = isEmpty(f[COMPLETED_AT]) ? null : timestamp(f[COMPLETED_AT]);
+            voidedAt = isEmpty(f[VOIDED_AT]) ? null : timestamp(f[VOIDED_AT]);
+        } catch (DateTimeParseException e) {
+            return "timestamps need a date, time and UTC offset: " + e.getParsedString();
+        }
+
+        appendText(copy, account).append('\t');
+        appendText(copy, target).append('\t');
+        copy.append(type).append('\t').append(status).append('\t');
+        MoneyCodec.appendTo(copy, amount).append('\t');
+        MoneyCodec.appendTo(copy, fee).append('\t');
+        appendText(copy, note).append('\t');
+        appendText(copy, createdBy).append('\t');
+        copy.append(createdAt).append('\t');
+        appendText(copy, completedAt).append('\t');
+        appendText(copy, voidedAt).append('\n');
+        return null;
+    }
+
+    /**
+     * Splits one RFC 4180 record. Quoted fields may hold commas, doubled quotes and line
+     * breaks; an unquoted empty field is absent, as in PostgreSQL's CSV format.
+     */
+    public static List<String> splitCsv(String record) {
+        List<String> columns = new java.util.ArrayList<>();
+        int i = 0;
+        int n = record.length();
+        while (true) {
+            if (i < n && record.charAt(i) == '"') {
+                StringBuilder value = new StringBuilder();
+                i++;
+                while (true) {
+                    if (i >= n) throw new IllegalArgumentException("unterminated quoted field");
+                    char c = record.charAt(i++);
+                    if (c != '"') {
+                        value.append(c);
+                    } else if (i < n && record.charAt(i) == '"') {
+                        value.append('"');
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                columns.add(value.toString());
+                if (i < n && record.charAt(i) != ',') throw new IllegalArgumentException("text after closing quote");
+            } else {
+                int start = i;
+                while (i < n && record.charAt(i) != ',') {
+                    if (record.charAt(i) == '"') throw new IllegalArgumentException("quote inside unquoted field");
+                    i++;
+                }
+                columns.add(i == start ? null : record.substring(start, i));
+            }
+            if (i >= n) return columns;
+            i++;
+        }
+    }
+
+    private static String timestamp(String text) {
+        return OffsetDateTime.parse(text.trim(), TIMESTAMP).toString();
+    }
+
+    /** Appends s in COPY text format: \N for null, with backslash and control characters escaped. */
+    private static StringBuilder appendText(StringBuilder out, String s) {
+        if (s == null) return out.append("\\N");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '\\': out.append("\\\\"); break;
+                case '\t': out.append("\\t"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                default: out.append(c);
+            }
+        }
+        return out;
+    }
+
+    private static boolean isEmpty(String s) {
+        return s == null || s.isEmpty();
+    }
+
+    private static String emptyToNull(String s) {
+        return isEmpty(s) ? null : s;
+    }
+}
@@ -0,0 +1,274 @@
+package modules.notify;
+
+import modules.database.DatabaseManager;
+import modules.gui.Logger;
+import modules.utils.C;
+import modules.utils.Json;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * NotificationFanout - Turns committed transactions into inbox notifications
+ *
+ * Handlers call {@link #transactionCreated} or {@link #transactionStatusChanged} after
+ * their commit. They build one notification per recipient (the source account, and the
+ * target of a new transfer) with the same titles and metadata as the Next.js
+ * transactions route, offer them to a bounded queue (NOTIFY_QUEUE_CAPACITY, default
+ * 10000) and return. A single writer thread
+ * inserts up to BATCH_SIZE rows per multi-row INSERT and adds what was inserted to
+ * {@link UnreadCounts}.
+ *
+ * Notifications are a convenience on top of the ledger and its audit trail, so they
+ * are not spilled to disk. While the database is unreachable the writer holds its
+ * batch and retries with a backoff from 1s to 30s; if the queue fills up meanwhile,
+ * new notifications are dropped and counted. Rows the database refuses for their
+ * content are retried one by one and the bad ones are logged and dropped.
+ */
+public final class NotificationFanout {
+    private static final int BATCH_SIZE = 500;
+    private static final long FLUSH_MILLIS = 100;
+    private static final long MIN_BACKOFF_MILLIS = 1_000;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+    private static final String INSERT_PREFIX =
+        "INSERT INTO notifications (type, title, body, status, recipient_account_number, sender_account_number, metadata) VALUES ";
+    private static final String ROW_PLACEHOLDERS = "(?, ?, ?, 'UNREAD', ?, ?, ?::jsonb)";
+
+    /**
+     * One notification to insert; metadata is a JSON object or null
+     */
+    private static final class Notification {
+        final String type;
+        final String title;
+        final String body;
+        final String recipient;
+        final String sender;
+        final String metadata;
+
+        Notification(String type, String title, String body, String recipient, String sender, String metadata) {
+            this.type = type;
+            this.title = title;
+            this.body = body;
+            this.recipient = recipient;
+            this.sender = sender;
+            this.metadata = metadata;
+        }
+    }
+
+    private static final AtomicLong dropped = new AtomicLong();
+    private static BlockingQueue<Notification> queue;
+    private static Thread writer;
+    private static volatile boolean running;
+
+    private NotificationFanout() {
+    }
+
+    /**
+     * Start the writer thread
+     */
+    public static synchronized void start() {
+        if (writer != null) return;
+        int capacity = 10_000;
+        String configured = System.getenv("NOTIFY_QUEUE_CAPACITY");
+        if (configured != null) {
+            try {
+                capacity = Math.max(BATCH_SIZE, Integer.parseInt(configured.trim()));
+            } catch (NumberFormatException e) {
+                Logger.log("[NOTIFY] Ignoring invalid NOTIFY_QUEUE_CAPACITY=" + configured, C.N.RED);
+            }
+        }
+        queue = new ArrayBlockingQueue<>(capacity);
+        running = true;
+        writer = new Thread(NotificationFanout::writeLoop, "notification-fanout");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stop the writer after one last attempt to insert what is queued
+     */
+    public static synchronized void stop() {
+        if (writer == null) return;
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+    }
+
+    /**
+     * Queue the notifications for a newly committed transaction; never blocks on the database.
+     * The source account is told it was created (or completed, if it posted at once) and
+     * the target of a transfer that it received one.
+     *
+     * @param transaction the row as returned to the client
+     */
+    public static void transactionCreated(Map<String, Object> transaction) {
+        String event = "Pending".equals(transaction.get("status")) ? "created" : "completed";
+        Map<String, Object> meta = metadata(transaction);
+        String source = (String) transaction.get("account_number");
+        String target = (String) transaction.get("target_account");
+        if (source == null) return;
+
+        meta.put("role", "source");
+        offer(new Notification("TRANSACTION", "Transaction Update",
+            "Your " + meta.get("type") + " has been " + event + ".", source, source, Json.write(meta)));
+        if ("transfer".equals(meta.get("type")) && target != null && !target.equals(source)) {
+            meta.put("role", "target");
+            offer(new Notification("TRANSACTION", "Transfer Received", "You received a transfer.",
+                target, source, Json.write(meta)));
+        }
+    }
+
+    /**
+     * Queue a notification to the source account of a transaction whose status changed
+     *
+     * @param event what happened to it, e.g. completed or voided
+     */
+    public static void transactionStatusChanged(Map<String, Object> transaction, String event) {
+        String source = (String) transaction.get("account_number");
+        if (source == null) return;
+        Map<String, Object> meta = metadata(transaction);
+        meta.put("role", "source");
+        offer(new Notification("TRANSACTION", "Transaction Update",
+            "Your " + meta.get("type") + " has been " + event + ".", source, source, Json.write(meta)));
+    }
+
+    private static Map<String, Object> metadata(Map<String, Object> transaction) {
+        Map<String, Object> meta = new LinkedHashMap<>();
+        meta.put("transaction_id", transaction.get("id"));
+        meta.put("type", String.valueOf(transaction.get("type")).toLowerCase());
+        meta.put("status", transaction.get("status"));
+        meta.put("amount", transaction.get("amount"));
+        meta.put("note", transaction.get("note"));
+        return meta;
+    }
+
+    /**
+     * Notifications dropped because the queue was full
+     */
+    public static long droppedCount() {
+        return dropped.get();
+    }
+
+    private static void offer(Notification notification) {
+        BlockingQueue<Notification> q = queue;
+        if (q != null && running && q.offer(notification)) return;
+        if (dropped.incrementAndGet() % 1000 == 1) {
+            Logger.log("[NOTIFY] Queue full, dropped " + dropped.get() + " notifications so far", C.N.RED);
+        }
+    }
+
+    private static void writeLoop() {
+        Connection conn = null;
+        long backoff = MIN_BACKOFF_MILLIS;
+        List<Notification> batch = new ArrayList<>(BATCH_SIZE);
+
+        while (running || !queue.isEmpty() || !batch.isEmpty()) {
+            try {
+                if (batch.isEmpty()) {
+                    Notification first = running ? queue.poll(FLUSH_MILLIS, TimeUnit.MILLISECONDS) : queue.poll();
+                    if (first == null) continue;
+                    batch.add(first);
+                    queue.drainTo(batch, BATCH_SIZE - 1);
+                }
+                if (conn == null) conn = DatabaseManager.openConnection();
+                insert(conn, batch);
+                batch.clear();
+                backoff = MIN_BACKOFF_MILLIS;
+            } catch (InterruptedException e) {
+                // stop() wakes the writer; the loop condition decides whether to finish
+            } catch (SQLException e) {
+                closeQuietly(conn);
+                conn = null;
+                if (!running) {
+                    Logger.log("[NOTIFY] Discarding " + (batch.size() + queue.size()) + " notifications at shutdown: " + e.getMessage(), C.N.RED);
+                    batch.clear();
+                    queue.clear();
+                    break;
+                }
+                Logger.log("[NOTIFY] Database unavailable, retrying in " + backoff + "ms: " + e.getMessage(), C.N.RED);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ignored) {
+                    // stopping; one more attempt before giving up
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+        closeQuietly(conn);
+    }
+
+    /**
+     * Insert a batch in one statement. Connection failures propagate; a batch refused
+     * for its contents is retried row by row and the bad rows are dropped.
+     */
+    private static void insert(Connection conn, List<Notification> batch) throws SQLException {
+        try {
+            insertRows(conn, batch);
+        } catch (SQLException e) {
+            if (isTransient(e)) throw e;
+            int rejected = 0;
+            for (Notification notification : batch) {
+                try {
+                    insertRows(conn, List.of(notification));
+                } catch (SQLException rowError) {
+                    if (isTransient(rowError)) throw rowError;
+                    rejected++;
+                }
+            }
+            Logger.log("[NOTIFY] " + rejected + " notifications rejected by the database: " + e.getMessage(), C.N.RED);
+        }
+    }
+
+    private static void insertRows(Connection conn, List<Notification> rows) throws SQLException {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + rows.size() * (ROW_PLACEHOLDERS.length() + 1) + 40);
+        sql.append(INSERT_PREFIX);
+        for (int i = 0; i < rows.size(); i++) {
+            if (i > 0) sql.append(',');
+            sql.append(ROW_PLACEHOLDERS);
+        }
+        sql.append(" RETURNING recipient_account_number");
+        Map<String, Integer> added = new LinkedHashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            int p = 1;
+            for (Notification n : rows) {
+                stmt.setString(p++, n.type);
+                stmt.setString(p++, n.title);
+                stmt.setString(p++, n.body);
+                stmt.setString(p++, n.recipient);
+                stmt.setString(p++, n.sender);
+                stmt.setString(p++, n.metadata);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    added.merge(rs.getString(1), 1, Integer::sum);
+                }
+            }
+        }
+        added.forEach(UnreadCounts::add);
+    }
+
+    /** Connection-level failures (class 08), shutdowns (57P) and resource exhaustion (53) */
+    private static boolean isTransient(SQLException e) {
+        String state = e.getSQLState();
+        return state == null || state.startsWith("08") || state.startsWith("57P") || state.startsWith("53");
+    }
+
+    private static void closeQuietly(Connection conn) {
+        if (conn == null) return;
+        try {
+            conn.close();
+        } catch (SQLException ignored) {
+        }
+    }
+}
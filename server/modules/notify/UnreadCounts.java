@@ -0,0 +1,117 @@
+package modules.notify;
+
+import modules.database.DatabaseManager;
+import modules.gui.Logger;
+import modules.utils.C;
+import java.sql.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UnreadCounts - In-memory unread notification count per recipient account
+ *
+ * Badge polling reads {@link #get} and never touches the database. The counts are
+ * loaded once at start with one GROUP BY over the unread rows, then kept up to date
+ * by this server: the fan-out adds what it inserts and the inbox endpoints subtract
+ * what they mark read.
+ *
+ * Notifications written by other processes (the Next.js routes also insert and mark
+ * them) are not seen as they happen, so the counts are reloaded every
+ * NOTIFY_RESYNC_SECONDS (default 60). A change that lands while a reload is running
+ * can be counted twice or missed until the next reload.
+ */
+public final class UnreadCounts {
+    private static final Map<String, Integer> counts = new ConcurrentHashMap<>();
+    private static volatile boolean loaded;
+    private static ScheduledExecutorService scheduler;
+
+    private UnreadCounts() {
+    }
+
+    /**
+     * Load the counts now and reload them every NOTIFY_RESYNC_SECONDS
+     */
+    public static synchronized void start() {
+        if (scheduler != null) return;
+        long interval = 60;
+        String configured = System.getenv("NOTIFY_RESYNC_SECONDS");
+        if (configured != null) {
+            try {
+                interval = Math.max(5, Long.parseLong(configured.trim()));
+            } catch (NumberFormatException e) {
+                Logger.log("[NOTIFY] Ignoring invalid NOTIFY_RESYNC_SECONDS=" + configured, C.N.RED);
+            }
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "unread-counts");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                resync();
+            } catch (SQLException e) {
+                Logger.log("[NOTIFY] Unread count reload failed, will retry: " + e.getMessage(), C.N.RED);
+            }
+        }, 0, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop the periodic reload
+     */
+    public static synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Whether the counts have been loaded at least once
+     */
+    public static boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Unread notifications for an account, from memory
+     */
+    public static int get(String account) {
+        Integer count = counts.get(account);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Apply a change for one account; counts never go below zero
+     */
+    public static void add(String account, int delta) {
+        if (account == null || delta == 0) return;
+        counts.compute(account, (key, current) -> {
+            int next = (current == null ? 0 : current) + delta;
+            return next > 0 ? next : null;
+        });
+    }
+
+    /**
+     * Replace every count with what the database holds now
+     */
+    public static void resync() throws SQLException {
+        Map<String, Integer> fresh = new HashMap<>();
+        try (Connection conn = DatabaseManager.openConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                 "SELECT recipient_account_number, count(*) FROM notifications"
+                 + " WHERE status = 'UNREAD' GROUP BY recipient_account_number")) {
+            while (rs.next()) {
+                fresh.put(rs.getString(1), rs.getInt(2));
+            }
+        }
+        counts.keySet().retainAll(fresh.keySet());
+        counts.putAll(fresh);
+        loaded = true;
+    }
+}
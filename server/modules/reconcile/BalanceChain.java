@@ -0,0 +1,124 @@
+package modules.reconcile;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * BalanceChain - Checks one account's balance snapshots, in cents, as a chain
+ *
+ * Legs arrive in id order. Each one's before must equal the running balance (the
+ * previous leg's after) and after - before must equal the movement its type implies.
+ * The Spring server posts with ids from reserved blocks of 50, so two instances can
+ * write an account's legs out of id order. Legs are therefore held in a short lookahead
+ * and the next leg taken is the lowest id whose before matches the running balance;
+ * only when none matches is the lowest id taken and a chain break reported. After any
+ * discrepancy the chain resumes from the leg's after, so one bad row is reported once.
+ */
+final class BalanceChain {
+    static final int LOOKAHEAD = 128;
+
+    /**
+     * One side of a transaction as seen by this account
+     */
+    static final class Leg {
+        final long id;
+        final long key;
+        final long before;
+        final long after;
+        final long delta;
+
+        /**
+         * @param target true for the receiving side of a transfer, so a self-transfer gives two legs
+         * @param delta the change the row's type, amount and fee imply for this account
+         */
+        Leg(long id, boolean target, long before, long after, long delta) {
+            this.id = id;
+            this.key = id * 2 + (target ? 1 : 0);
+            this.before = before;
+            this.after = after;
+            this.delta = delta;
+        }
+    }
+
+    /**
+     * A problem found in the chain; amounts are in cents
+     */
+    static final class Discrepancy {
+        final String kind;
+        final Long transactionId;
+        final long expected;
+        final long actual;
+
+        Discrepancy(String kind, Long transactionId, long expected, long actual) {
+            this.kind = kind;
+            this.transactionId = transactionId;
+            this.expected = expected;
+            this.actual = actual;
+        }
+    }
+
+    private final TreeMap<Long, Leg> pending = new TreeMap<>();
+    private final Map<Long, ArrayDeque<Leg>> pendingByBefore = new HashMap<>();
+    private final List<Discrepancy> discrepancies = new ArrayList<>();
+    private boolean started;
+    private long balance;
+    private long legs;
+
+    /**
+     * @param checkpoint the balance the previous run ended on, or null to start at the first leg
+     */
+    BalanceChain(Long checkpoint) {
+        this.started = checkpoint != null;
+        this.balance = checkpoint != null ? checkpoint : 0;
+    }
+
+    void add(Leg leg) {
+        pending.put(leg.key, leg);
+        pendingByBefore.computeIfAbsent(leg.before, b -> new ArrayDeque<>()).addLast(leg);
+        if (pending.size() > LOOKAHEAD) takeNext();
+    }
+
+    /** Consumes the legs still held back; call once after the last add. */
+    void finish() {
+        while (!pending.isEmpty()) takeNext();
+    }
+
+    /** Compares the running balance with the account's live balance. */
+    void compareWith(long liveBalance) {
+        if (started && balance != liveBalance) {
+            discrepancies.add(new Discrepancy("balance_mismatch", null, balance, liveBalance));
+        }
+    }
+
+    boolean isStarted() { return started; }
+    long balance() { return balance; }
+    long legs() { return legs; }
+    List<Discrepancy> discrepancies() { return discrepancies; }
+
+    private void takeNext() {
+        Leg leg = null;
+        if (started) {
+            ArrayDeque<Leg> matching = pendingByBefore.get(balance);
+            if (matching != null) leg = matching.peekFirst();
+        }
+        if (leg == null) {
+            leg = pending.firstEntry().getValue();
+            if (started) discrepancies.add(new Discrepancy("chain_break", leg.id, balance, leg.before));
+        }
+        pending.remove(leg.key);
+        ArrayDeque<Leg> sameBefore = pendingByBefore.get(leg.before);
+        sameBefore.remove(leg);
+        if (sameBefore.isEmpty()) pendingByBefore.remove(leg.before);
+
+        if (leg.after - leg.before != leg.delta) {
+            discrepancies.add(new Discrepancy("delta_mismatch", leg.id, leg.before + leg.delta, leg.after));
+        }
+        balance = leg.after;
+        started = true;
+        legs++;
+    }
+}
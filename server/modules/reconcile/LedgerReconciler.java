@@ -0,0 +1,299 @@
+package modules.reconcile;
+
+import modules.database.DatabaseManager;
+import modules.gui.Logger;
+import modules.utils.C;
+import modules.utils.MoneyCodec;
+import java.math.BigDecimal;
+import java.sql.*;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * LedgerReconciler - Verifies balance snapshot chains against accounts.balance
+ *
+ * Accounts are shared out to worker threads through a queue, each with its own
+ * connection. For every account a worker streams the transactions after its checkpoint
+ * in id order, checks the chain (see {@link BalanceChain}) and compares where it ends
+ * with the live balance, all in one REPEATABLE READ transaction so postings made
+ * meanwhile cannot cause false mismatches. The discrepancies and the new checkpoint are
+ * committed together, so a nightly run only reads new rows and a failed run loses at
+ * most the accounts still in progress. Rows without snapshots (imports) are skipped.
+ *
+ * Expected movements follow the ledger's fee rules: a deposit adds amount - fee;
+ * withdraw, transfer and fee rows take amount + fee from the source; a transfer adds
+ * amount to the target.
+ */
+public class LedgerReconciler {
+    /** Session advisory lock key so only one run happens at a time across servers. */
+    private static final long LOCK_KEY = 0x7265636f6e63696cL;
+
+    private static final String LEGS_SQL =
+        "SELECT id, type, account_number, target_account, amount, fee,"
+        + " source_balance_before, source_balance_after, target_balance_before, target_balance_after"
+        + " FROM transactions WHERE (account_number = ? OR target_account = ?) AND id > ? ORDER BY id";
+
+    private static ScheduledExecutorService scheduler;
+
+    /**
+     * Totals for one run
+     */
+    public static final class Summary {
+        public final long runId;
+        public final int accounts;
+        public final long rows;
+        public final long unverified;
+        public final int discrepancies;
+        public final boolean failed;
+        public final double seconds;
+
+        Summary(long runId, int accounts, long rows, long unverified, int discrepancies, boolean failed, double seconds) {
+            this.runId = runId;
+            this.accounts = accounts;
+            this.rows = rows;
+            this.unverified = unverified;
+            this.discrepancies = discrepancies;
+            this.failed = failed;
+            this.seconds = seconds;
+        }
+    }
+
+    /**
+     * Schedule a nightly run at RECONCILE_HOUR (0-23, server time, default 2)
+     */
+    public static synchronized void start() {
+        if (scheduler != null) return;
+        int hour = 2;
+        String configured = System.getenv("RECONCILE_HOUR");
+        if (configured != null) {
+            try {
+                hour = Math.floorMod(Integer.parseInt(configured.trim()), 24);
+            } catch (NumberFormatException e) {
+                Logger.log("[RECONCILE] Ignoring invalid RECONCILE_HOUR=" + configured, C.N.RED);
+            }
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime next = now.toLocalDate().atTime(hour, 0);
+        if (!next.isAfter(now)) next = next.plusDays(1);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ledger-reconcile");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                run(defaultThreads());
+            } catch (Exception e) {
+                Logger.log("[RECONCILE] Nightly run failed: " + e.getMessage(), C.N.RED);
+            }
+        }, Duration.between(now, next).toSeconds(), TimeUnit.DAYS.toSeconds(1), TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop the nightly schedule
+     */
+    public static synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    public static int defaultThreads() {
+        return Math.max(2, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Reconcile every account; throws IllegalStateException when another run holds the lock
+     */
+    public static Summary run(int threads) throws SQLException, InterruptedException {
+        long started = System.nanoTime();
+        try (Connection coordinator = DatabaseManager.openConnection()) {
+            try (PreparedStatement lock = coordinator.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+                lock.setLong(1, LOCK_KEY);
+                try (ResultSet rs = lock.executeQuery()) {
+                    rs.next();
+                    if (!rs.getBoolean(1)) throw new IllegalStateException("A reconciliation run is already in progress");
+                }
+            }
+
+            long runId;
+            try (Statement stmt = coordinator.createStatement();
+                 ResultSet rs = stmt.executeQuery("INSERT INTO reconciliation_runs DEFAULT VALUES RETURNING run_id")) {
+                rs.next();
+                runId = rs.getLong(1);
+            }
+            ConcurrentLinkedQueue<String> accounts = new ConcurrentLinkedQueue<>();
+            try (Statement stmt = coordinator.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT account_number FROM accounts ORDER BY account_number")) {
+                while (rs.next()) accounts.add(rs.getString(1));
+            }
+            Logger.log("[RECONCILE] Run " + runId + " started: " + accounts.size() + " accounts, " + threads + " workers", C.N.BLUE);
+
+            AtomicInteger checked = new AtomicInteger();
+            AtomicLong rows = new AtomicLong();
+            AtomicLong unverified = new AtomicLong();
+            AtomicInteger found = new AtomicInteger();
+            AtomicReference<Exception> failure = new AtomicReference<>();
+            List<Thread> workers = new ArrayList<>();
+            for (int w = 0; w < threads; w++) {
+                Thread worker = new Thread(() -> {
+                    try (Connection conn = DatabaseManager.openConnection()) {
+                        conn.setAutoCommit(false);
+                        conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+                        String account;
+                        while (failure.get() == null && (account = accounts.poll()) != null) {
+                            long[] counts = reconcileAccount(conn, runId, account);
+                            checked.incrementAndGet();
+                            rows.addAndGet(counts[0]);
+                            unverified.addAndGet(counts[1]);
+                            found.addAndGet((int) counts[2]);
+                        }
+                    } catch (Exception e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }, "ledger-reconcile-" + (w + 1));
+                worker.start();
+                workers.add(worker);
+            }
+            for (Thread worker : workers) worker.join();
+
+            boolean failed = failure.get() != null;
+            try (PreparedStatement stmt = coordinator.prepareStatement(
+                    "UPDATE reconciliation_runs SET status = ?, accounts_checked = ?, rows_checked = ?,"
+                    + " discrepancies = ?, completed_at = now() WHERE run_id = ?")) {
+                stmt.setString(1, failed ? "Failed" : "Completed");
+                stmt.setInt(2, checked.get());
+                stmt.setLong(3, rows.get());
+                stmt.setInt(4, found.get());
+                stmt.setLong(5, runId);
+                stmt.executeUpdate();
+            }
+            // Closing the coordinator connection releases the advisory lock
+
+            Summary summary = new Summary(runId, checked.get(), rows.get(), unverified.get(), found.get(),
+                failed, (System.nanoTime() - started) / 1e9);
+            if (failed) {
+                Logger.log("[RECONCILE] Run " + runId + " failed after " + checked.get() + " accounts: "
+                    + failure.get().getMessage(), C.N.RED);
+            } else {
+                Logger.log(String.format("[RECONCILE] Run %d done: %d accounts, %d rows, %d discrepancies in %.2fs",
+                    runId, summary.accounts, summary.rows, summary.discrepancies, summary.seconds),
+                    summary.discrepancies == 0 ? C.N.GREEN : C.N.YELLOW);
+            }
+            return summary;
+        }
+    }
+
+    /**
+     * Checks one account and commits its discrepancies and checkpoint; returns {rows, unverified, discrepancies}
+     */
+    private static long[] reconcileAccount(Connection conn, long runId, String account) throws SQLException {
+        try {
+            long lastId = 0;
+            Long checkpoint = null;
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "SELECT last_id, last_balance FROM reconciliation_checkpoints WHERE account_number = ?")) {
+                stmt.setString(1, account);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        lastId = rs.getLong(1);
+                        BigDecimal balance = rs.getBigDecimal(2);
+                        if (balance != null) checkpoint = MoneyCodec.toMinor(balance);
+                    }
+                }
+            }
+            Long live = null;
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT balance FROM accounts WHERE account_number = ?")) {
+                stmt.setString(1, account);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next() && rs.getBigDecimal(1) != null) live = MoneyCodec.toMinor(rs.getBigDecimal(1));
+                }
+            }
+
+            BalanceChain chain = new BalanceChain(checkpoint);
+            long rows = 0;
+            long unverified = 0;
+            long maxId = lastId;
+            try (PreparedStatement stmt = conn.prepareStatement(LEGS_SQL)) {
+                stmt.setFetchSize(1000);
+                stmt.setString(1, account);
+                stmt.setString(2, account);
+                stmt.setLong(3, lastId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        rows++;
+                        long id = rs.getLong("id");
+                        maxId = Math.max(maxId, id);
+                        String type = rs.getString("type");
+                        long amount = MoneyCodec.toMinor(rs.getBigDecimal("amount"));
+                        BigDecimal feeValue = rs.getBigDecimal("fee");
+                        long fee = feeValue == null ? 0 : MoneyCodec.toMinor(feeValue);
+                        if (account.equals(rs.getString("account_number"))) {
+                            long delta = type.equals("deposit") ? amount - fee : -(amount + fee);
+                            if (!addLeg(chain, id, false, rs.getBigDecimal("source_balance_before"),
+                                    rs.getBigDecimal("source_balance_after"), delta)) unverified++;
+                        }
+                        if (type.equals("transfer") && account.equals(rs.getString("target_account"))) {
+                            if (!addLeg(chain, id, true, rs.getBigDecimal("target_balance_before"),
+                                    rs.getBigDecimal("target_balance_after"), amount)) unverified++;
+                        }
+                    }
+                }
+            }
+            chain.finish();
+            if (live != null) chain.compareWith(live);
+
+            List<BalanceChain.Discrepancy> found = chain.discrepancies();
+            if (!found.isEmpty()) {
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "INSERT INTO reconciliation_discrepancies (run_id, account_number, transaction_id, kind, expected, actual)"
+                        + " VALUES (?, ?, ?, ?, ?, ?)")) {
+                    for (BalanceChain.Discrepancy d : found) {
+                        stmt.setLong(1, runId);
+                        stmt.setString(2, account);
+                        stmt.setObject(3, d.transactionId, Types.BIGINT);
+                        stmt.setString(4, d.kind);
+                        stmt.setBigDecimal(5, MoneyCodec.toBigDecimal(d.expected));
+                        stmt.setBigDecimal(6, MoneyCodec.toBigDecimal(d.actual));
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                }
+            }
+            if (maxId > lastId) {
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "INSERT INTO reconciliation_checkpoints (account_number, last_id, last_balance) VALUES (?, ?, ?)"
+                        + " ON CONFLICT (account_number) DO UPDATE SET last_id = EXCLUDED.last_id,"
+                        + " last_balance = EXCLUDED.last_balance, updated_at = now()")) {
+                    stmt.setString(1, account);
+                    stmt.setLong(2, maxId);
+                    stmt.setBigDecimal(3, chain.isStarted() ? MoneyCodec.toBigDecimal(chain.balance()) : null);
+                    stmt.executeUpdate();
+                }
+            }
+            conn.commit();
+            return new long[] {rows, unverified, found.size()};
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        }
+    }
+
+    /** Adds a leg when both snapshots are present; returns false for an unverifiable row. */
+    private static boolean addLeg(BalanceChain chain, long id, boolean target, BigDecimal before, BigDecimal after, long delta) {
+        if (before == null || after == null) return false;
+        chain.add(new BalanceChain.Leg(id, target, MoneyCodec.toMinor(before), MoneyCodec.toMinor(after), delta));
+        return true;
+    }
+}
@@ -0,0 +1,209 @@
+package modules.server;
+
+import modules.database.DatabaseManager;
+import modules.gui.Logger;
+import modules.http.ExchangeHandler;
+import modules.http.ServerExchange;
+import modules.utils.C;
+import modules.utils.Json;
+import modules.utils.MoneyCodec;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * AccountSummaryHandler - Per-day and period totals for one account
+ * GET /api/accounts/{account_number}/summary?from=&to=
+ *
+ * Reads only account_daily_rollups (maintained by {@link DailyRollupJob}), so a month
+ * costs about 30 row reads however many transactions it holds. from and to are
+ * inclusive dates (yyyy-MM-dd); the default is the 30 days ending today and the span is
+ * capped at 366 days. as_of is the rollup cutoff: transactions committed later may not be
+ * included yet.
+ */
+public class AccountSummaryHandler implements ExchangeHandler {
+    private static final int MAX_DAYS = 366;
+    private static final int DEFAULT_DAYS = 30;
+
+    @Override
+    public void handle(ServerExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Methods", "GET, OPTIONS");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type, Authorization, Cookie, ngrok-skip-browser-warning");
+        exchange.getResponseHeaders().set("Access-Control-Max-Age", "3600");
+
+        if ("OPTIONS".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(204, -1);
+            return;
+        }
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            sendJson(exchange, 405, error("Method not allowed: " + exchange.getRequestMethod()));
+            return;
+        }
+
+        // /api/accounts/{n}/summary
+        String[] parts = exchange.getRequestURI().getPath().split("/");
+        if (parts.length != 5 || !parts[4].equals("summary") || parts[3].isEmpty()) {
+            sendJson(exchange, 404, error("Not found"));
+            return;
+        }
+        String account = parts[3];
+
+        LocalDate from;
+        LocalDate to;
+        try {
+            String fromParam = queryParam(exchange, "from");
+            String toParam = queryParam(exchange, "to");
+            ZoneId zone = ZoneId.of(System.getenv().getOrDefault("ROLLUP_TIME_ZONE", "UTC"));
+            to = toParam != null ? LocalDate.parse(toParam) : LocalDate.now(zone);
+            from = fromParam != null ? LocalDate.parse(fromParam) : to.minusDays(DEFAULT_DAYS - 1);
+        } catch (DateTimeParseException e) {
+            sendJson(exchange, 400, error("from and to must be dates (yyyy-MM-dd)"));
+            return;
+        }
+        if (from.isAfter(to)) {
+            sendJson(exchange, 400, error("from must not be after to"));
+            return;
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_DAYS) {
+            sendJson(exchange, 400, error("Summaries cover at most " + MAX_DAYS + " days"));
+            return;
+        }
+
+        Logger.log("[SUMMARY] " + account + " " + from + ".." + to, C.N.BLUE);
+        try {
+            String body = summary(DatabaseManager.getConnection(), account, from, to);
+            if (body == null) {
+                sendJson(exchange, 404, error("Account not found"));
+            } else {
+                sendJson(exchange, 200, body);
+            }
+        } catch (SQLException e) {
+            Logger.log("   [SUMMARY ERROR] " + e.getMessage(), C.N.RED);
+            sendJson(exchange, 500, error("Internal server error: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * The summary JSON, or null when the account does not exist
+     */
+    private static String summary(Connection conn, String account, LocalDate from, LocalDate to) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT 1 FROM accounts WHERE account_number = ?")) {
+            stmt.setString(1, account);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) return null;
+            }
+        }
+
+        OffsetDateTime asOf = null;
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT cutoff FROM rollup_state WHERE name = ?")) {
+            stmt.setString(1, DailyRollupJob.STATE_NAME);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) asOf = rs.getObject(1, OffsetDateTime.class);
+            }
+        }
+
+        BigDecimal opening = null;
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT closing_balance FROM account_daily_rollups"
+                + " WHERE account_number = ? AND day < ? AND closing_balance IS NOT NULL"
+                + " ORDER BY day DESC LIMIT 1")) {
+            stmt.setString(1, account);
+            stmt.setObject(2, from);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) opening = rs.getBigDecimal(1);
+            }
+        }
+
+        BigDecimal credits = BigDecimal.ZERO;
+        BigDecimal debits = BigDecimal.ZERO;
+        BigDecimal fees = BigDecimal.ZERO;
+        long txCount = 0;
+        int activeDays = 0;
+        BigDecimal closing = opening;
+        StringBuilder days = new StringBuilder("[");
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT day, credits, debits, fees, tx_count, closing_balance FROM account_daily_rollups"
+                + " WHERE account_number = ? AND day BETWEEN ? AND ? ORDER BY day")) {
+            stmt.setString(1, account);
+            stmt.setObject(2, from);
+            stmt.setObject(3, to);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    BigDecimal dayCredits = rs.getBigDecimal(2);
+                    BigDecimal dayDebits = rs.getBigDecimal(3);
+                    BigDecimal dayFees = rs.getBigDecimal(4);
+                    int dayCount = rs.getInt(5);
+                    BigDecimal dayClosing = rs.getBigDecimal(6);
+                    credits = credits.add(dayCredits);
+                    debits = debits.add(dayDebits);
+                    fees = fees.add(dayFees);
+                    txCount += dayCount;
+                    if (dayClosing != null) closing = dayClosing;
+
+                    if (activeDays++ > 0) days.append(',');
+                    days.append("{\"day\":\"").append(rs.getObject(1, LocalDate.class)).append('"');
+                    appendMoney(days.append(",\"credits\":"), dayCredits);
+                    appendMoney(days.append(",\"debits\":"), dayDebits);
+                    appendMoney(days.append(",\"fees\":"), dayFees);
+                    days.append(",\"tx_count\":").append(dayCount);
+                    appendMoney(days.append(",\"closing_balance\":"), dayClosing);
+                    days.append('}');
+                }
+            }
+        }
+        days.append(']');
+
+        StringBuilder json = new StringBuilder("{\"success\":true,\"account\":");
+        Json.appendQuoted(json, account);
+        json.append(",\"from\":\"").append(from).append("\",\"to\":\"").append(to).append('"');
+        json.append(",\"as_of\":").append(asOf == null || asOf.equals(OffsetDateTime.MIN) ? "null" : "\"" + asOf + "\"");
+        appendMoney(json.append(",\"opening_balance\":"), opening);
+        appendMoney(json.append(",\"closing_balance\":"), closing);
+        appendMoney(json.append(",\"totals\":{\"credits\":"), credits);
+        appendMoney(json.append(",\"debits\":"), debits);
+        appendMoney(json.append(",\"fees\":"), fees);
+        appendMoney(json.append(",\"net\":"), credits.subtract(debits).subtract(fees));
+        json.append(",\"tx_count\":").append(txCount);
+        json.append(",\"active_days\":").append(activeDays).append('}');
+        json.append(",\"days\":").append(days).append('}');
+        return json.toString();
+    }
+
+    private static void appendMoney(StringBuilder out, BigDecimal amount) {
+        if (amount == null) {
+            out.append("null");
+        } else {
+            MoneyCodec.appendTo(out, amount);
+        }
+    }
+
+    private static String queryParam(ServerExchange exchange, String name) {
+        String query = exchange.getRequestURI().getQuery();
+        if (query == null) return null;
+        for (String pair : query.split("&")) {
+            if (pair.startsWith(name + "=")) return pair.substring(name.length() + 1);
+        }
+        return null;
+    }
+
+    private static String error(String message) {
+        return "{\"success\":false,\"error\":" + Json.quote(message) + "}";
+    }
+
+    private void sendJson(ServerExchange exchange, int statusCode, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+}
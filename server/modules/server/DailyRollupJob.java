@@ -0,0 +1,189 @@
+package modules.server;
+
+import modules.database.DatabaseManager;
+import modules.gui.Logger;
+import modules.utils.C;
+import java.sql.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DailyRollupJob - Keeps account_daily_rollups up to date from the rollup_pending queue
+ *
+ * An insert trigger on transactions queues every new row's id in rollup_pending. Each
+ * batch deletes up to BATCH_ROWS ids from the queue, adds those transactions to the
+ * per-day rows and commits both together, under a row lock on rollup_state. A crash, a
+ * restart or a second server running the job therefore never counts a row twice or
+ * skips one.
+ *
+ * A position in the table (an id or created_at mark) cannot do this: the Spring server
+ * hands out ids in blocks of 50 and its batch import keeps the file's created_at, so a
+ * row can commit behind any mark. A queued id only becomes visible when its insert
+ * commits, whatever its id or date. When a batch empties the queue, rollup_state.cutoff
+ * is set to the batch's start: every transaction committed before it is in the rollups.
+ * Rows are counted as posted; later status edits do not change them.
+ */
+public class DailyRollupJob {
+    public static final String STATE_NAME = "daily_account";
+    private static final int BATCH_ROWS = 50_000;
+
+    private static final String ROLLUP_SQL =
+        "WITH picked AS ("
+        + " DELETE FROM rollup_pending"
+        + " WHERE id IN (SELECT id FROM rollup_pending ORDER BY id LIMIT ?)"
+        + " RETURNING id"
+        + "), moved AS ("
+        + " SELECT t.id, t.created_at, t.type, t.account_number, t.target_account, t.amount, t.fee,"
+        + "        t.source_balance_after, t.target_balance_after"
+        + " FROM transactions t JOIN picked p ON p.id = t.id"
+        + "), legs AS ("
+        + " SELECT account_number AS account, created_at, id,"
+        + "        CASE WHEN type = 'deposit' THEN amount ELSE 0 END AS credit,"
+        + "        CASE WHEN type IN ('withdraw', 'transfer') THEN amount ELSE 0 END AS debit,"
+        + "        fee + CASE WHEN type = 'fee' THEN amount ELSE 0 END AS fees,"
+        + "        source_balance_after AS balance_after"
+        + " FROM moved"
+        + " UNION ALL"
+        + " SELECT target_account, created_at, id, amount, 0, 0, target_balance_after"
+        + " FROM moved WHERE type = 'transfer' AND target_account IS NOT NULL"
+        + "), dated AS ("
+        + " SELECT *, (created_at AT TIME ZONE ?)::date AS day FROM legs"
+        + "), closing AS ("
+        + " SELECT DISTINCT ON (account, day) account, day, balance_after, created_at, id"
+        + " FROM dated WHERE balance_after IS NOT NULL"
+        + " ORDER BY account, day, created_at DESC, id DESC"
+        + "), upserted AS ("
+        + " INSERT INTO account_daily_rollups AS r"
+        + "   (account_number, day, credits, debits, fees, tx_count, closing_balance, closing_at, closing_id)"
+        + " SELECT d.account, d.day, sum(d.credit), sum(d.debit), sum(d.fees), count(*),"
+        + "        c.balance_after, c.created_at, c.id"
+        + " FROM dated d LEFT JOIN closing c ON c.account = d.account AND c.day = d.day"
+        + " GROUP BY d.account, d.day, c.balance_after, c.created_at, c.id"
+        + " ON CONFLICT (account_number, day) DO UPDATE SET"
+        + "   credits = r.credits + EXCLUDED.credits,"
+        + "   debits = r.debits + EXCLUDED.debits,"
+        + "   fees = r.fees + EXCLUDED.fees,"
+        + "   tx_count = r.tx_count + EXCLUDED.tx_count,"
+        + "   closing_balance = CASE WHEN " + newerClosing() + " THEN EXCLUDED.closing_balance ELSE r.closing_balance END,"
+        + "   closing_id = CASE WHEN " + newerClosing() + " THEN EXCLUDED.closing_id ELSE r.closing_id END,"
+        + "   closing_at = CASE WHEN " + newerClosing() + " THEN EXCLUDED.closing_at ELSE r.closing_at END"
+        + " RETURNING 1"
+        + ")"
+        + " SELECT (SELECT count(*) FROM picked), (SELECT count(*) FROM moved), (SELECT count(*) FROM upserted)";
+
+    private static ScheduledExecutorService scheduler;
+
+    /**
+     * Start the periodic job; ROLLUP_INTERVAL_SECONDS sets the delay between runs (default 30)
+     */
+    public static synchronized void start() {
+        if (scheduler != null) return;
+        long interval = envLong("ROLLUP_INTERVAL_SECONDS", 30);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "daily-rollup");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                runOnce();
+            } catch (Exception e) {
+                Logger.log("[ROLLUP] Run failed, will retry: " + e.getMessage(), C.N.RED);
+            }
+        }, 5, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop the periodic job
+     */
+    public static synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Roll up everything queued, one batch per transaction; returns the rows counted
+     */
+    public static long runOnce() throws SQLException {
+        String zone = System.getenv().getOrDefault("ROLLUP_TIME_ZONE", "UTC");
+        long total = 0;
+        long started = System.nanoTime();
+        try (Connection conn = DatabaseManager.openConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement ensure = conn.prepareStatement(
+                    "INSERT INTO rollup_state (name) VALUES (?) ON CONFLICT (name) DO NOTHING")) {
+                ensure.setString(1, STATE_NAME);
+                ensure.executeUpdate();
+                conn.commit();
+            }
+            while (true) {
+                long[] batch = runBatch(conn, zone);
+                total += batch[0];
+                if (batch[1] == 0) break;
+            }
+        }
+        if (total > 0) {
+            Logger.log(String.format("[ROLLUP] Rolled up %d transactions in %.2fs",
+                total, (System.nanoTime() - started) / 1e9), C.N.CYAN);
+        }
+        return total;
+    }
+
+    /**
+     * One batch: returns {rows counted, 1 if the queue may hold more else 0}
+     */
+    private static long[] runBatch(Connection conn, String zone) throws SQLException {
+        try {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "SELECT 1 FROM rollup_state WHERE name = ? FOR UPDATE")) {
+                stmt.setString(1, STATE_NAME);
+                stmt.executeQuery().close();
+            }
+
+            long picked;
+            long counted;
+            try (PreparedStatement stmt = conn.prepareStatement(ROLLUP_SQL)) {
+                stmt.setInt(1, BATCH_ROWS);
+                stmt.setString(2, zone);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    rs.next();
+                    picked = rs.getLong(1);
+                    counted = rs.getLong(2);
+                }
+            }
+            // A short batch emptied the queue as of this transaction's snapshot
+            boolean more = picked == BATCH_ROWS;
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "UPDATE rollup_state SET cutoff = CASE WHEN ? THEN cutoff ELSE now() END, updated_at = now()"
+                    + " WHERE name = ?")) {
+                stmt.setBoolean(1, more);
+                stmt.setString(2, STATE_NAME);
+                stmt.executeUpdate();
+            }
+            conn.commit();
+            return new long[] {counted, more ? 1 : 0};
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        }
+    }
+
+    private static String newerClosing() {
+        return "EXCLUDED.closing_at IS NOT NULL AND (r.closing_at IS NULL"
+            + " OR (EXCLUDED.closing_at, EXCLUDED.closing_id) > (r.closing_at, r.closing_id))";
+    }
+
+    private static long envLong(String name, long fallback) {
+        String value = System.getenv(name);
+        if (value == null) return fallback;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            Logger.log("[ROLLUP] Ignoring invalid " + name + "=" + value, C.N.RED);
+            return fallback;
+        }
+    }
+}
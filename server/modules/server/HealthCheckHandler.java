@@ -1,9 +1,9 @@
 package modules.server;
 
-import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
 import modules.database.DatabaseManager;
 import modules.gui.Logger;
+import modules.http.ExchangeHandler;
+import modules.http.ServerExchange;
 import modules.utils.C;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -14,9 +14,9 @@ import java.sql.Statement;
  * HealthCheckHandler - Handles health check endpoint
  * Extracted from Server.java for better modularity
  */
-public class HealthCheckHandler implements HttpHandler {
+public class HealthCheckHandler implements ExchangeHandler {
     @Override
-    public void handle(HttpExchange exchange) throws IOException {
+    public void handle(ServerExchange exchange) throws IOException {
         Logger.log("[HEALTH] Health check requested", C.N.CYAN);
         
         // Set CORS headers for all requests
@@ -38,6 +38,7 @@ public class HealthCheckHandler implements HttpHandler {
                 "  \"status\": \"healthy\",\n" +
                 "  \"service\": \"VeemahPay Transaction API\",\n" +
                 "  \"database\": \"connected\",\n" +
+                "  \"transactions_http\": " + ResponseMetrics.toJson() + ",\n" +
                 "  \"timestamp\": \"" + new java.util.Date() + "\"\n" +
                 "}";
             
@@ -64,7 +65,7 @@ public class HealthCheckHandler implements HttpHandler {
     /**
      * Helper method to set CORS headers
      */
-    private void setCorsHeaders(HttpExchange exchange) {
+    private void setCorsHeaders(ServerExchange exchange) {
         exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
         exchange.getResponseHeaders().set("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
         exchange.getResponseHeaders().set("Access-Control-Allow-Headers", 
@@ -0,0 +1,361 @@
+package modules.server;
+
+import modules.database.DatabaseManager;
+import modules.gui.Logger;
+import modules.utils.C;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.*;
+import java.time.OffsetDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * IdempotencyStore - Dedupes POSTs that carry an Idempotency-Key header
+ *
+ * Recent keys live in a bounded in-memory map. Each entry holds the first request's
+ * pending response, so concurrent duplicates wait for it instead of posting again.
+ * Keys are also claimed in the idempotency_keys table before the work runs, and the
+ * response is stored there afterwards. That lets a retry replay after a restart.
+ * 5xx and 409 responses release the key so the client can retry for real.
+ *
+ * A posting stores the key's response in its own transaction (recordInTransaction), so
+ * a key is only ever done together with the posting it answers. A claim that is never
+ * completed, because the server died mid-request or the posting rolled back, is a lease:
+ * after LEASE_SECONDS the next request with the key takes it over and runs. Every write
+ * to the key row is guarded by the claim's created_at, so a request that lost its claim
+ * that way rolls its posting back and answers 409, and a completed key is never taken
+ * over or released.
+ *
+ * Apart from recordInTransaction, the key table is written on connections of the
+ * store's own, never the shared one: TransactionHandler turns autocommit off on that one
+ * while it posts, and claims must not commit or roll back with another request's posting.
+ */
+public class IdempotencyStore {
+    public static final int MAX_KEY_LENGTH = 255;
+    private static final long TTL_SECONDS = 24 * 60 * 60;
+    private static final long LEASE_SECONDS = 60;
+    private static final int MAX_IDLE_CONNECTIONS = 4;
+    private static final int MAX_CACHED = 10_000;
+    private static final long WAIT_MS = 10_000;
+    private static final long CLEANUP_INTERVAL_MINUTES = 10;
+
+    static final StoredResponse MISMATCH = new StoredResponse(422,
+            "{\"success\":false,\"error\":\"Idempotency-Key was already used with a different request\"}", false);
+    static final StoredResponse IN_PROGRESS = new StoredResponse(409,
+            "{\"success\":false,\"error\":\"A request with this Idempotency-Key is still in progress\"}", false);
+    private static final StoredResponse FAILED = new StoredResponse(500,
+            "{\"success\":false,\"error\":\"Original request failed\"}", false);
+
+    private static final Map<String, Entry> recent = new ConcurrentHashMap<>();
+    private static final ConcurrentLinkedQueue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+    private static final BlockingQueue<Connection> idleConnections = new ArrayBlockingQueue<>(MAX_IDLE_CONNECTIONS);
+    private static final ThreadLocal<Claim> current = new ThreadLocal<>();
+    private static ScheduledExecutorService cleanup;
+
+    /**
+     * Work that writes its own HTTP response and returns a copy of it
+     */
+    public interface Work {
+        StoredResponse run() throws Exception;
+    }
+
+    private interface KeyQuery<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    /**
+     * A response as sent to the client; replayed marks copies served from the store
+     */
+    public static final class StoredResponse {
+        public final int status;
+        public final String body;
+        public final boolean replayed;
+
+        public StoredResponse(int status, String body, boolean replayed) {
+            this.status = status;
+            this.body = body;
+            this.replayed = replayed;
+        }
+    }
+
+    private static final class Claim {
+        final String key;
+        final OffsetDateTime claimedAt;
+        int recordedStatus = -1;
+        boolean lost;
+
+        Claim(String key, OffsetDateTime claimedAt) {
+            this.key = key;
+            this.claimedAt = claimedAt;
+        }
+    }
+
+    private static final class Entry {
+        final String requestHash;
+        final long expiresAt;
+        final CompletableFuture<StoredResponse> response = new CompletableFuture<>();
+
+        Entry(String requestHash) {
+            this.requestHash = requestHash;
+            this.expiresAt = System.currentTimeMillis() + TTL_SECONDS * 1000;
+        }
+
+        boolean isExpired() {
+            return expiresAt <= System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Run work once for this key. Returns null when work ran and has already
+     * responded, otherwise the response the caller should send.
+     */
+    public static StoredResponse execute(String key, String requestBody, Work work) throws Exception {
+        String requestHash = sha256(requestBody);
+
+        Entry mine = new Entry(requestHash);
+        Entry existing = recent.putIfAbsent(key, mine);
+        if (existing != null && existing.isExpired()) {
+            recent.remove(key, existing);
+            existing = recent.putIfAbsent(key, mine);
+        }
+        if (existing != null) {
+            if (!existing.requestHash.equals(requestHash)) return MISMATCH;
+            return await(existing);
+        }
+        insertionOrder.add(key);
+        evictOverflow();
+
+        try {
+            OffsetDateTime claimedAt = claim(key, requestHash);
+            if (claimedAt == null) {
+                StoredResponse stored = lookup(key, requestHash);
+                mine.response.complete(stored);
+                // A mismatch means the key belongs to another request; keeping it under this
+                // request's hash would answer the original request's retries with 422
+                if (stored == IN_PROGRESS || stored == MISMATCH) recent.remove(key, mine);
+                return stored;
+            }
+
+            Claim claim = new Claim(key, claimedAt);
+            StoredResponse result = null;
+            current.set(claim);
+            try {
+                result = work.run();
+            } finally {
+                current.remove();
+                if (result == null || isRetryable(result.status)) {
+                    release(claim);
+                } else if (claim.recordedStatus != result.status) {
+                    // Answers that posted nothing (validation, missing accounts) are stored afterwards
+                    complete(claim, result);
+                }
+            }
+            if (result == null) result = FAILED;
+            mine.response.complete(result);
+            if (isRetryable(result.status)) recent.remove(key, mine);
+            return null;
+        } catch (Exception e) {
+            recent.remove(key, mine);
+            mine.response.complete(FAILED);
+            throw e;
+        }
+    }
+
+    /**
+     * Store the response for the key this thread is running, on the posting's connection
+     * and inside its transaction, just before it commits. Returns false if the claim was
+     * taken over; the caller must then roll back. Without a claimed key it does nothing.
+     */
+    public static boolean recordInTransaction(Connection conn, int status, String body) throws SQLException {
+        Claim claim = current.get();
+        if (claim == null || isRetryable(status)) return true;
+        if (updateOpenClaim(conn, claim, status, body) == 0) {
+            claim.lost = true;
+            return false;
+        }
+        // Only a commit makes this final; if it fails the response is a 500 and no longer matches
+        claim.recordedStatus = status;
+        return true;
+    }
+
+    /**
+     * Claim the key in the database. Returns the claim's created_at if this request owns
+     * the key now, otherwise null.
+     */
+    private static OffsetDateTime claim(String key, String requestHash) throws SQLException {
+        // Inserts the claim, or takes over a row that has expired or whose claim outlived
+        // the lease; the conflicting row is locked, so only one request can take it over
+        String sql = "INSERT INTO idempotency_keys (idem_key, request_hash, expires_at) " +
+                     "VALUES (?, ?, now() + make_interval(secs => ?)) " +
+                     "ON CONFLICT (idem_key) DO UPDATE SET request_hash = EXCLUDED.request_hash, " +
+                     "status_code = NULL, response_body = NULL, created_at = now(), expires_at = EXCLUDED.expires_at " +
+                     "WHERE idempotency_keys.expires_at <= now() OR (idempotency_keys.status_code IS NULL " +
+                     "AND idempotency_keys.created_at <= now() - make_interval(secs => ?)) " +
+                     "RETURNING created_at";
+        return withConnection(conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setString(1, key);
+                stmt.setString(2, requestHash);
+                stmt.setLong(3, TTL_SECONDS);
+                stmt.setLong(4, LEASE_SECONDS);
+                ResultSet rs = stmt.executeQuery();
+                return rs.next() ? rs.getObject(1, OffsetDateTime.class) : null;
+            }
+        });
+    }
+
+    /**
+     * The stored or conflict response for a key this request could not claim
+     */
+    private static StoredResponse lookup(String key, String requestHash) throws SQLException {
+        String sql = "SELECT request_hash, status_code, response_body FROM idempotency_keys " +
+                     "WHERE idem_key = ? AND expires_at > now()";
+        return withConnection(conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setString(1, key);
+                ResultSet rs = stmt.executeQuery();
+                if (!rs.next()) return IN_PROGRESS; // released or purged since the claim; retry
+                if (!requestHash.equals(rs.getString("request_hash"))) return MISMATCH;
+                int status = rs.getInt("status_code");
+                if (rs.wasNull()) return IN_PROGRESS;
+                return new StoredResponse(status, rs.getString("response_body"), true);
+            }
+        });
+    }
+
+    private static void complete(Claim claim, StoredResponse response) throws SQLException {
+        withConnection(conn -> updateOpenClaim(conn, claim, response.status, response.body));
+    }
+
+    private static void release(Claim claim) throws SQLException {
+        String sql = "DELETE FROM idempotency_keys WHERE idem_key = ? AND created_at = ? AND status_code IS NULL";
+        withConnection(conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setString(1, claim.key);
+                stmt.setObject(2, claim.claimedAt);
+                return stmt.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * Fill in this request's claim if it is still open; 0 if it was taken over or completed
+     */
+    private static int updateOpenClaim(Connection conn, Claim claim, int status, String body) throws SQLException {
+        String sql = "UPDATE idempotency_keys SET status_code = ?, response_body = ? " +
+                     "WHERE idem_key = ? AND created_at = ? AND status_code IS NULL";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, status);
+            stmt.setString(2, body);
+            stmt.setString(3, claim.key);
+            stmt.setObject(4, claim.claimedAt);
+            return stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Run a key-table query on an idle connection of the store's own, opening one if
+     * none is free. A connection that failed is closed rather than reused.
+     */
+    private static <T> T withConnection(KeyQuery<T> query) throws SQLException {
+        Connection conn = idleConnections.poll();
+        if (conn == null || conn.isClosed()) conn = DatabaseManager.openConnection();
+        boolean healthy = false;
+        try {
+            T result = query.run(conn);
+            healthy = true;
+            return result;
+        } finally {
+            if (!healthy || !idleConnections.offer(conn)) closeQuietly(conn);
+        }
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException ignored) {
+            // already broken
+        }
+    }
+
+    private static StoredResponse await(Entry entry) {
+        try {
+            StoredResponse first = entry.response.get(WAIT_MS, TimeUnit.MILLISECONDS);
+            return new StoredResponse(first.status, first.body, true);
+        } catch (TimeoutException e) {
+            return IN_PROGRESS;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return IN_PROGRESS;
+        } catch (ExecutionException e) {
+            return FAILED;
+        }
+    }
+
+    private static boolean isRetryable(int status) {
+        return status >= 500 || status == 409;
+    }
+
+    private static void evictOverflow() {
+        while (recent.size() > MAX_CACHED) {
+            String oldest = insertionOrder.poll();
+            if (oldest == null) return;
+            Entry entry = recent.get(oldest);
+            // In-flight entries stay; waiters depend on them
+            if (entry != null && entry.response.isDone()) recent.remove(oldest, entry);
+        }
+    }
+
+    private static String sha256(String body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Start the periodic purge of expired keys
+     */
+    public static synchronized void startCleanup() {
+        if (cleanup != null) return;
+        cleanup = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "idempotency-cleanup");
+            t.setDaemon(true);
+            return t;
+        });
+        cleanup.scheduleWithFixedDelay(IdempotencyStore::purgeExpired,
+                CLEANUP_INTERVAL_MINUTES, CLEANUP_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Stop the purge job and close the store's connections
+     */
+    public static synchronized void stopCleanup() {
+        if (cleanup != null) {
+            cleanup.shutdownNow();
+            cleanup = null;
+        }
+        Connection conn;
+        while ((conn = idleConnections.poll()) != null) closeQuietly(conn);
+    }
+
+    private static void purgeExpired() {
+        try {
+            int purged = withConnection(conn -> {
+                try (Statement stmt = conn.createStatement()) {
+                    return stmt.executeUpdate("DELETE FROM idempotency_keys WHERE expires_at <= now()");
+                }
+            });
+            if (purged > 0) Logger.log("[IDEMPOTENCY] Purged " + purged + " expired keys", C.N.CYAN);
+        } catch (Exception e) {
+            Logger.log("[IDEMPOTENCY] Cleanup failed: " + e.getMessage(), C.N.RED);
+        }
+        recent.values().removeIf(e -> e.isExpired() && e.response.isDone());
+        insertionOrder.removeIf(k -> !recent.containsKey(k));
+    }
+}
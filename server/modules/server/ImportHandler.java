@@ -0,0 +1,131 @@
+package modules.server;
+
+import modules.gui.Logger;
+import modules.http.ExchangeHandler;
+import modules.http.ServerExchange;
+import modules.importer.LedgerImporter;
+import modules.utils.C;
+import modules.utils.Json;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * ImportHandler - Bulk-loads historical transactions
+ * POST /api/transactions/import?format=csv|ndjson
+ *
+ * The request body is streamed into {@link LedgerImporter}; it may be gzip-compressed
+ * (Content-Encoding: gzip). CSV needs a header row naming the columns, so a file from
+ * /api/transactions/export imports as is. Rejected records are written to a report under
+ * IMPORT_REPORT_DIR (default import-reports) and its path is returned. One import runs
+ * at a time.
+ */
+public class ImportHandler implements ExchangeHandler {
+    private static final Semaphore running = new Semaphore(1);
+    private static final DateTimeFormatter REPORT_STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    @Override
+    public void handle(ServerExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Methods", "POST, OPTIONS");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type, Content-Encoding, Authorization, Cookie, ngrok-skip-browser-warning");
+        exchange.getResponseHeaders().set("Access-Control-Max-Age", "3600");
+
+        if ("OPTIONS".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(204, -1);
+            return;
+        }
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            sendJson(exchange, 405, error("Method not allowed: " + exchange.getRequestMethod()));
+            return;
+        }
+
+        String query = exchange.getRequestURI().getQuery();
+        String format = "csv";
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                if (pair.startsWith("format=")) format = pair.substring("format=".length());
+            }
+        }
+        LedgerImporter.Format parsed;
+        if (format.equals("csv")) {
+            parsed = LedgerImporter.Format.CSV;
+        } else if (format.equals("ndjson")) {
+            parsed = LedgerImporter.Format.NDJSON;
+        } else {
+            sendJson(exchange, 400, error("format must be csv or ndjson"));
+            return;
+        }
+
+        if (!running.tryAcquire()) {
+            sendJson(exchange, 409, error("An import is already running"));
+            return;
+        }
+        try {
+            Path report = reportPath();
+            Logger.log("[IMPORT] " + format + " ledger import started", C.N.BLUE);
+            InputStream body = exchange.getRequestBody();
+            String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            if (encoding != null && encoding.equalsIgnoreCase("gzip")) {
+                body = new GZIPInputStream(body, 1 << 16);
+            }
+
+            LedgerImporter.Result result;
+            try {
+                result = new LedgerImporter(parsed, report).run(body);
+            } catch (IllegalArgumentException e) {
+                Logger.log("   [IMPORT ERROR] " + e.getMessage(), C.N.RED);
+                sendJson(exchange, 400, error(e.getMessage()));
+                return;
+            } catch (SQLException e) {
+                Logger.log("   [IMPORT ERROR] " + e.getMessage(), C.N.RED);
+                sendJson(exchange, 500, error("Import failed, nothing was imported: " + e.getMessage()));
+                return;
+            }
+
+            Logger.log(String.format("   [IMPORT SUCCESS] %d imported, %d rejected in %.2fs",
+                result.imported, result.rejected, result.seconds), C.N.GREEN);
+            StringBuilder json = new StringBuilder("{\"success\":true")
+                .append(",\"imported\":").append(result.imported)
+                .append(",\"rejected\":").append(result.rejected)
+                .append(",\"seconds\":").append(String.format("%.2f", result.seconds))
+                .append(",\"report\":");
+            if (result.report == null) {
+                json.append("null");
+            } else {
+                Json.appendQuoted(json, result.report.toString());
+            }
+            sendJson(exchange, 200, json.append('}').toString());
+        } finally {
+            running.release();
+        }
+    }
+
+    private static Path reportPath() {
+        String dir = System.getenv("IMPORT_REPORT_DIR");
+        String name = String.format("import-%s-%04x.csv",
+            LocalDateTime.now().format(REPORT_STAMP), ThreadLocalRandom.current().nextInt(0x10000));
+        return Path.of(dir != null ? dir : "import-reports", name);
+    }
+
+    private static String error(String message) {
+        return "{\"success\":false,\"error\":" + Json.quote(message) + "}";
+    }
+
+    private void sendJson(ServerExchange exchange, int statusCode, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package modules.server;
+
+import modules.database.DatabaseManager;
+import modules.gui.Logger;
+import modules.http.ExchangeHandler;
+import modules.http.ServerExchange;
+import modules.notify.UnreadCounts;
+import modules.utils.C;
+import modules.utils.Json;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+
+/**
+ * NotificationHandler - Notification inbox for one account
+ * GET   /api/notifications?account=&limit=&cursor=   one page, newest first
+ * GET   /api/notifications/unread-count?account=     badge count
+ * PATCH /api/notifications/{id}                      {"account","status":"READ"|"UNREAD"}
+ * POST  /api/notifications                           {"account","markAllRead":true,"cursor"?}
+ *
+ * Pages use a keyset cursor ("created_at|id" of the last row, returned as next_cursor)
+ * and read idx_notifications_recipient_page, so page 50 costs what page 1 does.
+ * unread-count and the unreadCount fields come from {@link UnreadCounts} and never query
+ * the database. Mark-all-read is one UPDATE; with a cursor it stops at that row, so
+ * notifications that arrived after the client loaded its list stay unread.
+ */
+public class NotificationHandler implements ExchangeHandler {
+    private static final int DEFAULT_LIMIT = 20;
+    private static final int MAX_LIMIT = 100;
+    private static final String COLUMNS = "n.id, n.type, n.title, n.body, n.status, n.created_at, n.updated_at, n.read_at, n.metadata";
+
+    @Override
+    public void handle(ServerExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Methods", "GET, POST, PUT, PATCH, OPTIONS");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type, Authorization, Cookie, ngrok-skip-browser-warning");
+        exchange.getResponseHeaders().set("Access-Control-Max-Age", "3600");
+
+        String method = exchange.getRequestMethod();
+        if ("OPTIONS".equals(method)) {
+            exchange.sendResponseHeaders(204, -1);
+            return;
+        }
+
+        // /api/notifications[/{id}|/unread-count]
+        String[] parts = exchange.getRequestURI().getPath().split("/");
+        String sub = parts.length > 3 ? parts[3] : null;
+        try {
+            if (sub == null && "GET".equals(method)) {
+                list(exchange);
+            } else if ("unread-count".equals(sub) && "GET".equals(method)) {
+                unreadCount(exchange);
+            } else if (sub == null && "POST".equals(method)) {
+                markAllRead(exchange);
+            } else if (sub != null && parts.length == 4 && ("PATCH".equals(method) || "PUT".equals(method))) {
+                setStatus(exchange, sub);
+            } else {
+                sendJson(exchange, 404, error("Not found"));
+            }
+        } catch (SQLException e) {
+            Logger.log("   [NOTIFY ERROR] " + e.getMessage(), C.N.RED);
+            sendJson(exchange, 500, error("Internal server error: " + e.getMessage()));
+        }
+    }
+
+    private void list(ServerExchange exchange) throws IOException, SQLException {
+        String account = queryParam(exchange, "account");
+        if (account == null || account.isEmpty()) {
+            sendJson(exchange, 400, error("account parameter is required"));
+            return;
+        }
+        int limit = DEFAULT_LIMIT;
+        String limitParam = queryParam(exchange, "limit");
+        if (limitParam != null) {
+            try {
+                limit = Math.min(Math.max(Integer.parseInt(limitParam), 1), MAX_LIMIT);
+            } catch (NumberFormatException e) {
+                sendJson(exchange, 400, error("limit must be a number"));
+                return;
+            }
+        }
+        Cursor cursor;
+        try {
+            cursor = Cursor.parse(queryParam(exchange, "cursor"));
+        } catch (IllegalArgumentException e) {
+            sendJson(exchange, 400, error(e.getMessage()));
+            return;
+        }
+
+        String sql = "SELECT " + COLUMNS + " FROM notifications n WHERE n.recipient_account_number = ?"
+            + (cursor != null ? " AND (n.created_at, n.id) < (?, ?)" : "")
+            + " ORDER BY n.created_at DESC, n.id DESC LIMIT ?";
+        StringBuilder rows = new StringBuilder("[");
+        int count = 0;
+        String lastCursor = null;
+        boolean more = false;
+        try (PreparedStatement stmt = DatabaseManager.getConnection().prepareStatement(sql)) {
+            int p = 1;
+            stmt.setString(p++, account);
+            if (cursor != null) {
+                stmt.setObject(p++, cursor.createdAt);
+                stmt.setLong(p++, cursor.id);
+            }
+            stmt.setInt(p, limit + 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    // One row past the limit only says whether there is another page
+                    if (count == limit) {
+                        more = true;
+                        break;
+                    }
+                    if (count++ > 0) rows.append(',');
+                    appendNotification(rows, rs);
+                    lastCursor = Cursor.format(rs.getObject("created_at", OffsetDateTime.class), rs.getLong("id"));
+                }
+            }
+        }
+        rows.append(']');
+        String nextCursor = more ? lastCursor : null;
+
+        StringBuilder json = new StringBuilder("{\"success\":true,\"notifications\":").append(rows);
+        json.append(",\"unreadCount\":").append(UnreadCounts.get(account));
+        json.append(",\"next_cursor\":").append(nextCursor == null ? "null" : Json.quote(nextCursor)).append('}');
+        sendJson(exchange, 200, json.toString());
+    }
+
+    private void unreadCount(ServerExchange exchange) throws IOException {
+        String account = queryParam(exchange, "account");
+        if (account == null || account.isEmpty()) {
+            sendJson(exchange, 400, error("account parameter is required"));
+            return;
+        }
+        if (!UnreadCounts.isLoaded()) {
+            sendJson(exchange, 503, error("Unread counts are still loading"));
+            return;
+        }
+        StringBuilder json = new StringBuilder("{\"success\":true,\"account\":");
+        Json.appendQuoted(json, account).append(",\"unreadCount\":").append(UnreadCounts.get(account)).append('}');
+        sendJson(exchange, 200, json.toString());
+    }
+
+    private void setStatus(ServerExchange exchange, String idPart) throws IOException, SQLException {
+        long id;
+        try {
+            id = Long.parseLong(idPart);
+        } catch (NumberFormatException e) {
+            sendJson(exchange, 400, error("Invalid notification id"));
+            return;
+        }
+        Map<String, Object> body = readBody(exchange);
+        if (body == null) {
+            sendJson(exchange, 400, error("Body must be a JSON object"));
+            return;
+        }
+        String account = body.get("account") instanceof String ? (String) body.get("account") : null;
+        String status = String.valueOf(body.get("status")).toUpperCase();
+        if (account == null || account.isEmpty()) {
+            sendJson(exchange, 400, error("account is required"));
+            return;
+        }
+        if (!status.equals("READ") && !status.equals("UNREAD")) {
+            sendJson(exchange, 400, error("status must be READ or UNREAD"));
+            return;
+        }
+
+        // The old status comes back with the new row, so the cached count moves only on a real change
+        String sql = "UPDATE notifications n SET status = ?,"
+            + " read_at = CASE WHEN ? = 'READ' THEN COALESCE(n.read_at, now()) ELSE NULL END, updated_at = now()"
+            + " FROM (SELECT id, status FROM notifications WHERE id = ? AND recipient_account_number = ? FOR UPDATE) old"
+            + " WHERE n.id = old.id RETURNING old.status AS previous_status, " + COLUMNS;
+        StringBuilder json = new StringBuilder("{\"success\":true,\"notification\":");
+        try (PreparedStatement stmt = DatabaseManager.getConnection().prepareStatement(sql)) {
+            stmt.setString(1, status);
+            stmt.setString(2, status);
+            stmt.setLong(3, id);
+            stmt.setString(4, account);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    sendJson(exchange, 404, error("Not found"));
+                    return;
+                }
+                String previous = rs.getString("previous_status");
+                if (!previous.equals(status)) UnreadCounts.add(account, status.equals("READ") ? -1 : 1);
+                appendNotification(json, rs);
+            }
+        }
+        json.append(",\"unreadCount\":").append(UnreadCounts.get(account)).append('}');
+        sendJson(exchange, 200, json.toString());
+    }
+
+    private void markAllRead(ServerExchange exchange) throws IOException, SQLException {
+        Map<String, Object> body = readBody(exchange);
+        if (body == null) {
+            sendJson(exchange, 400, error("Body must be a JSON object"));
+            return;
+        }
+        if (!Boolean.TRUE.equals(body.get("markAllRead")) && !"mark_all_read".equals(body.get("action"))) {
+            sendJson(exchange, 400, error("Unsupported action"));
+            return;
+        }
+        String account = body.get("account") instanceof String ? (String) body.get("account") : null;
+        if (account == null || account.isEmpty()) {
+            sendJson(exchange, 400, error("account is required"));
+            return;
+        }
+        Cursor upTo;
+        try {
+            upTo = Cursor.parse(body.get("cursor") instanceof String ? (String) body.get("cursor") : null);
+        } catch (IllegalArgumentException e) {
+            sendJson(exchange, 400, error(e.getMessage()));
+            return;
+        }
+
+        String sql = "WITH marked AS (UPDATE notifications SET status = 'READ', read_at = now(), updated_at = now()"
+            + " WHERE recipient_account_number = ? AND status = 'UNREAD'"
+            + (upTo != null ? " AND (created_at, id) <= (?, ?)" : "")
+            + " RETURNING 1) SELECT count(*) FROM marked";
+        int marked;
+        try (PreparedStatement stmt = DatabaseManager.getConnection().prepareStatement(sql)) {
+            stmt.setString(1, account);
+            if (upTo != null) {
+                stmt.setObject(2, upTo.createdAt);
+                stmt.setLong(3, upTo.id);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                marked = rs.getInt(1);
+            }
+        }
+        UnreadCounts.add(account, -marked);
+        Logger.log("[NOTIFY] " + account + " marked " + marked + " notifications read", C.N.BLUE);
+        sendJson(exchange, 200, "{\"success\":true,\"marked\":" + marked + ",\"unreadCount\":" + UnreadCounts.get(account) + "}");
+    }
+
+    private static void appendNotification(StringBuilder out, ResultSet rs) throws SQLException {
+        out.append("{\"id\":").append(rs.getLong("id"));
+        Json.appendQuoted(out.append(",\"type\":"), rs.getString("type"));
+        Json.appendQuoted(out.append(",\"title\":"), rs.getString("title"));
+        Json.appendValue(out.append(",\"body\":"), rs.getString("body"));
+        Json.appendQuoted(out.append(",\"status\":"), rs.getString("status"));
+        appendTime(out.append(",\"created_at\":"), rs.getObject("created_at", OffsetDateTime.class));
+        appendTime(out.append(",\"updated_at\":"), rs.getObject("updated_at", OffsetDateTime.class));
+        appendTime(out.append(",\"read_at\":"), rs.getObject("read_at", OffsetDateTime.class));
+        String metadata = rs.getString("metadata");
+        out.append(",\"metadata\":").append(metadata == null ? "null" : metadata).append('}');
+    }
+
+    private static void appendTime(StringBuilder out, OffsetDateTime time) {
+        if (time == null) {
+            out.append("null");
+        } else {
+            out.append('"').append(time).append('"');
+        }
+    }
+
+    /**
+     * Position in an inbox page: the created_at and id of a row, written "created_at|id"
+     */
+    private static final class Cursor {
+        final OffsetDateTime createdAt;
+        final long id;
+
+        Cursor(OffsetDateTime createdAt, long id) {
+            this.createdAt = createdAt;
+            this.id = id;
+        }
+
+        static Cursor parse(String text) {
+            if (text == null || text.isEmpty()) return null;
+            int bar = text.lastIndexOf('|');
+            try {
+                if (bar < 0) throw new IllegalArgumentException("cursor must be created_at|id");
+                return new Cursor(OffsetDateTime.parse(text.substring(0, bar)), Long.parseLong(text.substring(bar + 1)));
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("cursor must be created_at|id");
+            }
+        }
+
+        static String format(OffsetDateTime createdAt, long id) {
+            return createdAt.withOffsetSameInstant(ZoneOffset.UTC) + "|" + id;
+        }
+    }
+
+    private static Map<String, Object> readBody(ServerExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            String text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            return text.isBlank() ? null : Json.parseObject(text);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String queryParam(ServerExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) return null;
+        for (String pair : query.split("&")) {
+            if (pair.startsWith(name + "=")) {
+                return URLDecoder.decode(pair.substring(name.length() + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static String error(String message) {
+        return "{\"success\":false,\"error\":" + Json.quote(message) + "}";
+    }
+
+    private void sendJson(ServerExchange exchange, int statusCode, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+}
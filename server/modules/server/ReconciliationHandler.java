@@ -0,0 +1,162 @@
+package modules.server;
+
+import modules.database.DatabaseManager;
+import modules.gui.Logger;
+import modules.http.ExchangeHandler;
+import modules.http.ServerExchange;
+import modules.reconcile.LedgerReconciler;
+import modules.utils.C;
+import modules.utils.Json;
+import modules.utils.MoneyCodec;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+
+/**
+ * ReconciliationHandler - Runs the ledger reconciler and serves its reports
+ * POST /api/reconciliation/run             - reconcile now (409 while a run is in progress)
+ * GET  /api/reconciliation/report[?run_id=] - a run and its discrepancies, latest run by default
+ */
+public class ReconciliationHandler implements ExchangeHandler {
+    private static final int REPORT_LIMIT = 1000;
+
+    @Override
+    public void handle(ServerExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Methods", "GET, POST, OPTIONS");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type, Authorization, Cookie, ngrok-skip-browser-warning");
+        exchange.getResponseHeaders().set("Access-Control-Max-Age", "3600");
+
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        try {
+            if ("OPTIONS".equals(method)) {
+                exchange.sendResponseHeaders(204, -1);
+            } else if (path.equals("/api/reconciliation/run") && "POST".equals(method)) {
+                handleRun(exchange);
+            } else if (path.equals("/api/reconciliation/report") && "GET".equals(method)) {
+                handleReport(exchange);
+            } else {
+                sendJson(exchange, 404, error("Not found"));
+            }
+        } catch (SQLException e) {
+            Logger.log("   [RECONCILE ERROR] " + e.getMessage(), C.N.RED);
+            sendJson(exchange, 500, error("Internal server error: " + e.getMessage()));
+        }
+    }
+
+    private void handleRun(ServerExchange exchange) throws IOException, SQLException {
+        LedgerReconciler.Summary summary;
+        try {
+            summary = LedgerReconciler.run(LedgerReconciler.defaultThreads());
+        } catch (IllegalStateException e) {
+            sendJson(exchange, 409, error(e.getMessage()));
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sendJson(exchange, 503, error("Reconciliation interrupted"));
+            return;
+        }
+        String json = "{\"success\":" + !summary.failed
+            + ",\"run_id\":" + summary.runId
+            + ",\"accounts\":" + summary.accounts
+            + ",\"rows\":" + summary.rows
+            + ",\"unverified_rows\":" + summary.unverified
+            + ",\"discrepancies\":" + summary.discrepancies
+            + ",\"seconds\":" + String.format("%.2f", summary.seconds) + "}";
+        sendJson(exchange, summary.failed ? 500 : 200, json);
+    }
+
+    private void handleReport(ServerExchange exchange) throws IOException, SQLException {
+        String query = exchange.getRequestURI().getQuery();
+        Long runId = null;
+        if (query != null && query.startsWith("run_id=")) {
+            try {
+                runId = Long.parseLong(query.substring("run_id=".length()));
+            } catch (NumberFormatException e) {
+                sendJson(exchange, 400, error("run_id must be a number"));
+                return;
+            }
+        }
+
+        Connection conn = DatabaseManager.getConnection();
+        StringBuilder json = new StringBuilder("{\"success\":true,\"run\":");
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT run_id, status, accounts_checked, rows_checked, discrepancies, started_at, completed_at"
+                + " FROM reconciliation_runs" + (runId != null ? " WHERE run_id = ?" : " ORDER BY run_id DESC LIMIT 1"))) {
+            if (runId != null) stmt.setLong(1, runId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    sendJson(exchange, 404, error("No reconciliation run found"));
+                    return;
+                }
+                runId = rs.getLong("run_id");
+                json.append("{\"run_id\":").append(runId)
+                    .append(",\"status\":").append(Json.quote(rs.getString("status")))
+                    .append(",\"accounts_checked\":").append(rs.getInt("accounts_checked"))
+                    .append(",\"rows_checked\":").append(rs.getLong("rows_checked"))
+                    .append(",\"discrepancies\":").append(rs.getInt("discrepancies"))
+                    .append(",\"started_at\":").append(timestamp(rs, "started_at"))
+                    .append(",\"completed_at\":").append(timestamp(rs, "completed_at"))
+                    .append('}');
+            }
+        }
+
+        json.append(",\"discrepancies\":[");
+        int count = 0;
+        boolean truncated = false;
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT account_number, transaction_id, kind, expected, actual FROM reconciliation_discrepancies"
+                + " WHERE run_id = ? ORDER BY id LIMIT ?")) {
+            stmt.setLong(1, runId);
+            stmt.setInt(2, REPORT_LIMIT + 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    if (count == REPORT_LIMIT) {
+                        truncated = true;
+                        break;
+                    }
+                    if (count++ > 0) json.append(',');
+                    long transactionId = rs.getLong("transaction_id");
+                    String id = rs.wasNull() ? "null" : String.valueOf(transactionId);
+                    json.append("{\"account_number\":").append(Json.quote(rs.getString("account_number")))
+                        .append(",\"transaction_id\":").append(id)
+                        .append(",\"kind\":").append(Json.quote(rs.getString("kind")));
+                    appendMoney(json.append(",\"expected\":"), rs.getBigDecimal("expected"));
+                    appendMoney(json.append(",\"actual\":"), rs.getBigDecimal("actual"));
+                    json.append('}');
+                }
+            }
+        }
+        json.append("],\"truncated\":").append(truncated);
+        sendJson(exchange, 200, json.append('}').toString());
+    }
+
+    private static String timestamp(ResultSet rs, String column) throws SQLException {
+        Timestamp value = rs.getTimestamp(column);
+        return value == null ? "null" : "\"" + value.toInstant() + "\"";
+    }
+
+    private static void appendMoney(StringBuilder out, BigDecimal amount) {
+        if (amount == null) {
+            out.append("null");
+        } else {
+            MoneyCodec.appendTo(out, amount);
+        }
+    }
+
+    private static String error(String message) {
+        return "{\"success\":false,\"error\":" + Json.quote(message) + "}";
+    }
+
+    private void sendJson(ServerExchange exchange, int statusCode, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+}
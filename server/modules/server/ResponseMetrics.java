@@ -0,0 +1,72 @@
+package modules.server;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ResponseMetrics - Bytes-on-wire and ETag counters for /api/transactions responses
+ *
+ * Body bytes are counted before and after compression; headers are not counted. A
+ * history GET is a hit when its If-None-Match matched and it was answered with 304
+ * without querying, a miss when it ran the query (with or without a validator), and
+ * untagged when no account version was available to build an ETag. Reported by /health.
+ */
+public final class ResponseMetrics {
+    private static final LongAdder responses = new LongAdder();
+    private static final LongAdder gzipped = new LongAdder();
+    private static final LongAdder bodyBytes = new LongAdder();
+    private static final LongAdder wireBytes = new LongAdder();
+    private static final LongAdder etagHits = new LongAdder();
+    private static final LongAdder etagMisses = new LongAdder();
+    private static final LongAdder etagRevalidations = new LongAdder();
+    private static final LongAdder untagged = new LongAdder();
+
+    private ResponseMetrics() {
+    }
+
+    static void body(int rawBytes, int sentBytes, boolean compressed) {
+        responses.increment();
+        bodyBytes.add(rawBytes);
+        wireBytes.add(sentBytes);
+        if (compressed) gzipped.increment();
+    }
+
+    static void notModified() {
+        responses.increment();
+        etagHits.increment();
+        etagRevalidations.increment();
+    }
+
+    /**
+     * A history query that ran; revalidation is true when the client sent If-None-Match
+     */
+    static void queried(boolean tagged, boolean revalidation) {
+        if (!tagged) untagged.increment();
+        else etagMisses.increment();
+        if (revalidation) etagRevalidations.increment();
+    }
+
+    /**
+     * Counters as a JSON object
+     */
+    public static String toJson() {
+        long body = bodyBytes.sum();
+        long wire = wireBytes.sum();
+        long hits = etagHits.sum();
+        long revalidations = etagRevalidations.sum();
+        return "{\"responses\": " + responses.sum()
+            + ", \"gzip_responses\": " + gzipped.sum()
+            + ", \"body_bytes\": " + body
+            + ", \"wire_bytes\": " + wire
+            + ", \"compression_ratio\": " + ratio(wire, body)
+            + ", \"etag_hits\": " + hits
+            + ", \"etag_misses\": " + etagMisses.sum()
+            + ", \"etag_untagged\": " + untagged.sum()
+            + ", \"etag_revalidations\": " + revalidations
+            + ", \"etag_hit_rate\": " + ratio(hits, revalidations) + "}";
+    }
+
+    private static String ratio(long part, long whole) {
+        if (whole == 0) return "null";
+        return String.format(java.util.Locale.ROOT, "%.3f", (double) part / whole);
+    }
+}
@@ -1,21 +1,29 @@
 package modules.server;
 
-import com.sun.net.httpserver.HttpServer;
+import modules.audit.AuditTrail;
+import modules.fees.Fees;
 import modules.gui.Logger;
+import modules.http.HttpEngine;
+import modules.notify.NotificationFanout;
+import modules.notify.UnreadCounts;
 import modules.utils.C;
 import modules.database.DatabaseManager;
+import modules.database.PartitionManager;
+import modules.feed.LedgerFeed;
+import modules.reconcile.LedgerReconciler;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.sql.SQLException;
-import java.util.concurrent.Executors;
 
 /**
  * ServerManager - Handles HTTP server operations
  * Extracted from Server.java for better modularity
+ *
+ * The HTTP engine is chosen with HTTP_ENGINE (see {@link HttpEngine}).
  */
 public class ServerManager {
     private static final int PORT = 8081;
-    private static HttpServer httpServer;
+    private static HttpEngine httpServer;
     
     /**
      * Start the HTTP server
@@ -25,6 +33,15 @@ public class ServerManager {
         
         // Initialize database connection
         DatabaseManager.initializeDatabase();
+        Fees.start();
+        IdempotencyStore.startCleanup();
+        AuditTrail.start();
+        UnreadCounts.start();
+        NotificationFanout.start();
+        LedgerFeed.start();
+        PartitionManager.start();
+        DailyRollupJob.start();
+        LedgerReconciler.start();
         
         // Create HTTP server
         startHttpServer();
@@ -35,11 +52,11 @@ public class ServerManager {
      */
     private static void startHttpServer() throws IOException {
         // Create HTTP server
-        httpServer = HttpServer.create(new InetSocketAddress("0.0.0.0", PORT), 0);
+        httpServer = HttpEngine.create(new InetSocketAddress("0.0.0.0", PORT));
 
         Logger.log("================================================", C.N.BLUE);
         Logger.log("VeemahPay Transaction Server STARTED", C.N.GREEN);
-        Logger.log("Listening on Port: " + PORT, C.N.YELLOW);
+        Logger.log("Listening on Port: " + PORT + " (" + httpServer.name() + " engine)", C.N.YELLOW);
         Logger.log("Database: Connected to Neon PostgreSQL", C.N.GREEN);
         Logger.log("Test locally: http://localhost:" + PORT + "/api/transactions", C.N.YELLOW);
         
@@ -53,12 +70,15 @@ public class ServerManager {
 
         // Register API endpoints
         httpServer.createContext("/api/transactions", new TransactionHandler());
+        httpServer.createContext("/api/transactions/export", new ExportHandler());
+        httpServer.createContext("/api/transactions/import", new ImportHandler());
+        httpServer.createContext("/api/transactions/stream", new TransactionStreamHandler());
+        httpServer.createContext("/api/accounts/", new AccountSummaryHandler());
+        httpServer.createContext("/api/reconciliation/", new ReconciliationHandler());
+        httpServer.createContext("/api/notifications", new NotificationHandler());
         httpServer.createContext("/health", new HealthCheckHandler());
         
-        Logger.log("[SERVER] Registered API endpoints: /api/transactions, /health", C.N.CYAN);
-        
-        // Set thread pool executor
-        httpServer.setExecutor(Executors.newFixedThreadPool(10));
+        Logger.log("[SERVER] Registered API endpoints: /api/transactions, /api/transactions/export, /api/transactions/import, /api/transactions/stream, /api/accounts/{n}/summary, /api/reconciliation, /api/notifications, /health", C.N.CYAN);
         
         // Start the server
         httpServer.start();
@@ -71,10 +91,18 @@ public class ServerManager {
     public static void stopServer() {
         if (httpServer != null) {
             Logger.log("Shutting down server...", C.N.YELLOW);
-            httpServer.stop(0);
+            httpServer.stop();
             httpServer = null;
         }
         
+        IdempotencyStore.stopCleanup();
+        PartitionManager.stop();
+        DailyRollupJob.stop();
+        LedgerReconciler.stop();
+        LedgerFeed.stop();
+        NotificationFanout.stop();
+        UnreadCounts.stop();
+        AuditTrail.stop();
         DatabaseManager.closeConnection();
     }
     
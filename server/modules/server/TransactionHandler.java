@@ -1,10 +1,18 @@
 package modules.server;
 
-import com.sun.net.httpserver.HttpHandler;
-import com.sun.net.httpserver.HttpExchange;
+import modules.audit.AuditTrail;
 import modules.database.DatabaseManager;
+import modules.feed.LedgerFeed;
+import modules.fees.AccountClass;
+import modules.fees.Fees;
 import modules.gui.Logger;
+import modules.http.ExchangeHandler;
+import modules.http.ServerExchange;
+import modules.notify.NotificationFanout;
 import modules.utils.C;
+import modules.utils.Json;
+import modules.utils.MoneyCodec;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.InputStream;
@@ -13,15 +21,31 @@ import java.sql.*;
 import java.util.*;
 import java.math.BigDecimal;
 import java.net.URLDecoder;
+import java.time.LocalDate;
+import java.util.zip.GZIPOutputStream;
 
-public class TransactionHandler implements HttpHandler {
+/**
+ * TransactionHandler - Transaction CRUD on /api/transactions
+ *
+ * JSON bodies of at least GZIP_MIN_BYTES (default 1024) are gzipped for clients that
+ * accept it. History GETs carry a weak ETag built from the account version kept by
+ * {@link LedgerFeed}, the query and the date (the default date range moves daily), so a
+ * poll with a matching If-None-Match is answered 304 before any query runs. When the
+ * feed cannot vouch for the version, responses have no ETag and every poll is queried.
+ * Counters for both are kept in {@link ResponseMetrics}.
+ */
+public class TransactionHandler implements ExchangeHandler {
+    private static final String RESPONSE_ATTRIBUTE = "veemahpay.response";
+    private static final int DEFAULT_HISTORY_DAYS = 90;
+    private static final int GZIP_MIN_BYTES = envInt("GZIP_MIN_BYTES", 1024);
     
     @Override
-    public void handle(HttpExchange exchange) throws IOException {
+    public void handle(ServerExchange exchange) throws IOException {
         // Set CORS headers
         exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
         exchange.getResponseHeaders().set("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
-        exchange.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type, Authorization, Cookie, ngrok-skip-browser-warning, Accept");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type, Authorization, Cookie, ngrok-skip-browser-warning, Accept, Idempotency-Key, If-None-Match");
+        exchange.getResponseHeaders().set("Access-Control-Expose-Headers", "ETag");
         exchange.getResponseHeaders().set("Access-Control-Max-Age", "3600");
         exchange.getResponseHeaders().set("Content-Type", "application/json");
         
@@ -45,7 +69,7 @@ public class TransactionHandler implements HttpHandler {
                     handleGet(exchange);
                     break;
                 case "POST":
-                    handlePost(exchange);
+                    handleIdempotentPost(exchange);
                     break;
                 case "PUT":
                     handlePut(exchange, path);
@@ -67,7 +91,7 @@ public class TransactionHandler implements HttpHandler {
     }
     
     // GET /api/transactions - Get all transactions for user with query params
-    private void handleGet(HttpExchange exchange) throws IOException, SQLException {
+    private void handleGet(ServerExchange exchange) throws IOException, SQLException {
         Map<String, String> queryParams = parseQueryString(exchange.getRequestURI().getQuery());
         
         // Check if requesting specific transaction by ID
@@ -89,11 +113,49 @@ public class TransactionHandler implements HttpHandler {
             return;
         }
 
+        // Versioned before the query, so a change committed meanwhile invalidates this tag
+        String version = LedgerFeed.accountVersion(account);
+        String etag = version == null ? null : historyTag(version, exchange.getRequestURI().getRawQuery());
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (etag != null) {
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.getResponseHeaders().set("Cache-Control", "private, no-cache");
+            if (ifNoneMatch != null && tagMatches(ifNoneMatch, etag)) {
+                Logger.log("   [GET] Not modified for account: " + account, C.N.GREEN);
+                ResponseMetrics.notModified();
+                exchange.getResponseHeaders().remove("Content-Type");
+                exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+        }
+        ResponseMetrics.queried(etag != null, ifNoneMatch != null);
+
         Logger.log("   [GET] Fetching transactions for account: " + account, C.N.GREEN);
         getAllTransactions(exchange, account, queryParams);
     }
+
+    private static String historyTag(String version, String rawQuery) {
+        int query = (String.valueOf(rawQuery) + "|" + LocalDate.now()).hashCode();
+        return "W/\"" + version + "-" + Integer.toHexString(query) + "\"";
+    }
+
+    /**
+     * Weak comparison against an If-None-Match list, as for GET
+     */
+    private static boolean tagMatches(String ifNoneMatch, String etag) {
+        String opaque = etag.substring(2);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) return true;
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals(opaque)) return true;
+        }
+        return false;
+    }
     
-    private void getAllTransactions(HttpExchange exchange, String accountNumber, Map<String, String> params) throws IOException, SQLException {
+    private void getAllTransactions(ServerExchange exchange, String accountNumber, Map<String, String> params) throws IOException, SQLException {
         // Introspect available columns like Next.js does
         String colQuery = "SELECT column_name FROM information_schema.columns " +
                          "WHERE table_schema = 'public' AND table_name = 'transactions'";
@@ -147,10 +209,15 @@ public class TransactionHandler implements HttpHandler {
             paramIndex++;
         }
         
-        // Date filters
-        if (params.containsKey("from") && availableColumns.contains("created_at")) {
+        // Date filters; without from, only the last DEFAULT_HISTORY_DAYS are read so the
+        // query always carries a lower created_at bound and older partitions are pruned
+        Timestamp historyFrom = null;
+        if (availableColumns.contains("created_at")) {
+            historyFrom = params.containsKey("from")
+                ? Timestamp.valueOf(params.get("from") + " 00:00:00")
+                : Timestamp.valueOf(LocalDate.now().minusDays(DEFAULT_HISTORY_DAYS - 1).atStartOfDay());
             whereClause.append(" AND created_at >= ?");
-            queryParams.add(Timestamp.valueOf(params.get("from") + " 00:00:00"));
+            queryParams.add(historyFrom);
             paramIndex++;
         }
         
@@ -163,13 +230,13 @@ public class TransactionHandler implements HttpHandler {
         // Amount filters
         if (params.containsKey("min_amount") && availableColumns.contains("amount")) {
             whereClause.append(" AND amount >= ?");
-            queryParams.add(new BigDecimal(params.get("min_amount")));
+            queryParams.add(MoneyCodec.toBigDecimal(MoneyCodec.parseMinor(params.get("min_amount"))));
             paramIndex++;
         }
         
         if (params.containsKey("max_amount") && availableColumns.contains("amount")) {
             whereClause.append(" AND amount <= ?");
-            queryParams.add(new BigDecimal(params.get("max_amount")));
+            queryParams.add(MoneyCodec.toBigDecimal(MoneyCodec.parseMinor(params.get("max_amount"))));
             paramIndex++;
         }
         
@@ -207,10 +274,6 @@ public class TransactionHandler implements HttpHandler {
                     String cleanField = field.contains(" AS ") ? 
                         field.substring(field.lastIndexOf(" AS ") + 4) : field;
                     
-                    if (cleanField.endsWith("::float")) {
-                        cleanField = cleanField.replace("::float", "");
-                    }
-                    
                     Object value = rs.getObject(cleanField);
                     transaction.put(cleanField, value);
                 }
@@ -221,13 +284,14 @@ public class TransactionHandler implements HttpHandler {
             Map<String, Object> response = new HashMap<>();
             response.put("transactions", transactions);
             response.put("next_cursor", null); // Simplified for now
+            if (historyFrom != null) response.put("from", historyFrom.toLocalDateTime().toLocalDate().toString());
             
             Logger.log("   [GET SUCCESS] Returned " + transactions.size() + " transactions for " + accountNumber, C.N.GREEN);
             sendJsonResponse(exchange, 200, response);
         }
     }
     
-    private void getTransactionById(HttpExchange exchange, String id) throws IOException, SQLException {
+    private void getTransactionById(ServerExchange exchange, String id) throws IOException, SQLException {
         String sql = "SELECT * FROM transactions WHERE id = ?";
         
         try (PreparedStatement stmt = DatabaseManager.getConnection().prepareStatement(sql)) {
@@ -250,8 +314,31 @@ public class TransactionHandler implements HttpHandler {
     }
     
     // POST /api/transactions - Create new transaction
-    private void handlePost(HttpExchange exchange) throws IOException, SQLException {
+    // POST with an optional Idempotency-Key header; duplicates replay the first response
+    private void handleIdempotentPost(ServerExchange exchange) throws Exception {
         String requestBody = readRequestBody(exchange);
+        String key = exchange.getRequestHeaders().getFirst("Idempotency-Key");
+        if (key == null) {
+            handlePost(exchange, requestBody);
+            return;
+        }
+        if (key.isBlank() || key.length() > IdempotencyStore.MAX_KEY_LENGTH) {
+            sendErrorResponse(exchange, 400, "Invalid Idempotency-Key");
+            return;
+        }
+
+        IdempotencyStore.StoredResponse replay = IdempotencyStore.execute(key, requestBody, () -> {
+            handlePost(exchange, requestBody);
+            return (IdempotencyStore.StoredResponse) exchange.getAttribute(RESPONSE_ATTRIBUTE);
+        });
+        if (replay != null) {
+            Logger.log("   [POST] Idempotency-Key " + key + " answered from store (" + replay.status + ")", C.N.YELLOW);
+            if (replay.replayed) exchange.getResponseHeaders().set("Idempotent-Replayed", "true");
+            sendRawJson(exchange, replay.status, replay.body);
+        }
+    }
+
+    private void handlePost(ServerExchange exchange, String requestBody) throws IOException, SQLException {
         Logger.log("   [POST] Creating new transaction", C.N.BLUE);
 
         Map<String, Object> data = parseJson(requestBody);
@@ -275,12 +362,20 @@ public class TransactionHandler implements HttpHandler {
 
         BigDecimal amount;
         try {
-            amount = new BigDecimal(data.get("amount").toString());
-        } catch (Exception e) {
+            amount = MoneyCodec.toBigDecimal(MoneyCodec.toMinor(data.get("amount")));
+        } catch (NumberFormatException e) {
             sendErrorResponse(exchange, 400, "Invalid amount");
             return;
         }
 
+        // Priced like the Spring server: accounts carry no pricing class yet, so STANDARD.
+        // A deposit credits amount - fee; a withdraw or transfer debits amount + fee.
+        BigDecimal fee = Fees.fee(AccountClass.STANDARD, type, amount);
+        if (type.equals("deposit") && fee.compareTo(amount) > 0) {
+            sendErrorResponse(exchange, 400, "Amount does not cover fee");
+            return;
+        }
+
         Connection conn = DatabaseManager.getConnection();
         boolean restoreAuto = true;
         try {
@@ -320,7 +415,7 @@ public class TransactionHandler implements HttpHandler {
 
                 if (type.equals("withdraw") || type.equals("transfer")) {
                     BigDecimal avail = sourceBalanceBefore == null ? BigDecimal.ZERO : sourceBalanceBefore;
-                    if (avail.compareTo(amount) < 0) {
+                    if (avail.compareTo(amount.add(fee)) < 0) {
                         conn.rollback();
                         sendErrorResponse(exchange, 400, "Insufficient funds");
                         return;
@@ -344,21 +439,21 @@ public class TransactionHandler implements HttpHandler {
 
                 // Apply balance changes
                 if (type.equals("deposit")) {
-                    sourceBalanceAfter = (sourceBalanceBefore == null ? BigDecimal.ZERO : sourceBalanceBefore).add(amount);
+                    sourceBalanceAfter = (sourceBalanceBefore == null ? BigDecimal.ZERO : sourceBalanceBefore).add(amount).subtract(fee);
                     try (PreparedStatement up = conn.prepareStatement("UPDATE accounts SET balance = ? WHERE account_number = ?")) {
                         up.setBigDecimal(1, sourceBalanceAfter);
                         up.setString(2, sourceAccount);
                         up.executeUpdate();
                     }
                 } else if (type.equals("withdraw")) {
-                    sourceBalanceAfter = (sourceBalanceBefore == null ? BigDecimal.ZERO : sourceBalanceBefore).subtract(amount);
+                    sourceBalanceAfter = (sourceBalanceBefore == null ? BigDecimal.ZERO : sourceBalanceBefore).subtract(amount).subtract(fee);
                     try (PreparedStatement up = conn.prepareStatement("UPDATE accounts SET balance = ? WHERE account_number = ?")) {
                         up.setBigDecimal(1, sourceBalanceAfter);
                         up.setString(2, sourceAccount);
                         up.executeUpdate();
                     }
                 } else if (type.equals("transfer") && targetAccount != null) {
-                    sourceBalanceAfter = (sourceBalanceBefore == null ? BigDecimal.ZERO : sourceBalanceBefore).subtract(amount);
+                    sourceBalanceAfter = (sourceBalanceBefore == null ? BigDecimal.ZERO : sourceBalanceBefore).subtract(amount).subtract(fee);
                     targetBalanceAfter = (targetBalanceBefore == null ? BigDecimal.ZERO : targetBalanceBefore).add(amount);
 
                     try (PreparedStatement up1 = conn.prepareStatement("UPDATE accounts SET balance = ? WHERE account_number = ?")) {
@@ -399,6 +494,11 @@ public class TransactionHandler implements HttpHandler {
                 valuesSql.add("?");
                 params.add(amount);
             }
+            if (availableColumns.contains("fee")) {
+                insertCols.add("fee");
+                valuesSql.add("?");
+                params.add(fee);
+            }
             if (availableColumns.contains("type")) {
                 insertCols.add("type");
                 valuesSql.add("?");
@@ -474,10 +574,28 @@ public class TransactionHandler implements HttpHandler {
                     response.put("transaction", transaction);
                     response.put("message", "Transaction created successfully");
 
+                    // An Idempotency-Key's response commits with the posting, or neither does
+                    if (!IdempotencyStore.recordInTransaction(conn, 201, objectToJson(response))) {
+                        conn.rollback();
+                        sendErrorResponse(exchange, 409, "A request with this Idempotency-Key is still in progress");
+                        return;
+                    }
+
                     Logger.log("   [POST SUCCESS] New Transaction - From: " + sourceAccount + 
-                               " | Amount: " + amount + " | Type: " + type, C.N.GREEN);
+                               " | Amount: " + amount + " | Fee: " + fee + " | Type: " + type, C.N.GREEN);
 
                     conn.commit();
+                    Map<String, Object> details = new LinkedHashMap<>();
+                    details.put("type", type);
+                    details.put("amount", amount);
+                    details.put("fee", fee);
+                    details.put("source_account", sourceAccount);
+                    details.put("target_account", targetAccount);
+                    details.put("status", transaction.get("status"));
+                    AuditTrail.record(((Number) transaction.get("id")).longValue(), "create",
+                        String.valueOf(transaction.get("created_by")), null, Json.write(details));
+                    NotificationFanout.transactionCreated(transaction);
+                    LedgerFeed.touch((String) transaction.get("account_number"), (String) transaction.get("target_account"));
                     sendJsonResponse(exchange, 201, response);
                     return;
                 } else {
@@ -497,7 +615,7 @@ public class TransactionHandler implements HttpHandler {
     }
     
     // PUT /api/transactions/{id} - Update transaction
-    private void handlePut(HttpExchange exchange, String path) throws IOException, SQLException {
+    private void handlePut(ServerExchange exchange, String path) throws IOException, SQLException {
         String[] pathParts = path.split("/");
         if (pathParts.length != 4) {
             Logger.log("   [PUT ERROR] Invalid path format: " + path, C.N.RED);
@@ -548,6 +666,17 @@ public class TransactionHandler implements HttpHandler {
                 response.put("message", "Transaction updated successfully");
                 
                 Logger.log("   [PUT SUCCESS] Transaction " + transactionId + " updated successfully", C.N.GREEN);
+                Map<String, Object> changes = new LinkedHashMap<>();
+                if (data.containsKey("status")) changes.put("status", data.get("status"));
+                if (data.containsKey("note")) changes.put("note", data.get("note"));
+                String action = "Voided".equals(data.get("status")) ? "void"
+                    : "Completed".equals(data.get("status")) ? "complete" : "update";
+                LedgerFeed.touch((String) transaction.get("account_number"), (String) transaction.get("target_account"));
+                AuditTrail.record(((Number) transaction.get("id")).longValue(), action,
+                    String.valueOf(transaction.get("created_by")), null, Json.write(changes));
+                if (!"update".equals(action)) {
+                    NotificationFanout.transactionStatusChanged(transaction, "void".equals(action) ? "voided" : "completed");
+                }
                 sendJsonResponse(exchange, 200, response);
             } else {
                 Logger.log("   [PUT ERROR] Transaction not found: " + transactionId, C.N.RED);
@@ -557,7 +686,7 @@ public class TransactionHandler implements HttpHandler {
     }
     
     // DELETE /api/transactions/{id} - Soft delete transaction
-    private void handleDelete(HttpExchange exchange, String path) throws IOException, SQLException {
+    private void handleDelete(ServerExchange exchange, String path) throws IOException, SQLException {
         String[] pathParts = path.split("/");
         if (pathParts.length != 4) {
             Logger.log("   [DELETE ERROR] Invalid path format: " + path, C.N.RED);
@@ -569,11 +698,14 @@ public class TransactionHandler implements HttpHandler {
         Logger.log("   [DELETE] Cancelling transaction ID: " + transactionId, C.N.YELLOW);
 
         // Soft delete by setting status to 'Cancelled'
-        String sql = "UPDATE transactions SET status = 'Cancelled' WHERE id = ?";        try (PreparedStatement stmt = DatabaseManager.getConnection().prepareStatement(sql)) {
+        String sql = "UPDATE transactions SET status = 'Cancelled' WHERE id = ? RETURNING created_by, account_number, target_account";        try (PreparedStatement stmt = DatabaseManager.getConnection().prepareStatement(sql)) {
             stmt.setInt(1, Integer.parseInt(transactionId));
-            int rowsAffected = stmt.executeUpdate();
+            ResultSet rs = stmt.executeQuery();
             
-            if (rowsAffected > 0) {
+            if (rs.next()) {
+                LedgerFeed.touch(rs.getString("account_number"), rs.getString("target_account"));
+                AuditTrail.record(Integer.parseInt(transactionId), "void", rs.getString("created_by"), null,
+                    "{\"status\":\"Cancelled\"}");
                 Map<String, Object> response = new HashMap<>();
                 response.put("success", true);
                 response.put("message", "Transaction cancelled successfully");
@@ -596,8 +728,8 @@ public class TransactionHandler implements HttpHandler {
         fields.add(availableColumns.contains("status") ? "status" : "('Completed')::text AS status");
         fields.add("account_number");
         fields.add(availableColumns.contains("target_account") ? "target_account" : "NULL::text AS target_account");
-        fields.add("amount::float AS amount");
-        fields.add(availableColumns.contains("fee") ? "fee::float AS fee" : "0::float AS fee");
+        fields.add("amount");
+        fields.add(availableColumns.contains("fee") ? "fee" : "0.00::numeric AS fee");
         fields.add(availableColumns.contains("note") ? "note" : "NULL AS note");
         fields.add(availableColumns.contains("created_by") ? "created_by" : "('-')::text AS created_by");
         fields.add(availableColumns.contains("created_at") ? "created_at" : "now() AS created_at");
@@ -607,7 +739,7 @@ public class TransactionHandler implements HttpHandler {
         return fields;
     }
     
-    private String readRequestBody(HttpExchange exchange) throws IOException {
+    private String readRequestBody(ServerExchange exchange) throws IOException {
         InputStream inputStream = exchange.getRequestBody();
         return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
     }
@@ -666,7 +798,8 @@ public class TransactionHandler implements HttpHandler {
                     // Try to parse as number
                     try {
                         if (value.contains(".")) {
-                            result.put(key, Double.parseDouble(value));
+                            // Keep the exact decimal; amounts must not pass through double
+                            result.put(key, new BigDecimal(value));
                         } else {
                             result.put(key, Long.parseLong(value));
                         }
@@ -694,17 +827,51 @@ public class TransactionHandler implements HttpHandler {
         return result;
     }
     
-    private void sendJsonResponse(HttpExchange exchange, int statusCode, Object data) throws IOException {
+    private void sendJsonResponse(ServerExchange exchange, int statusCode, Object data) throws IOException {
         String json = objectToJson(data);
+        // Keep a copy so an Idempotency-Key can replay it
+        exchange.setAttribute(RESPONSE_ATTRIBUTE, new IdempotencyStore.StoredResponse(statusCode, json, false));
+        sendRawJson(exchange, statusCode, json);
+    }
+
+    private void sendRawJson(ServerExchange exchange, int statusCode, String json) throws IOException {
         byte[] responseBytes = json.getBytes(StandardCharsets.UTF_8);
+        byte[] body = responseBytes;
         
-        exchange.sendResponseHeaders(statusCode, responseBytes.length);
+        exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+        if (responseBytes.length >= GZIP_MIN_BYTES && acceptsGzip(exchange)) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(responseBytes.length / 4);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(responseBytes);
+            }
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        ResponseMetrics.body(responseBytes.length, body.length, body != responseBytes);
+        
+        exchange.sendResponseHeaders(statusCode, body.length);
         OutputStream os = exchange.getResponseBody();
-        os.write(responseBytes);
+        os.write(body);
         os.close();
     }
     
-    private void sendErrorResponse(HttpExchange exchange, int statusCode, String message) throws IOException {
+    private static boolean acceptsGzip(ServerExchange exchange) {
+        String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (accept == null) return false;
+        for (String coding : accept.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            if (!name.equalsIgnoreCase("gzip") && !name.equals("*")) continue;
+            // gzip;q=0 means "not gzip"
+            return !(parts.length > 1 && parts[1].trim().matches("q=0(\\.0*)?"));
+        }
+        return false;
+    }
+    
+    private void sendErrorResponse(ServerExchange exchange, int statusCode, String message) throws IOException {
+        // A failed history GET must not be cached under the tag it was given
+        exchange.getResponseHeaders().remove("ETag");
+        exchange.getResponseHeaders().remove("Cache-Control");
         Map<String, Object> error = new HashMap<>();
         error.put("success", false);
         error.put("error", message);
@@ -739,6 +906,8 @@ public class TransactionHandler implements HttpHandler {
             return "null";
         } else if (value instanceof String) {
             return "\"" + escapeJson((String) value) + "\"";
+        } else if (value instanceof BigDecimal) {
+            return MoneyCodec.appendTo(new StringBuilder(), (BigDecimal) value).toString();
         } else if (value instanceof Number || value instanceof Boolean) {
             return value.toString();
         } else if (value instanceof java.util.Date) {
@@ -769,4 +938,15 @@ public class TransactionHandler implements HttpHandler {
                   .replace("\r", "\\r")
                   .replace("\t", "\\t");
     }
-}
\ No newline at end of file
+
+    private static int envInt(String name, int fallback) {
+        String value = System.getenv(name);
+        if (value == null) return fallback;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            Logger.log("[HTTP] Ignoring invalid " + name + "=" + value, C.N.RED);
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package modules.server;
+
+import modules.feed.LedgerFeed;
+import modules.gui.Logger;
+import modules.http.ExchangeHandler;
+import modules.http.ServerExchange;
+import modules.utils.C;
+import modules.utils.Json;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * TransactionStreamHandler - Live ledger events for one account as Server-Sent Events
+ * GET /api/transactions/stream?account=
+ *
+ * Sends a "transaction" event when a transaction of the account is created or updated,
+ * and a "balance" event when its balance changes (see {@link LedgerFeed} for the payloads
+ * and the replay rules). A reconnecting EventSource sends Last-Event-ID by itself; a
+ * client opening a new EventSource can pass the id it last saw as ?lastEventId=.
+ * On a "reset" event the client should reload with GET /api/transactions.
+ *
+ * The handler returns as soon as the stream is registered, so an open stream does not
+ * hold one of the server's request threads.
+ */
+public class TransactionStreamHandler implements ExchangeHandler {
+    private static final int ACCOUNT_LENGTH = 10;
+
+    @Override
+    public void handle(ServerExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Methods", "GET, OPTIONS");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type, Authorization, Cookie, ngrok-skip-browser-warning, Last-Event-ID");
+        exchange.getResponseHeaders().set("Access-Control-Max-Age", "3600");
+
+        if ("OPTIONS".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(204, -1);
+            return;
+        }
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            sendJson(exchange, 405, error("Method not allowed: " + exchange.getRequestMethod()));
+            return;
+        }
+        if (!exchange.getRequestURI().getPath().equals("/api/transactions/stream")) {
+            sendJson(exchange, 404, error("Not found"));
+            return;
+        }
+
+        String account = queryParam(exchange, "account");
+        if (account == null || account.isEmpty() || account.length() > ACCOUNT_LENGTH) {
+            sendJson(exchange, 400, error("account parameter is required"));
+            return;
+        }
+        String lastEventId = exchange.getRequestHeaders().getFirst("Last-Event-ID");
+        if (lastEventId == null) lastEventId = queryParam(exchange, "lastEventId");
+
+        if (!LedgerFeed.subscribe(exchange, account, lastEventId)) {
+            Logger.log("[STREAM] Refused stream for " + account + ": feed unavailable or full", C.N.RED);
+            sendJson(exchange, 503, error("Live feed unavailable, poll GET /api/transactions instead"));
+        }
+    }
+
+    private static String queryParam(ServerExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) return null;
+        for (String pair : query.split("&")) {
+            if (pair.startsWith(name + "=")) {
+                return URLDecoder.decode(pair.substring(name.length() + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static String error(String message) {
+        return "{\"success\":false,\"error\":" + Json.quote(message) + "}";
+    }
+
+    private void sendJson(ServerExchange exchange, int statusCode, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+}
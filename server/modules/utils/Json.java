@@ -0,0 +1,276 @@
+package modules.utils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Json - Strict parser, writer and string quoting for one JSON document
+ *
+ * Objects become LinkedHashMap, arrays ArrayList, integers Long and other numbers
+ * BigDecimal, so amounts never pass through double. Malformed input throws
+ * IllegalArgumentException with the offset of the problem. {@link #write} is the
+ * inverse: maps, lists, strings, numbers (BigDecimal in plain notation), booleans and null.
+ */
+public final class Json {
+    private final CharSequence text;
+    private int pos;
+
+    private Json(CharSequence text) {
+        this.text = text;
+    }
+
+    public static Object parse(CharSequence text) {
+        Json p = new Json(text);
+        p.skipWhitespace();
+        Object value = p.value();
+        p.skipWhitespace();
+        if (p.pos != text.length()) throw p.error("trailing characters");
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> parseObject(CharSequence text) {
+        Object value = parse(text);
+        if (!(value instanceof Map)) throw new IllegalArgumentException("expected a JSON object");
+        return (Map<String, Object>) value;
+    }
+
+    /** s as a quoted JSON string, with every control character escaped. */
+    public static String quote(String s) {
+        return appendQuoted(new StringBuilder(s.length() + 2), s).toString();
+    }
+
+    public static StringBuilder appendQuoted(StringBuilder out, String s) {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        return out.append('"');
+    }
+
+    public static String write(Object value) {
+        return appendValue(new StringBuilder(), value).toString();
+    }
+
+    public static StringBuilder appendValue(StringBuilder out, Object value) {
+        if (value == null) {
+            out.append("null");
+        } else if (value instanceof String) {
+            appendQuoted(out, (String) value);
+        } else if (value instanceof BigDecimal) {
+            out.append(((BigDecimal) value).toPlainString());
+        } else if (value instanceof Number || value instanceof Boolean) {
+            out.append(value);
+        } else if (value instanceof Map) {
+            out.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                if (!first) out.append(',');
+                first = false;
+                appendQuoted(out, String.valueOf(e.getKey())).append(':');
+                appendValue(out, e.getValue());
+            }
+            out.append('}');
+        } else if (value instanceof Iterable) {
+            out.append('[');
+            boolean first = true;
+            for (Object item : (Iterable<?>) value) {
+                if (!first) out.append(',');
+                first = false;
+                appendValue(out, item);
+            }
+            out.append(']');
+        } else {
+            appendQuoted(out, value.toString());
+        }
+        return out;
+    }
+
+    private Object value() {
+        if (pos >= text.length()) throw error("unexpected end");
+        char c = text.charAt(pos);
+        switch (c) {
+            case '{': return object();
+            case '[': return array();
+            case '"': return string();
+            case 't': return literal("true", Boolean.TRUE);
+            case 'f': return literal("false", Boolean.FALSE);
+            case 'n': return literal("null", null);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) return number();
+                throw error("unexpected character '" + c + "'");
+        }
+    }
+
+    private Map<String, Object> object() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        pos++;
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            return map;
+        }
+        while (true) {
+            skipWhitespace();
+            if (peek() != '"') throw error("expected a string key");
+            String key = string();
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            map.put(key, value());
+            skipWhitespace();
+            if (peek() == ',') {
+                pos++;
+            } else {
+                expect('}');
+                return map;
+            }
+        }
+    }
+
+    private List<Object> array() {
+        List<Object> list = new ArrayList<>();
+        pos++;
+        skipWhitespace();
+        if (peek() == ']') {
+            pos++;
+            return list;
+        }
+        while (true) {
+            skipWhitespace();
+            list.add(value());
+            skipWhitespace();
+            if (peek() == ',') {
+                pos++;
+            } else {
+                expect(']');
+                return list;
+            }
+        }
+    }
+
+    private String string() {
+        pos++;
+        StringBuilder out = null;
+        int start = pos;
+        while (true) {
+            if (pos >= text.length()) throw error("unterminated string");
+            char c = text.charAt(pos);
+            if (c == '"') {
+                String s = out == null ? text.subSequence(start, pos).toString() : out.toString();
+                pos++;
+                return s;
+            }
+            if (c < 0x20) throw error("control character in string");
+            if (c == '\\') {
+                if (out == null) out = new StringBuilder().append(text, start, pos);
+                pos++;
+                if (pos >= text.length()) throw error("unterminated escape");
+                char e = text.charAt(pos++);
+                switch (e) {
+                    case '"': out.append('"'); break;
+                    case '\\': out.append('\\'); break;
+                    case '/': out.append('/'); break;
+                    case 'b': out.append('\b'); break;
+                    case 'f': out.append('\f'); break;
+                    case 'n': out.append('\n'); break;
+                    case 'r': out.append('\r'); break;
+                    case 't': out.append('\t'); break;
+                    case 'u':
+                        if (pos + 4 > text.length()) throw error("short \\u escape");
+                        try {
+                            out.append((char) Integer.parseInt(text.subSequence(pos, pos + 4).toString(), 16));
+                        } catch (NumberFormatException ex) {
+                            throw error("bad \\u escape");
+                        }
+                        pos += 4;
+                        break;
+                    default:
+                        throw error("bad escape '\\" + e + "'");
+                }
+            } else {
+                if (out != null) out.append(c);
+                pos++;
+            }
+        }
+    }
+
+    private Object number() {
+        int start = pos;
+        if (peek() == '-') pos++;
+        int digits = pos;
+        while (pos < text.length() && Character.isDigit(text.charAt(pos))) pos++;
+        if (pos == digits) throw error("expected a digit");
+        if (text.charAt(digits) == '0' && pos - digits > 1) throw error("leading zero");
+        boolean integral = true;
+        if (peek() == '.') {
+            integral = false;
+            pos++;
+            int fraction = pos;
+            while (pos < text.length() && Character.isDigit(text.charAt(pos))) pos++;
+            if (pos == fraction) throw error("expected a digit after '.'");
+        }
+        if (peek() == 'e' || peek() == 'E') {
+            integral = false;
+            pos++;
+            if (peek() == '+' || peek() == '-') pos++;
+            int exponent = pos;
+            while (pos < text.length() && Character.isDigit(text.charAt(pos))) pos++;
+            if (pos == exponent) throw error("expected an exponent");
+        }
+        String s = text.subSequence(start, pos).toString();
+        if (integral) {
+            try {
+                return Long.parseLong(s);
+            } catch (NumberFormatException e) {
+                // Too large for a long; keep it exact
+            }
+        }
+        return new BigDecimal(s);
+    }
+
+    private Object literal(String word, Object value) {
+        if (pos + word.length() > text.length() || !word.contentEquals(text.subSequence(pos, pos + word.length()))) {
+            throw error("unexpected literal");
+        }
+        pos += word.length();
+        return value;
+    }
+
+    private char peek() {
+        return pos < text.length() ? text.charAt(pos) : '\0';
+    }
+
+    private void expect(char c) {
+        if (peek() != c) throw error("expected '" + c + "'");
+        pos++;
+    }
+
+    private void skipWhitespace() {
+        while (pos < text.length()) {
+            char c = text.charAt(pos);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') return;
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException error(String reason) {
+        return new IllegalArgumentException("invalid JSON at offset " + pos + ": " + reason);
+    }
+}